@@ -116,6 +116,26 @@ public abstract class AbstractInstrTask extends AbstractCloverTask {
         config.setFlushPolicy(flushPolicy.getIndex());
     }
 
+    /**
+     * Whether the coverage recorder shall keep separate hit counters for every thread. Recommended for heavily
+     * multi-threaded applications, where a single shared array of counters loses hits due to races.
+     *
+     * @param stripedCounters true to use per-thread hit counters
+     */
+    public void setStripedCounters(boolean stripedCounters) {
+        config.setStripedCounters(stripedCounters);
+    }
+
+    /**
+     * Whether the coverage recorder shall record only if code was hit, not how many times. Reduces memory
+     * footprint and size of coverage recordings; reports will show a hit count of 1 for covered code.
+     *
+     * @param booleanCoverage true to record hit/not-hit flags only
+     */
+    public void setBooleanCoverage(boolean booleanCoverage) {
+        config.setBooleanCoverage(booleanCoverage);
+    }
+
     public void setInstrumentationLevel(AntInstrumentationConfig.EnumInstrumentationLevel instrumentationLevel) {
         config.setInstrLevel(instrumentationLevel.getIndex());
     }
@@ -10,6 +10,7 @@ import org.openclover.runtime.Logger;
 import java.io.File;
 import java.util.Set;
 
+import static org.openclover.core.util.Lists.newArrayList;
 import static org.openclover.core.util.Sets.newHashSet;
 
 /**
@@ -52,6 +53,20 @@ public class CloverInstrTask extends AbstractInstrTask {
         this.destDir = destDir;
     }
 
+    /**
+     * the number of threads parsing source files, 1 by default
+     */
+    public void setThreads(int threads) {
+        config.setNumThreads(threads);
+    }
+
+    /**
+     * the directory where instrumented sources are cached between builds, so that unchanged files are not parsed again
+     */
+    public void setCacheDir(File cacheDir) {
+        config.setCacheDir(cacheDir);
+    }
+
 
     @Override
     public boolean validate() {
@@ -64,6 +79,10 @@ public class CloverInstrTask extends AbstractInstrTask {
             throw new BuildException("destdir is required");
         }
 
+        if (config.getNumThreads() < 1) {
+            throw new BuildException("threads must be a positive integer");
+        }
+
         if (srcDir != null) {
             if (!srcDir.isDirectory()) {
                 throw new BuildException("srcdir '" + srcDir + "' not found or not a directory");
@@ -144,9 +163,7 @@ public class CloverInstrTask extends AbstractInstrTask {
             final Instrumenter instr = new Instrumenter(log, config);
 
             instr.startInstrumentation();
-            for (final File file : instrSet) {
-                instr.instrument(file, destDir, config.getEncoding());
-            }
+            instr.instrument(newArrayList(instrSet), destDir, config.getEncoding(), config.getNumThreads());
 
             instr.endInstrumentation();
 
@@ -9,10 +9,10 @@ import org.apache.tools.ant.types.PatternSet;
 import org.openclover.core.CoverageData;
 import org.openclover.core.cfg.StorageSize;
 import org.openclover.core.reporters.CloverReportConfig;
-import org.openclover.core.reporters.CloverReporter;
 import org.openclover.core.reporters.Current;
 import org.openclover.core.reporters.Format;
 import org.openclover.core.reporters.Historical;
+import org.openclover.core.reporters.ReportSession;
 import org.openclover.core.reporters.Type;
 import org.openclover.runtime.CloverNames;
 import org.openclover.runtime.Logger;
@@ -35,6 +35,7 @@ import static org.openclover.core.util.Maps.newTreeMap;
 public class CloverReportTask extends AbstractCloverTask {
     private boolean failOnError = true;
     private String projectName = null;
+    private int reportThreads = 1;
 
     /**
      * Adapter class which provides a version of the Current report
@@ -304,6 +305,13 @@ public class CloverReportTask extends AbstractCloverTask {
         this.projectName = projectName;
     }
 
+    /**
+     * Number of reports of the same coverage database rendered concurrently, 1 by default
+     */
+    public void setReportThreads(int reportThreads) {
+        this.reportThreads = reportThreads;
+    }
+
     /**
      * Generate the report.
      */
@@ -398,6 +406,8 @@ public class CloverReportTask extends AbstractCloverTask {
 
     protected void generateReports(CloverReportConfig firstCurrentConfig, CloverReportConfig[] configs,
                                    Map<String, CloverReportConfig> linkedReports) throws CloverException {
+        // reports of the same database share one load of it
+        final ReportSession session = new ReportSession(reportThreads);
         for (CloverReportConfig config : configs) {
             final Map<String, CloverReportConfig> myLinkedReports = newTreeMap();
             myLinkedReports.putAll(linkedReports); // copy all
@@ -405,8 +415,9 @@ public class CloverReportTask extends AbstractCloverTask {
 
             config.setLinkedReports(myLinkedReports);
             config.setFirstCurrentConfig(firstCurrentConfig);
-            CloverReporter.buildReporter(config).execute();
+            session.add(config);
         }
+        session.execute();
     }
 
 }
@@ -0,0 +1,129 @@
+package org.openclover.core;
+
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.remote.CoverageCollector;
+import org.openclover.runtime.remote.DistributedConfig;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a {@link CoverageCollector} which receives recordings from instrumented JVMs started with the
+ * <code>clover.collector</code> system property and writes them next to the database, until the process is stopped.
+ */
+public class CloverCollector {
+
+    private static final long DEFAULT_WRITE_INTERVAL = 1000;
+
+    private static String initString;
+    private static String config;
+    private static long writeInterval;
+
+    public static void main(final String[] args) {
+        final CoverageCollector collector = startCollector(args);
+        if (collector == null) {
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(collector::stop, "CloverCollectorShutdown"));
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            collector.stop();
+        }
+    }
+
+    /**
+     * Same as "main", but returns the running collector or <code>null</code> if it could not be started
+     */
+    public static CoverageCollector startCollector(final String[] args) {
+        if (!processArgs(args)) {
+            return null;
+        }
+        final CoverageCollector collector = new CoverageCollector(initString, new DistributedConfig(config), writeInterval);
+        try {
+            collector.start();
+        } catch (Exception e) {
+            Logger.getInstance().error("Error starting coverage collector for '" + initString + "'", e);
+            return null;
+        }
+        return collector;
+    }
+
+    private static void usage(String msg) {
+        System.err.println();
+        if (msg != null) {
+            System.err.println("  *** ERROR: " + msg);
+        }
+        System.err.println();
+        System.err.println("  USAGE: " + CloverCollector.class.getName() + " [OPTIONS] PARAMS");
+        System.err.println();
+        System.err.println("  PARAMS:");
+        System.err.println("    -i, --initstring <file>\t OpenClover initstring. This is the path of the database next to");
+        System.err.println("\t\t\t\t which the collected recordings will be written.");
+        System.err.println();
+        System.err.println("  OPTIONS:");
+        System.err.println("    -c, --config <config>\t Host, port and timeout to listen with, in the format of the");
+        System.err.println("\t\t\t\t distributed coverage configuration, e.g. \"host=0.0.0.0;port=1199\".");
+        System.err.println("    -w, --write-interval <ms>\t How often merged global recordings are written. Defaults to "
+                + DEFAULT_WRITE_INTERVAL + ".");
+        System.err.println("    -v, --verbose\t\t Enable verbose logging.");
+        System.err.println("    -d, --debug\t\t Enable debug logging.");
+    }
+
+    private static boolean processArgs(String[] args) {
+        try {
+            initString = null;
+            config = "";
+            writeInterval = DEFAULT_WRITE_INTERVAL;
+            int i = 0;
+
+            while (i < args.length) {
+                switch (args[i]) {
+                    case "-i":
+                    case "--initstring":
+                        i++;
+                        initString = args[i];
+                        break;
+                    case "-c":
+                    case "--config":
+                        i++;
+                        config = args[i];
+                        break;
+                    case "-w":
+                    case "--write-interval":
+                        i++;
+                        try {
+                            writeInterval = Long.parseLong(args[i]);
+                        } catch (NumberFormatException e) {
+                            writeInterval = 0;
+                        }
+                        if (writeInterval <= 0) {
+                            usage("Bad write interval '" + args[i] + "', expected a positive number of milliseconds");
+                            return false;
+                        }
+                        break;
+                    case "-v":
+                    case "--verbose":
+                        Logger.setVerbose(true);
+                        break;
+                    case "-d":
+                    case "--debug":
+                        Logger.setDebug(true);
+                        break;
+                    default:
+                        usage("Unknown option '" + args[i] + "'");
+                        return false;
+                }
+                i++;
+            }
+
+            if (initString == null) {
+                usage("Need to specify an initstring.");
+                return false;
+            }
+            return true;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("Missing a parameter.");
+        }
+        return false;
+    }
+}
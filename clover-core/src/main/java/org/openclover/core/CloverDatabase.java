@@ -1,22 +1,17 @@
 package org.openclover.core;
 
 import org.openclover.core.api.registry.ContextSet;
-import org.openclover.core.api.registry.FileInfo;
-import org.openclover.core.api.registry.PackageInfo;
 import org.openclover.core.api.registry.ProjectInfo;
 import org.openclover.core.api.registry.TestCaseInfo;
 import org.openclover.core.cfg.Interval;
 import org.openclover.core.context.ContextStore;
-import org.openclover.core.recorder.InMemPerTestCoverage;
-import org.openclover.core.recorder.PerTestCoverage;
-import org.openclover.core.recorder.PerTestCoverageStrategy;
 import org.openclover.core.registry.Clover2Registry;
 import org.openclover.core.api.registry.CoverageDataProvider;
 import org.openclover.core.api.registry.CoverageDataRange;
 import org.openclover.core.registry.NoSuchRegistryException;
+import org.openclover.core.registry.PackageFilter;
 import org.openclover.core.registry.ProjectView;
 import org.openclover.core.registry.entities.FullFileInfo;
-import org.openclover.core.registry.entities.FullPackageInfo;
 import org.openclover.core.api.registry.HasMetricsFilter;
 import org.openclover.core.registry.entities.FullTestCaseInfo;
 import org.openclover.core.util.CloverUtils;
@@ -25,7 +20,6 @@ import org.openclover.core.util.Path;
 import org.openclover.runtime.CloverNames;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.api.CloverException;
-import org.openclover.runtime.registry.CorruptedRegistryException;
 import org.openclover.runtime.registry.format.RegAccessMode;
 import org.openclover.runtime.registry.format.RegHeader;
 import org.openclover.runtime.util.Formatting;
@@ -34,8 +28,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.BitSet;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,7 +65,8 @@ public class CloverDatabase {
     /**
      * create a new instance
      * @param initstring the location of the database to load
-     * @param includeFilter a filter that is applied to the loading of the registry. It controls what elements are visible to the database
+     * @param includeFilter a filter that is applied to the loading of the registry. It controls what elements are visible to the database.
+     *                      With a {@link PackageFilter} only files of its packages are read from the registry file
      * @param name an alternative name for the model
      * @param filterSpec the filter to use when excluding metrics
      * @param progressListener progress listener
@@ -87,7 +80,9 @@ public class CloverDatabase {
 
         this.initstring = initstring;
 
-        registry = Clover2Registry.fromFile(new File(initstring), includeFilter, progressListener);
+        registry = includeFilter instanceof PackageFilter
+                ? Clover2Registry.fromFile(new File(initstring), ((PackageFilter) includeFilter).getPackageNames())
+                : Clover2Registry.fromFile(new File(initstring), includeFilter, progressListener);
         if (registry == null) {
             throw new NoSuchRegistryException(initstring);
         }
@@ -195,6 +190,19 @@ public class CloverDatabase {
         return data;
     }
 
+    /**
+     * Drops coverage data loaded so far, e.g. after it was merged into another database or reported, and frees
+     * resources it holds. The model stays intact, but the database must not be asked for coverage until
+     * {@link #loadCoverageData()} is called again.
+     */
+    public void releaseCoverageData() {
+        if (data != null) {
+            data.release();
+        }
+        data = null;
+        registry.getProject().setDataProvider(null);
+    }
+
     public String getInitstring() {
         return initstring;
     }
@@ -322,6 +330,16 @@ public class CloverDatabase {
      * @param listener gets progress callbacks
      */
     public static void merge(List<CloverDatabaseSpec> dbspecs, String initString, boolean update, Interval updateSpan, ProgressListener listener) throws CloverException, IOException {
+        merge(dbspecs, initString, update, updateSpan, listener, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * merge a list of databases to a new database, loading registries and coverage of up to numThreads databases
+     * concurrently. The merged database is the same as when databases are merged one by one.
+     * @see #merge(List, String, boolean, Interval, ProgressListener)
+     * @param numThreads number of databases to load at a time, 1 to load them sequentially
+     */
+    public static void merge(List<CloverDatabaseSpec> dbspecs, String initString, boolean update, Interval updateSpan, ProgressListener listener, int numThreads) throws CloverException, IOException {
 
         String originalInitString = null;
         File tmpDb = null;
@@ -352,154 +370,7 @@ public class CloverDatabase {
             throw new CloverException("need to specify a non-zero number of databases to merge");
         }
 
-        Clover2Registry destReg = new Clover2Registry(new File(initString), RegAccessMode.READONLY, "Merged Project"); // todo - pass in a name
-
-        destReg.setVersion(System.currentTimeMillis());
-        final ProjectInfo baseProject = destReg.getProject();
-
-        // todo - sort here to process the biggest first - might be significant speed improvement
-        Map<CloverDatabaseSpec, CloverDatabase> speccedDbs = new LinkedHashMap<>();
-
-        // load all registries early, to allow context store merging
-        for (CloverDatabaseSpec spec : dbspecs) {
-            CloverDatabase mergingDb = null;
-            try {
-                mergingDb = new CloverDatabase(spec.getInitString());
-            } catch (CorruptedRegistryException | NoSuchRegistryException e) {
-                Logger.getInstance().info(String.format("File %s doesn't seem to be OpenClover database, ignoring it.",
-                        spec.getInitString()));
-            }
-            speccedDbs.put(spec, mergingDb);
-        }
-
-        ContextStore.ContextMapper contextMapper =
-            ContextStore.mergeContextStores(destReg, speccedDbs.values());
-
-        // new aggregate coverage data
-        int [] mergedCoverage = null;
-        InMemPerTestCoverage mergedSliceHits = null;
-        int projectDataLength = 0;
-
-        float progress = 0.0f;
-        float progressInc = 0.8f / dbspecs.size();
-        int slotsUsed = 0;
-
-        FullTestCaseInfo.Factory.reset();
-
-        Iterator<Map.Entry<CloverDatabaseSpec, CloverDatabase>> speccedDbEntries =
-                speccedDbs.entrySet().iterator();
-
-        for (int i = 0; speccedDbEntries.hasNext(); i++) {
-            Map.Entry<CloverDatabaseSpec, CloverDatabase> entry = speccedDbEntries.next();
-            CloverDatabaseSpec spec =  entry.getKey();
-            CloverDatabase mergingDb = entry.getValue();
-            listener.handleProgress(
-                "Merging database " + (i + 1) + " of " + dbspecs.size() + ": " + mergingDb.getInitstring(),
-                progress);
-
-            // load actual coverage data for this database
-            CoverageData mergingData =
-                mergingDb.loadCoverageData(
-                    new CoverageDataSpec(null, spec.getSpan().getValueInMillis(), false, false, true, true, PerTestCoverageStrategy.IN_MEMORY));
-
-
-            final ProjectInfo mergingProject = mergingDb.getFullModel();
-
-            if (mergedCoverage == null) {
-                mergedCoverage = new int [mergingProject.getDataLength()];
-                mergedSliceHits = new InMemPerTestCoverage(mergingDb.getRegistry());
-            }
-
-            // get all files from mergingProject
-            List<FileInfo> mergingFiles = mergingProject.getFiles(HasMetricsFilter.ACCEPT_ALL);
-
-            for (FileInfo mergeFI : mergingFiles) {
-                FileInfo baseFI = null;
-                String mergePkgName = mergeFI.getContainingPackage().getName();
-
-                PackageInfo basePkg = baseProject.getNamedPackage(mergePkgName);
-                if (basePkg != null) {
-                    baseFI = basePkg.getFile(mergeFI.getPackagePath());
-                }
-                // default new location is append at the end
-                int newDataIndex = baseProject.getDataLength();
-                int newDataLength = mergeFI.getDataLength();
-                int oldDataIndex = mergeFI.getDataIndex();
-
-                // we check filesize here because checksum can theoretically have collisions
-                // which still is no guarantee, but hey.
-                if (baseFI != null && baseFI.getFileSize() == mergeFI.getFileSize() &&
-                        baseFI.getChecksum() == mergeFI.getChecksum()) {
-                    // baseProject has an entry for this file, and the file records are identical, so
-                    // need to merge data only
-                    newDataIndex = baseFI.getDataIndex();
-                    newDataLength = baseFI.getDataLength();
-                } else if (baseFI == null || baseFI.getTimestamp() < mergeFI.getTimestamp()) {
-                    // baseProject doesn't have this file, or mergingProject has a newer record and different checksum
-                    // - add file record (and possibly the containing package as well) to baseProject
-
-                    ((FullFileInfo) mergeFI).setDataIndex(newDataIndex);
-                    ((FullFileInfo) mergeFI).resetVersions(baseProject.getVersion());
-
-                    if (basePkg == null) {
-                        basePkg = new FullPackageInfo(baseProject, mergePkgName, newDataIndex);
-                        baseProject.addPackage(basePkg);
-                    }
-                    basePkg.addFile(mergeFI);
-                    projectDataLength = Math.max(projectDataLength, mergeFI.getDataIndex() + mergeFI.getDataLength());
-                    baseProject.setDataLength(projectDataLength);
-                    if (baseFI != null) {
-                        slotsUsed -= baseFI.getDataLength();
-                    }
-                    slotsUsed += mergeFI.getDataLength();
-                    // map this new node's contexts
-                    contextMapper.applyContextMapping(mergingDb, mergeFI);
-                } else {
-                    // baseProject has this file, with a different checksum and newer timestamp, so keep the base record
-                    // and do no further merge
-                    continue;
-                }
-                mergedCoverage = addIntArrays(
-                        mergingData.getHitCounts(), oldDataIndex, mergedCoverage, newDataIndex, newDataLength);
-                mergedSliceHits = mergePerTestCoverage(
-                        mergingData, oldDataIndex, mergedSliceHits, newDataIndex, newDataLength);
-            }
-            progress += progressInc;
-        }
-
-        // todo: instrumentation history
-
-        // compact the new registry and recording.
-        int [] compactedCoverage = new int[slotsUsed];
-        InMemPerTestCoverage compactedSliceHits = new InMemPerTestCoverage(slotsUsed);
-        int insertPoint = 0;
-        List<FileInfo> mergedFiles = baseProject.getFiles(HasMetricsFilter.ACCEPT_ALL);
-
-        for (FileInfo fileInfo : mergedFiles) {
-            System.arraycopy(mergedCoverage, fileInfo.getDataIndex(), compactedCoverage, insertPoint, fileInfo.getDataLength());
-
-            for (TestCaseInfo tci : mergedSliceHits.getTests()) {
-                BitSet compactedSlice = compactedSliceHits.getHitsFor(tci);
-                BitSet mergedSlice = mergedSliceHits.getHitsFor(tci);
-                for (int i = 0; i < fileInfo.getDataLength(); i++) {
-                    compactedSlice.set(insertPoint + i, mergedSlice.get(fileInfo.getDataIndex() + i));
-                }
-            }
-            ((FullFileInfo) fileInfo).setDataIndex(insertPoint);
-            insertPoint += fileInfo.getDataLength();
-        }
-        baseProject.setDataLength(slotsUsed);
-
-        listener.handleProgress("Writing merged database registry", progress);
-
-        destReg.setCoverageData(
-            new CoverageData(
-                System.currentTimeMillis(),
-                compactedCoverage,
-                compactedSliceHits));
-        
-        destReg.saveAndOverwriteFile();
-        FullTestCaseInfo.Factory.reset();
+        writeMerged(new DatabaseMerger(dbspecs, numThreads, listener), initString, listener);
 
         if (update) {
             // delete the original
@@ -513,41 +384,46 @@ public class CloverDatabase {
 
     }
 
-    private static InMemPerTestCoverage mergePerTestCoverage(PerTestCoverage src, int spos, InMemPerTestCoverage dest, int dpos, int length) {
-        if (dpos + length > dest.getCoverageSize()) {
-            dest = new InMemPerTestCoverage(dest, dpos + length);
+    /**
+     * merge one part of a list of databases to a new database, specified by initString. Databases are split into
+     * numParts contiguous parts of similar size and only databases of the given part are opened, so that parts can be
+     * merged by separate processes and their outputs merged by a final {@link #merge(List, String)}. Files are
+     * reconciled within the part and then across the parts by the final merge, which gives the same result as merging
+     * the whole list unless a file record dropped for a newer one in one part is identical to a record in another part.
+     * @param dbspecs   list of databases to merge, in the same order for all parts
+     * @param initString destination database, any existing database is overwritten
+     * @param part index of the part to merge, from 0 to numParts - 1
+     * @param numParts number of parts the list is split into
+     * @param listener gets progress callbacks
+     * @param numThreads number of databases to load at a time
+     */
+    public static void mergePart(List<CloverDatabaseSpec> dbspecs, String initString, int part, int numParts, ProgressListener listener, int numThreads) throws CloverException, IOException {
+        if (numParts < 1 || part < 0 || part >= numParts) {
+            throw new CloverException("invalid part " + part + " of " + numParts + " parts to merge");
         }
-
-        for (TestCaseInfo tci : src.getTests()) {
-            BitSet srcSlots = src.getHitsFor(tci);
-            BitSet destSlots = dest.getHitsFor(tci);
-            for (int i = 0; i < length; i++) {
-                destSlots.set(dpos + i, srcSlots.get(spos + i));
-            }
+        final int from = (int) ((long) dbspecs.size() * part / numParts);
+        final int to = (int) ((long) dbspecs.size() * (part + 1) / numParts);
+        if (from == to) {
+            throw new CloverException("need to specify a non-zero number of databases to merge in part "
+                    + (part + 1) + " of " + numParts);
         }
-
-        return dest;
+        listener.handleProgress("Merging part " + (part + 1) + " of " + numParts + ": databases "
+                + (from + 1) + " to " + to + " of " + dbspecs.size(), 0.0f);
+        writeMerged(new DatabaseMerger(dbspecs.subList(from, to), numThreads, listener), initString, listener);
+        listener.handleProgress("Merge complete", 1.0f);
     }
 
-    /**
-     * Adds the elements of source array to the elements of destination, growing the destination array if needed.
-     * @param src  the source array
-     * @param spos  the offset in the source array to begin from
-     * @param dest the destination array
-     * @param dpos the offset destination
-     * @param length the number of elements to add
-     * @return array resulting from addition
-     */
-    private static int [] addIntArrays(int [] src, int spos, int [] dest, int dpos, int length) {
-       if (dpos + length > dest.length) {
-           int [] tmp = new int [dpos + length];
-           System.arraycopy(dest, 0, tmp, 0, dest.length);
-           dest = tmp;
-       }
-       for (int i = 0; i < length; i++) {
-           dest[dpos + i] += src[spos + i];
-       }
-
-       return dest;
+    private static void writeMerged(DatabaseMerger merger, String initString, ProgressListener listener) throws CloverException, IOException {
+        Clover2Registry destReg = new Clover2Registry(new File(initString), RegAccessMode.READONLY, "Merged Project"); // todo - pass in a name
+
+        destReg.setVersion(System.currentTimeMillis());
+        merger.mergeInto(destReg);
+
+        // todo: instrumentation history
+
+        listener.handleProgress("Writing merged database registry", 0.8f);
+
+        destReg.saveAndOverwriteFile();
+        FullTestCaseInfo.Factory.reset();
     }
 }
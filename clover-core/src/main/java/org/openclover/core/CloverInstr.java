@@ -37,6 +37,8 @@ public class CloverInstr {
             CloverInstrArgProcessors.Relative,
             CloverInstrArgProcessors.FlushPolicy,
             CloverInstrArgProcessors.FlushInterval,
+            CloverInstrArgProcessors.StripedCounters,
+            CloverInstrArgProcessors.BooleanCoverage,
             CloverInstrArgProcessors.Encoding,
             CloverInstrArgProcessors.InstrLevel,
             CloverInstrArgProcessors.InstrLambda,
@@ -51,6 +53,8 @@ public class CloverInstr {
             CloverInstrArgProcessors.TestSourceExcludes,
             CloverInstrArgProcessors.TestSourceClass,
             CloverInstrArgProcessors.TestSourceMethod,
+            CloverInstrArgProcessors.Threads,
+            CloverInstrArgProcessors.CacheDir,
             CloverInstrArgProcessors.Verbose,
             CloverInstrArgProcessors.JavaSourceFile
     );
@@ -101,9 +105,11 @@ public class CloverInstr {
             }
 
             // instrument files
+            final List<File> srcFiles = newArrayList();
             for (String srcFile : cfg.getSourceFiles()) {
-                instr.instrument(new File(srcFile), cfg.getDestDir(), cfg.getEncoding());
+                srcFiles.add(new File(srcFile));
             }
+            instr.instrument(srcFiles, cfg.getDestDir(), cfg.getEncoding(), cfg.getNumThreads());
 
             // close the session
             instr.endInstrumentation();
@@ -7,7 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.openclover.core.util.Lists.newLinkedList;
-import static org.openclover.core.util.Maps.newHashMap;
+import static org.openclover.core.util.Maps.newLinkedHashMap;
 
 /**
  *
@@ -18,6 +18,9 @@ public class CloverMerge {
     private static Map<String, Interval> mergingDbs;
     private static boolean update = false;
     private static Interval updateSpan = Interval.DEFAULT_SPAN;
+    private static int part = -1;
+    private static int numParts = 0;
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
 
     public static void main(final String[] args) {
         System.exit(mainImpl(args));
@@ -34,7 +37,12 @@ public class CloverMerge {
             databases.add(new CloverDatabaseSpec(db, mergingDbs.get(db)));
         }
         try {
-            CloverDatabase.merge(databases, initString, update, updateSpan, (desc, pc) -> System.out.println(desc));
+            final ProgressListener listener = (desc, pc) -> System.out.println(desc);
+            if (numParts > 0) {
+                CloverDatabase.mergePart(databases, initString, part, numParts, listener, numThreads);
+            } else {
+                CloverDatabase.merge(databases, initString, update, updateSpan, listener, numThreads);
+            }
         }
         catch (Exception e) {
             Logger.getInstance().error("Error writing new clover db '" + initString, e);
@@ -63,6 +71,11 @@ public class CloverMerge {
         System.err.println("    -s, --span <interval>\t Specifies the span to use when reading subsequent databases to be ");
         System.err.println("\t\t\t\t merged. This option can be specified more than once and applies to all databases ");
         System.err.println("\t\t\t\t specified after the option, or until another span in specified.");
+        System.err.println("    -p, --part <i>/<n>\t\t Merge only the i-th of n parts of the list of databases, so that parts");
+        System.err.println("\t\t\t\t can be merged by separate processes. All parts must be given the same list.");
+        System.err.println("\t\t\t\t Outputs of all parts are then merged by a final merge without this option.");
+        System.err.println("    -t, --threads <n>\t\t Number of threads loading databases and their coverage. Defaults to");
+        System.err.println("\t\t\t\t the number of available processors.");
         System.err.println("    -v, --verbose\t\t Enable verbose logging.");
         System.err.println("    -d, --debug\t\t Enable debug logging.");
     }
@@ -70,7 +83,10 @@ public class CloverMerge {
     private static boolean processArgs(String[] args) {
 
         try {
-            mergingDbs = newHashMap();
+            mergingDbs = newLinkedHashMap();
+            part = -1;
+            numParts = 0;
+            numThreads = Runtime.getRuntime().availableProcessors();
             int i = 0;
 
             Interval interval = Interval.ZERO_SECONDS;
@@ -106,6 +122,34 @@ public class CloverMerge {
                             return false;
                         }
                         break;
+                    case "-p":
+                    case "--part":
+                        i++;
+                        try {
+                            final String[] partOfParts = args[i].split("/");
+                            part = Integer.parseInt(partOfParts[0]) - 1;
+                            numParts = partOfParts.length == 2 ? Integer.parseInt(partOfParts[1]) : 0;
+                        } catch (NumberFormatException e) {
+                            numParts = 0;
+                        }
+                        if (numParts < 1 || part < 0 || part >= numParts) {
+                            usage("Bad part format '" + args[i] + "', expected <i>/<n> where 1 <= i <= n");
+                            return false;
+                        }
+                        break;
+                    case "-t":
+                    case "--threads":
+                        i++;
+                        try {
+                            numThreads = Integer.parseInt(args[i]);
+                        } catch (NumberFormatException e) {
+                            numThreads = 0;
+                        }
+                        if (numThreads < 1) {
+                            usage("Bad number of threads '" + args[i] + "', expected a number of at least 1");
+                            return false;
+                        }
+                        break;
                     case "-v":
                     case "--verbose":
                         Logger.setVerbose(true);
@@ -129,6 +173,10 @@ public class CloverMerge {
                 usage("No databases to merge.");
                 return false;
             }
+            else if (numParts > 0 && update) {
+                usage("--update can't be combined with --part.");
+                return false;
+            }
             else {
                 return true;
             }
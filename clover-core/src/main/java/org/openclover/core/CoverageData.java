@@ -55,6 +55,15 @@ public class CoverageData extends BaseTCILookupStore implements ApplicationCover
         empty = true;
     }
 
+    /** Coverage data of the registry restored by {@link CoverageDataCache} */
+    CoverageData(Clover2Registry registry, int[] hitCounts, PerTestCoverage perTestCoverage, long timestamp, boolean empty) {
+        this.hitCounts = hitCounts;
+        this.perTestCoverage = perTestCoverage;
+        this.registryVersion = registry.getVersion();
+        this.timestamp = timestamp;
+        this.empty = empty;
+    }
+
     CoverageData(Clover2Registry registry, CoverageData other, CoverageDataSpec spec) {
         super(other.getTciLookups());
         timestamp = other.timestamp;
@@ -196,6 +205,22 @@ public class CoverageData extends BaseTCILookupStore implements ApplicationCover
         empty = false;
     }
 
+    /**
+     * Adds hit counts summed up from one or more global recordings
+     */
+    public void addCoverage(int[] recordingsHitCounts) {
+        final int max = Math.min(recordingsHitCounts.length, hitCounts.length);
+        for (int i = 0; i < max; i++) {
+            hitCounts[i] += recordingsHitCounts[i];
+        }
+        empty = false;
+    }
+
+    @Override
+    public void release() {
+        perTestCoverage.release();
+    }
+
     public static Set<TestCaseInfo> tcisInHitRange(Map<TestCaseInfo, BitSet> tcisAndHits, CoverageDataRange range) {
         Set<TestCaseInfo> hits = newHashSet();
         for (final Map.Entry<TestCaseInfo, BitSet> tciAndHits : tcisAndHits.entrySet()) {
@@ -0,0 +1,323 @@
+package org.openclover.core;
+
+import org.openclover.core.recorder.InMemPerTestCoverage;
+import org.openclover.core.recorder.MappedCoverageRecordingTranscript;
+import org.openclover.core.recorder.PerTestCoverage;
+import org.openclover.core.recorder.PerTestCoverageStrategy;
+import org.openclover.core.recorder.RecordingTranscripts;
+import org.openclover.core.registry.Clover2Registry;
+import org.openclover.core.registry.format.CoverageSegment;
+import org.openclover.runtime.CloverNames;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.recorder.GlobalCoverageRecording;
+import org.openclover.runtime.registry.format.BufferUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.openclover.core.util.Lists.newArrayList;
+import static org.openclover.core.util.Maps.newHashMap;
+import static org.openclover.core.util.Sets.newHashSet;
+
+/**
+ * Collated coverage kept in a file next to the database, used when coverage is loaded with
+ * {@link CoverageDataSpec#isPersistentCache()}. The file holds a manifest of the recording files included followed
+ * by a {@link CoverageSegment} with their hit counts and, if per-test coverage is kept in memory, their per-test
+ * coverage. A later load starts from it and reads only the recordings which are not in the manifest.
+ * <p/>
+ * A recorder rewrites its global recording while it runs, so the cache is used only if every global recording
+ * included is unchanged, i.e. it and its alternate file have the same length and modification time. Recordings
+ * modified less than {@link #RACY_INTERVAL} before the cache is written (their modification time may not tell a
+ * later write apart) and memory-mapped recordings (which change in place) are not included; they're read on every
+ * load. Journals of per-test recordings grow, so only records appended since are read.
+ */
+final class CoverageDataCache {
+    private static final int MARKER = 0xc07ca4e5;
+    private static final int FORMAT_VERSION = 1;
+
+    /** Recordings modified within this many milliseconds before the cache is written are not included */
+    static final long RACY_INTERVAL = 2000;
+
+    private final File file;
+    private final Clover2Registry registry;
+    private final RecordingTranscripts.Filter filter;
+    private final CoverageDataSpec spec;
+    /** Global recordings of the manifest of a cache read, by name */
+    private final Map<String, GlobalEntry> manifest = newHashMap();
+    /** Names of global recordings of the manifest whose coverage was restored */
+    private final Set<String> validated = newHashSet();
+
+    CoverageDataCache(Clover2Registry registry, RecordingTranscripts.Filter filter, CoverageDataSpec spec) {
+        this.file = new File(registry.getRegistryFile().getPath() + CloverNames.COVERAGE_CACHE_SUFFIX);
+        this.registry = registry;
+        this.filter = filter;
+        this.spec = spec;
+    }
+
+    /**
+     * A global recording file and its state when it was read
+     */
+    static final class GlobalEntry {
+        final String name;
+        final long length;
+        final long lastModified;
+        final long altLength;
+        final long altLastModified;
+        final boolean mapped;
+        /** the file found by the current scan, <code>null</code> for an entry of the manifest */
+        RecordingTranscripts.FileRef recording;
+
+        GlobalEntry(String name, long length, long lastModified, long altLength, long altLastModified, boolean mapped) {
+            this.name = name;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.altLength = altLength;
+            this.altLastModified = altLastModified;
+            this.mapped = mapped;
+        }
+
+        boolean isCacheable(long now) {
+            return !mapped && now - Math.max(lastModified, altLastModified) >= RACY_INTERVAL;
+        }
+
+        boolean isUnchanged(GlobalEntry other) {
+            return length == other.length && lastModified == other.lastModified
+                    && altLength == other.altLength && altLastModified == other.altLastModified;
+        }
+    }
+
+    /**
+     * Coverage restored from the cache
+     */
+    static final class Restored {
+        final CoverageData coverageData;
+        /** A filter with per-test recordings included in the coverage data marked as seen */
+        final RecordingTranscripts.Filter seen;
+        /** Names of global recordings included in the coverage data */
+        final Set<String> included;
+
+        Restored(CoverageData coverageData, RecordingTranscripts.Filter seen, Set<String> included) {
+            this.coverageData = coverageData;
+            this.seen = seen;
+            this.included = included;
+        }
+
+        boolean isIncluded(GlobalEntry entry) {
+            return included.contains(entry.name);
+        }
+    }
+
+    /**
+     * @return coverage of recordings in the cache or <code>null</code> if there's no cache usable for the
+     * registry and the spec, or a global recording included has changed since
+     */
+    Restored read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        final long start = System.currentTimeMillis();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = raf.getChannel();
+            // not closed, which would close the channel the segment is read from
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MARKER || in.readInt() != FORMAT_VERSION
+                    || in.readLong() != registry.getVersion() || in.readInt() != registry.getDataLength()
+                    || in.readLong() != filter.getFrom()) {
+                Logger.getInstance().verbose("Coverage cache " + file + " was written for another database or span, ignoring it");
+                return null;
+            }
+            final boolean filterTraces = in.readBoolean();
+            final boolean hasPerTestCoverage = in.readBoolean();
+            final boolean empty = in.readBoolean();
+            final long timestamp = in.readLong();
+
+            final Map<String, GlobalEntry> cachedEntries = newHashMap();
+            final Set<String> included = newHashSet();
+            final int numGlobal = in.readInt();
+            for (int i = 0; i < numGlobal; i++) {
+                final GlobalEntry cached = new GlobalEntry(in.readUTF(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readBoolean());
+                final boolean isIncluded = in.readBoolean();
+                cachedEntries.put(cached.name, cached);
+                if (isIncluded) {
+                    if (!cached.isUnchanged(describe(cached.name, cached.mapped))) {
+                        Logger.getInstance().verbose("Coverage recording " + cached.name + " has changed since "
+                                + file + " was written, ignoring it");
+                        return null;
+                    }
+                    included.add(cached.name);
+                }
+            }
+
+            // per-test coverage is restored if it's kept in memory, otherwise all per-test recordings are read
+            final boolean restorePerTest = hasPerTestCoverage && filterTraces == spec.isFilterTraces()
+                    && spec.isLoadPerTestData() && spec.getPerTestStrategy() == PerTestCoverageStrategy.IN_MEMORY;
+            final RecordingTranscripts.Filter seen = new RecordingTranscripts.Filter(filter.getDir(),
+                    filter.getBasename(), filter.getFrom(), filter.getTo(), false, filter.isLoadPerTestData());
+            final int numPerTest = in.readInt();
+            for (int i = 0; i < numPerTest; i++) {
+                final String name = in.readUTF();
+                final long journalEnd = in.readLong();
+                if (restorePerTest) {
+                    final RecordingTranscripts.FileRef recording = seen.addSeenFile(name, journalEnd);
+                    final File datafile = recording != null ? recording.getDatafile() : null;
+                    if (datafile == null || !datafile.isFile() || datafile.length() < journalEnd) {
+                        Logger.getInstance().verbose("Per-test coverage recording " + name + " has been removed since "
+                                + file + " was written, ignoring it");
+                        return null;
+                    }
+                }
+            }
+
+            channel.position(channel.size() - 1);
+            final CoverageSegment segment = new CoverageSegment(channel);
+            final int[] hitCounts = segment.getHitCounts();
+            final PerTestCoverage perTestCoverage = restorePerTest
+                    ? segment.getPerTestCoverage()
+                    : spec.getPerTestStrategy().build(registry, spec, CoverageData.DEFAULT_EST_PER_TEST_RECORDINGS);
+            if (hitCounts.length != registry.getDataLength()) {
+                return null;
+            }
+            manifest.putAll(cachedEntries);
+            validated.addAll(included);
+            Logger.getInstance().debug("Read coverage of " + included.size() + " recordings from cache " + file
+                    + " in " + (System.currentTimeMillis() - start) + "ms");
+            return new Restored(new CoverageData(registry, hitCounts, perTestCoverage, timestamp, empty),
+                    seen, included);
+        } catch (IOException | RuntimeException e) {
+            Logger.getInstance().verbose("Failed to read coverage cache " + file + ", ignoring it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Describes global recordings as they are now, before they're read
+     */
+    List<GlobalEntry> describe(Collection<RecordingTranscripts.FileRef> recordings) {
+        final List<GlobalEntry> entries = newArrayList();
+        for (RecordingTranscripts.FileRef recording : recordings) {
+            final String name = recording.getDatafile().getName();
+            final GlobalEntry cached = manifest.get(name);
+            final GlobalEntry entry;
+            if (cached != null && validated.contains(name)) {
+                // as it was when its coverage was cached, so that a change since is found on the next read
+                entry = cached;
+            } else {
+                entry = describe(name, cached != null
+                        ? cached.mapped
+                        : MappedCoverageRecordingTranscript.isMappedRecording(recording.getDatafile()));
+            }
+            entry.recording = recording;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private GlobalEntry describe(String name, boolean mapped) {
+        final File recording = new File(filter.getDir(), name);
+        final File alt = new File(filter.getDir(), name + GlobalCoverageRecording.ALT_SUFFIX);
+        return new GlobalEntry(name, recording.length(), recording.lastModified(),
+                alt.length(), alt.lastModified(), mapped);
+    }
+
+    /**
+     * @return true if per-test coverage of the coverage data is written to the cache
+     */
+    boolean isPerTestCached(CoverageData coverageData) {
+        return spec.isLoadPerTestData() && coverageData.getPerTestCoverage() instanceof InMemPerTestCoverage;
+    }
+
+    /**
+     * Writes the cache, replacing the previous one
+     *
+     * @param globalRecordings all global recordings, as described before they were read
+     * @param now              time when the recordings were described
+     * @param perTestRecordings all per-test recordings read, with journals read up to their ends
+     * @param hitCounts        hit counts of cacheable global recordings
+     * @param timestamp        timestamp of the newest cacheable global recording
+     * @param empty            true if no cacheable global recording had coverage
+     * @param coverageData     coverage data with per-test coverage to write
+     */
+    void write(List<GlobalEntry> globalRecordings, long now, Collection<RecordingTranscripts.FileRef> perTestRecordings,
+               int[] hitCounts, long timestamp, boolean empty, CoverageData coverageData) {
+        final long start = System.currentTimeMillis();
+        final boolean perTestCached = isPerTestCached(coverageData);
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MARKER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(registry.getVersion());
+            out.writeInt(registry.getDataLength());
+            out.writeLong(filter.getFrom());
+            out.writeBoolean(spec.isFilterTraces());
+            out.writeBoolean(perTestCached);
+
+            int numIncluded = 0;
+            for (GlobalEntry entry : globalRecordings) {
+                if (entry.isCacheable(now)) {
+                    numIncluded++;
+                }
+            }
+            out.writeBoolean(empty);
+            out.writeLong(timestamp);
+            out.writeInt(globalRecordings.size());
+            for (GlobalEntry entry : globalRecordings) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.altLength);
+                out.writeLong(entry.altLastModified);
+                out.writeBoolean(entry.mapped);
+                out.writeBoolean(entry.isCacheable(now));
+            }
+
+            final List<RecordingTranscripts.FileRef> seenPerTest = newArrayList();
+            if (perTestCached) {
+                for (RecordingTranscripts.FileRef recording : perTestRecordings) {
+                    // a recording being written may have been read partially; a journal is read up to a whole record
+                    if (recording.isJournal() || now - recording.getDatafile().lastModified() >= RACY_INTERVAL) {
+                        seenPerTest.add(recording);
+                    }
+                }
+            }
+            out.writeInt(seenPerTest.size());
+            for (RecordingTranscripts.FileRef recording : seenPerTest) {
+                out.writeUTF(recording.getDatafile().getName());
+                out.writeLong(recording.isJournal() ? recording.getJournalEnd() : 0L);
+            }
+            out.flush();
+
+            final PerTestCoverage perTestCoverage = perTestCached
+                    ? coverageData.getPerTestCoverage()
+                    : new InMemPerTestCoverage(hitCounts.length);
+            try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+                final FileChannel channel = raf.getChannel();
+                channel.truncate(0);
+                BufferUtils.writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+                new CoverageSegment(new CoverageData(timestamp, hitCounts, perTestCoverage)).write(channel);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Logger.getInstance().debug("Wrote coverage of " + numIncluded + " recordings to cache " + file
+                    + " in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException | RuntimeException e) {
+            tmpFile.delete();
+            Logger.getInstance().verbose("Failed to write coverage cache " + file, e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.openclover.core;
 import org.apache.commons.lang3.mutable.MutableLong;
 import org.openclover.core.api.registry.TestCaseInfo;
 import org.openclover.core.recorder.GlobalCoverageRecordingTranscript;
+import org.openclover.core.recorder.InMemPerTestCoverage;
 import org.openclover.core.recorder.PerTestRecordingTranscript;
 import org.openclover.core.recorder.RecordingTranscripts;
 import org.openclover.core.registry.Clover2Registry;
@@ -10,16 +11,34 @@ import org.openclover.core.registry.entities.FullFileInfo;
 import org.openclover.core.registry.entities.FullTestCaseInfo;
 import org.openclover.core.util.FileUtils;
 import org.openclover.core.util.collections.Pair;
+import org.openclover.runtime.CloverNames;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.api.CloverException;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class CoverageDataCollator {
+    /** How many per-test recordings may be read ahead by every reader thread */
+    private static final int PER_TEST_FILES_IN_FLIGHT_PER_THREAD = 4;
+    /** Hit counts of all partitions of global recordings may take 1/PARTITION_MEMORY_SHARE of the available heap */
+    private static final int PARTITION_MEMORY_SHARE = 4;
+
     private Clover2Registry registry;
     private RecordingTranscripts.Filter filter;
 
@@ -59,18 +78,24 @@ public class CoverageDataCollator {
             coverageData = new CoverageData(registry, coverageData, spec);
             final Pair<Set<RecordingTranscripts.FileRef>, Set<RecordingTranscripts.FileRef>> newRecordings =
                 newFilter.collectUnseenFilesAnd(prevFilter);
-            collateRecordingFiles(newRecordings.first, coverageData, spec);
+            collateRecordingFiles(newRecordings.first, coverageData, spec, progressListener != null ? progressListener : ProgressListener.NOOP_LISTENER);
             if (spec.isLoadPerTestData()) {
                 collatePerTestRecordings(
                     newRecordings.second, coverageData, spec, progressListener != null ? progressListener : ProgressListener.NOOP_LISTENER);
             }
+        } else if (spec.isPersistentCache()) {
+            coverageData = loadCachedCoverageData(newFilter, spec, progressListener != null ? progressListener : ProgressListener.NOOP_LISTENER);
+            if (spec.isLoadPerTestData()) {
+                setPerTestIndexFile(coverageData, newFilter.getPerTestRecordingFiles());
+            }
         } else {
             newFilter.collectAllFiles();
             coverageData = new CoverageData(registry, spec);
-            collateRecordingFiles(newFilter.getCoverageRecordingFiles(), coverageData, spec);
+            collateRecordingFiles(newFilter.getCoverageRecordingFiles(), coverageData, spec, progressListener != null ? progressListener : ProgressListener.NOOP_LISTENER);
             if (spec.isLoadPerTestData()) {
                 collatePerTestRecordings(
                     newFilter.getPerTestRecordingFiles(), coverageData, spec, progressListener != null ? progressListener : ProgressListener.NOOP_LISTENER);
+                setPerTestIndexFile(coverageData, newFilter.getPerTestRecordingFiles());
             }
         }
 
@@ -78,6 +103,58 @@ public class CoverageDataCollator {
         return coverageData;
     }
 
+    /**
+     * Loads coverage data starting from the coverage kept by {@link CoverageDataCache}, so that only recordings
+     * written since it was kept are read, and keeps the result for the next load.
+     */
+    private CoverageData loadCachedCoverageData(RecordingTranscripts.Filter newFilter, CoverageDataSpec spec, ProgressListener progressListener) {
+        final CoverageDataCache cache = new CoverageDataCache(registry, newFilter, spec);
+        final CoverageDataCache.Restored restored = cache.read();
+        final CoverageData coverageData;
+        final Collection<RecordingTranscripts.FileRef> perTestRecordings;
+        if (restored != null) {
+            coverageData = restored.coverageData;
+            perTestRecordings = newFilter.collectUnseenFilesAnd(restored.seen).second;
+        } else {
+            newFilter.collectAllFiles();
+            coverageData = new CoverageData(registry, spec);
+            perTestRecordings = newFilter.getPerTestRecordingFiles();
+        }
+
+        // recordings are described before they're read, so that one written meanwhile is not taken as unchanged
+        final long now = System.currentTimeMillis();
+        final List<CoverageDataCache.GlobalEntry> globalRecordings = cache.describe(newFilter.getCoverageRecordingFiles());
+        final List<RecordingTranscripts.FileRef> cacheable = new ArrayList<>();
+        final List<RecordingTranscripts.FileRef> uncacheable = new ArrayList<>();
+        for (CoverageDataCache.GlobalEntry entry : globalRecordings) {
+            if (restored == null || !restored.isIncluded(entry)) {
+                (entry.isCacheable(now) ? cacheable : uncacheable).add(entry.recording);
+            }
+        }
+        if (restored == null || !cacheable.isEmpty()) {
+            collateRecordingFiles(cacheable, coverageData, spec, progressListener);
+        }
+        // what's cached is the coverage of recordings which won't change anymore
+        final int[] cachedHitCounts = coverageData.getHitCounts().clone();
+        final long cachedTimestamp = coverageData.getTimestamp();
+        final boolean cachedEmpty = coverageData.isEmpty();
+        if (!uncacheable.isEmpty()) {
+            collateRecordingFiles(uncacheable, coverageData, spec, progressListener);
+        }
+
+        int numPerTestRecordings = 0;
+        if (spec.isLoadPerTestData()) {
+            numPerTestRecordings = collatePerTestRecordings(perTestRecordings, coverageData, spec, progressListener);
+        }
+
+        if (restored == null || !cacheable.isEmpty()
+                || (numPerTestRecordings > 0 && cache.isPerTestCached(coverageData))) {
+            cache.write(globalRecordings, now, newFilter.getPerTestRecordingFiles(),
+                    cachedHitCounts, cachedTimestamp, cachedEmpty, coverageData);
+        }
+        return coverageData;
+    }
+
     public boolean isOutOfDate() {
         return filter == null || filter.isOutOfDate();
     }
@@ -93,13 +170,10 @@ public class CoverageDataCollator {
                 : prevFilter;
     }
 
-    private void collateRecordingFiles(Collection<RecordingTranscripts.FileRef> files, final CoverageData coverageData, final CoverageDataSpec spec) {
+    private void collateRecordingFiles(Collection<RecordingTranscripts.FileRef> files, final CoverageData coverageData,
+                                       final CoverageDataSpec spec, final ProgressListener progressListener) {
         final long start = System.currentTimeMillis();
 
-        int numRecordings = 0;
-        long tsNewestRecordingUsed = 0;
-        long tsOldestRecordingUsed = Long.MAX_VALUE;
-
         //An optimisation - ignore coverage which was generated for versions of files
         //that no longer exist.
         final MutableLong maxVersion = new MutableLong(0L);
@@ -113,64 +187,189 @@ public class CoverageDataCollator {
         logSourceFileTimeStamps(minVersion.longValue(), maxVersion.longValue());
         logInstrumentationSessionVersions();
 
-        for (final RecordingTranscripts.FileRef recordingFile : files) {
-            //Ensure we complain only once per recording file
-            final boolean[] alreadyTruncated = new boolean[]{false};
-            try {
-                final GlobalCoverageRecordingTranscript rec = (GlobalCoverageRecordingTranscript) recordingFile.read(spec);
-                long version = rec.getDbVersion();
-
-                logGlobalRecordingFileVersion(recordingFile, rec);
-
-                if (version <= maxVersion.longValue() && version >= minVersion.longValue()) {
-                    coverageData.addCoverage(rec);
-                    numRecordings++;
-                    // oldest is based on the init time of the recorder
-                    if (recordingFile.getTimestamp() < tsOldestRecordingUsed) {
-                        tsOldestRecordingUsed = recordingFile.getTimestamp();
-                    }
+        // partitioned reduction: every worker sums up its share of recordings into its own hit counts
+        final List<RecordingTranscripts.FileRef> fileList = new ArrayList<>(files);
+        final int numPartitions = Math.max(1, Math.min(Math.min(spec.getNumThreads(), fileList.size()),
+                maxPartitionsFor(coverageData.getCoverageSize())));
+        final List<GlobalCollation> partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(newGlobalCollation(fileList, i, numPartitions, coverageData, minVersion, maxVersion, spec));
+        }
 
-                    // newest is based on the last write timestamp
-                    if (rec.getWriteTimeStamp() > tsNewestRecordingUsed) {
-                        tsNewestRecordingUsed = rec.getWriteTimeStamp();
-                    }
-                } else {
-                    Logger.getInstance().verbose("Ignoring coverage recording " + rec + " because no FileInfo supports its coverage range");
+        int numRecordings = 0;
+        long tsNewestRecordingUsed = 0;
+        final ExecutorService workers = newWorkers(numPartitions);
+        try {
+            final List<Future<GlobalCollation>> results = new ArrayList<>(numPartitions);
+            for (GlobalCollation partition : partitions) {
+                results.add(workers != null ? workers.submit(partition) : CompletableFuture.completedFuture(partition.call()));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                GlobalCollation partition;
+                try {
+                    partition = results.get(i).get();
+                } catch (ExecutionException e) {
+                    // read the failed share again on this thread; if it fails again, the failure propagates
+                    Logger.getInstance().warn("Failed to load coverage recordings on a worker thread, reading them again", e.getCause());
+                    partition = newGlobalCollation(fileList, i, numPartitions, coverageData, minVersion, maxVersion, spec).call();
                 }
-            } catch (IOException e) {
-                Logger.getInstance().warn("Failed to load coverage recording " + recordingFile, e);
+                if (partition.numRecordings > 0) {
+                    coverageData.addCoverage(partition.hitCounts);
+                }
+                numRecordings += partition.numRecordings;
+                tsNewestRecordingUsed = Math.max(tsNewestRecordingUsed, partition.tsNewestRecordingUsed);
+                progressListener.handleProgress(
+                        throughput("Reading coverage data", numRecordings, start), (i + 1f) / results.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.getInstance().warn("Interrupted while loading coverage recordings", e);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
             }
         }
         coverageData.avoidObviousOverflow();
-        coverageData.setTimestamp(tsNewestRecordingUsed);
+        coverageData.setTimestamp(Math.max(coverageData.getTimestamp(), tsNewestRecordingUsed));
 
         final long end = System.currentTimeMillis();
         Logger.getInstance().debug("Processed " + numRecordings + " recording files in " + (end - start) + "ms (" + (numRecordings != 0 ? "" + (end - start) / numRecordings + "ms" : "-") + " per recording)");
     }
 
-    private void collatePerTestRecordings(Collection<RecordingTranscripts.FileRef> perTestRecordings, final CoverageData coverageData, final CoverageDataSpec spec, ProgressListener progressListener) {
+    private GlobalCollation newGlobalCollation(List<RecordingTranscripts.FileRef> files, int offset, int stride,
+                                               CoverageData coverageData, MutableLong minVersion, MutableLong maxVersion,
+                                               CoverageDataSpec spec) {
+        return new GlobalCollation(files, offset, stride, coverageData.getCoverageSize(),
+                minVersion.longValue(), maxVersion.longValue(), spec);
+    }
+
+    /**
+     * Every partition of the global recordings holds hit counts for all elements. Bounds the number of partitions,
+     * so that their hit counts don't take more than a quarter of the heap which is still available.
+     */
+    static int maxPartitionsFor(int coverageSize) {
+        final Runtime runtime = Runtime.getRuntime();
+        final long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        final long partitionSize = 4L * Math.max(1, coverageSize);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, available / PARTITION_MEMORY_SHARE / partitionSize));
+    }
+
+    /**
+     * Reads per-test recordings on a pool of workers, keeping at most a few recordings per worker in memory.
+     * Recordings are added to the coverage data on the calling thread in the original order of files, so test
+     * case identifiers are assigned the same way as when files are read sequentially. Journals are streamed on
+     * the calling thread when their turn comes.
+     */
+    private int collatePerTestRecordings(Collection<RecordingTranscripts.FileRef> perTestRecordings, final CoverageData coverageData, final CoverageDataSpec spec, ProgressListener progressListener) {
         final long start = System.currentTimeMillis();
 
         int numPerTestRecordings = 0;
         float progress = 0;
         final float progressIncrement = perTestRecordings.size() > 0 ? 1f / perTestRecordings.size() : 1f;
 
-        for (final RecordingTranscripts.FileRef recordingFile : perTestRecordings) {
-            numPerTestRecordings++;
-
-            try {
-                final PerTestRecordingTranscript recording = (PerTestRecordingTranscript) recordingFile.read(spec);
-                final TestCaseInfo tci = FullTestCaseInfo.Factory.getInstanceForSlice(recording);
-                coverageData.addCoverage(tci, recording);
-            } catch (Exception e) {
-                Logger.getInstance().verbose("Failed to load per-test coverage recording " + recordingFile, e);
+        final List<RecordingTranscripts.FileRef> fileList = new ArrayList<>(perTestRecordings);
+        final int numThreads = Math.max(1, Math.min(spec.getNumThreads(), fileList.size()));
+        final ExecutorService workers = newWorkers(numThreads);
+        final int maxInFlight = numThreads * PER_TEST_FILES_IN_FLIGHT_PER_THREAD;
+        final Deque<Future<PerTestRecordingTranscript>> inFlight = new ArrayDeque<>(maxInFlight);
+        int numSubmitted = 0;
+        try {
+            for (final RecordingTranscripts.FileRef recordingFile : fileList) {
+                while (workers != null && numSubmitted < fileList.size() && inFlight.size() < maxInFlight) {
+                    final RecordingTranscripts.FileRef next = fileList.get(numSubmitted++);
+                    inFlight.add(next.isJournal()
+                            ? CompletableFuture.completedFuture(null)
+                            : workers.submit(() -> (PerTestRecordingTranscript) next.read(spec)));
+                }
+                try {
+                    if (recordingFile.isJournal()) {
+                        // a journal holds many recordings, stream them sequentially
+                        if (workers != null) {
+                            inFlight.remove();
+                        }
+                        numPerTestRecordings += RecordingTranscripts.readJournalFromDisk(recordingFile, spec,
+                                recording -> addPerTestCoverage(coverageData, recording));
+                    } else {
+                        numPerTestRecordings++;
+                        addPerTestCoverage(coverageData, workers != null
+                                ? inFlight.remove().get()
+                                : (PerTestRecordingTranscript) recordingFile.read(spec));
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    Logger.getInstance().verbose("Failed to load per-test coverage recording " + recordingFile,
+                            e instanceof ExecutionException ? e.getCause() : e);
+                }
+                progress += progressIncrement;
+                progressListener.handleProgress(throughput("Reading per-test data", numPerTestRecordings, start), progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.getInstance().warn("Interrupted while loading per-test coverage recordings", e);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
             }
-            progress += progressIncrement;
-            progressListener.handleProgress("Reading per-test data", progress);
         }
 
         final long end = System.currentTimeMillis();
         Logger.getInstance().debug("Processed " + numPerTestRecordings + " per-test recording files in " + (end - start) + "ms (" + (numPerTestRecordings != 0 ? "" + (end - start) / numPerTestRecordings + "ms" : "-") + " per recording)");
+
+        return numPerTestRecordings;
+    }
+
+    /**
+     * Lets the index of tests by covered slots be persisted next to the database. The index is built (or read) only
+     * when a report looks tests up by slots, so loads which don't, e.g. merges, don't pay for it.
+     */
+    private void setPerTestIndexFile(CoverageData coverageData, Collection<RecordingTranscripts.FileRef> perTestRecordings) {
+        if (coverageData.getPerTestCoverage() instanceof InMemPerTestCoverage) {
+            ((InMemPerTestCoverage) coverageData.getPerTestCoverage()).setIndexFile(
+                    new File(registry.getRegistryFile().getPath() + CloverNames.PER_TEST_INDEX_SUFFIX),
+                    recordingsKey(perTestRecordings));
+        }
+    }
+
+    /**
+     * @return a key of the database version and the names, sizes and modification times of the recordings, which is
+     * far cheaper to compute than a hash of the hits read from them
+     */
+    private long recordingsKey(Collection<RecordingTranscripts.FileRef> perTestRecordings) {
+        long key = registry.getVersion();
+        for (RecordingTranscripts.FileRef recording : perTestRecordings) {
+            final File file = recording.getDatafile();
+            key = 31 * key + file.getName().hashCode();
+            key = 31 * key + recording.getJournalStart();
+            key = 31 * key + file.length();
+            key = 31 * key + file.lastModified();
+        }
+        return key;
+    }
+
+    /**
+     * @return a pool of reader threads or <code>null</code> if files shall be read on the calling thread
+     */
+    private static ExecutorService newWorkers(int numThreads) {
+        if (numThreads <= 1) {
+            return null;
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(numThreads, r -> {
+            final Thread thread = new Thread(r, "OpenClover-collator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static String throughput(String desc, int numRecordings, long start) {
+        final long elapsed = System.currentTimeMillis() - start;
+        return elapsed > 0 ? desc + " (" + (numRecordings * 1000L / elapsed) + " recordings/s)" : desc;
+    }
+
+    private static void addPerTestCoverage(CoverageData coverageData, PerTestRecordingTranscript recording) {
+        final TestCaseInfo tci = FullTestCaseInfo.Factory.getInstanceForSlice(recording);
+        coverageData.addCoverage(tci, recording);
     }
 
     private void logSourceFileTimeStamps(long minVersion, long maxVersion) {
@@ -207,4 +406,61 @@ public class CoverageDataCollator {
                 + "\n  writeTimeStamp=" + rec.getWriteTimeStamp() + " (" + new Date(rec.getWriteTimeStamp()) + ")");
     }
 
-}
\ No newline at end of file
+    /**
+     * Sums up every n-th global recording file, starting from the given offset.
+     */
+    private final class GlobalCollation implements Callable<GlobalCollation> {
+        private final List<RecordingTranscripts.FileRef> files;
+        private final int offset;
+        private final int stride;
+        private final long minVersion;
+        private final long maxVersion;
+        private final CoverageDataSpec spec;
+
+        final int[] hitCounts;
+        int numRecordings;
+        long tsNewestRecordingUsed;
+
+        GlobalCollation(List<RecordingTranscripts.FileRef> files, int offset, int stride, int numElements,
+                        long minVersion, long maxVersion, CoverageDataSpec spec) {
+            this.files = files;
+            this.offset = offset;
+            this.stride = stride;
+            this.hitCounts = new int[numElements];
+            this.minVersion = minVersion;
+            this.maxVersion = maxVersion;
+            this.spec = spec;
+        }
+
+        @Override
+        public GlobalCollation call() {
+            for (int i = offset; i < files.size(); i += stride) {
+                final RecordingTranscripts.FileRef recordingFile = files.get(i);
+                try {
+                    final GlobalCoverageRecordingTranscript rec = (GlobalCoverageRecordingTranscript) recordingFile.read(spec);
+                    long version = rec.getDbVersion();
+
+                    logGlobalRecordingFileVersion(recordingFile, rec);
+
+                    if (version <= maxVersion && version >= minVersion) {
+                        final int added = rec.addTo(hitCounts);
+                        if (added != rec.getCount()) {
+                            Logger.getInstance().verbose("Truncated recording file before adding to global coverage: " + rec);
+                        }
+                        numRecordings++;
+                        // newest is based on the last write timestamp
+                        if (rec.getWriteTimeStamp() > tsNewestRecordingUsed) {
+                            tsNewestRecordingUsed = rec.getWriteTimeStamp();
+                        }
+                    } else {
+                        Logger.getInstance().verbose("Ignoring coverage recording " + rec + " because no FileInfo supports its coverage range");
+                    }
+                } catch (IOException e) {
+                    Logger.getInstance().warn("Failed to load coverage recording " + recordingFile, e);
+                }
+            }
+            return this;
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package org.openclover.core;
 import org.openclover.core.cfg.StorageSize;
 import org.openclover.core.recorder.PerTestCoverageStrategy;
 import org.openclover.core.api.registry.HasMetricsFilter;
+import org.openclover.runtime.CloverNames;
 
 public class CoverageDataSpec {
     private long span = 0;
@@ -14,6 +15,8 @@ public class CoverageDataSpec {
     private boolean deleteUnusedCoverage = false;
     private PerTestCoverageStrategy perTestStrategy = PerTestCoverageStrategy.IN_MEMORY;
     private StorageSize perTestStorageSize = CoverageData.DEFAULT_EST_PER_TEST_COV_SIZE;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private boolean persistentCache = Boolean.getBoolean(CloverNames.PROP_COVERAGE_CACHE);
 
     public CoverageDataSpec() {} 
 
@@ -96,4 +99,27 @@ public class CoverageDataSpec {
     public StorageSize getPerTestStorageSize() {
         return perTestStorageSize;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return number of threads reading recording files; 1 means that files are read on the calling thread
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * @return true if collated coverage shall be kept in a cache file next to the database, so that a later load
+     * reads only recordings written since
+     */
+    public boolean isPersistentCache() {
+        return persistentCache;
+    }
+
+    public void setPersistentCache(boolean persistentCache) {
+        this.persistentCache = persistentCache;
+    }
+}
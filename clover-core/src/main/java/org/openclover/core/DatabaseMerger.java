@@ -0,0 +1,326 @@
+package org.openclover.core;
+
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.HasMetricsFilter;
+import org.openclover.core.api.registry.PackageInfo;
+import org.openclover.core.api.registry.ProjectInfo;
+import org.openclover.core.api.registry.TestCaseInfo;
+import org.openclover.core.context.ContextStore;
+import org.openclover.core.recorder.InMemPerTestCoverage;
+import org.openclover.core.recorder.PerTestCoverageStrategy;
+import org.openclover.core.registry.Clover2Registry;
+import org.openclover.core.registry.NoSuchRegistryException;
+import org.openclover.core.registry.entities.FullFileInfo;
+import org.openclover.core.registry.entities.FullPackageInfo;
+import org.openclover.core.registry.entities.FullTestCaseInfo;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.api.CloverException;
+import org.openclover.runtime.registry.CorruptedRegistryException;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.openclover.core.util.Lists.newArrayList;
+
+/**
+ * Merges many databases into one registry.
+ * <ol>
+ *     <li>registries are loaded on a pool of workers,</li>
+ *     <li>files are reconciled in one pass over the models - without touching coverage - which gives the compacted
+ *     layout of the merged registry upfront,</li>
+ *     <li>coverage of the databases is loaded one database at a time, reading its recordings on all threads, and
+ *     added straight into the merged hit counts and per-test coverage, in the original order of databases; the next
+ *     database is loaded while the previous one is being merged.</li>
+ * </ol>
+ * Memory needed is thus bounded by the merged coverage plus coverage of a few databases, regardless of how many
+ * databases are merged. Files are reconciled the same way as when databases are merged one by one: a file record
+ * identical to the one merged so far shares its coverage, a newer one replaces it.
+ */
+class DatabaseMerger {
+    private final List<CloverDatabaseSpec> specs;
+    private final int numThreads;
+    private final ProgressListener listener;
+
+    /** A database being merged */
+    private static class Source {
+        final CloverDatabaseSpec spec;
+        final CloverDatabase db;
+        /** ranges of coverage of this database to add to the merged one */
+        final List<Contribution> contributions = newArrayList();
+
+        Source(CloverDatabaseSpec spec, CloverDatabase db) {
+            this.spec = spec;
+            this.db = db;
+        }
+    }
+
+    /** A file record which made it into the merged registry, at least until a newer record replaces it */
+    private static class Winner {
+        final Source source;
+        final FileInfo fileInfo;
+        final String packageName;
+        int destIndex;
+
+        Winner(Source source, FileInfo fileInfo) {
+            this.source = source;
+            this.fileInfo = fileInfo;
+            this.packageName = fileInfo.getContainingPackage().getName();
+        }
+    }
+
+    /** Coverage of a file in one of the databases, to be added to the coverage of the winning record */
+    private static class Contribution {
+        final Winner target;
+        final int srcIndex;
+
+        Contribution(Winner target, int srcIndex) {
+            this.target = target;
+            this.srcIndex = srcIndex;
+        }
+    }
+
+    DatabaseMerger(List<CloverDatabaseSpec> specs, int numThreads, ProgressListener listener) {
+        this.specs = specs;
+        this.numThreads = Math.max(1, Math.min(numThreads, specs.size()));
+        this.listener = listener;
+    }
+
+    /**
+     * Merges the databases into an empty registry, reporting progress from 0.0 up to 0.8
+     */
+    void mergeInto(Clover2Registry destReg) throws CloverException {
+        final ExecutorService workers = newWorkers(numThreads);
+        try {
+            final List<Source> sources = loadRegistries(workers);
+            if (sources.isEmpty()) {
+                throw new CloverException("none of the databases to merge could be loaded");
+            }
+
+            final List<CloverDatabase> dbs = newArrayList();
+            for (Source source : sources) {
+                dbs.add(source.db);
+            }
+            final ContextStore.ContextMapper contextMapper = ContextStore.mergeContextStores(destReg, dbs);
+
+            listener.handleProgress("Reconciling files of " + sources.size() + " databases", 0.1f);
+            final Map<String, Map<String, Winner>> winners = reconcile(sources);
+            final int slotsUsed = layOut(winners);
+
+            final int[] mergedCoverage = new int[slotsUsed];
+            final InMemPerTestCoverage mergedSliceHits = new InMemPerTestCoverage(slotsUsed);
+            FullTestCaseInfo.Factory.reset();
+            mergeCoverage(workers, sources, winners, mergedCoverage, mergedSliceHits);
+
+            applyToModel(destReg.getProject(), winners, contextMapper);
+            destReg.getProject().setDataLength(slotsUsed);
+            destReg.setCoverageData(new CoverageData(System.currentTimeMillis(), mergedCoverage, mergedSliceHits));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloverException("Interrupted while merging databases", e);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    private List<Source> loadRegistries(ExecutorService workers) throws CloverException, InterruptedException {
+        final List<Future<CloverDatabase>> loads = newArrayList();
+        for (final CloverDatabaseSpec spec : specs) {
+            final Callable<CloverDatabase> load = () -> {
+                try {
+                    return new CloverDatabase(spec.getInitString());
+                } catch (CorruptedRegistryException | NoSuchRegistryException e) {
+                    Logger.getInstance().info(String.format("File %s doesn't seem to be OpenClover database, ignoring it.",
+                            spec.getInitString()));
+                    return null;
+                }
+            };
+            loads.add(submit(workers, load));
+        }
+
+        final List<Source> sources = newArrayList();
+        for (int i = 0; i < loads.size(); i++) {
+            final CloverDatabase db = get(loads.get(i));
+            if (db != null) {
+                sources.add(new Source(specs.get(i), db));
+            }
+            listener.handleProgress("Loaded registry " + (i + 1) + " of " + specs.size(), 0.1f * (i + 1) / specs.size());
+        }
+        return sources;
+    }
+
+    /**
+     * Walks files of all databases in order, picking the winning record of every file and recording which ranges
+     * of coverage of each database go to which winner.
+     *
+     * @return winning records by package name and package path, in the order of first appearance
+     */
+    private static Map<String, Map<String, Winner>> reconcile(List<Source> sources) {
+        final Map<String, Map<String, Winner>> winners = new LinkedHashMap<>();
+        for (Source source : sources) {
+            for (FileInfo mergeFI : source.db.getFullModel().getFiles(HasMetricsFilter.ACCEPT_ALL)) {
+                final Map<String, Winner> pkgWinners = winners.computeIfAbsent(
+                        mergeFI.getContainingPackage().getName(), name -> new LinkedHashMap<>());
+                final Winner base = pkgWinners.get(mergeFI.getPackagePath());
+                final FileInfo baseFI = base == null ? null : base.fileInfo;
+
+                // we check filesize here because checksum can theoretically have collisions
+                if (baseFI != null && baseFI.getFileSize() == mergeFI.getFileSize() &&
+                        baseFI.getChecksum() == mergeFI.getChecksum()) {
+                    // identical file records, so need to merge data only
+                    source.contributions.add(new Contribution(base, mergeFI.getDataIndex()));
+                } else if (baseFI == null || baseFI.getTimestamp() < mergeFI.getTimestamp()) {
+                    // a new file or a newer record with a different checksum, coverage of the replaced one is dropped
+                    final Winner winner = new Winner(source, mergeFI);
+                    pkgWinners.put(mergeFI.getPackagePath(), winner);
+                    source.contributions.add(new Contribution(winner, mergeFI.getDataIndex()));
+                }
+                // else the merged record is newer, keep it and do no further merge
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * Assigns compacted data indices to the winning records
+     *
+     * @return data length of the merged project
+     */
+    private static int layOut(Map<String, Map<String, Winner>> winners) {
+        int insertPoint = 0;
+        for (Map<String, Winner> pkgWinners : winners.values()) {
+            for (Winner winner : pkgWinners.values()) {
+                winner.destIndex = insertPoint;
+                insertPoint += winner.fileInfo.getDataLength();
+            }
+        }
+        return insertPoint;
+    }
+
+    /**
+     * Merges coverage of the databases in their order. Coverage of one database is loaded ahead on the pool while
+     * the previous one is being merged. Databases are loaded one at a time, each of them reading its recordings on
+     * all threads, so that test case identifiers, which {@link FullTestCaseInfo.Factory} assigns while per-test
+     * recordings are read, are assigned in the order of the databases - the same as when merged sequentially.
+     */
+    private void mergeCoverage(ExecutorService workers, List<Source> sources, Map<String, Map<String, Winner>> winners,
+                               int[] mergedCoverage, InMemPerTestCoverage mergedSliceHits)
+            throws CloverException, InterruptedException {
+        final float progressInc = 0.7f / sources.size();
+        Future<CoverageData> next = sources.isEmpty() ? null : submit(workers, loadCoverage(sources.get(0)));
+        for (int i = 0; i < sources.size(); i++) {
+            final Source source = sources.get(i);
+            listener.handleProgress(
+                    "Merging database " + (i + 1) + " of " + sources.size() + ": " + source.db.getInitstring(),
+                    0.1f + progressInc * i);
+            final CoverageData mergingData = get(next);
+            next = i + 1 < sources.size() ? submit(workers, loadCoverage(sources.get(i + 1))) : null;
+            for (Contribution contribution : source.contributions) {
+                final Winner target = contribution.target;
+                if (winners.get(target.packageName).get(target.fileInfo.getPackagePath()) != target) {
+                    // the record was replaced by a newer one
+                    continue;
+                }
+                final int length = target.fileInfo.getDataLength();
+                addIntArrays(mergingData.getHitCounts(), contribution.srcIndex, mergedCoverage, target.destIndex, length);
+                mergePerTestCoverage(mergingData, contribution.srcIndex, mergedSliceHits, target.destIndex, length);
+            }
+            for (TestCaseInfo tci : mergingData.getTests()) {
+                // tests are kept even if they hit none of the merged files
+                mergedSliceHits.getHitsFor(tci);
+            }
+            source.db.releaseCoverageData();
+        }
+    }
+
+    private Callable<CoverageData> loadCoverage(final Source source) {
+        final CoverageDataSpec spec = new CoverageDataSpec(null, source.spec.getSpan().getValueInMillis(),
+                false, false, true, true, PerTestCoverageStrategy.IN_MEMORY);
+        spec.setNumThreads(numThreads);
+        return () -> source.db.loadCoverageData(spec);
+    }
+
+    /**
+     * Adds the winning records to the merged project, at their compacted data indices
+     */
+    private static void applyToModel(ProjectInfo baseProject, Map<String, Map<String, Winner>> winners,
+                                     ContextStore.ContextMapper contextMapper) {
+        for (Map.Entry<String, Map<String, Winner>> pkgWinners : winners.entrySet()) {
+            PackageInfo basePkg = null;
+            for (Winner winner : pkgWinners.getValue().values()) {
+                final FullFileInfo mergeFI = (FullFileInfo) winner.fileInfo;
+                mergeFI.setDataIndex(winner.destIndex);
+                mergeFI.resetVersions(baseProject.getVersion());
+                if (basePkg == null) {
+                    basePkg = new FullPackageInfo(baseProject, pkgWinners.getKey(), winner.destIndex);
+                    baseProject.addPackage(basePkg);
+                }
+                basePkg.addFile(mergeFI);
+                // map this new node's contexts
+                contextMapper.applyContextMapping(winner.source.db, mergeFI);
+            }
+        }
+    }
+
+    private static void mergePerTestCoverage(CoverageData src, int spos, InMemPerTestCoverage dest, int dpos, int length) {
+        for (TestCaseInfo tci : src.getTests()) {
+            final BitSet srcSlots = src.getHitsFor(tci);
+            final BitSet destSlots = dest.getHitsFor(tci);
+            for (int i = srcSlots.nextSetBit(spos); i >= 0 && i < spos + length; i = srcSlots.nextSetBit(i + 1)) {
+                destSlots.set(dpos + i - spos);
+            }
+        }
+    }
+
+    private static void addIntArrays(int[] src, int spos, int[] dest, int dpos, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[dpos + i] += src[spos + i];
+        }
+    }
+
+    private static <T> Future<T> submit(ExecutorService workers, Callable<T> task) {
+        if (workers != null) {
+            return workers.submit(task);
+        }
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(task.call());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static <T> T get(Future<T> future) throws CloverException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CloverException) {
+                throw (CloverException) e.getCause();
+            }
+            throw new CloverException(e.getCause());
+        }
+    }
+
+    private static ExecutorService newWorkers(int numThreads) {
+        if (numThreads <= 1) {
+            return null;
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(numThreads, r -> {
+            final Thread thread = new Thread(r, "OpenClover-merge-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -21,9 +21,11 @@ import org_openclover_runtime.CloverProfile;
 import org_openclover_runtime.CloverVersionInfo;
 
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.List;
@@ -58,7 +60,7 @@ public class InstrumentationConfig implements TaggedPersistent {
      * that configs written by an incompatible version are rejected cleanly rather
      * than mis-decoded. Kept in step with the registry / snapshot format versions.
      */
-    private static final int CONFIG_FORMAT_VERSION = 50001;
+    private static final int CONFIG_FORMAT_VERSION = 50002;
 
     /**
      * Whitelist of the types that can appear in a serialized instrumentation config.
@@ -92,6 +94,12 @@ public class InstrumentationConfig implements TaggedPersistent {
     /** the minimum interval, in milliseconds, between flushes for interval based flushing **/
     private int flushInterval = 0;
 
+    /** whether the coverage recorder shall keep separate hit counters for every thread **/
+    private boolean stripedCounters = false;
+
+    /** whether the coverage recorder shall record only hit/not-hit flags instead of hit counts **/
+    private boolean booleanCoverage = false;
+
     /** true if we should use a static inner class for instrumentation **/
     private boolean classInstrStrategy = true;
 
@@ -261,6 +269,22 @@ public class InstrumentationConfig implements TaggedPersistent {
         this.flushInterval = flushInterval;
     }
 
+    public boolean isStripedCounters() {
+        return stripedCounters;
+    }
+
+    public void setStripedCounters(boolean stripedCounters) {
+        this.stripedCounters = stripedCounters;
+    }
+
+    public boolean isBooleanCoverage() {
+        return booleanCoverage;
+    }
+
+    public void setBooleanCoverage(boolean booleanCoverage) {
+        this.booleanCoverage = booleanCoverage;
+    }
+
     public File getDefaultBaseDir() {
         return defaultBaseDir == null ? new File("." + File.separator) : defaultBaseDir;
     }
@@ -385,6 +409,12 @@ public class InstrumentationConfig implements TaggedPersistent {
         }
     }
 
+    public void saveToStream(OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(stream);
+        TaggedIO.write(out, TAGS, InstrumentationConfig.class, this);
+        out.flush();
+    }
+
     public static InstrumentationConfig loadFromStream(InputStream stream) throws IOException {
         final InstrumentationConfig config =
             TaggedIO.read(new DataInputStream(stream), TAGS, InstrumentationConfig.class);
@@ -400,6 +430,8 @@ public class InstrumentationConfig implements TaggedPersistent {
         out.writeInt(flushPolicy);
         out.writeBoolean(sliceRecording);
         out.writeInt(flushInterval);
+        out.writeBoolean(stripedCounters);
+        out.writeBoolean(booleanCoverage);
         out.writeBoolean(classInstrStrategy);
         out.writeBoolean(reportInitErrors);
         out.writeBoolean(recordTestResults);
@@ -440,6 +472,8 @@ public class InstrumentationConfig implements TaggedPersistent {
         config.flushPolicy = in.readInt();
         config.sliceRecording = in.readBoolean();
         config.flushInterval = in.readInt();
+        config.stripedCounters = in.readBoolean();
+        config.booleanCoverage = in.readBoolean();
         config.classInstrStrategy = in.readBoolean();
         config.reportInitErrors = in.readBoolean();
         config.recordTestResults = in.readBoolean();
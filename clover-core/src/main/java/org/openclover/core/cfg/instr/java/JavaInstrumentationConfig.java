@@ -32,6 +32,12 @@ public class JavaInstrumentationConfig extends InstrumentationConfig {
     /** Used by CloverInstr */
     private List<String> sourceFiles = new ArrayList<>();
 
+    /** number of threads parsing source files, used by CloverInstr and the clover-instr task */
+    private int numThreads = 1;
+
+    /** directory of the instrumentation cache, null if disabled; used by CloverInstr and the clover-instr task */
+    private File cacheDir;
+
     public String getJavaLangPrefix() {
         return fullyQualifiedJavaNames ? JAVA_LANG_PREFIX : "";
     }
@@ -91,6 +97,31 @@ public class JavaInstrumentationConfig extends InstrumentationConfig {
         return sourceFiles;
     }
 
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Number of threads parsing source files in {@link org.openclover.core.instr.java.Instrumenter#instrument(List, File, String, int)}.
+     * Registration of files in the database is always sequential, so the result does not depend on it.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Directory of the {@link org.openclover.core.instr.java.InstrumentationCache}, which keeps instrumented versions
+     * of source files between builds, so that unchanged files are not parsed again. A <code>null</code> value
+     * disables the cache.
+     */
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     @Override
     public boolean validate() {
         // ensure we have the location of the instrumenation database
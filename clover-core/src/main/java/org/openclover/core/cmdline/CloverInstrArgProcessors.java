@@ -175,6 +175,93 @@ public class CloverInstrArgProcessors {
         }
     };
 
+    public static ArgProcessor<JavaInstrumentationConfig> Threads = new ArgProcessor<JavaInstrumentationConfig>() {
+        @Override
+        public boolean matches(String[] args, int i) {
+            return args[i].equals("--threads");
+        }
+
+        @Override
+        public int process(String[] args, int i, JavaInstrumentationConfig cfg) {
+            i++;
+            try {
+                final int numThreads = Integer.parseInt(args[i]);
+                if (numThreads <= 0) {
+                    usage("Invalid number of threads. Should be a positive integer.");
+                } else {
+                    cfg.setNumThreads(numThreads);
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid number of threads. Should be a positive integer.");
+            }
+            return i;
+        }
+
+        @Override
+        public String help() {
+            return "    --threads <int>\t\t Number of threads parsing source files. Default is 1. The database\n"
+                    + "\t\t\t\t is the same regardless of the number of threads.";
+        }
+    };
+
+    public static ArgProcessor<JavaInstrumentationConfig> CacheDir = new ArgProcessor<JavaInstrumentationConfig>() {
+        @Override
+        public boolean matches(String[] args, int i) {
+            return args[i].equals("--cachedir");
+        }
+
+        @Override
+        public int process(String[] args, int i, JavaInstrumentationConfig cfg) {
+            i++;
+            cfg.setCacheDir(new File(args[i]).getAbsoluteFile());
+            return i;
+        }
+
+        @Override
+        public String help() {
+            return "    --cachedir <dir>\t\t Directory where OpenClover should cache instrumented sources, so that\n"
+                    + "\t\t\t\t files which did not change since the previous build are not parsed again.";
+        }
+    };
+
+    public static ArgProcessor<JavaInstrumentationConfig> StripedCounters = new ArgProcessor<JavaInstrumentationConfig>() {
+        @Override
+        public boolean matches(String[] args, int i) {
+            return args[i].equals("--stripedCounters");
+        }
+
+        @Override
+        public int process(String[] args, int i, JavaInstrumentationConfig cfg) {
+            cfg.setStripedCounters(true);
+            return i;
+        }
+
+        @Override
+        public String help() {
+            return "    --stripedCounters\t\t If specified, the coverage recorder keeps separate hit counters for every\n"
+                    + "\t\t\t\t thread. Use it for heavily multi-threaded applications to avoid lost hits.";
+        }
+    };
+
+    public static ArgProcessor<JavaInstrumentationConfig> BooleanCoverage = new ArgProcessor<JavaInstrumentationConfig>() {
+        @Override
+        public boolean matches(String[] args, int i) {
+            return args[i].equals("--booleanCoverage");
+        }
+
+        @Override
+        public int process(String[] args, int i, JavaInstrumentationConfig cfg) {
+            cfg.setBooleanCoverage(true);
+            return i;
+        }
+
+        @Override
+        public String help() {
+            return "    --booleanCoverage\t\t If specified, the coverage recorder records only whether code was hit,\n"
+                    + "\t\t\t\t not how many times. Reduces memory footprint and size of recordings.";
+        }
+    };
+
     public static ArgProcessor<JavaInstrumentationConfig> Encoding = new ArgProcessor<JavaInstrumentationConfig>() {
         @Override
         public boolean matches(String[] args, int i) {
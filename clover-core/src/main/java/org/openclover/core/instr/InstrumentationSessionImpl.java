@@ -9,10 +9,12 @@ import org.openclover.core.api.registry.ContextSet;
 import org.openclover.core.api.registry.EntityContainer;
 import org.openclover.core.api.registry.EntityVisitor;
 import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.HasMetricsFilter;
 import org.openclover.core.api.registry.MethodInfo;
 import org.openclover.core.api.registry.ModifiersInfo;
 import org.openclover.core.api.registry.PackageInfo;
 import org.openclover.core.api.registry.SourceInfo;
+import org.openclover.core.api.registry.StatementInfo;
 import org.openclover.core.context.ContextStore;
 import org.openclover.core.registry.Clover2Registry;
 import org.openclover.core.registry.ReadOnlyRegistryException;
@@ -204,6 +206,44 @@ public class InstrumentationSessionImpl implements InstrumentationSession {
         return finfo;
     }
 
+    /**
+     * Registers a file with a known structure, without parsing it again. The file gets slots exactly as in
+     * {@link #enterFile} - it keeps the slots of an unchanged record in the database, or gets new ones at the end
+     * of the data array - and the structure is copied to them.
+     *
+     * @param structure structure of the file, with indexes of its elements relative to the file
+     * @return the new file record or <code>null</code> if the file was already registered in this session
+     */
+    @Nullable
+    public FullFileInfo replayFile(String packageName, File file, long timestamp, long filesize, long checksum,
+                                   FullFileInfo structure) {
+        if (isEnteredInSession(packageName, file.getName())) {
+            return null;
+        }
+
+        final FullFileInfo finfo = enterFile(packageName, file, structure.getLineCount(), structure.getNcLineCount(),
+                timestamp, filesize, checksum);
+        for (ClassInfo classInfo : structure.getClasses()) {
+            finfo.addClass(classInfo.copy(finfo, HasMetricsFilter.ACCEPT_ALL));
+        }
+        for (MethodInfo methodInfo : structure.getMethods()) {
+            finfo.addMethod(methodInfo.copy(finfo));
+        }
+        for (StatementInfo statementInfo : structure.getStatements()) {
+            finfo.addStatement(statementInfo.copy(finfo));
+        }
+        currentOffsetFromFile = structure.getDataLength();
+        exitFile();
+        return finfo;
+    }
+
+    private boolean isEnteredInSession(String packageName, String fileName) {
+        final SessionPackageInfo pkg = currentPackage != null && currentPackage.isNamed(packageName)
+                ? currentPackage
+                : changedPackages.get(packageName);
+        return pkg != null && pkg.getSessionPkg().getFileInPackage(fileName) != null;
+    }
+
     @Override
     public void exitFile() {
         currentFile.setDataLength(currentOffsetFromFile);
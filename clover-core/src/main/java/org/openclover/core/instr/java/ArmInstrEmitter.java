@@ -42,7 +42,7 @@ public class ArmInstrEmitter extends Emitter {
             final int autoCloseableInstanceIndex = state.incAutoCloseableInstanceCount() - 1;
             final String autoCloseableInstanceName = CloverNames.CLOVER_PREFIX + "$ACI" + autoCloseableInstanceIndex;
             setInstr(
-                autoCloseableTypeName + " " + autoCloseableInstanceName + "=new " + autoCloseableTypeName + "(){{" + $CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(stmtInfo.getDataIndex())) + ";}};"
+                autoCloseableTypeName + " " + autoCloseableInstanceName + "=new " + autoCloseableTypeName + "(){{" + $CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(stmtInfo.getDataIndex())) + ";}};"
             );
         }
     }
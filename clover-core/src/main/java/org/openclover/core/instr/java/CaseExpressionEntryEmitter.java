@@ -93,9 +93,9 @@ public class CaseExpressionEntryEmitter extends Emitter {
             // emit text like [{__CLRxxxxxxxx.inc(123);yield ] or [{__CLRxxxxxxxx.inc(123);]
             final String instr;
             if (isInsideExpression) {
-                instr = "{" + $CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(stmtInfo.getDataIndex())) + ";yield ";
+                instr = "{" + $CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(stmtInfo.getDataIndex())) + ";yield ";
             } else {
-                instr = "{" + $CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(stmtInfo.getDataIndex())) + ";";
+                instr = "{" + $CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(stmtInfo.getDataIndex())) + ";";
             }
             setInstr(instr);
         }
@@ -22,7 +22,7 @@ public class ClassExitNode extends Emitter {
         if (insertPoint != null) {
             insertPoint.setEmittersEnabled(state.isDirty());
             entry.getRecorderInstrEmitter().setMaxDataIndex(
-                state.getSession().getCurrentFileMaxIndex());
+                state.slotIndex(state.getSession().getCurrentFileMaxIndex()));
             state.setDirty(false);
         }
 
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.function.Predicate;
 
 
 /**
@@ -178,9 +179,14 @@ public class CloverTokenStreamFilter extends TokenStreamHiddenTokenFilter {
 
     /**
      * process directives, set final emitter state. This leaves the token stream ready for output
+     *
+     * @param relocatable whether to emit slot indexes and the database version as relocation markers, see
+     *                    {@link InstrumentationState#setRelocatable(boolean)}
      */
-    public void instrument(FileStructureInfo structure, FullFileInfo fileInfo, InstrumentationSession session, JavaInstrumentationConfig cfg) {
+    public void instrument(FileStructureInfo structure, FullFileInfo fileInfo, InstrumentationSession session,
+                           JavaInstrumentationConfig cfg, boolean relocatable) {
         InstrumentationState state = new InstrumentationState(session, fileInfo, structure, cfg);
+        state.setRelocatable(relocatable);
         scanHiddens(getInitialHiddenToken(), state);
         CloverToken curr = first;
         while (curr != null) {
@@ -218,6 +224,24 @@ public class CloverTokenStreamFilter extends TokenStreamHiddenTokenFilter {
         }
     }
 
+    /**
+     * @return true if the text of any token, including hidden whitespace and comment tokens, matches the predicate
+     */
+    public boolean anyTokenText(Predicate<String> predicate) {
+        if (anyHiddenText(getInitialHiddenToken(), predicate)) {
+            return true;
+        }
+        CloverToken curr = first;
+        while (curr != null) {
+            if (curr.getText() != null && predicate.test(curr.getText())
+                    || anyHiddenText(curr.getHiddenAfter(), predicate)) {
+                return true;
+            }
+            curr = curr.getNext();
+        }
+        return false;
+    }
+
     public boolean isEOLTerminated() {
 
         if (last != null) {
@@ -248,6 +272,16 @@ public class CloverTokenStreamFilter extends TokenStreamHiddenTokenFilter {
         }
     }
 
+    private static boolean anyHiddenText(CommonHiddenStreamToken tok, Predicate<String> predicate) {
+        while (tok != null) {
+            if (predicate.test(tok.getText())) {
+                return true;
+            }
+            tok = tok.getHiddenAfter();
+        }
+        return false;
+    }
+
     private void scanHiddens(CommonHiddenStreamToken tok, InstrumentationState state) {
         while (tok != null) {
             int type = tok.getType();
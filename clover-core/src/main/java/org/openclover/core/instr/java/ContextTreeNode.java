@@ -3,7 +3,7 @@ package org.openclover.core.instr.java;
 import org.openclover.core.api.registry.ContextSet;
 import org.openclover.core.context.ContextSetImpl;
 
-/** Used to track and minimise context sets created  during instrumentation */
+/** Used to track and minimise context sets created  during instrumentation; shared by threads parsing files */
 public class ContextTreeNode {
     private final ContextTreeNode parent;
     private final ContextSet context;
@@ -21,7 +21,7 @@ public class ContextTreeNode {
         this.context = context;
     }
 
-    public ContextTreeNode enterContext(int index) {
+    public synchronized ContextTreeNode enterContext(int index) {
         if (index >= children.length) {
             ContextTreeNode[] children = new ContextTreeNode[this.children.length * 2];
             System.arraycopy(this.children, 0, children, 0, this.children.length);
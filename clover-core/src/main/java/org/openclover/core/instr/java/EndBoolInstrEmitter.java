@@ -39,8 +39,8 @@ public class EndBoolInstrEmitter extends Emitter {
                 int index = branchInfo.getDataIndex();
                 state.setDirty();
 
-                setInstr(")&&(" + $CoverageRecorder$iget(state.getRecorderPrefix(), Integer.toString(index)) + "!=0|true))||("
-                        + $CoverageRecorder$iget(state.getRecorderPrefix(), Integer.toString(index + 1)) + "==0&false))");
+                setInstr(")&&(" + $CoverageRecorder$iget(state.getRecorderPrefix(), state.slotIndex(index)) + "!=0|true))||("
+                        + $CoverageRecorder$iget(state.getRecorderPrefix(), state.slotIndex(index + 1)) + "==0&false))");
             }
         }
     }
@@ -0,0 +1,281 @@
+package org.openclover.core.instr.java;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig;
+import org.openclover.core.io.tags.TaggedIO;
+import org.openclover.core.registry.entities.FullFileInfo;
+import org.openclover.core.registry.format.InstrSessionSegment;
+import org.openclover.core.util.FileUtils;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.IOStreamUtils;
+import org.openclover.runtime.util.LzCodec;
+import org_openclover_runtime.CloverVersionInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An on-disk cache of instrumented source files, kept between builds. Entries are content-addressed: the key is a
+ * hash of the OpenClover version, the instrumentation config, and the path, checksum and size of the source file.
+ * An entry holds the package name, the structure of the file (classes, methods, statements) and the instrumented
+ * text.
+ * <p/>
+ * Both are independent of the database the file was instrumented for: the structure refers to its slots by indexes
+ * relative to the file, and the instrumented text is stored as a template in which slot indexes and the database
+ * version are relocation markers, see {@link #slotMarker(int)} and {@link #versionMarker()}. So an entry can be
+ * replayed into any database, at the data index assigned to the file by the instrumentation session; see
+ * {@link org.openclover.core.instr.InstrumentationSessionImpl#replayFile} and {@link #relocate(String, int, long)}.
+ * <p/>
+ * Errors are never fatal - an unreadable entry is a cache miss, and an entry which can't be written is skipped.
+ * Safe to use from many threads.
+ */
+public class InstrumentationCache {
+    static final int MAGIC = 0xC10CAC4E;
+    static final int FORMAT_VERSION = 2;
+
+    /** Starts a relocation marker in the instrumented text; never occurs in a file written with markers */
+    static final char MARKER_START = '\u0001';
+    /** Ends a relocation marker in the instrumented text */
+    static final char MARKER_END = '\u0002';
+    private static final char VERSION_MARKER = 'V';
+
+    private final File dir;
+    private final byte[] configDigest;
+    private final AtomicInteger numHits = new AtomicInteger();
+
+    /**
+     * An instrumented version of a source file
+     */
+    public static class Entry {
+        private final String packageName;
+        private final FullFileInfo structure;
+        private final String template;
+
+        Entry(String packageName, FullFileInfo structure, String template) {
+            this.packageName = packageName;
+            this.structure = structure;
+            this.template = template;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * @return structure of the file; its own data index is meaningless, the indexes of its elements are relative
+         * to the file
+         */
+        public FullFileInfo getStructure() {
+            return structure;
+        }
+
+        /**
+         * @return instrumented text with relocation markers
+         */
+        public String getTemplate() {
+            return template;
+        }
+    }
+
+    /**
+     * @return cache in the directory given by {@link JavaInstrumentationConfig#getCacheDir()} or <code>null</code>
+     * if the cache is disabled or the config can't be fingerprinted
+     */
+    @Nullable
+    public static InstrumentationCache createFor(@NotNull JavaInstrumentationConfig config) {
+        if (config.getCacheDir() == null) {
+            return null;
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            config.saveToStream(bytes);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            // java-specific settings affecting instrumented code
+            out.writeUTF(CloverVersionInfo.RELEASE_NUM);
+            out.writeUTF(CloverVersionInfo.BUILD_DATE);
+            out.writeUTF(String.valueOf(config.getSourceLevel()));
+            out.writeUTF(config.getJavaLangPrefix());
+            out.writeUTF(config.getInstrFileExtension());
+            out.writeUTF(String.valueOf(config.getInstrumentLambda()));
+            out.flush();
+            return new InstrumentationCache(config.getCacheDir(), digest().digest(bytes.toByteArray()));
+        } catch (IOException e) {
+            Logger.getInstance().warn("Instrumentation cache disabled, the configuration can't be fingerprinted: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /*private*/ InstrumentationCache(File dir, byte[] configDigest) {
+        this.dir = dir;
+        this.configDigest = configDigest;
+    }
+
+    /**
+     * @return cached instrumented version of the file or <code>null</code> if there's none
+     */
+    @Nullable
+    public Entry get(@NotNull File srcFile, @Nullable String encoding, long checksum, long filesize) {
+        final File entryFile = entryFileFor(srcFile, encoding, checksum, filesize);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(srcFile.getAbsolutePath())
+                    || in.readLong() != checksum || in.readLong() != filesize) {
+                return null;
+            }
+            final String packageName = in.readUTF();
+            final FullFileInfo structure = TaggedIO.read(in, InstrSessionSegment.TAGS, FullFileInfo.class);
+            final String template = new String(LzCodec.readBlock(in), StandardCharsets.UTF_8);
+            relocate(template, structure.getDataIndex(), 0); // throws if markers are malformed
+            numHits.incrementAndGet();
+            return new Entry(packageName, structure, template);
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.getInstance().verbose("Ignoring unreadable instrumentation cache entry " + entryFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the instrumented version of the file, replacing a previous one
+     */
+    public void put(@NotNull File srcFile, @Nullable String encoding, long checksum, long filesize,
+                    @NotNull Entry entry) {
+        final File entryFile = entryFileFor(srcFile, encoding, checksum, filesize);
+        File tmpFile = null;
+        DataOutputStream out = null;
+        try {
+            final File entryDir = entryFile.getParentFile();
+            if (!entryDir.isDirectory() && !entryDir.mkdirs() && !entryDir.isDirectory()) {
+                throw new IOException("Failed to create directory " + entryDir);
+            }
+            tmpFile = File.createTempFile("entry", ".tmp", entryDir);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(srcFile.getAbsolutePath());
+            out.writeLong(checksum);
+            out.writeLong(filesize);
+            out.writeUTF(entry.getPackageName());
+            TaggedIO.write(out, InstrSessionSegment.TAGS, FullFileInfo.class, entry.getStructure());
+            final byte[] text = entry.getTemplate().getBytes(StandardCharsets.UTF_8);
+            LzCodec.writeBlock(out, text, text.length);
+            out.close();
+            out = null;
+            FileUtils.moveReplacing(tmpFile, entryFile);
+            tmpFile = null;
+        } catch (IOException e) {
+            Logger.getInstance().verbose("Failed to write instrumentation cache entry " + entryFile, e);
+        } finally {
+            IOStreamUtils.close(out);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return number of entries found by {@link #get(File, String, long, long)} so far
+     */
+    public int getNumHits() {
+        return numHits.get();
+    }
+
+    /**
+     * @return marker of a slot, which is resolved to the data index of the file plus the given offset
+     */
+    static String slotMarker(int offsetFromFile) {
+        return MARKER_START + Integer.toString(offsetFromFile) + MARKER_END;
+    }
+
+    /**
+     * @return marker of the database version, which is resolved to the version of the instrumentation session
+     */
+    static String versionMarker() {
+        return String.valueOf(MARKER_START) + VERSION_MARKER + MARKER_END;
+    }
+
+    /**
+     * @return true if the text contains characters reserved for relocation markers, so it can't be made a template
+     */
+    static boolean containsMarkerChars(@NotNull String text) {
+        return text.indexOf(MARKER_START) >= 0 || text.indexOf(MARKER_END) >= 0;
+    }
+
+    /**
+     * Resolves relocation markers in the instrumented text.
+     *
+     * @param template  instrumented text with markers
+     * @param dataIndex data index of the file in the database
+     * @param dbVersion version of the instrumentation session
+     * @return instrumented text for the database
+     */
+    public static String relocate(@NotNull String template, int dataIndex, long dbVersion) {
+        final StringBuilder text = new StringBuilder(template.length());
+        int from = 0;
+        int start;
+        while ((start = template.indexOf(MARKER_START, from)) >= 0) {
+            final int end = template.indexOf(MARKER_END, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated relocation marker at " + start);
+            }
+            text.append(template, from, start);
+            if (end == start + 2 && template.charAt(start + 1) == VERSION_MARKER) {
+                text.append(dbVersion);
+            } else {
+                text.append(dataIndex + Integer.parseInt(template.substring(start + 1, end)));
+            }
+            from = end + 1;
+        }
+        return text.append(template, from, template.length()).toString();
+    }
+
+    private File entryFileFor(File srcFile, String encoding, long checksum, long filesize) {
+        final MessageDigest digest = digest();
+        digest.update(configDigest);
+        digest.update(srcFile.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(encoding).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (checksum >>> shift));
+            digest.update((byte) (filesize >>> shift));
+        }
+
+        final StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        // spread entries over 256 subdirectories
+        return new File(new File(dir, name.substring(0, 2)), name.substring(2) + ".entry");
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "InstrumentationCache[dir=" + dir + ", hits=" + numHits + "]";
+    }
+    ///CLOVER:ON
+}
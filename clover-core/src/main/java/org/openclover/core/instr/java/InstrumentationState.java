@@ -31,6 +31,7 @@ public class InstrumentationState implements TestDetector.SourceContext {
     private boolean hasInstrumented = false;
     private int autoCloseableClassCount = 0;
     private int autoCloseableInstanceCount = 0;
+    private boolean relocatable = false;
 
     public InstrumentationState(InstrumentationSession session, FullFileInfo fileInfo, FileStructureInfo structure,
                                 JavaInstrumentationConfig cfg) {
@@ -44,6 +45,36 @@ public class InstrumentationState implements TestDetector.SourceContext {
         return fileInfo;
     }
 
+    public boolean isRelocatable() {
+        return relocatable;
+    }
+
+    /**
+     * @param relocatable whether to write slot indexes and the database version as relocation markers, so that the
+     *                    instrumented text can be stored in the {@link InstrumentationCache}
+     */
+    public void setRelocatable(boolean relocatable) {
+        this.relocatable = relocatable;
+    }
+
+    /**
+     * @return text of a slot index to be emitted into the instrumented code
+     */
+    public String slotIndex(int dataIndex) {
+        return relocatable
+                ? InstrumentationCache.slotMarker(dataIndex - fileInfo.getDataIndex())
+                : Integer.toString(dataIndex);
+    }
+
+    /**
+     * @return text of the database version to be emitted into the instrumented code
+     */
+    public String registryVersion() {
+        return relocatable
+                ? InstrumentationCache.versionMarker()
+                : Long.toString(session.getVersion());
+    }
+
     public boolean isInstrEnabled() {
         return instrEnabled;
     }
@@ -14,6 +14,7 @@ import org.openclover.core.context.ContextStore;
 import org.openclover.core.context.MethodRegexpContext;
 import org.openclover.core.context.NamedContext;
 import org.openclover.core.context.StatementRegexpContext;
+import org.openclover.core.instr.InstrumentationSessionImpl;
 import org.openclover.core.registry.Clover2Registry;
 import org.openclover.core.registry.entities.FullFileInfo;
 import org.openclover.core.registry.entities.FullPackageInfo;
@@ -26,7 +27,6 @@ import org.openclover.core.util.UnicodeEncodingWriter;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.api.CloverException;
 import org.openclover.runtime.util.Formatting;
-import org.openclover.runtime.util.IOStreamUtils;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -38,8 +38,16 @@ import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.nio.file.Files;
+import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.openclover.core.util.Lists.newArrayList;
 import static org.openclover.core.util.Sets.newHashSet;
 
 public class Instrumenter {
@@ -49,11 +57,13 @@ public class Instrumenter {
     private Clover2Registry registry;
     private InstrumentationSession session;
     private ContextTreeNode contextTreeRoot;
+    private InstrumentationCache cache;
     private int numFiles;
     private int numClasses;
     private Set<String> packages;
     private int numMethods;
     private int numTestMethods;
+    private int numCachedFiles;
     private int loc;
     private int ncloc;
 
@@ -89,6 +99,7 @@ public class Instrumenter {
         registry = reg;
         session = registry.startInstr(config.getEncoding());
         contextTreeRoot = new ContextTreeNode(reg.getContextStore().size(), new ContextSetImpl());
+        cache = session instanceof InstrumentationSessionImpl ? InstrumentationCache.createFor(config) : null;
 
         log.info("Processing files at " + config.getSourceLevel() + " source level.");
     }
@@ -110,82 +121,202 @@ public class Instrumenter {
             throw new IllegalStateException("Instrumenter not initialized.");
         }
 
-        File instrTmp = null;
-        Writer out = null;
+        final String currentFileEncoding = fileEncoding != null ? fileEncoding : config.getEncoding();
         try {
-            // perform instrumentation to a tmp file
-            instrTmp = File.createTempFile("clover", ".java");
-            final String currentFileEncoding = fileEncoding != null ? fileEncoding : config.getEncoding();
-            if (currentFileEncoding != null) {
-                out = new OutputStreamWriter(Files.newOutputStream(instrTmp.toPath()), currentFileEncoding);
-            } else {
-                out = new FileWriter(instrTmp);
+            final ParsedSource source = registerOrParse(prepare(srcFile, currentFileEncoding), currentFileEncoding);
+            final File instr = destinationFor(srcFile, destRoot, source.packageName());
+            write(source, instr, currentFileEncoding);
+            log.verbose("Processed '" + srcFile + "' to '" + instr + "'");
+            return instr;
+        } catch (TokenStreamException | RecognitionException | IOException e) {
+            throw toCloverException(srcFile, e);
+        }
+    }
+
+    /**
+     * registers orig and produces an instrumented version of in to out
+     *
+     * @param in  the input file to instrument
+     * @param out the destination stream
+     * @param fileEncoding encoding of the file being instrumented, a <code>null</code> value means undefined
+     * @return FileStructureInfo - file reference to the instrumented version
+     */
+    public FileStructureInfo instrument(final @NotNull InstrumentationSource in, final @NotNull Writer out,
+                                        final @Nullable String fileEncoding)
+            throws TokenStreamException, IOException, RecognitionException, CloverException {
+
+        final ParsedSource parsed = parse(in, false);
+        register(parsed, fileEncoding);
+        write(parsed, out);
+        return parsed.structure;
+    }
+
+    /**
+     * Instruments source files and writes instrumented versions at package paths rooted at destRoot. Files are
+     * parsed by <code>numThreads</code> threads, but they're registered in the database one by one in the order
+     * in which they are given, so the database is the same as if they were instrumented sequentially.
+     *
+     * @param srcFiles     files to instrument
+     * @param destRoot     the destination root dir
+     * @param fileEncoding encoding of files being instrumented, if null then a global setting from the
+     *                     <code>config.getEncoding()</code> will be used
+     * @param numThreads   number of threads parsing files and writing instrumented versions
+     * @return file references to instrumented versions, in the order of source files
+     * @throws CloverException if something goes wrong
+     */
+    public List<File> instrument(@NotNull final List<File> srcFiles,
+                                 @NotNull final File destRoot,
+                                 @Nullable final String fileEncoding,
+                                 final int numThreads) throws CloverException {
+        final List<File> instrFiles = newArrayList();
+        if (numThreads <= 1 || srcFiles.size() <= 1) {
+            for (File srcFile : srcFiles) {
+                instrFiles.add(instrument(srcFile, destRoot, fileEncoding));
             }
+            return instrFiles;
+        }
+        if (registry == null) {
+            throw new IllegalStateException("Instrumenter not initialized.");
+        }
 
-            final InstrumentationSource fileSource = new FileInstrumentationSource(srcFile, currentFileEncoding);
-            final FileStructureInfo structInfo = instrument(fileSource, out, currentFileEncoding);
+        final String currentFileEncoding = fileEncoding != null ? fileEncoding : config.getEncoding();
+        final ExecutorService workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
 
-            // copy file into dest
-            File destDir = destRoot;
-            String pkgName = structInfo.getPackageName();
-            if (!PackageInfo.isDefaultName(pkgName)) {
-                destDir = new File(destRoot, CloverUtils.packageNameToPath(pkgName, false));
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                final Thread thread = new Thread(r, "OpenClover-instr-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
             }
+        });
+        try {
+            // parse ahead of registration, but not too far to keep memory usage bounded
+            final int window = numThreads * 4;
+            final List<Future<ParsedSource>> parsed = newArrayList();
+            final List<Future<File>> written = newArrayList();
+            for (int i = 0; i < srcFiles.size(); i++) {
+                while (parsed.size() < srcFiles.size() && parsed.size() <= i + window) {
+                    final File srcFile = srcFiles.get(parsed.size());
+                    parsed.add(workers.submit(() -> prepare(srcFile, currentFileEncoding)));
+                }
 
-            if (!destDir.isDirectory() && !destDir.mkdirs()) {
-                throw new CloverException("Failed to create destination path " + destDir);
+                final File srcFile = srcFiles.get(i);
+                final ParsedSource source;
+                try {
+                    source = registerOrParse(await(parsed.get(i), srcFile), currentFileEncoding);
+                } catch (TokenStreamException | RecognitionException | IOException e) {
+                    throw toCloverException(srcFile, e);
+                }
+                parsed.set(i, null);
+                final File instr = destinationFor(srcFile, destRoot, source.packageName());
+                written.add(workers.submit(() -> {
+                    write(source, instr, currentFileEncoding);
+                    log.verbose("Processed '" + srcFile + "' to '" + instr + "'");
+                    return instr;
+                }));
             }
 
+            for (int i = 0; i < written.size(); i++) {
+                instrFiles.add(await(written.get(i), srcFiles.get(i)));
+            }
+            return instrFiles;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
 
-            String srcFileName = srcFile.getName();
+    /**
+     * Looks the source file up in the instrumentation cache, if it's enabled, or parses it otherwise. Doesn't touch
+     * the instrumentation session, so it can be called by many threads.
+     */
+    private ParsedSource prepare(final File srcFile, final @Nullable String fileEncoding)
+            throws TokenStreamException, IOException, RecognitionException, CloverException {
+        if (cache != null) {
+            final long checksum = FileUtils.calcAdlerChecksum(srcFile, fileEncoding);
+            final InstrumentationCache.Entry cached = cache.get(srcFile, fileEncoding, checksum, srcFile.length());
+            if (cached != null) {
+                return new ParsedSource(srcFile, cached, checksum);
+            }
+        }
+        return parse(new FileInstrumentationSource(srcFile, fileEncoding), cache != null);
+    }
 
-            if (srcFileName.indexOf('.') > -1) {
-                srcFileName =
-                    srcFileName.substring(
-                        0,
-                        srcFile.getName().lastIndexOf('.'))
-                    + '.' + config.getInstrFileExtension();
+    /**
+     * Registers a source file returned by {@link #prepare(File, String)}. A cached file which can't be replayed
+     * into the session (because the file was already registered in it) is parsed and registered as usual.
+     *
+     * @return registered source file, ready to be written
+     */
+    private ParsedSource registerOrParse(final ParsedSource source, final @Nullable String fileEncoding)
+            throws TokenStreamException, IOException, RecognitionException, CloverException {
+        if (source.cached != null) {
+            session.setSourceEncoding(fileEncoding);
+            final FullFileInfo fileInfo = ((InstrumentationSessionImpl) session).replayFile(
+                    source.cached.getPackageName(), source.file,
+                    source.file.lastModified(), source.file.length(),
+                    source.checksum, source.cached.getStructure());
+            if (fileInfo != null) {
+                numCachedFiles++;
+                updateStatistics(fileInfo);
+                source.fileInfo = fileInfo;
+                return source;
             }
+            log.debug("Cached instrumentation of " + source.file + " can't be replayed");
+        }
 
-            File instr = new File(destDir, srcFileName);
-            FileUtils.fileCopy(instrTmp, instr);
-            log.verbose("Processed '" + srcFile + "' to '" + instr + "'");
-            return instr;
-        } catch (UnsupportedEncodingException e) {
-            log.error(e.getMessage());
-            throw new CloverException(e);
-        } catch (RecognitionException e) {
-            String msg = srcFile + ":" + e.getLine() + ":" +
-                    e.getColumn() + ":" + e.getMessage();
-            log.error(msg);
-            throw new CloverException(msg, e);
-        } catch (TokenStreamRecognitionException e) {
-            String msg = srcFile + ":" + e.recog.getLine() + ":" +
-                    e.recog.getColumn() + ":" + e.getMessage();
-            log.error(msg);
-            throw new CloverException(msg, e);
-        } catch (TokenStreamException | IOException e) {
-            log.error("Error processing " + srcFile);
-            log.error(e.getMessage());
-            throw new CloverException(e);
+        final ParsedSource parsed = source.cached != null
+                ? parse(new FileInstrumentationSource(source.file, fileEncoding), cache != null)
+                : source;
+        parsed.fileInfo = register(parsed, fileEncoding);
+        return parsed;
+    }
+
+    /**
+     * Writes a registered source file to the destination, and stores it in the instrumentation cache, if it's
+     * enabled and the file was not taken from it. Can be called by many threads.
+     * <p/>
+     * The file is streamed to a temporary file next to the destination, which is then renamed, so the destination
+     * is never left half-written and the content is written only once.
+     */
+    private void write(final ParsedSource source, final File instr, final @Nullable String fileEncoding)
+            throws IOException {
+        final File instrTmp = File.createTempFile(instr.getName(), ".tmp", instr.getParentFile());
+        try {
+            writeTo(source, instrTmp, fileEncoding);
+            FileUtils.moveReplacing(instrTmp, instr);
         } finally {
-            if (instrTmp != null) {
-                instrTmp.delete();
+            // no-op if renamed already
+            instrTmp.delete();
+        }
+    }
+
+    private void writeTo(final ParsedSource source, final File instr, final @Nullable String fileEncoding)
+            throws IOException {
+        try (Writer out = createWriter(instr, fileEncoding)) {
+            if (source.cached != null) {
+                out.write(InstrumentationCache.relocate(source.cached.getTemplate(),
+                        source.fileInfo.getDataIndex(), session.getVersion()));
+            } else if (source.relocatable) {
+                final StringWriter template = new StringWriter();
+                write(source, template);
+                out.write(InstrumentationCache.relocate(template.toString(),
+                        source.fileInfo.getDataIndex(), session.getVersion()));
+                cache.put(source.file, fileEncoding, source.checksum, source.file.length(),
+                        new InstrumentationCache.Entry(source.structure.getPackageName(), source.fileInfo,
+                                template.toString()));
+            } else {
+                write(source, out);
             }
-            IOStreamUtils.close(out);
         }
     }
 
     /**
-     * registers orig and produces an instrumented version of in to out
+     * Lexes and parses a source file. Doesn't touch the instrumentation session, so it can be called by many threads.
      *
-     * @param in  the input file to instrument
-     * @param out the destination stream
-     * @param fileEncoding encoding of the file being instrumented, a <code>null</code> value means undefined
-     * @return FileStructureInfo - file reference to the instrumented version
+     * @param cacheable whether the file shall be instrumented with relocation markers, to be stored in the cache
      */
-    public FileStructureInfo instrument(final @NotNull InstrumentationSource in, final @NotNull Writer out,
-                                        final @Nullable String fileEncoding)
+    private ParsedSource parse(final @NotNull InstrumentationSource in, final boolean cacheable)
             throws TokenStreamException, IOException, RecognitionException, CloverException {
 
         // open input stream, check if file was not instrumented already
@@ -214,27 +345,109 @@ public class Instrumenter {
         checksummingReader.close();
         unicodeReader.close();
 
+        // a file containing characters of relocation markers is instrumented as usual and not cached
+        final boolean relocatable = cacheable && !filter.anyTokenText(InstrumentationCache::containsMarkerChars);
+
+        return new ParsedSource(in.getSourceFileLocation(), filter, fileStructureInfo,
+                linecount, nclinecount, checksummingReader.getChecksum(), relocatable);
+    }
+
+    /**
+     * Registers a parsed file in the instrumentation session and instruments its tokens. Must be called
+     * for one file at a time, in the order in which files shall appear in the database.
+     */
+    private FullFileInfo register(final ParsedSource parsed, final @Nullable String fileEncoding) throws IOException {
         // every file could have it's own encoding (see IntelliJ IDEA for instance), so update current encoding for every single file
         session.setSourceEncoding(fileEncoding);
         final FullFileInfo fileInfo = (FullFileInfo) session.enterFile(
-                fileStructureInfo.getPackageName(), in.getSourceFileLocation(),
-                linecount, nclinecount,
-                in.getSourceFileLocation().lastModified(), in.getSourceFileLocation().length(),
-                checksummingReader.getChecksum());
+                parsed.structure.getPackageName(), parsed.file,
+                parsed.lineCount, parsed.ncLineCount,
+                parsed.file.lastModified(), parsed.file.length(),
+                parsed.checksum);
 
         // actually do the instrumentation
-        filter.instrument(fileStructureInfo, fileInfo, session, config);
-        matchContexts(fileStructureInfo, registry.getContextStore());
+        parsed.filter.instrument(parsed.structure, fileInfo, session, config, parsed.relocatable);
+        matchContexts(parsed.structure, registry.getContextStore());
+
+        session.exitFile();
+
+        updateStatistics(fileInfo);
+        return fileInfo;
+    }
 
-        // output the instrumented file
+    /**
+     * Outputs the instrumented file. Can be called by many threads once the file is registered.
+     */
+    private static void write(final ParsedSource parsed, final @NotNull Writer out) throws IOException {
         final Writer unicodeWriter = new UnicodeEncodingWriter(new BufferedWriter(out));
-        filter.write(unicodeWriter);
+        parsed.filter.write(unicodeWriter);
         unicodeWriter.close();
+    }
 
-        session.exitFile();
+    private File destinationFor(File srcFile, File destRoot, String pkgName) throws CloverException {
+        File destDir = destRoot;
+        if (!PackageInfo.isDefaultName(pkgName)) {
+            destDir = new File(destRoot, CloverUtils.packageNameToPath(pkgName, false));
+        }
 
-        updateStatistics(fileInfo);
-        return fileStructureInfo;
+        if (!destDir.isDirectory() && !destDir.mkdirs()) {
+            throw new CloverException("Failed to create destination path " + destDir);
+        }
+
+        String srcFileName = srcFile.getName();
+        if (srcFileName.indexOf('.') > -1) {
+            srcFileName = srcFileName.substring(0, srcFileName.lastIndexOf('.')) + '.' + config.getInstrFileExtension();
+        }
+        return new File(destDir, srcFileName);
+    }
+
+    private static Writer createWriter(File file, @Nullable String fileEncoding) throws IOException {
+        return fileEncoding != null
+                ? new OutputStreamWriter(Files.newOutputStream(file.toPath()), fileEncoding)
+                : new FileWriter(file);
+    }
+
+    private <T> T await(Future<T> future, File srcFile) throws CloverException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloverException("Interrupted while instrumenting " + srcFile, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CloverException) {
+                throw (CloverException) cause;
+            } else if (cause instanceof TokenStreamException || cause instanceof RecognitionException
+                    || cause instanceof IOException) {
+                throw toCloverException(srcFile, (Exception) cause);
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CloverException(cause);
+        }
+    }
+
+    private CloverException toCloverException(File srcFile, Exception e) {
+        if (e instanceof UnsupportedEncodingException) {
+            log.error(e.getMessage());
+            return new CloverException(e);
+        } else if (e instanceof RecognitionException) {
+            final RecognitionException re = (RecognitionException) e;
+            String msg = srcFile + ":" + re.getLine() + ":" +
+                    re.getColumn() + ":" + re.getMessage();
+            log.error(msg);
+            return new CloverException(msg, e);
+        } else if (e instanceof TokenStreamRecognitionException) {
+            final TokenStreamRecognitionException tsre = (TokenStreamRecognitionException) e;
+            String msg = srcFile + ":" + tsre.recog.getLine() + ":" +
+                    tsre.recog.getColumn() + ":" + e.getMessage();
+            log.error(msg);
+            return new CloverException(msg, e);
+        } else {
+            log.error("Error processing " + srcFile);
+            log.error(e.getMessage());
+            return new CloverException(e);
+        }
     }
 
     /**
@@ -276,6 +489,10 @@ public class Instrumenter {
                     + " ("+ pkgs + Formatting.pluralizedWord(pkgs, " package")
                     + ").");
 
+            if (numCachedFiles > 0) {
+                log.info(numCachedFiles + Formatting.pluralizedWord(numCachedFiles, " file")
+                        + " reused from the instrumentation cache.");
+            }
             if (numTestMethods > 0) {
                 log.info(numTestMethods + " test method" + (numTestMethods != 1 ? "s" : "") + " detected.");
             }
@@ -300,6 +517,7 @@ public class Instrumenter {
         packages = newHashSet();
         numMethods = 0;
         numTestMethods = 0;
+        numCachedFiles = 0;
         loc = 0;
         ncloc = 0;
     }
@@ -355,4 +573,54 @@ public class Instrumenter {
         return session;
     }
 
+    /**
+     * @return number of files in the current session which were taken from the instrumentation cache
+     */
+    public int getNumCachedFiles() {
+        return numCachedFiles;
+    }
+
+    /**
+     * A lexed and parsed source file, or an instrumented version of it found in the cache, waiting for registration
+     */
+    private static class ParsedSource {
+        final File file;
+        final CloverTokenStreamFilter filter;
+        final FileStructureInfo structure;
+        final int lineCount;
+        final int ncLineCount;
+        final long checksum;
+        final InstrumentationCache.Entry cached;
+        /** whether the file is instrumented with relocation markers, to be stored in the cache */
+        final boolean relocatable;
+        /** record of the file in the database, known once it's registered */
+        FullFileInfo fileInfo;
+
+        ParsedSource(File file, CloverTokenStreamFilter filter, FileStructureInfo structure,
+                     int lineCount, int ncLineCount, long checksum, boolean relocatable) {
+            this.file = file;
+            this.filter = filter;
+            this.structure = structure;
+            this.lineCount = lineCount;
+            this.ncLineCount = ncLineCount;
+            this.checksum = checksum;
+            this.cached = null;
+            this.relocatable = relocatable;
+        }
+
+        ParsedSource(File file, InstrumentationCache.Entry cached, long checksum) {
+            this.file = file;
+            this.filter = null;
+            this.structure = null;
+            this.lineCount = 0;
+            this.ncLineCount = 0;
+            this.checksum = checksum;
+            this.cached = cached;
+            this.relocatable = true;
+        }
+
+        String packageName() {
+            return cached != null ? cached.getPackageName() : structure.getPackageName();
+        }
+    }
 }
@@ -29,7 +29,7 @@ public class LambdaBlockEntryEmitter extends Emitter {
                     FullMethodInfo.DEFAULT_METHOD_COMPLEXITY, LanguageConstruct.Builtin.METHOD);
 
             StringBuilder instr = new StringBuilder();
-            instr.append(Bindings.$CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(method.getDataIndex())));
+            instr.append(Bindings.$CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(method.getDataIndex())));
             instr.append(";");
             setInstr(instr.toString());
         }
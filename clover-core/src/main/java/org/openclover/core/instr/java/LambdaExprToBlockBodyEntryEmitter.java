@@ -19,7 +19,7 @@ public class LambdaExprToBlockBodyEntryEmitter extends Emitter {
     protected void init(InstrumentationState state) {
         if (shouldInstrument()) {
             StringBuilder instr = new StringBuilder("{");
-            instr.append(Bindings.$CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(startEmitter.method.getDataIndex())));
+            instr.append(Bindings.$CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(startEmitter.method.getDataIndex())));
             instr.append(";");
             if (!startEmitter.method.isVoidReturnType()) {
                 instr.append("return ");
@@ -60,7 +60,7 @@ public class LambdaExpressionEntryEmitter extends Emitter {
             instr.append(".");
             instr.append(RecorderInstrEmitter.LAMBDA_INC_METHOD);
             instr.append("(");
-            instr.append(method.getDataIndex());
+            instr.append(state.slotIndex(method.getDataIndex()));
             instr.append(","); // add a comma because we'll have original lambda as a second argument of lambdaInc
             instr.append(classCast); // add a class cast before lambda (optional)
             setInstr(instr.toString());
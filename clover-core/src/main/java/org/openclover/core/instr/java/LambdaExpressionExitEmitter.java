@@ -33,7 +33,7 @@ public class LambdaExpressionExitEmitter extends Emitter {
 
             // append statement index after the lambda call and
             // write closing brace for argument list of a lambdaInc wrapper
-            setInstr("," + statementInfo.getDataIndex() + ")");
+            setInstr("," + state.slotIndex(statementInfo.getDataIndex()) + ")");
         }
     }
 }
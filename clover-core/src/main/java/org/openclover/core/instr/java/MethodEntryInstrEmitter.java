@@ -43,7 +43,7 @@ public class MethodEntryInstrEmitter extends Emitter {
                    typeInstr = getMethod().getContainingClass().getName() + ".class.getName()";
                 }
 
-                instr.append($CoverageRecorder$globalSliceStart(state.getRecorderPrefix(), typeInstr, Integer.toString(methodNode.getMethod().getDataIndex()))).append(";");
+                instr.append($CoverageRecorder$globalSliceStart(state.getRecorderPrefix(), typeInstr, state.slotIndex(methodNode.getMethod().getDataIndex()))).append(";");
                 needsFinally = true;
             }
             else if (state.getCfg().isIntervalBasedFlushing()) {
@@ -51,7 +51,7 @@ public class MethodEntryInstrEmitter extends Emitter {
                 needsFinally = true;
             }
 
-            instr.append($CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(methodNode.getMethod().getDataIndex())));
+            instr.append($CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(methodNode.getMethod().getDataIndex())));
             instr.append(";");
         }
         setInstr(instr.toString());
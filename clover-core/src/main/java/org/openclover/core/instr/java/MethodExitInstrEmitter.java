@@ -49,7 +49,7 @@ public class MethodExitInstrEmitter extends Emitter {
                     instr.append($CoverageRecorder$globalSliceEnd(state.getRecorderPrefix(), typeInstr,
                             "\"" + entry.getMethod().getQualifiedName() + "\"",
                             CloverNames.CLOVER_TEST_NAME_SNIFFER + ".getTestName()",
-                            Integer.toString(entry.getMethod().getDataIndex())));
+                            state.slotIndex(entry.getMethod().getDataIndex())));
                     instr.append(";");
                 }
             }
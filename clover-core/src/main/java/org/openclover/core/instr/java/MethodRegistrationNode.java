@@ -136,7 +136,7 @@ public class MethodRegistrationNode extends Emitter {
                 typeInstr = getMethod().getContainingClass().getName() + ".class.getName()";
             }
 
-            instr.append($CoverageRecorder$globalSliceStart(state.getRecorderPrefix(), typeInstr, Integer.toString(method.getDataIndex()))).append(";");
+            instr.append($CoverageRecorder$globalSliceStart(state.getRecorderPrefix(), typeInstr, state.slotIndex(method.getDataIndex()))).append(";");
 
             instr.append("int ").append(CloverNames.namespace("p")).append("=").append(PerTestRecorder.ABNORMAL_EXIT).append(";");
 
@@ -213,7 +213,7 @@ public class MethodRegistrationNode extends Emitter {
             instr.append($CoverageRecorder$globalSliceEnd(state.getRecorderPrefix(), typeInstr,
                     "\"" + method.getQualifiedName() + "\"",
                     CloverNames.CLOVER_TEST_NAME_SNIFFER + ".getTestName()",
-                    Integer.toString(method.getDataIndex()), CloverNames.namespace("p"), CloverNames.namespace("t")));
+                    state.slotIndex(method.getDataIndex()), CloverNames.namespace("p"), CloverNames.namespace("t")));
             instr.append(";");
             instr.append("}}");
             instr.append(signature.getRenamedNormalisedSignature(syntheticTestName));
@@ -37,8 +37,8 @@ public class RecorderInstrEmitter extends Emitter {
     private String recorderPrefix;
     private long recorderCfg;
     private String initString;
-    private long registryVersion;
-    private int maxDataIndex;
+    private String registryVersion;
+    private String maxDataIndex;
     private String javaLangPrefix;
     private boolean testClass;
     /**
@@ -89,7 +89,7 @@ public class RecorderInstrEmitter extends Emitter {
         initString = state.getCfg().getInitString();
         distributedConfig = state.getCfg().getDistributedConfigString();
         profiles = state.getCfg().getProfiles();
-        registryVersion = state.getSession().getVersion();
+        registryVersion = state.registryVersion();
         javaLangPrefix = state.getCfg().getJavaLangPrefix();
         areLambdasSupported = state.getCfg().getSourceLevel().supportsFeature(LanguageFeature.LAMBDA);
         testClass = state.isDetectTests();
@@ -161,7 +161,7 @@ public class RecorderInstrEmitter extends Emitter {
                 asUnicodeString(initString),
                 registryVersion + "L",
                 recorderCfg + "L",
-                Integer.toString(maxDataIndex),
+                maxDataIndex,
                 "profiles",
                 "new " + javaLangPrefix + "String[]{\"" + CloverNames.PROP_DISTRIBUTED_CONFIG + "\"," + asUnicodeString(distributedConfig) + "}") + ";";
 
@@ -386,11 +386,13 @@ public class RecorderInstrEmitter extends Emitter {
         return res.toString();
     }
 
-    public void setMaxDataIndex(int maxIndex) {
+    public void setMaxDataIndex(String maxIndex) {
         maxDataIndex = maxIndex;
     }
 
     private static long getConfigBits(InstrumentationConfig cfg) {
-        return CoverageRecorder.getConfigBits(cfg.getFlushPolicy(), cfg.getFlushInterval(), false, false, !cfg.isSliceRecording());
+        return CoverageRecorder.getConfigBits(cfg.getFlushPolicy(), cfg.getFlushInterval(), false, false,
+                !cfg.isSliceRecording(), cfg.isStripedCounters(),
+                cfg.isBooleanCoverage() ? CoverageRecorder.RECORDING_FORMAT_BOOLEAN : CoverageRecorder.RECORDING_FORMAT_INTEGER);
     }
 }
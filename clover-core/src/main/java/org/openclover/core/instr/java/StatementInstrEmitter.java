@@ -34,7 +34,7 @@ public class StatementInstrEmitter extends Emitter {
                 LanguageConstruct.Builtin.STATEMENT);
         if (state.isInstrEnabled()) {
             state.setDirty();
-            setInstr($CoverageRecorder$inc(state.getRecorderPrefix(), Integer.toString(stmtInfo.getDataIndex())) + ";");
+            setInstr($CoverageRecorder$inc(state.getRecorderPrefix(), state.slotIndex(stmtInfo.getDataIndex())) + ";");
         }
     }
 
@@ -7,6 +7,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
@@ -45,4 +46,8 @@ public class TaggedIO {
         out.flush();
     }
 
+    public static <T extends TaggedPersistent> void write(DataOutput out, Tags tags, Class<T> clazz, T object) throws IOException {
+        new TaggedOutputWriter(out, tags).write(clazz, object);
+    }
+
 }
\ No newline at end of file
@@ -32,6 +32,11 @@ public abstract class BasePerTestCoverage implements PerTestCoverage {
 
     protected abstract void initMasks();
 
+    @Override
+    public void release() {
+        // nothing but the heap is held by default
+    }
+
     @Override
     public BitSet getUniqueHitsFor(TestCaseInfo tci) {
         BitSet hits = getHitsFor(tci);
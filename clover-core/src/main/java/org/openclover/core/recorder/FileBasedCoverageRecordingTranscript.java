@@ -2,6 +2,7 @@ package org.openclover.core.recorder;
 
 import org.openclover.core.CoverageDataSpec;
 import org.openclover.runtime.recorder.BaseCoverageRecording;
+import org.openclover.runtime.recorder.GlobalCoverageRecording;
 import org.openclover.runtime.util.CoverageUtils;
 
 import java.io.DataInputStream;
@@ -25,7 +26,16 @@ public class FileBasedCoverageRecordingTranscript extends BaseCoverageRecording
     @Override
     public void read(DataInputStream in, CoverageDataSpec spec) throws IOException {
         AtomicLong sum = new AtomicLong(0);
-        hitCounts = CoverageUtils.readCoverageAndSumCoverage(in, sum);
+        switch (header.getFormat()) {
+            case GlobalCoverageRecording.BITMAP_FORMAT:
+                hitCounts = CoverageUtils.readBitmapCoverageAndSumCoverage(in, sum);
+                break;
+            case GlobalCoverageRecording.BLOCK_FORMAT:
+                hitCounts = CoverageUtils.readBlockCoverageAndSumCoverage(in, sum);
+                break;
+            default:
+                hitCounts = CoverageUtils.readCoverageAndSumCoverage(in, sum);
+        }
         coverageSum = sum.longValue();
     }
 
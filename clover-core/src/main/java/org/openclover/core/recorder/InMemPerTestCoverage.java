@@ -11,11 +11,15 @@ import org.openclover.core.registry.Clover2Registry;
 import org.openclover.core.api.registry.CoverageDataRange;
 import org.openclover.core.registry.entities.FullFileInfo;
 import org.openclover.core.registry.entities.FullTestCaseInfo;
+import org.openclover.runtime.Logger;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,6 +38,15 @@ public class InMemPerTestCoverage extends BasePerTestCoverage implements TaggedP
 
     private transient Int2ObjectMap tciIDToTCIMap;
 
+    /** Inverted index of tests by the slots they hit, built on first use and dropped whenever hits may change */
+    private transient volatile IndexedTests indexedTests;
+
+    /** File in which the index is persisted or <code>null</code>, dropped along with the index */
+    private transient File indexFile;
+
+    /** Identifies the recordings the coverage was read from, see {@link #setIndexFile(File, long)} */
+    private transient long recordingsKey;
+
     public InMemPerTestCoverage(int coverageSize) {
         super(coverageSize);
         this.tciToHits = new LinkedHashMap<>();
@@ -136,6 +149,9 @@ public class InMemPerTestCoverage extends BasePerTestCoverage implements TaggedP
         uniqueCoverageMask = coverageNotUniqueMask;
     }
 
+    /**
+     * @return hits of the test, which the caller may change, so the index of tests is dropped
+     */
     @Override
     @SuppressWarnings("unchecked")
     public BitSet getHitsFor(TestCaseInfo tci) {
@@ -145,9 +161,18 @@ public class InMemPerTestCoverage extends BasePerTestCoverage implements TaggedP
             tciToHits.put(tci, hits);
             tciIDToTCIMap.put(tci.getId(), tci);
         }
+        dropIndex();
         return hits;
     }
 
+    @Override
+    public BitSet getUniqueHitsFor(TestCaseInfo tci) {
+        final BitSet hits = tciToHits.get(tci);
+        final BitSet unique = hits != null ? (BitSet)hits.clone() : new BitSet(coverageSize);
+        unique.and(getUniqueCoverageMask());
+        return unique;
+    }
+
     @Override
     public BitSet getPassOnlyHits() {
         return getCoverage(TestCaseInfoPredicate.SUCCESS_ONLY, null);
@@ -167,58 +192,61 @@ public class InMemPerTestCoverage extends BasePerTestCoverage implements TaggedP
     /** @return a non-null slot set with those that intersect the given slices/tcis in the given range set to true */
     @Override
     public BitSet getHitsFor(final Set<TestCaseInfo> tcis, CoverageDataRange range) {
+        if (tcis.size() < tciToHits.size()) {
+            // e.g. a single test, look its hits up instead of checking all tests
+            final BitSet coverage = new BitSet(coverageSize);
+            for (TestCaseInfo tci : tcis) {
+                final BitSet hitsForSlice = tciToHits.get(tci);
+                if (hitsForSlice != null) {
+                    addHits(coverage, hitsForSlice, range);
+                }
+            }
+            return coverage;
+        }
         return getCoverage(tcis::contains, range);
     }
 
     /** @return a non-null slot set with those that satisfy the predicate set to true */
     private BitSet getCoverage(final TestCaseInfoPredicate predicate, final CoverageDataRange range) {
         BitSet coverage = new BitSet(coverageSize);
-        int start = 0;
-        int end = 0;
-        if (range != null) {
-            start = range.getDataIndex();
-            end = start + range.getDataLength();
-        }
         for (Map.Entry<TestCaseInfo, BitSet> entry : tciToHits.entrySet()) {
-            BitSet hitsForSlice = entry.getValue();
             if (predicate.eval(entry.getKey())) {
-                if (range != null) {
-                    for (int j = hitsForSlice.nextSetBit(start); j >= 0 && j < end; j = hitsForSlice.nextSetBit(j + 1)) {
-                        coverage.set(j);
-                    }
-                } else {
-                    coverage.or(hitsForSlice);
-                }
+                addHits(coverage, entry.getValue(), range);
             }
         }
         return coverage;
     }
 
+    private static void addHits(BitSet coverage, BitSet hitsForSlice, CoverageDataRange range) {
+        if (range != null) {
+            final int end = range.getDataIndex() + range.getDataLength();
+            for (int j = hitsForSlice.nextSetBit(range.getDataIndex()); j >= 0 && j < end; j = hitsForSlice.nextSetBit(j + 1)) {
+                coverage.set(j);
+            }
+        } else {
+            coverage.or(hitsForSlice);
+        }
+    }
+
     /** @return an unordered set of tcis that intersect with the given receptors */
     @Override
     public Set<TestCaseInfo> getTestsCovering(CoverageDataRange range) {
-        Set<TestCaseInfo> tcis = newHashSet();
-        for (Map.Entry<TestCaseInfo, BitSet> entry : tciToHits.entrySet()) {
-            TestCaseInfo tci = entry.getKey();
-            BitSet hits = entry.getValue();
-            int firstPass = hits.nextSetBit(range.getDataIndex());
-            if (firstPass > -1 && firstPass < (range.getDataIndex() + range.getDataLength())) {
-                tcis.add(tci);
-            }
+        final IndexedTests indexed = getIndexedTests();
+        final BitSet ordinals = indexed.getTestsCovering(range);
+        final Set<TestCaseInfo> tcis = newHashSet();
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            tcis.add(indexed.tests[i]);
         }
         return tcis;
     }
 
     @Override
     public Map<TestCaseInfo, BitSet> mapTestsAndCoverageForFile(FullFileInfo fileInfo) {
-        Map<TestCaseInfo, BitSet> coverage = newHashMap();
-        for (Map.Entry<TestCaseInfo, BitSet> entry : tciToHits.entrySet()) {
-            TestCaseInfo tci = entry.getKey();
-            BitSet hits = entry.getValue();
-            int firstPass = hits.nextSetBit(fileInfo.getDataIndex());
-            if (firstPass > -1 && firstPass < (fileInfo.getDataIndex() + fileInfo.getDataLength())) {
-                coverage.put(tci, hits);
-            }
+        final IndexedTests indexed = getIndexedTests();
+        final BitSet ordinals = indexed.getTestsCovering(fileInfo);
+        final Map<TestCaseInfo, BitSet> coverage = newHashMap();
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            coverage.put(indexed.tests[i], indexed.hits[i]);
         }
         return coverage;
     }
@@ -228,6 +256,101 @@ public class InMemPerTestCoverage extends BasePerTestCoverage implements TaggedP
         recording.applyTo(getHitsFor(tci));
     }
 
+    /**
+     * Lets the index of tests by the slots they hit be read from a file or, if the file is missing or was written
+     * for other recordings, written to the file once the index is built. Nothing is read or built until the index is
+     * used. The file is forgotten as soon as hits change.
+     *
+     * @param recordingsKey identifies the recordings the coverage was read from, e.g. by their names, sizes and
+     *                      modification times
+     */
+    public void setIndexFile(File indexFile, long recordingsKey) {
+        this.indexFile = indexFile;
+        this.recordingsKey = recordingsKey;
+    }
+
+    private void dropIndex() {
+        indexedTests = null;
+        indexFile = null;
+    }
+
+    private IndexedTests getIndexedTests() {
+        IndexedTests indexed = indexedTests;
+        if (indexed == null) {
+            synchronized (this) {
+                indexed = indexedTests;
+                if (indexed == null) {
+                    indexed = new IndexedTests(tciToHits);
+                    if (indexFile != null) {
+                        loadOrBuildIndex(indexed, indexFile, indexed.fingerprint(recordingsKey));
+                    } else {
+                        indexed.index = PerTestCoverageIndex.build(indexed.hitsList(), coverageSize, 0);
+                    }
+                    indexedTests = indexed;
+                }
+            }
+        }
+        return indexed;
+    }
+
+    private void loadOrBuildIndex(IndexedTests indexed, File file, long fingerprint) {
+        final long start = System.currentTimeMillis();
+        try {
+            indexed.index = PerTestCoverageIndex.read(file, coverageSize, fingerprint);
+            if (indexed.index != null) {
+                Logger.getInstance().debug("Read per-test coverage index " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+                return;
+            }
+        } catch (IOException e) {
+            Logger.getInstance().verbose("Failed to read per-test coverage index " + file, e);
+        }
+        indexed.index = PerTestCoverageIndex.build(indexed.hitsList(), coverageSize, fingerprint);
+        Logger.getInstance().debug("Indexed per-test coverage in " + (System.currentTimeMillis() - start) + "ms");
+        try {
+            indexed.index.write(file);
+        } catch (IOException e) {
+            Logger.getInstance().verbose("Failed to write per-test coverage index " + file, e);
+        }
+    }
+
+    /** Tests and their hits by ordinal, along with their index */
+    private static class IndexedTests {
+        private final TestCaseInfo[] tests;
+        private final BitSet[] hits;
+        private PerTestCoverageIndex index;
+
+        IndexedTests(Map<TestCaseInfo, BitSet> tciToHits) {
+            tests = tciToHits.keySet().toArray(new TestCaseInfo[0]);
+            hits = tciToHits.values().toArray(new BitSet[0]);
+        }
+
+        List<BitSet> hitsList() {
+            return Arrays.asList(hits);
+        }
+
+        /**
+         * Combines the key of the recordings with the tests in their order, as ordinals in a persisted index are
+         * positions of the tests, which depend on the order in which the recordings were read
+         */
+        long fingerprint(long recordingsKey) {
+            long fingerprint = mix(recordingsKey, tests.length);
+            for (TestCaseInfo test : tests) {
+                fingerprint = mix(fingerprint, test.getKey().hashCode());
+            }
+            return fingerprint;
+        }
+
+        /** A multiply-xorshift step, every bit of the value affects all bits of the result */
+        private static long mix(long fingerprint, long value) {
+            final long h = (fingerprint ^ value) * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 29);
+        }
+
+        BitSet getTestsCovering(CoverageDataRange range) {
+            return index.getTestsCovering(range.getDataIndex(), range.getDataLength(), ordinal -> hits[ordinal]);
+        }
+    }
+
     /** Predicate for filtering on tcis */
     private interface TestCaseInfoPredicate {
         TestCaseInfoPredicate SUCCESS_ONLY = TestCaseInfo::isSuccess;
@@ -0,0 +1,79 @@
+package org.openclover.core.recorder;
+
+import org.openclover.core.CoverageDataSpec;
+import org.openclover.runtime.recorder.GlobalCoverageRecording;
+import org.openclover.runtime.recorder.MappedCoverageRecorder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a global coverage recording written by the {@link MappedCoverageRecorder}. Hit counters are read directly
+ * from the mapped file, without inflating.
+ */
+public class MappedCoverageRecordingTranscript extends FileBasedCoverageRecordingTranscript {
+
+    public MappedCoverageRecordingTranscript(Header header, File fileOnDisk) {
+        super(header, fileOnDisk);
+    }
+
+    /**
+     * @return true if the file starts with an uncompressed recording header of the
+     * {@link GlobalCoverageRecording#MAPPED_FORMAT} format
+     */
+    public static boolean isMappedRecording(File file) {
+        if (file.length() < MappedCoverageRecorder.HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return new Header(in).getFormat() == GlobalCoverageRecording.MAPPED_FORMAT;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads hit counters from a file whose header, already read by the caller, is of the
+     * {@link GlobalCoverageRecording#MAPPED_FORMAT} format.
+     */
+    public static MappedCoverageRecordingTranscript readFrom(Header header, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            final MappedCoverageRecordingTranscript transcript = new MappedCoverageRecordingTranscript(header, file);
+            transcript.read(buffer);
+            return transcript;
+        }
+    }
+
+    @Override
+    public void read(DataInputStream in, CoverageDataSpec spec) throws IOException {
+        throw new IOException("Mapped coverage recording " + fileOnDisk + " must be read via readFrom()");
+    }
+
+    private void read(MappedByteBuffer buffer) throws IOException {
+        final int numElements = buffer.getInt(MappedCoverageRecorder.NUM_ELEMENTS_OFFSET);
+        if (numElements < 0 || MappedCoverageRecorder.HEADER_SIZE + 4L * numElements > buffer.capacity()) {
+            throw new IOException("Mapped coverage recording " + fileOnDisk + " is truncated");
+        }
+        final ByteOrder order = buffer.get(MappedCoverageRecorder.BYTE_ORDER_OFFSET) == MappedCoverageRecorder.LITTLE_ENDIAN
+                ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+        buffer.position(MappedCoverageRecorder.HEADER_SIZE);
+        final IntBuffer elements = buffer.slice().order(order).asIntBuffer();
+        hitCounts = new int[numElements];
+        elements.get(hitCounts);
+
+        long sum = 0;
+        for (int hits : hitCounts) {
+            sum += hits;
+        }
+        coverageSum = sum;
+    }
+}
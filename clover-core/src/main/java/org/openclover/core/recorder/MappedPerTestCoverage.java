@@ -0,0 +1,457 @@
+package org.openclover.core.recorder;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openclover.core.api.registry.CoverageDataRange;
+import org.openclover.core.api.registry.TestCaseInfo;
+import org.openclover.core.registry.Clover2Registry;
+import org.openclover.core.registry.entities.FullFileInfo;
+import org.openclover.runtime.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.openclover.core.util.Maps.newHashMap;
+import static org.openclover.core.util.Sets.newHashSet;
+
+/**
+ * Models test hits against element slots, keeping the hits off the heap. Hits of every added recording are
+ * compressed into a record in memory-mapped temporary files and only positions of records are kept per test on
+ * the heap, so the heap needed doesn't depend on the size of the project. Queries decode records straight from
+ * the mapped memory, skipping records which can't intersect the range asked for.
+ * <p/>
+ * A record is laid out as:
+ * <pre>
+ *     int bodyLength, int firstSetBit, int lastSetBit, byte kind, byte[bodyLength] body
+ * </pre>
+ * where the body is either a sequence of varint pairs (number of clear bits, number of set bits) - runs of hits,
+ * which is how per-test coverage usually looks like - or a plain bitmap of longs, whichever is smaller.
+ * <p/>
+ * BitSets returned are copies. Recordings must be added from a single thread, queries may be run concurrently
+ * once all recordings are added. Temporary files are deleted as soon as they're mapped where the OS allows it,
+ * otherwise when the coverage is {@link #release() released} or on exit.
+ */
+public class MappedPerTestCoverage extends BasePerTestCoverage {
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 13;
+    private static final byte RUNS = 0;
+    private static final byte BITMAP = 1;
+
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    /** Files of segments which couldn't be deleted while mapped */
+    private final List<File> undeletedFiles = new ArrayList<>();
+    private int segmentPosition;
+
+    private final Map<TestCaseInfo, LongArrayList> tciToRecords = new LinkedHashMap<>();
+    private final Int2ObjectMap tciIDToTCIMap = new Int2ObjectOpenHashMap();
+
+    /** Reused buffer for encoding of records */
+    private byte[] encoded = new byte[256];
+
+    public MappedPerTestCoverage(Clover2Registry registry) {
+        this(registry.getDataLength());
+    }
+
+    public MappedPerTestCoverage(int coverageSize) {
+        this(coverageSize, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize size of a mapped file, extended to fit the largest possible record if needed
+     */
+    MappedPerTestCoverage(int coverageSize, int segmentSize) {
+        super(coverageSize);
+        this.segmentSize = Math.max(segmentSize, HEADER_SIZE + 8 * ((coverageSize + 63) / 64));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addCoverage(TestCaseInfo tci, PerTestRecordingTranscript recording) {
+        final BitSet hits = new BitSet(coverageSize);
+        recording.applyTo(hits);
+        if (hits.length() > coverageSize) {
+            // slots past the end of the project are not a part of the model, and records must fit in a segment
+            hits.clear(coverageSize, hits.length());
+        }
+        try {
+            final long position = store(hits);
+            LongArrayList records = tciToRecords.get(tci);
+            if (records == null) {
+                records = new LongArrayList(1);
+                tciToRecords.put(tci, records);
+                tciIDToTCIMap.put(tci.getId(), tci);
+            }
+            records.add(position);
+        } catch (IOException e) {
+            Logger.getInstance().error("Failed to store per-test coverage of test \"" + tci.getTestName() + "\"", e);
+        }
+    }
+
+    @Override
+    public boolean hasPerTestData() {
+        return !tciToRecords.isEmpty();
+    }
+
+    @Override
+    public Set<TestCaseInfo> getTests() {
+        return new LinkedHashSet<>(tciToRecords.keySet());
+    }
+
+    @Override
+    public TestCaseInfo getTestById(int id) {
+        return (TestCaseInfo) tciIDToTCIMap.get(id);
+    }
+
+    @Override
+    public BitSet getHitsFor(TestCaseInfo tci) {
+        final BitSet hits = new BitSet();
+        final LongArrayList records = tciToRecords.get(tci);
+        if (records != null) {
+            decode(records, 0, coverageSize, hits);
+        }
+        return hits;
+    }
+
+    @Override
+    public BitSet getHitsFor(Set<TestCaseInfo> tcis) {
+        return getHitsFor(tcis, null);
+    }
+
+    @Override
+    public BitSet getHitsFor(Set<TestCaseInfo> tcis, CoverageDataRange range) {
+        return getCoverage(tcis::contains, range);
+    }
+
+    @Override
+    public BitSet getAllHits() {
+        return getCoverage(tci -> true, null);
+    }
+
+    @Override
+    public BitSet getPassOnlyHits() {
+        return getCoverage(TestCaseInfo::isSuccess, null);
+    }
+
+    @Override
+    public Set<TestCaseInfo> getTestsCovering(CoverageDataRange range) {
+        final Set<TestCaseInfo> tcis = newHashSet();
+        for (Map.Entry<TestCaseInfo, LongArrayList> entry : tciToRecords.entrySet()) {
+            if (intersects(entry.getValue(), range.getDataIndex(), range.getDataIndex() + range.getDataLength())) {
+                tcis.add(entry.getKey());
+            }
+        }
+        return tcis;
+    }
+
+    @Override
+    public Map<TestCaseInfo, BitSet> mapTestsAndCoverageForFile(FullFileInfo fileInfo) {
+        // only hits of the file are decoded, the rest of the project is left out of the returned sets
+        final int from = fileInfo.getDataIndex();
+        final int to = from + fileInfo.getDataLength();
+        final Map<TestCaseInfo, BitSet> coverage = newHashMap();
+        for (Map.Entry<TestCaseInfo, LongArrayList> entry : tciToRecords.entrySet()) {
+            final BitSet hits = new BitSet();
+            decode(entry.getValue(), from, to, hits);
+            if (!hits.isEmpty()) {
+                coverage.put(entry.getKey(), hits);
+            }
+        }
+        return coverage;
+    }
+
+    @Override
+    protected void initMasks() {
+        //No aggregate test coverage to begin with
+        final BitSet coveredMask = new BitSet(coverageSize);
+        //All coverage is unique to start with until later proven otherwise
+        final BitSet coverageNotUniqueMask = new BitSet(coverageSize);
+
+        // decoded hits of one test at a time, reused for all tests
+        final BitSet hits = new BitSet(coverageSize);
+        final BitSet alreadyCovered = new BitSet(coverageSize);
+        for (LongArrayList records : tciToRecords.values()) {
+            hits.clear();
+            decode(records, 0, coverageSize, hits);
+            alreadyCovered.clear();
+            alreadyCovered.or(hits);
+            alreadyCovered.and(coveredMask);
+            coverageNotUniqueMask.or(alreadyCovered);
+            coveredMask.or(hits);
+        }
+
+        coverageNotUniqueMask.flip(0, coverageNotUniqueMask.size());
+        uniqueCoverageMask = coverageNotUniqueMask;
+    }
+
+    /** @return a non-null slot set with hits of tests accepted by the filter, in the given range */
+    private BitSet getCoverage(TestCaseInfoFilter filter, CoverageDataRange range) {
+        final BitSet coverage = new BitSet(coverageSize);
+        final int from = range == null ? 0 : range.getDataIndex();
+        final int to = range == null ? coverageSize : range.getDataIndex() + range.getDataLength();
+        for (Map.Entry<TestCaseInfo, LongArrayList> entry : tciToRecords.entrySet()) {
+            if (filter.accept(entry.getKey())) {
+                decode(entry.getValue(), from, to, coverage);
+            }
+        }
+        return coverage;
+    }
+
+    /**
+     * Releases the mapped segments and deletes their files. Tests and their hits are dropped, so the coverage must
+     * not be queried any more, and no query may be running while it's released.
+     */
+    @Override
+    public void release() {
+        tciToRecords.clear();
+        tciIDToTCIMap.clear();
+        uniqueCoverageMask = null;
+        for (MappedByteBuffer segment : segments) {
+            unmap(segment);
+        }
+        segments.clear();
+        segmentPosition = 0;
+        for (File file : undeletedFiles) {
+            if (!file.delete()) {
+                Logger.getInstance().debug("Failed to delete per-test coverage segment " + file);
+            }
+        }
+        undeletedFiles.clear();
+    }
+
+    /**
+     * Unmaps the segment straight away instead of when it's garbage collected, where the JVM allows it
+     */
+    private static void unmap(MappedByteBuffer segment) {
+        try {
+            try {
+                // Java 9 and later
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), segment);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                final Method cleanerMethod = segment.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(segment);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logger.getInstance().debug("Failed to unmap per-test coverage segment, leaving it to the garbage collector", e);
+        }
+    }
+
+    /**
+     * Sets hits of all the records in the range [from, to) in the result
+     */
+    private void decode(LongArrayList records, int from, int to, BitSet result) {
+        for (int i = 0; i < records.size(); i++) {
+            decode(records.getLong(i), from, to, result);
+        }
+    }
+
+    private boolean intersects(LongArrayList records, int from, int to) {
+        for (int i = 0; i < records.size(); i++) {
+            if (intersects(records.getLong(i), from, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compresses hits into a new record
+     *
+     * @return position of the record
+     */
+    private long store(BitSet hits) throws IOException {
+        int length = 0;
+        int prevEnd = 0;
+        for (int start = hits.nextSetBit(0), end; start >= 0; start = hits.nextSetBit(end)) {
+            end = hits.nextClearBit(start);
+            length = writeVarint(start - prevEnd, length);
+            length = writeVarint(end - start, length);
+            prevEnd = end;
+        }
+
+        byte kind = RUNS;
+        final long[] words = hits.toLongArray();
+        if (length > 8 * words.length) {
+            kind = BITMAP;
+            length = 8 * words.length;
+        }
+
+        if (segments.isEmpty() || segmentPosition + HEADER_SIZE + length > segmentSize) {
+            segments.add(newSegment());
+            segmentPosition = 0;
+        }
+        final MappedByteBuffer segment = segments.get(segments.size() - 1);
+        final int position = segmentPosition;
+        segment.putInt(position, length);
+        segment.putInt(position + 4, hits.isEmpty() ? -1 : hits.nextSetBit(0));
+        segment.putInt(position + 8, hits.length() - 1);
+        segment.put(position + 12, kind);
+        if (kind == RUNS) {
+            for (int i = 0; i < length; i++) {
+                segment.put(position + HEADER_SIZE + i, encoded[i]);
+            }
+        } else {
+            for (int i = 0; i < words.length; i++) {
+                segment.putLong(position + HEADER_SIZE + 8 * i, words[i]);
+            }
+        }
+        segmentPosition += HEADER_SIZE + length;
+        return (long) (segments.size() - 1) * segmentSize + position;
+    }
+
+    private int writeVarint(int value, int length) {
+        if (length + 5 > encoded.length) {
+            final byte[] grown = new byte[encoded.length * 2];
+            System.arraycopy(encoded, 0, grown, 0, length);
+            encoded = grown;
+        }
+        while ((value & ~0x7F) != 0) {
+            encoded[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        encoded[length++] = (byte) value;
+        return length;
+    }
+
+    private MappedByteBuffer newSegment() throws IOException {
+        final File file = File.createTempFile("clover-pertest", ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            // the mapping stays valid after the file is closed and deleted
+            if (!file.delete()) {
+                undeletedFiles.add(file);
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Sets hits of the record in the range [from, to) in the result
+     */
+    private void decode(long recordPosition, int from, int to, BitSet result) {
+        final Record record = new Record(recordPosition);
+        if (record.firstSetBit < 0 || record.firstSetBit >= to || record.lastSetBit < from) {
+            return;
+        }
+        if (record.kind == BITMAP) {
+            final int lastWord = Math.min((to - 1) >>> 6, record.length / 8 - 1);
+            for (int w = from >>> 6; w <= lastWord; w++) {
+                final long word = record.segment.getLong(record.body + 8 * w);
+                for (long bits = word; bits != 0; bits &= bits - 1) {
+                    final int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (i >= from && i < to) {
+                        result.set(i);
+                    }
+                }
+            }
+        } else {
+            int pos = 0;
+            while (record.hasNext()) {
+                final int start = pos + record.readVarint();
+                pos = start + record.readVarint();
+                if (start >= to) {
+                    break;
+                }
+                if (pos > from) {
+                    result.set(Math.max(start, from), Math.min(pos, to));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the record has a hit in the range [from, to)
+     */
+    private boolean intersects(long recordPosition, int from, int to) {
+        final Record record = new Record(recordPosition);
+        if (record.firstSetBit < 0 || record.firstSetBit >= to || record.lastSetBit < from) {
+            return false;
+        }
+        if (record.firstSetBit >= from || record.lastSetBit < to) {
+            return true;
+        }
+        if (record.kind == BITMAP) {
+            final BitSet hits = new BitSet();
+            decode(recordPosition, from, to, hits);
+            return !hits.isEmpty();
+        }
+        int pos = 0;
+        while (record.hasNext()) {
+            final int start = pos + record.readVarint();
+            pos = start + record.readVarint();
+            if (start >= to) {
+                return false;
+            }
+            if (pos > from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A cursor over a record in a mapped segment, reading with absolute gets only */
+    private class Record {
+        final MappedByteBuffer segment;
+        final int length;
+        final int firstSetBit;
+        final int lastSetBit;
+        final byte kind;
+        final int body;
+        int cursor;
+
+        Record(long position) {
+            segment = segments.get((int) (position / segmentSize));
+            final int offset = (int) (position % segmentSize);
+            length = segment.getInt(offset);
+            firstSetBit = segment.getInt(offset + 4);
+            lastSetBit = segment.getInt(offset + 8);
+            kind = segment.get(offset + 12);
+            body = offset + HEADER_SIZE;
+            cursor = body;
+        }
+
+        boolean hasNext() {
+            return cursor < body + length;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = segment.get(cursor++);
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /** Filter of tcis */
+    private interface TestCaseInfoFilter {
+        boolean accept(TestCaseInfo tci);
+    }
+}
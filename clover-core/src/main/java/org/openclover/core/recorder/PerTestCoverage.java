@@ -48,4 +48,7 @@ public interface PerTestCoverage {
     BitSet getUniqueHitsFor(Set<TestCaseInfo> tcis);
 
     void addCoverage(TestCaseInfo tci, PerTestRecordingTranscript recording);
+
+    /** Frees resources held besides the heap, after which this instance must not be queried any more */
+    void release();
 }
@@ -0,0 +1,216 @@
+package org.openclover.core.recorder;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.Nullable;
+import org.openclover.runtime.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * An inverted index of per-test coverage. For every block of {@link #BLOCK_SIZE} consecutive slots it holds the
+ * ordinals of tests which hit any slot of the block, as a posting list of delta-encoded varints.
+ * <p/>
+ * Finding the tests which cover a range of slots costs time proportional to the number of blocks in the range and
+ * the length of their posting lists, instead of the number of all tests. Only tests found in the blocks partially
+ * covered by the range, at either end of it, are checked against their hits.
+ * <p/>
+ * Ordinals are positions of tests in the list the index was built from. The fingerprint of that list is stored with
+ * the index, so an index written to a file is read back only for the same tests and hits.
+ */
+public class PerTestCoverageIndex {
+    /** Number of slots in a block, same as the number of bits in a word of a {@link BitSet} */
+    public static final int BLOCK_SIZE = 64;
+    private static final int BLOCK_SHIFT = 6;
+
+    private static final int MARKER = 0x7e571dc5;
+    private static final int FORMAT_VERSION = 1;
+
+    private final int coverageSize;
+    private final long fingerprint;
+    /** Start of the posting list of every block in {@link #postings}, plus the end of the last one */
+    private final int[] blockOffsets;
+    private final byte[] postings;
+
+    private PerTestCoverageIndex(int coverageSize, long fingerprint, int[] blockOffsets, byte[] postings) {
+        this.coverageSize = coverageSize;
+        this.fingerprint = fingerprint;
+        this.blockOffsets = blockOffsets;
+        this.postings = postings;
+    }
+
+    /**
+     * @param hits hits of tests, by ordinal
+     * @param coverageSize number of slots; hits past it are ignored
+     * @param fingerprint fingerprint of the tests and hits, see {@link #read(File, int, long)}
+     */
+    public static PerTestCoverageIndex build(List<BitSet> hits, int coverageSize, long fingerprint) {
+        final IntArrayList[] blocks = new IntArrayList[numBlocks(coverageSize)];
+        int numPostings = 0;
+        for (int ordinal = 0; ordinal < hits.size(); ordinal++) {
+            final BitSet testHits = hits.get(ordinal);
+            int i = testHits.nextSetBit(0);
+            while (i >= 0 && i < coverageSize) {
+                final int block = i >>> BLOCK_SHIFT;
+                if (blocks[block] == null) {
+                    blocks[block] = new IntArrayList();
+                }
+                blocks[block].add(ordinal);
+                numPostings++;
+                // skip the rest of the block, one posting per block is enough
+                final long nextBlockStart = (block + 1L) << BLOCK_SHIFT;
+                i = nextBlockStart < coverageSize ? testHits.nextSetBit((int) nextBlockStart) : -1;
+            }
+        }
+
+        final int[] blockOffsets = new int[blocks.length + 1];
+        byte[] postings = new byte[Math.max(16, numPostings + numPostings / 2)];
+        int length = 0;
+        for (int block = 0; block < blocks.length; block++) {
+            blockOffsets[block] = length;
+            if (blocks[block] != null) {
+                // ordinals were added in ascending order
+                int previous = 0;
+                for (int j = 0; j < blocks[block].size(); j++) {
+                    final int ordinal = blocks[block].getInt(j);
+                    if (length + 5 > postings.length) {
+                        final byte[] grown = new byte[postings.length * 2];
+                        System.arraycopy(postings, 0, grown, 0, length);
+                        postings = grown;
+                    }
+                    length = writeVarInt(postings, length, ordinal - previous);
+                    previous = ordinal;
+                }
+                blocks[block] = null;
+            }
+        }
+        blockOffsets[blocks.length] = length;
+
+        final byte[] trimmed = new byte[length];
+        System.arraycopy(postings, 0, trimmed, 0, length);
+        return new PerTestCoverageIndex(coverageSize, fingerprint, blockOffsets, trimmed);
+    }
+
+    public int getCoverageSize() {
+        return coverageSize;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param from first slot of the range
+     * @param length number of slots in the range
+     * @param hits hits of a test by ordinal, asked for tests of blocks which the range covers partially
+     * @return ordinals of tests which hit any slot of the range
+     */
+    public BitSet getTestsCovering(int from, int length, IntFunction<BitSet> hits) {
+        final BitSet ordinals = new BitSet();
+        final int to = (int) Math.min((long) from + length, coverageSize);
+        if (from < 0 || from >= to) {
+            return ordinals;
+        }
+        final int firstBlock = from >>> BLOCK_SHIFT;
+        final int lastBlock = (to - 1) >>> BLOCK_SHIFT;
+        for (int block = firstBlock; block <= lastBlock; block++) {
+            final boolean wholeBlock = ((long) block << BLOCK_SHIFT) >= from && ((block + 1L) << BLOCK_SHIFT) <= to;
+            int offset = blockOffsets[block];
+            final int end = blockOffsets[block + 1];
+            int ordinal = 0;
+            while (offset < end) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = postings[offset++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                ordinal += delta;
+                if (!ordinals.get(ordinal) && (wholeBlock || intersects(hits.apply(ordinal), from, to))) {
+                    ordinals.set(ordinal);
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    private static boolean intersects(BitSet hits, int from, int to) {
+        final int first = hits.nextSetBit(from);
+        return first >= 0 && first < to;
+    }
+
+    /**
+     * Writes the index to a file, replacing it
+     */
+    public void write(File file) throws IOException {
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MARKER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(coverageSize);
+            out.writeInt(blockOffsets.length);
+            for (int blockOffset : blockOffsets) {
+                out.writeInt(blockOffset);
+            }
+            out.writeInt(postings.length);
+            out.write(postings);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads an index written by {@link #write(File)}
+     *
+     * @return index or <code>null</code> if there's no file or if it was built for different tests
+     */
+    @Nullable
+    public static PerTestCoverageIndex read(File file, int coverageSize, long fingerprint) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MARKER || in.readInt() != FORMAT_VERSION
+                    || in.readLong() != fingerprint || in.readInt() != coverageSize) {
+                Logger.getInstance().debug("Per-test coverage index " + file + " is out of date");
+                return null;
+            }
+            final int[] blockOffsets = new int[in.readInt()];
+            if (blockOffsets.length != numBlocks(coverageSize) + 1) {
+                throw new IOException("Unexpected number of blocks in per-test coverage index: " + blockOffsets.length);
+            }
+            for (int i = 0; i < blockOffsets.length; i++) {
+                blockOffsets[i] = in.readInt();
+            }
+            final byte[] postings = new byte[in.readInt()];
+            in.readFully(postings);
+            return new PerTestCoverageIndex(coverageSize, fingerprint, blockOffsets, postings);
+        }
+    }
+
+    private static int numBlocks(int coverageSize) {
+        return (int) ((coverageSize + (long) BLOCK_SIZE - 1) >>> BLOCK_SHIFT);
+    }
+
+    private static int writeVarInt(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+}
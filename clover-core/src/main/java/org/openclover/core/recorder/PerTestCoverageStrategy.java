@@ -13,6 +13,11 @@ public enum PerTestCoverageStrategy {
         @Override
         public PerTestCoverage build(Clover2Registry registry, CoverageDataSpec spec, int estPerTestRecordings) {
             return new SamplingPerTestCoverage(registry, spec, estPerTestRecordings);
+        }},
+    MAPPED() {
+        @Override
+        public PerTestCoverage build(Clover2Registry registry, CoverageDataSpec spec, int estPerTestRecordings) {
+            return new MappedPerTestCoverage(registry);
         }};
 
     public abstract PerTestCoverage build(Clover2Registry registry, CoverageDataSpec spec, int estPerTestRecordings);
@@ -10,7 +10,9 @@ import org.openclover.runtime.recorder.FileBasedPerTestRecording;
 import org.openclover.runtime.recorder.PerTestRecorder;
 import org.openclover.runtime.recorder.PerTestRecording;
 import org.openclover.runtime.util.CloverBitSet;
+import org.openclover.runtime.util.LzCodec;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
@@ -52,6 +54,9 @@ public class PerTestRecordingTranscript extends BaseCoverageRecording implements
      */
     @Override
     public void read(DataInputStream in, CoverageDataSpec spec) throws IOException {
+        if (header.getFormat() == BLOCK_FORMAT) {
+            in = new DataInputStream(new ByteArrayInputStream(LzCodec.readBlock(in)));
+        }
         testTypeName = in.readUTF().replace('$', '.'); // hack - see CCD-294
         testMethodName = in.readUTF();
         runtimeTestName = in.readUTF();
@@ -6,14 +6,22 @@ import org.openclover.runtime.Logger;
 import org.openclover.runtime.recorder.BaseCoverageRecording;
 import org.openclover.runtime.recorder.CoverageRecording;
 import org.openclover.runtime.recorder.GlobalCoverageRecording;
+import org.openclover.runtime.recorder.PerTestRecordingJournal;
 import org.openclover.runtime.util.IOStreamUtils;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,8 +32,10 @@ public class RecordingTranscripts {
     public static final String NUM_R36 = "([0-9a-z]+)";
     public static final String STD_REC_SUFFIX = NUM_R36 + "_" + NUM_R36;
     public static final String SLICE_SUFFIX = NUM_R36 + "_" + NUM_R36 + "_" + STD_REC_SUFFIX + ".s";
+    public static final String JOURNAL_SUFFIX = STD_REC_SUFFIX + "_" + NUM_R36 + "\\" + PerTestRecordingJournal.JOURNAL_SUFFIX;
     public static Pattern stdRecordingSuffix = Pattern.compile(STD_REC_SUFFIX);
     public static Pattern sliceRecordingSuffix = Pattern.compile(SLICE_SUFFIX);
+    public static Pattern journalSuffix = Pattern.compile(JOURNAL_SUFFIX);
 
     public static GlobalCoverageRecordingTranscript readCoverageFromDisk(File file, CoverageDataSpec spec) throws IOException {
         return readCoverageFromDisk(file.getParentFile(), file.getName(), spec);
@@ -43,9 +53,15 @@ public class RecordingTranscripts {
         try {
             // read the rec header
             try {
-                in = new DataInputStream(IOStreamUtils.createInflaterInputStream(inf));
+                in = openRecording(inf);
                 BaseCoverageRecording.Header header = new BaseCoverageRecording.Header(in);
                 Logger.getInstance().debug("Read header for \"" + inf + "\": " + header);
+                if (header.getFormat() == GlobalCoverageRecording.MAPPED_FORMAT) {
+                    // always up to date, there's no alternate file
+                    final GlobalCoverageRecordingTranscript mapped = MappedCoverageRecordingTranscript.readFrom(header, inf);
+                    Logger.getInstance().debug("Read data for mapped file \"" + inf + "\": " + mapped);
+                    return mapped;
+                }
                 rec = new FileBasedCoverageRecordingTranscript(header, inf);
             }
             catch (IOException e) {
@@ -61,7 +77,7 @@ public class RecordingTranscripts {
             // if the alt exists, read its header
             if (alt.exists()) {
                 try {
-                    altIn = new DataInputStream(IOStreamUtils.createInflaterInputStream(alt));
+                    altIn = openRecording(alt);
                     BaseCoverageRecording.Header header = new BaseCoverageRecording.Header(altIn);
                     Logger.getInstance().debug("Read header for \"" + alt + "\": " + header);
                     altRec = new FileBasedCoverageRecordingTranscript(header, alt);
@@ -117,12 +133,31 @@ public class RecordingTranscripts {
         }
     }
 
+    /**
+     * Opens a recording file for reading its header and content. Recordings are either deflated as a whole or,
+     * for the block formats, start with an uncompressed header and compress their content on their own.
+     */
+    static DataInputStream openRecording(File file) throws IOException {
+        final DataInputStream raw = new DataInputStream(IOStreamUtils.createInputStream(file));
+        try {
+            raw.mark(8);
+            if (raw.readLong() == BaseCoverageRecording.Header.REC_MAGIC) {
+                raw.reset();
+                return raw;
+            }
+        } catch (EOFException e) {
+            // too short for an uncompressed header
+        }
+        IOStreamUtils.close(raw);
+        return new DataInputStream(IOStreamUtils.createInflaterInputStream(file));
+    }
+
     public static PerTestRecordingTranscript readSliceFromDisk(File dir, String file, CoverageDataSpec spec) throws IOException {
         File inf = new File(dir, file);
         DataInputStream in = null;
 
         try {
-            in = new DataInputStream(IOStreamUtils.createInflaterInputStream(inf));
+            in = openRecording(inf);
             BaseCoverageRecording.Header header = new BaseCoverageRecording.Header(in);
             Logger.getInstance().debug("Read header for \"" + inf + "\": " + header);
             PerTestRecordingTranscript rec = new PerTestRecordingTranscript(header, inf);
@@ -138,6 +173,76 @@ public class RecordingTranscripts {
         }
     }
 
+    /**
+     * Reads per-test recordings from a journal segment sequentially, starting from the record at the
+     * {@link FileRef#getJournalStart()} offset. Reading stops at the end of the segment or at the first incomplete
+     * or corrupted record (e.g. one being written right now or one torn by a JVM crash). The offset of the end of
+     * the last record read is stored in {@link FileRef#getJournalEnd()}, so that a subsequent read can continue
+     * from there.
+     *
+     * @param journal  journal segment to read
+     * @param spec     coverage data spec
+     * @param consumer receives recordings in the order they were written
+     * @return int number of recordings read
+     * @see PerTestRecordingJournal
+     */
+    public static int readJournalFromDisk(FileRef journal, CoverageDataSpec spec, Consumer<PerTestRecordingTranscript> consumer) throws IOException {
+        final File inf = journal.getDatafile();
+        final CRC32 crc = new CRC32();
+        long offset = journal.getJournalStart();
+        int numRecords = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(inf.toPath()), 65536))) {
+            long toSkip = offset;
+            while (toSkip > 0) {
+                final long skipped = in.skip(toSkip);
+                if (skipped <= 0) {
+                    throw new EOFException("Journal " + inf + " is shorter than " + offset + " bytes");
+                }
+                toSkip -= skipped;
+            }
+
+            while (true) {
+                final byte[] payload;
+                final int checksum;
+                try {
+                    final int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0) {
+                        Logger.getInstance().verbose("Corrupted record at offset " + offset + " of \"" + inf + "\", skipping rest of the journal");
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    // end of the journal or a record which is not fully written yet
+                    break;
+                }
+
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    Logger.getInstance().verbose("Corrupted record at offset " + offset + " of \"" + inf + "\", skipping rest of the journal");
+                    break;
+                }
+
+                try (DataInputStream recIn = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+                    final BaseCoverageRecording.Header header = new BaseCoverageRecording.Header(recIn);
+                    final PerTestRecordingTranscript rec = new PerTestRecordingTranscript(header, inf);
+                    rec.read(recIn, spec);
+                    consumer.accept(rec);
+                    numRecords++;
+                }
+                offset += 8 + payload.length;
+            }
+        } finally {
+            journal.journalEnd = offset;
+        }
+
+        Logger.getInstance().debug("Read " + numRecords + " per-test recordings from journal \"" + inf + "\" up to offset " + offset);
+        return numRecords;
+    }
+
     public static FileRef fromFile(File dir, String filename, String dbname) {
         int baselength = dbname.length();
         try {
@@ -166,6 +271,16 @@ public class RecordingTranscripts {
                     return recfile;
                 }
 
+                m = journalSuffix.matcher(suffix);
+
+                if (m.matches()) {
+                    recfile.testRecording = true;
+                    recfile.journal = true;
+                    recfile.hash = Long.parseLong(m.group(1), 36);
+                    recfile.timestamp = Long.parseLong(m.group(2), 36);
+                    return recfile;
+                }
+
                 m = stdRecordingSuffix.matcher(suffix);
 
                 if (m.matches()) {
@@ -225,7 +340,18 @@ public class RecordingTranscripts {
                 if (recfile != null) {
                     final String path = recfile.getDatafile().getAbsolutePath();
                     if (recfile.getTimestamp() >= from && recfile.getTimestamp() <= to) {
-                        if (recfile.isTestRecording()) {
+                        if (recfile.isJournal()) {
+                            // journals grow; read only the records appended since the last scan
+                            final FileRef origJournal = origPerTestFiles.get(path);
+                            if (origJournal != null) {
+                                recfile.journalStart = origJournal.getJournalEnd();
+                                recfile.journalEnd = origJournal.getJournalEnd();
+                            }
+                            if (loadPerTestData && (origJournal == null || recfile.getDatafile().length() > origJournal.getJournalEnd())) {
+                                perTestFiles.put(path, recfile);
+                                newPerTestFiles.put(path, recfile);
+                            }
+                        } else if (recfile.isTestRecording()) {
                             if (loadPerTestData && !origPerTestFiles.containsKey(path)) {
                                 perTestFiles.put(path, recfile);
                                 newPerTestFiles.put(path, recfile);
@@ -250,7 +376,11 @@ public class RecordingTranscripts {
                 return false;
             });
             recordingFiles.putAll(origRecordingFiles);
-            perTestFiles.putAll(origPerTestFiles);
+            for (Map.Entry<String, FileRef> origPerTestFile : origPerTestFiles.entrySet()) {
+                if (!perTestFiles.containsKey(origPerTestFile.getKey())) {
+                    perTestFiles.put(origPerTestFile.getKey(), origPerTestFile.getValue());
+                }
+            }
 
             return Pair.<Set<FileRef>, Set<FileRef>>of(
                     newHashSet(newRecordingFiles.values()),
@@ -265,6 +395,31 @@ public class RecordingTranscripts {
             return newHashSet(recordingFiles.values());
         }
 
+        /**
+         * Marks a file as collected by a previous scan, so that {@link #collectUnseenFilesAnd(Filter)} of a later
+         * filter doesn't return it again. A journal is marked as read up to the given offset.
+         *
+         * @param name       file name of a recording of this database
+         * @param journalEnd offset up to which a journal was read, ignored for other files
+         * @return the file or <code>null</code> if the name is not one of a recording of this database
+         */
+        public FileRef addSeenFile(String name, long journalEnd) {
+            final FileRef recfile = fromFile(dir, name, basename);
+            if (recfile != null) {
+                final String path = recfile.getDatafile().getAbsolutePath();
+                if (recfile.isJournal()) {
+                    recfile.journalStart = journalEnd;
+                    recfile.journalEnd = journalEnd;
+                }
+                if (recfile.isTestRecording()) {
+                    perTestFiles.put(path, recfile);
+                } else {
+                    recordingFiles.put(path, recfile);
+                }
+            }
+            return recfile;
+        }
+
 
         public long getFrom() {
             return from;
@@ -300,6 +455,9 @@ public class RecordingTranscripts {
 
     public final static class FileRef implements Comparable<FileRef> {
         private boolean testRecording;
+        private boolean journal;
+        private long journalStart;
+        private long journalEnd;
         private long typedTestId = -1;
         private long runId;
         private long hash;
@@ -314,6 +472,8 @@ public class RecordingTranscripts {
 
             if (hash != other.hash) return false;
             if (testRecording != other.testRecording) return false;
+            if (journal != other.journal) return false;
+            if (journalStart != other.journalStart) return false;
             if (timestamp != other.timestamp) return false;
             if (typedTestId != other.typedTestId) return false;
             if (runId != other.runId) return false;
@@ -323,6 +483,8 @@ public class RecordingTranscripts {
         public int hashCode() {
             int result;
             result = (testRecording ? 1 : 0);
+            result = 31 * result + (journal ? 1 : 0);
+            result = 31 * result + (int)(journalStart ^ (journalStart >>> 32));
             result = 31 * result + (int)(typedTestId ^ (typedTestId >>> 32));
             result = 31 * result + (int)(runId ^ (runId >>> 32));
             result = 31 * result + (int)(hash ^ (hash >>> 32));
@@ -345,11 +507,14 @@ public class RecordingTranscripts {
             if (hash > other.hash) return 1;
             if (hash < other.hash) return -1;
             if (testRecording != other.testRecording) return testRecording ? 1 : -1;
+            if (journalStart != other.journalStart) return Long.compare(journalStart, other.journalStart);
             return Long.compare(typedTestId, other.typedTestId);
         }
 
         public CoverageRecording read(CoverageDataSpec spec) throws IOException {
-            if (testRecording) {
+            if (journal) {
+                throw new IOException("Journal " + datafile + " contains many recordings, use RecordingTranscripts.readJournalFromDisk()");
+            } else if (testRecording) {
                 return readSliceFromDisk(getDatafile().getParentFile(), getDatafile().getName(), spec);
             } else {
                 return readCoverageFromDisk(getDatafile().getParentFile(), getDatafile().getName(), spec);
@@ -360,6 +525,27 @@ public class RecordingTranscripts {
             return testRecording;
         }
 
+        /**
+         * @return true if the file is a journal segment containing many per-test recordings
+         */
+        public boolean isJournal() {
+            return journal;
+        }
+
+        /**
+         * @return offset of the first journal record to be read
+         */
+        public long getJournalStart() {
+            return journalStart;
+        }
+
+        /**
+         * @return offset of the end of the last journal record read so far
+         */
+        public long getJournalEnd() {
+            return journalEnd;
+        }
+
         public long getTypedTestId() {
             return typedTestId;
         }
@@ -389,6 +575,8 @@ public class RecordingTranscripts {
             return "RecordingTranscripts.FileRef[" +
                 "datafile=" + datafile +
                 ", testRecording=" + testRecording +
+                ", journal=" + journal +
+                ", journalStart=" + journalStart +
                 ", typedTestId=" + typedTestId +
                 ", runId=" + runId +
                 ", hash=" + hash +
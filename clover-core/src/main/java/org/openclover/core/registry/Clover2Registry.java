@@ -17,6 +17,8 @@ import org.openclover.core.registry.format.CoverageSegment;
 import org.openclover.core.registry.format.FileInfoRecord;
 import org.openclover.core.registry.format.FreshRegFile;
 import org.openclover.core.registry.format.InstrSessionSegment;
+import org.openclover.core.registry.format.MappedRegFile;
+import org.openclover.core.registry.format.RegIndex;
 import org.openclover.core.registry.format.RegFile;
 import org.openclover.core.registry.format.UpdatableRegFile;
 import org.openclover.core.util.CloverUtils;
@@ -126,13 +128,7 @@ public class Clover2Registry implements InstrumentationTarget {
                 recreateDataIndicesAndLengths(regFile, projInfo);
 
                 Clover2Registry reg = new Clover2Registry(regFile, projInfo, instrHistory, ctxStore);
-
-                final CoverageSegment coverage = contents.getCoverage();
-                if (coverage != null) {
-                    final CoverageData covData = new CoverageData(reg.getVersion(), coverage.getHitCounts(), coverage.getPerTestCoverage());
-                    reg.setCoverageData(covData);
-                    reg.getProject().setDataProvider(covData);
-                }
+                loadCoverage(reg, contents.getCoverage());
 
                 resultReg[0] = reg;
             });
@@ -148,6 +144,69 @@ public class Clover2Registry implements InstrumentationTarget {
         }
     }
 
+    /**
+     * Loads a registry with files of given packages only. If the registry file has an index, files of other
+     * packages are never read, otherwise the whole file is read and filtered.
+     *
+     * @param packageNames names of packages to load or <code>null</code> to load all
+     * @return registry or <code>null</code> if the file doesn't exist
+     */
+    public static Clover2Registry fromFile(final File registryFile, final Collection<String> packageNames) throws CloverException {
+        try {
+            final UpdatableRegFile regFile = new UpdatableRegFile(registryFile);
+            try (MappedRegFile mappedFile = MappedRegFile.open(registryFile, regFile.getHeader())) {
+                final RegIndex index = mappedFile.getIndex();
+                if (index == null) {
+                    Logger.getInstance().verbose("Registry file " + registryFile + " has no index, reading it all");
+                    return fromFile(registryFile, packageNames == null ? null : new PackageFilter(packageNames), null);
+                }
+
+                final long version = regFile.getVersion();
+                final ProjectInfo projInfo = new FullProjectInfo(regFile.getName(), version);
+                for (RegIndex.Entry entry : index.getEntries()) {
+                    if (packageNames == null || packageNames.contains(entry.getPackageName())) {
+                        final FileInfo fileInfo = mappedFile.getFileInfo(entry).get();
+                        //Make the FileInfo support the very latest model version and versions of older records
+                        fileInfo.addVersion(version);
+                        for (long olderVersion : entry.getOlderVersions()) {
+                            fileInfo.addVersion(olderVersion);
+                        }
+                        PackageInfo pkgInfo = projInfo.getNamedPackage(entry.getPackageName());
+                        if (pkgInfo == null) {
+                            pkgInfo = new FullPackageInfo(projInfo, entry.getPackageName(), Integer.MAX_VALUE);
+                            projInfo.addPackage(pkgInfo);
+                        }
+                        pkgInfo.addFile(fileInfo);
+                    }
+                }
+                recreateDataIndicesAndLengths(regFile, projInfo);
+
+                final List<InstrumentationInfo> instrHistory = newLinkedList();
+                for (RegIndex.Session session : index.getSessions()) {
+                    instrHistory.add(new InstrumentationInfo(session.getVersion(), session.getStartTs(), session.getEndTs()));
+                }
+
+                final Clover2Registry reg = new Clover2Registry(regFile, projInfo, instrHistory,
+                        mappedFile.getContextStore().get());
+                loadCoverage(reg, mappedFile.getCoverage());
+                return reg;
+            }
+        } catch (RuntimeException | IOException e) {
+            Logger.getInstance().debug("Exception reading registry file " + registryFile.getAbsolutePath(), e);
+            throw new CorruptedRegistryException(registryFile.getAbsolutePath(), e);
+        } catch (NoSuchRegistryException e) {
+            return null;
+        }
+    }
+
+    private static void loadCoverage(Clover2Registry reg, CoverageSegment coverage) {
+        if (coverage != null) {
+            final CoverageData covData = new CoverageData(reg.getVersion(), coverage.getHitCounts(), coverage.getPerTestCoverage());
+            reg.setCoverageData(covData);
+            reg.getProject().setDataProvider(covData);
+        }
+    }
+
     private static void buildModel(long version, HasMetricsFilter filter, final ProjectInfo projInfo,
                                    Map<String, FileInfo> fileInfos, InstrSessionSegment sessionSegment,
                                    Collection<FileInfoRecord> fileInfoRecs) {
@@ -0,0 +1,41 @@
+package org.openclover.core.registry;
+
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.HasMetrics;
+import org.openclover.core.api.registry.HasMetricsFilter;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.openclover.core.util.Sets.newHashSet;
+
+/**
+ * Filters files of given packages. A database opened with this filter reads only the files of these packages
+ * from an indexed registry file, see {@link Clover2Registry#fromFile(java.io.File, Collection)}.
+ */
+public class PackageFilter implements HasMetricsFilter {
+    private final Collection<String> packageNames;
+
+    public PackageFilter(Collection<String> packageNames) {
+        this.packageNames = Collections.unmodifiableSet(newHashSet(packageNames));
+    }
+
+    public Collection<String> getPackageNames() {
+        return packageNames;
+    }
+
+    @Override
+    public boolean accept(HasMetrics hm) {
+        if (hm instanceof FileInfo) {
+            return packageNames.contains(((FileInfo) hm).getContainingPackage().getName());
+        }
+        return true;  // only filter at the file level
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "PackageFilter" + packageNames;
+    }
+    ///CLOVER:ON
+}
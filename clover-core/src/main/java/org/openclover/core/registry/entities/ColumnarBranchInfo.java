@@ -0,0 +1,76 @@
+package org.openclover.core.registry.entities;
+
+import org.openclover.core.api.registry.BranchInfo;
+import org.openclover.core.api.registry.CoverageDataProvider;
+import org.openclover.core.api.registry.CoverageDataReceptor;
+import org.openclover.core.api.registry.FileInfoRegion;
+import org.openclover.core.api.registry.MethodInfo;
+import org.openclover.core.context.ContextSetImpl;
+import org.openclover.core.io.tags.TaggedDataOutput;
+import org.openclover.core.io.tags.TaggedPersistent;
+import org.openclover.core.registry.FixedSourceRegion;
+
+import java.io.IOException;
+
+/**
+ * A branch of a method in the columnar model, see {@link ElementColumns}.
+ * Written in the same format as {@link FullBranchInfo}.
+ */
+final class ColumnarBranchInfo extends ColumnarElementInfo
+        implements BranchInfo, FileInfoRegion, CoverageDataReceptor, TaggedPersistent {
+
+    ColumnarBranchInfo(ElementColumns columns, int index, MethodInfo containingMethod) {
+        super(columns, index, containingMethod);
+    }
+
+    @Override
+    public int getTrueHitCount() {
+        return getHitCount();
+    }
+
+    @Override
+    public int getFalseHitCount() {
+        final CoverageDataProvider data = getDataProvider();
+        if (data == null) {
+            return 0;
+        }
+        return data.getHitCount(getDataIndex() + 1);
+    }
+
+    @Override
+    public boolean isInstrumented() {
+        return columns.isInstrumented(index);
+    }
+
+    @Override
+    public BranchInfo copy(MethodInfo method) {
+        return new ColumnarBranchInfo(columns, index, method);
+    }
+
+    @Override
+    public int getDataLength() {
+        return 2;
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "ColumnarBranchInfo{" +
+            "region=" + getRegion() +
+            ", relativeDataIndex=" + getRelativeDataIndex() +
+            ", complexity=" + getComplexity() +
+            ", context=" + getContext() +
+            '}';
+    }
+    ///CLOVER:ON
+
+    @Override
+    public void write(TaggedDataOutput out) throws IOException {
+        out.write(ContextSetImpl.class, (ContextSetImpl) getContext());
+        out.writeInt(getRelativeDataIndex());
+        out.writeInt(getComplexity());
+        out.writeUTF(getConstruct().getId());
+        out.writeBoolean(isInstrumented());
+        FixedSourceRegion.writeRaw(this, out);
+    }
+}
@@ -0,0 +1,135 @@
+package org.openclover.core.registry.entities;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.api.registry.ClassInfo;
+import org.openclover.core.api.registry.ContextSet;
+import org.openclover.core.api.registry.CoverageDataProvider;
+import org.openclover.core.api.registry.EntityContainer;
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.MethodInfo;
+import org.openclover.core.registry.FixedSourceRegion;
+import org.openclover.core.spi.lang.LanguageConstruct;
+
+/**
+ * A flyweight of an element of a method, which reads its attributes from {@link ElementColumns}.
+ * Flyweights are created on demand, so two of them are equal if they point to the same element of the same method.
+ * Only the context of an element can be changed, as contexts are remapped when databases are merged.
+ */
+abstract class ColumnarElementInfo {
+    protected final ElementColumns columns;
+    protected final int index;
+    protected final MethodInfo containingMethod;
+
+    ColumnarElementInfo(ElementColumns columns, int index, MethodInfo containingMethod) {
+        this.columns = columns;
+        this.index = index;
+        this.containingMethod = containingMethod;
+    }
+
+    public int getStartLine() {
+        return columns.get(index, ElementColumns.START_LINE);
+    }
+
+    public int getStartColumn() {
+        return columns.get(index, ElementColumns.START_COLUMN);
+    }
+
+    public int getEndLine() {
+        return columns.get(index, ElementColumns.END_LINE);
+    }
+
+    public int getEndColumn() {
+        return columns.get(index, ElementColumns.END_COLUMN);
+    }
+
+    public int getComplexity() {
+        return columns.get(index, ElementColumns.COMPLEXITY);
+    }
+
+    public int getRelativeDataIndex() {
+        return columns.get(index, ElementColumns.RELATIVE_DATA_INDEX);
+    }
+
+    public int getDataIndex() {
+        return getContainingFile().getDataIndex() + getRelativeDataIndex();
+    }
+
+    public int getHitCount() {
+        final CoverageDataProvider data = getDataProvider();
+        if (data == null) {
+            return 0;
+        }
+        return data.getHitCount(getDataIndex());
+    }
+
+    public ContextSet getContext() {
+        return columns.getContext(index);
+    }
+
+    public void setContext(ContextSet context) {
+        columns.setContext(index, context);
+    }
+
+    public boolean isFiltered(ContextSet filter) {
+        return filter != null && filter.intersects(getContext());
+    }
+
+    @NotNull
+    public LanguageConstruct getConstruct() {
+        return columns.getConstruct(index);
+    }
+
+    public CoverageDataProvider getDataProvider() {
+        return containingMethod.getDataProvider();
+    }
+
+    public void setDataProvider(CoverageDataProvider data) {
+        throw new UnsupportedOperationException("setDataProvider not supported on " + getClass().getSimpleName());
+    }
+
+    @Nullable
+    public FileInfo getContainingFile() {
+        return containingMethod.getContainingFile();
+    }
+
+    @Nullable
+    public MethodInfo getContainingMethod() {
+        return containingMethod;
+    }
+
+    @Nullable
+    public ClassInfo getContainingClass() {
+        // the parent is always a method
+        return null;
+    }
+
+    public EntityContainer getParent() {
+        return containingMethod;
+    }
+
+    public void setContainingMethod(MethodInfo methodInfo) {
+        throw new UnsupportedOperationException("Columnar elements can't be moved to another method");
+    }
+
+    protected FixedSourceRegion getRegion() {
+        return new FixedSourceRegion(getStartLine(), getStartColumn(), getEndLine(), getEndColumn());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ColumnarElementInfo that = (ColumnarElementInfo) o;
+        return index == that.index && columns == that.columns && containingMethod == that.containingMethod;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(columns) + index;
+    }
+}
@@ -0,0 +1,81 @@
+package org.openclover.core.registry.entities;
+
+import org.openclover.core.api.registry.ClassInfo;
+import org.openclover.core.api.registry.CoverageDataReceptor;
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.FileInfoRegion;
+import org.openclover.core.api.registry.MethodInfo;
+import org.openclover.core.api.registry.StatementInfo;
+import org.openclover.core.context.ContextSetImpl;
+import org.openclover.core.io.tags.TaggedDataOutput;
+import org.openclover.core.io.tags.TaggedPersistent;
+import org.openclover.core.registry.FixedSourceRegion;
+
+import java.io.IOException;
+
+/**
+ * A statement of a method in the columnar model, see {@link ElementColumns}.
+ * Written in the same format as {@link FullStatementInfo}.
+ */
+final class ColumnarStatementInfo extends ColumnarElementInfo
+        implements StatementInfo, FileInfoRegion, CoverageDataReceptor, TaggedPersistent {
+
+    ColumnarStatementInfo(ElementColumns columns, int index, MethodInfo containingMethod) {
+        super(columns, index, containingMethod);
+    }
+
+    @Override
+    public StatementInfo copy(MethodInfo parentMethod) {
+        return new ColumnarStatementInfo(columns, index, parentMethod);
+    }
+
+    @Override
+    public StatementInfo copy(ClassInfo parentClass) {
+        return new FullStatementInfo(parentClass, getContext(), toBasicElementInfo());
+    }
+
+    @Override
+    public StatementInfo copy(FileInfo parentFile) {
+        return new FullStatementInfo(parentFile, getContext(), toBasicElementInfo());
+    }
+
+    @Override
+    public int getDataLength() {
+        return 1;
+    }
+
+    @Override
+    public void setContainingClass(ClassInfo containingClass) {
+        throw new UnsupportedOperationException("Columnar elements can't be moved to another method");
+    }
+
+    @Override
+    public void setContainingFile(FileInfo containingFile) {
+        throw new UnsupportedOperationException("Columnar elements can't be moved to another method");
+    }
+
+    private BasicElementInfo toBasicElementInfo() {
+        return new BasicElementInfo(getRegion(), getRelativeDataIndex(), getComplexity(), getConstruct());
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "ColumnarStatementInfo{" +
+            "region=" + getRegion() +
+            ", relativeDataIndex=" + getRelativeDataIndex() +
+            ", complexity=" + getComplexity() +
+            ", context=" + getContext() +
+            '}';
+    }
+    ///CLOVER:ON
+
+    @Override
+    public void write(TaggedDataOutput out) throws IOException {
+        out.write(ContextSetImpl.class, (ContextSetImpl) getContext());
+        out.writeInt(getRelativeDataIndex());
+        out.writeInt(getComplexity());
+        out.writeUTF(getConstruct().getId());
+        FixedSourceRegion.writeRaw(this, out);
+    }
+}
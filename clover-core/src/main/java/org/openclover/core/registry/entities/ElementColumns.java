@@ -0,0 +1,170 @@
+package org.openclover.core.registry.entities;
+
+import org.openclover.core.api.registry.BranchInfo;
+import org.openclover.core.api.registry.ContextSet;
+import org.openclover.core.api.registry.ElementInfo;
+import org.openclover.core.api.registry.MethodInfo;
+import org.openclover.core.api.registry.StatementInfo;
+import org.openclover.core.spi.lang.LanguageConstruct;
+import org.openclover.runtime.CloverNames;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static org.openclover.core.util.Maps.newHashMap;
+
+/**
+ * Attributes of statements or branches of one method, kept in parallel arrays instead of an object graph
+ * per element (an element, its {@link BasicElementInfo}, {@link org.openclover.core.registry.FixedSourceRegion},
+ * context set and parent reference). Regions, data indexes and complexities are packed in a single
+ * <code>int</code> array, and equal context sets are shared. Elements are served as lightweight flyweights created
+ * on demand, see {@link ColumnarStatementInfo} and {@link ColumnarBranchInfo}.
+ * <p/>
+ * Statements and branches make up the majority of a model, so a database read with the
+ * {@link CloverNames#PROP_COLUMNAR_MODEL} system property set takes a fraction of the heap; the rest of the model
+ * is unchanged. Methods of such model can't get new statements or branches, but they can be copied, and copies share
+ * the columns. Only contexts can be changed, see {@link #setContext(int, ContextSet)}.
+ */
+final class ElementColumns {
+    static final int START_LINE = 0;
+    static final int START_COLUMN = 1;
+    static final int END_LINE = 2;
+    static final int END_COLUMN = 3;
+    static final int RELATIVE_DATA_INDEX = 4;
+    static final int COMPLEXITY = 5;
+    static final int STRIDE = 6;
+
+    private final int[] values;
+    private final ContextSet[] contexts;
+    private final LanguageConstruct[] constructs;
+    /** branches only, <code>null</code> for statements */
+    private final boolean[] instrumented;
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean(CloverNames.PROP_COLUMNAR_MODEL);
+    }
+
+    private ElementColumns(List<? extends ElementInfo> elements, boolean[] instrumented) {
+        final int size = elements.size();
+        this.values = new int[size * STRIDE];
+        this.contexts = new ContextSet[size];
+        this.constructs = new LanguageConstruct[size];
+        this.instrumented = instrumented;
+
+        final Map<ContextSet, ContextSet> sharedContexts = newHashMap();
+        for (int i = 0; i < size; i++) {
+            final FullElementInfo<?> element = (FullElementInfo<?>) elements.get(i);
+            final int offset = i * STRIDE;
+            values[offset + START_LINE] = element.getStartLine();
+            values[offset + START_COLUMN] = element.getStartColumn();
+            values[offset + END_LINE] = element.getEndLine();
+            values[offset + END_COLUMN] = element.getEndColumn();
+            values[offset + RELATIVE_DATA_INDEX] = element.getRelativeDataIndex();
+            values[offset + COMPLEXITY] = element.getComplexity();
+            contexts[i] = shared(sharedContexts, element.getContext());
+            constructs[i] = element.getConstruct();
+        }
+    }
+
+    /**
+     * @return fixed-size list of flyweights holding the same data as given statements, which belong to the method
+     */
+    static List<StatementInfo> statementsOf(MethodInfo method, List<StatementInfo> statements) {
+        return new StatementList(new ElementColumns(statements, null), method);
+    }
+
+    /**
+     * @return fixed-size list of flyweights holding the same data as given branches, which belong to the method
+     */
+    static List<BranchInfo> branchesOf(MethodInfo method, List<BranchInfo> branches) {
+        final boolean[] instrumented = new boolean[branches.size()];
+        for (int i = 0; i < instrumented.length; i++) {
+            instrumented[i] = branches.get(i).isInstrumented();
+        }
+        return new BranchList(new ElementColumns(branches, instrumented), method);
+    }
+
+    /**
+     * @return an equal context set of one of previous elements, if any
+     */
+    private static ContextSet shared(Map<ContextSet, ContextSet> sharedContexts, ContextSet context) {
+        final ContextSet shared = sharedContexts.putIfAbsent(context, context);
+        return shared != null ? shared : context;
+    }
+
+    int get(int index, int column) {
+        return values[index * STRIDE + column];
+    }
+
+    ContextSet getContext(int index) {
+        return contexts[index];
+    }
+
+    /**
+     * Replaces the context of an element, e.g. by one remapped to the context store of a merged database.
+     * The element of all copies of the method changes, as they share the columns.
+     */
+    void setContext(int index, ContextSet context) {
+        contexts[index] = context;
+    }
+
+    LanguageConstruct getConstruct(int index) {
+        return constructs[index];
+    }
+
+    boolean isInstrumented(int index) {
+        return instrumented[index];
+    }
+
+    int size() {
+        return contexts.length;
+    }
+
+    private static final class StatementList extends AbstractList<StatementInfo> implements RandomAccess {
+        private final ElementColumns columns;
+        private final MethodInfo method;
+
+        StatementList(ElementColumns columns, MethodInfo method) {
+            this.columns = columns;
+            this.method = method;
+        }
+
+        @Override
+        public StatementInfo get(int index) {
+            if (index < 0 || index >= columns.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + columns.size());
+            }
+            return new ColumnarStatementInfo(columns, index, method);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+
+    private static final class BranchList extends AbstractList<BranchInfo> implements RandomAccess {
+        private final ElementColumns columns;
+        private final MethodInfo method;
+
+        BranchList(ElementColumns columns, MethodInfo method) {
+            this.columns = columns;
+            this.method = method;
+        }
+
+        @Override
+        public BranchInfo get(int index) {
+            if (index < 0 || index >= columns.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + columns.size());
+            }
+            return new ColumnarBranchInfo(columns, index, method);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+}
@@ -40,8 +40,9 @@ public class FullMethodInfo extends FullElementInfo<BasicElementInfo>
 
     public static final int DEFAULT_METHOD_COMPLEXITY = 1;
 
-    private final List<StatementInfo> statements = newArrayList();
-    private final List<BranchInfo> branches = newArrayList();
+    /** fixed-size lists in the columnar model, see {@link ElementColumns} */
+    private List<StatementInfo> statements = newArrayList();
+    private List<BranchInfo> branches = newArrayList();
     private final List<ClassInfo> innerClasses = newArrayList();
     private final List<MethodInfo> innerMethods = newArrayList();
 
@@ -677,11 +678,16 @@ public class FullMethodInfo extends FullElementInfo<BasicElementInfo>
                 statements, branches, innerClasses, innerMethods);
         methodInfo.setAggregatedComplexity(aggregatedComplexity);
         methodInfo.setAggregatedStatementCount(aggregatedStatements);
-        for (StatementInfo statement : statements) {
-            statement.setContainingMethod(methodInfo);
-        }
-        for (BranchInfo branch : branches) {
-            branch.setContainingMethod(methodInfo);
+        if (ElementColumns.isEnabled()) {
+            methodInfo.statements = ElementColumns.statementsOf(methodInfo, statements);
+            methodInfo.branches = ElementColumns.branchesOf(methodInfo, branches);
+        } else {
+            for (StatementInfo statement : statements) {
+                statement.setContainingMethod(methodInfo);
+            }
+            for (BranchInfo branch : branches) {
+                branch.setContainingMethod(methodInfo);
+            }
         }
         for (ClassInfo innerClass : innerClasses) {
             innerClass.setContainingMethod(methodInfo);
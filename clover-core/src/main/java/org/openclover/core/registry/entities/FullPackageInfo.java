@@ -215,7 +215,8 @@ public class FullPackageInfo
 
     @Override
     public void buildCaches() {
-        // no-op
+        gatherClassesFromPackage();
+        gatherAllClassesFromPackage();
     }
 
     @Override
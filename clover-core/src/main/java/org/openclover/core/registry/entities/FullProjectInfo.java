@@ -531,6 +531,11 @@ public class FullProjectInfo
     public void buildCaches() {
         buildOrderedPackageList();
         buildPackageTrees();
+        buildClassLookupMap();
+        buildFileLookupMap();
+        for (PackageInfo packageInfo : packages.values()) {
+            packageInfo.buildCaches();
+        }
     }
 
     public boolean isFragmented() {
@@ -51,17 +51,18 @@ public class FullTestCaseInfo implements TestCaseInfo, TaggedPersistent {
 
     private transient StackTraceInfo stackTrace;
 
+    /** Cache of test cases shared by all loaded databases; synchronized as databases may be loaded concurrently */
     public static class Factory {
         private static Map<String, FullTestCaseInfo> instanceCache = newHashMap();
 
         private static int sliceOffset = DEFAULT_SLICE_ID_OFFSET;
 
-        public static void reset() {
+        public static synchronized void reset() {
             instanceCache.clear();
             sliceOffset = DEFAULT_SLICE_ID_OFFSET;
         }
 
-        public static FullTestCaseInfo getInstance(FullTestCaseInfo tci) {
+        public static synchronized FullTestCaseInfo getInstance(FullTestCaseInfo tci) {
             FullTestCaseInfo result = instanceCache.get(tci.getKey());
             if (result == null) {
                 result = tci;
@@ -71,7 +72,7 @@ public class FullTestCaseInfo implements TestCaseInfo, TaggedPersistent {
             return result;
         }
 
-        public static FullTestCaseInfo getInstanceForSlice(PerTestRecordingTranscript recording) {
+        public static synchronized FullTestCaseInfo getInstanceForSlice(PerTestRecordingTranscript recording) {
             FullTestCaseInfo tci = new FullTestCaseInfo(recording.getStart(), recording.getEnd(), recording.getDuration(),
                     recording.getTestTypeName(), recording.getTestMethodName(), recording.getRuntimeTestName());
             FullTestCaseInfo result = instanceCache.get(tci.getKey());
@@ -92,7 +93,7 @@ public class FullTestCaseInfo implements TestCaseInfo, TaggedPersistent {
             return result;
         }
 
-        public static Set<FullTestCaseInfo> getCacheValues() {
+        public static synchronized Set<FullTestCaseInfo> getCacheValues() {
             return newHashSet(instanceCache.values());
         }
     }
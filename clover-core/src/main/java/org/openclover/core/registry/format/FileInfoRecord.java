@@ -58,7 +58,10 @@ public class FileInfoRecord {
         return fileInfo.get();
     }
 
-    public void write(FileChannel channel) throws IOException {
+    /**
+     * @return position of the serialized file info in the channel
+     */
+    public long write(FileChannel channel) throws IOException {
         final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
         out.writeInt(MARKER);
         out.writeUTF(getName());
@@ -79,5 +82,6 @@ public class FileInfoRecord {
 
         //Make sure we end... at the end!
         channel.position(endPos);
+        return lengthPos + 4;
     }
 }
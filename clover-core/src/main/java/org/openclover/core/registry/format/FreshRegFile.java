@@ -86,6 +86,7 @@ public class FreshRegFile extends RegFile<UpdatableRegFile> {
             }
 
             //Store each instrumentation session taking note of the maximum slotlength
+            final RegIndex.Builder index = new RegIndex.Builder();
             int maxSlotLength = 0;
             for (RegistryUpdate delta : deltas) {
                 maxSlotLength = Math.max(maxSlotLength, delta.getSlotCount());
@@ -97,12 +98,14 @@ public class FreshRegFile extends RegFile<UpdatableRegFile> {
                                 delta.getEndTs(),
                                 toRecords(delta.getFileInfos()),
                                 delta.getContextStore());
-                session.write(channel);
+                session.write(channel, index);
                 sessions.add(session);
             }
+            final long lastSessionLoc = channel.position() - 1L;
+            index.build().write(channel, finalVersion, lastSessionLoc);
 
             //Now rewrite the header with correct indexes into the coverage area and the file info area
-            header = new RegHeader(accessMode, finalVersion, maxSlotLength, covLoc, channel.position() - 1L, getName());
+            header = new RegHeader(accessMode, finalVersion, maxSlotLength, covLoc, lastSessionLoc, getName());
             channel.position(0);
             header.write(channel);
         }
@@ -37,7 +37,7 @@ import static org.openclover.core.util.Lists.newLinkedList;
 
 public class InstrSessionSegment {
     static final long NONE_IDX = -1L;
-    static final Tags TAGS =
+    public static final Tags TAGS =
         new Tags()
                 .registerTag(FullFileInfo.class.getName(), Tags.NEXT_TAG + 0, (ObjectReader<FullFileInfo>) FullFileInfo::read)
                 .registerTag(FullClassInfo.class.getName(), Tags.NEXT_TAG + 1, (ObjectReader<FullClassInfo>) FullClassInfo::read)
@@ -185,13 +185,30 @@ public class InstrSessionSegment {
     }
 
     public void write(FileChannel channel) throws IOException {
+        write(channel, null);
+    }
+
+    /**
+     * Writes the segment, recording the session and positions of its files in the index, if any
+     */
+    public void write(FileChannel channel, RegIndex.Builder index) throws IOException {
         final long startPos = channel.position();
 
+        final long[] positions = new long[fileInfoRecords.size()];
+        int i = 0;
         for (FileInfoRecord fileInfo : fileInfoRecords) {
-            fileInfo.write(channel);
+            positions[i++] = fileInfo.write(channel);
         }
         final long afterFileInfosPos = channel.position();
 
+        if (index != null) {
+            index.startSession(version, startTs, endTs, afterFileInfosPos);
+            i = 0;
+            for (FileInfoRecord fileInfo : fileInfoRecords) {
+                index.addFile(fileInfo, positions[i++]);
+            }
+        }
+
         TaggedIO.write(channel, TAGS, ContextStore.class, ctxStore.get());
         final long afterCtxStorePos = channel.position();
 
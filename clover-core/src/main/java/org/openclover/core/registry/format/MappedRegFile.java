@@ -0,0 +1,142 @@
+package org.openclover.core.registry.format;
+
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.context.ContextStore;
+import org.openclover.core.io.tags.TaggedIO;
+import org.openclover.core.registry.entities.FullFileInfo;
+import org.openclover.runtime.registry.format.RegHeader;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to a registry file through its {@link RegIndex}. The file is memory-mapped, only the index is
+ * read upfront, and files, the context store and coverage are deserialized lazily, when asked for.
+ * <p/>
+ * A registry without a valid index (e.g. written by an older version) or too large to be mapped has
+ * <code>null</code> {@link #getIndex()}, and must be read with {@link UpdatableRegFile#readContents}.
+ * Lazy proxies must not be used after the file is closed.
+ */
+public class MappedRegFile implements Closeable {
+    private final RandomAccessFile file;
+    private final RegHeader header;
+    private final ByteBuffer contents;
+    private final RegIndex index;
+
+    /**
+     * @param header header of the registry, as read by the caller
+     */
+    public static MappedRegFile open(File registryFile, RegHeader header) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(registryFile, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                return new MappedRegFile(file, header, null, null);
+            }
+            final ByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedRegFile(file, header, contents, RegIndex.readFrom(contents, header));
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private MappedRegFile(RandomAccessFile file, RegHeader header, ByteBuffer contents, RegIndex index) {
+        this.file = file;
+        this.header = header;
+        this.contents = contents;
+        this.index = index;
+    }
+
+    public RegHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return index of the file or <code>null</code> if there's none
+     */
+    @Nullable
+    public RegIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return file info of the latest record of a file
+     */
+    public LazyProxy<FileInfo> getFileInfo(RegIndex.Entry entry) {
+        return new MappedLoader<FileInfo>(entry.getPosition()) {
+            @Override
+            protected FileInfo getImpl(DataInputStream in) throws IOException {
+                return TaggedIO.read(in, InstrSessionSegment.TAGS, FullFileInfo.class);
+            }
+        };
+    }
+
+    /**
+     * @return context store of the latest session or <code>null</code> if there were no sessions
+     */
+    public LazyProxy<ContextStore> getContextStore() {
+        if (index.getCtxStorePosition() < 0) {
+            return new LazyProxy.Preloaded<>(null);
+        }
+        return new MappedLoader<ContextStore>(index.getCtxStorePosition()) {
+            @Override
+            protected ContextStore getImpl(DataInputStream in) throws IOException {
+                return TaggedIO.read(in, InstrSessionSegment.TAGS, ContextStore.class);
+            }
+        };
+    }
+
+    /**
+     * @return coverage stored in the registry or <code>null</code> if there's none
+     */
+    public CoverageSegment getCoverage() {
+        if (header.getCoverageLocation() == CoverageSegment.NONE_IDX) {
+            return null;
+        }
+        return new LazyLoader<CoverageSegment>(file.getChannel(), header.getCoverageLocation()) {
+            @Override
+            protected CoverageSegment getImpl(FileChannel channel) throws IOException {
+                return new CoverageSegment(channel);
+            }
+        }.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /** A future T read from the mapped file */
+    private abstract class MappedLoader<T> implements LazyProxy<T> {
+        private final long position;
+        private T result;
+
+        MappedLoader(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public T get() throws RegistryLoadException {
+            try {
+                if (result == null) {
+                    final ByteBuffer buffer = contents.duplicate();
+                    ((Buffer) buffer).position((int) position);
+                    result = getImpl(new DataInputStream(new RegIndex.ByteBufferInputStream(buffer)));
+                }
+                return result;
+            } catch (Exception e) {
+                throw new RegistryLoadException(e);
+            }
+        }
+
+        protected abstract T getImpl(DataInputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,382 @@
+package org.openclover.core.registry.format;
+
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.registry.format.BufferUtils;
+import org.openclover.runtime.registry.format.RegHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.openclover.core.util.Lists.newArrayList;
+import static org.openclover.core.util.Lists.newLinkedList;
+
+/**
+ * An index of the latest record of every file in a registry, written after the last instrumentation session.
+ * It holds the package, name, data index and length of each file along with the position of its serialized
+ * {@link org.openclover.core.registry.entities.FullFileInfo}, as well as the history of instrumentation sessions
+ * and the position of the latest context store - everything needed to build a model without walking all
+ * session segments and deserializing all files.
+ * <p/>
+ * The index ends with a footer holding the registry version and the location of the last session, so an index
+ * left over from a previous state of the file (e.g. partially overwritten by an appended session) is recognized as
+ * stale and ignored. Readers unaware of the index never look past the last session.
+ */
+public class RegIndex {
+    private static final int MARKER = 0x1dec5;
+    private static final int FORMAT_VERSION = 1;
+
+    private static class Footer {
+        public static final int SIZE = 28;
+
+        public final long version;
+        public final long lastSessionLocation;
+        public final int indexByteLen;
+
+        private Footer(long version, long lastSessionLocation, int indexByteLen) {
+            this.version = version;
+            this.lastSessionLocation = lastSessionLocation;
+            this.indexByteLen = indexByteLen;
+        }
+    }
+
+    /** An instrumentation session: its version and time span */
+    public static class Session {
+        private final long version;
+        private final long startTs;
+        private final long endTs;
+
+        Session(long version, long startTs, long endTs) {
+            this.version = version;
+            this.startTs = startTs;
+            this.endTs = endTs;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getStartTs() {
+            return startTs;
+        }
+
+        public long getEndTs() {
+            return endTs;
+        }
+    }
+
+    /** The latest record of a file */
+    public static class Entry {
+        private final String packageName;
+        private final String name;
+        private final int dataIndex;
+        private final int dataLength;
+        private final long position;
+        private final long sessionVersion;
+        private final long[] olderVersions;
+
+        Entry(String packageName, String name, int dataIndex, int dataLength, long position, long sessionVersion,
+              long[] olderVersions) {
+            this.packageName = packageName;
+            this.name = name;
+            this.dataIndex = dataIndex;
+            this.dataLength = dataLength;
+            this.position = position;
+            this.sessionVersion = sessionVersion;
+            this.olderVersions = olderVersions;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDataIndex() {
+            return dataIndex;
+        }
+
+        public int getDataLength() {
+            return dataLength;
+        }
+
+        /**
+         * @return position of the serialized file info in the registry file
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return version of the session the record was written in
+         */
+        public long getSessionVersion() {
+            return sessionVersion;
+        }
+
+        /**
+         * @return versions of older sessions in which the file was instrumented too
+         */
+        public long[] getOlderVersions() {
+            return olderVersions.clone();
+        }
+
+        String getKey() {
+            return name + "@" + packageName;
+        }
+    }
+
+    /**
+     * Collects the index while sessions are written, oldest first
+     */
+    public static class Builder {
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+        private final List<Session> sessions = newLinkedList();
+        private long ctxStorePosition = -1L;
+        private long sessionVersion;
+
+        public Builder() {
+        }
+
+        /**
+         * Starts with contents of an index of the registry being appended to
+         */
+        public Builder(RegIndex index) {
+            for (Entry entry : index.getEntries()) {
+                entries.put(entry.getKey(), entry);
+            }
+            sessions.addAll(index.getSessions());
+            ctxStorePosition = index.getCtxStorePosition();
+        }
+
+        void startSession(long version, long startTs, long endTs, long ctxStorePosition) {
+            this.sessionVersion = version;
+            this.ctxStorePosition = ctxStorePosition;
+            sessions.add(0, new Session(version, startTs, endTs));
+        }
+
+        void addFile(FileInfoRecord record, long position) {
+            final FileInfo fileInfo = record.getFileInfo();
+            final String packageName = record.getPackageName();
+            final String name = record.getName();
+            final Entry previous = entries.remove(name + "@" + packageName);
+
+            final long[] olderVersions;
+            if (previous == null) {
+                olderVersions = new long[0];
+            } else {
+                olderVersions = new long[previous.olderVersions.length + 1];
+                System.arraycopy(previous.olderVersions, 0, olderVersions, 0, previous.olderVersions.length);
+                olderVersions[previous.olderVersions.length] = previous.sessionVersion;
+            }
+
+            final Entry entry = new Entry(packageName, name, fileInfo.getDataIndex(), fileInfo.getDataLength(),
+                    position, sessionVersion, olderVersions);
+            entries.put(entry.getKey(), entry);
+        }
+
+        public RegIndex build() {
+            return new RegIndex(newArrayList(sessions), ctxStorePosition, newArrayList(entries.values()));
+        }
+    }
+
+    private final List<Session> sessions;
+    private final long ctxStorePosition;
+    private final List<Entry> entries;
+
+    RegIndex(List<Session> sessions, long ctxStorePosition, List<Entry> entries) {
+        this.sessions = Collections.unmodifiableList(sessions);
+        this.ctxStorePosition = ctxStorePosition;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return sessions, newest first
+     */
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return position of the context store of the newest session
+     */
+    public long getCtxStorePosition() {
+        return ctxStorePosition;
+    }
+
+    /**
+     * @return latest records of all files
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the index at the current position of the channel, right after the last session
+     *
+     * @param version registry version the index is valid for
+     * @param lastSessionLocation location of the last byte of the last session
+     */
+    public void write(FileChannel channel, long version, long lastSessionLocation) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(sessions.size());
+        for (Session session : sessions) {
+            out.writeLong(session.version);
+            out.writeLong(session.startTs);
+            out.writeLong(session.endTs);
+        }
+        out.writeLong(ctxStorePosition);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.packageName);
+            out.writeUTF(entry.name);
+            out.writeInt(entry.dataIndex);
+            out.writeInt(entry.dataLength);
+            out.writeLong(entry.position);
+            out.writeLong(entry.sessionVersion);
+            out.writeInt(entry.olderVersions.length);
+            for (long olderVersion : entry.olderVersions) {
+                out.writeLong(olderVersion);
+            }
+        }
+        out.flush();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.size() + Footer.SIZE);
+        buffer.put(bytes.toByteArray());
+        buffer.putLong(version);                //8 +
+        buffer.putLong(lastSessionLocation);    //8 +
+        buffer.putInt(bytes.size());            //4 +
+        buffer.putInt(FORMAT_VERSION);          //4 +
+        buffer.putInt(MARKER);                  //4 = 28
+        ((Buffer) buffer).flip();               // cast: see BufferUtils.readFully
+        BufferUtils.writeFully(channel, buffer);
+    }
+
+    /**
+     * Reads the index of the registry file
+     *
+     * @param file whole registry file, e.g. memory-mapped
+     * @param header header of the registry
+     * @return index or <code>null</code> if the file has no index valid for the header
+     */
+    @Nullable
+    public static RegIndex readFrom(ByteBuffer file, RegHeader header) throws IOException {
+        final Footer footer = readFooter(file.duplicate(), file.limit() - Footer.SIZE, file.limit() - Footer.SIZE, header);
+        if (footer == null) {
+            return null;
+        }
+        final ByteBuffer body = file.duplicate();
+        ((Buffer) body).position(file.limit() - Footer.SIZE - footer.indexByteLen);
+        ((Buffer) body).limit(file.limit() - Footer.SIZE);
+        return readBody(body);
+    }
+
+    /**
+     * Reads the index of the registry file
+     *
+     * @return index or <code>null</code> if the file has no index valid for the header
+     */
+    @Nullable
+    public static RegIndex readFrom(FileChannel channel, RegHeader header) throws IOException {
+        final long size = channel.size();
+        if (size < RegHeader.SIZE + Footer.SIZE) {
+            return null;
+        }
+        channel.position(size - Footer.SIZE);
+        final ByteBuffer footerBuffer = BufferUtils.readFully(channel, ByteBuffer.allocate(Footer.SIZE));
+        final Footer footer = readFooter(footerBuffer, 0, size - Footer.SIZE, header);
+        if (footer == null) {
+            return null;
+        }
+        channel.position(size - Footer.SIZE - footer.indexByteLen);
+        return readBody(BufferUtils.readFully(channel, ByteBuffer.allocate(footer.indexByteLen)));
+    }
+
+    /**
+     * @param offset position of the footer in the buffer
+     * @param footerPosition position of the footer in the registry file
+     */
+    private static Footer readFooter(ByteBuffer buffer, int offset, long footerPosition, RegHeader header) {
+        if (footerPosition < RegHeader.SIZE) {
+            return null;
+        }
+        ((Buffer) buffer).position(offset);
+        final Footer footer = new Footer(buffer.getLong(), buffer.getLong(), buffer.getInt());
+        final int formatVersion = buffer.getInt();
+        if (buffer.getInt() != MARKER || formatVersion != FORMAT_VERSION
+                || footer.version != header.getVersion()
+                || footer.lastSessionLocation != header.getLastSessionLocation()
+                || footer.indexByteLen < 0
+                || footerPosition - footer.indexByteLen != header.getLastSessionLocation() + 1) {
+            Logger.getInstance().debug("No valid registry index found");
+            return null;
+        }
+        return footer;
+    }
+
+    private static RegIndex readBody(ByteBuffer body) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteBufferInputStream(body));
+        final int numSessions = in.readInt();
+        final List<Session> sessions = newArrayList();
+        for (int i = 0; i < numSessions; i++) {
+            sessions.add(new Session(in.readLong(), in.readLong(), in.readLong()));
+        }
+        final long ctxStorePosition = in.readLong();
+        final int numEntries = in.readInt();
+        final List<Entry> entries = newArrayList();
+        for (int i = 0; i < numEntries; i++) {
+            final String packageName = in.readUTF();
+            final String name = in.readUTF();
+            final int dataIndex = in.readInt();
+            final int dataLength = in.readInt();
+            final long position = in.readLong();
+            final long sessionVersion = in.readLong();
+            final long[] olderVersions = new long[in.readInt()];
+            for (int j = 0; j < olderVersions.length; j++) {
+                olderVersions[j] = in.readLong();
+            }
+            entries.add(new Entry(packageName, name, dataIndex, dataLength, position, sessionVersion, olderVersions));
+        }
+        return new RegIndex(sessions, ctxStorePosition, entries);
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer
+     */
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
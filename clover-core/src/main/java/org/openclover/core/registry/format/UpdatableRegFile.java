@@ -78,6 +78,10 @@ public class UpdatableRegFile extends RegFile<UpdatableRegFile> {
                         "The on-disk registry version (" + currentHeader.getVersion() + ") differs from the in-memory version (" + header.getVersion() + ")");
             }
 
+            //The index is kept up to date only if the registry already has one, see RegIndex
+            final RegIndex previousIndex = RegIndex.readFrom(channel, currentHeader);
+            final RegIndex.Builder index = previousIndex == null ? null : new RegIndex.Builder(previousIndex);
+
             int maxSlotLength = header.getSlotCount();
             long latestVersion = System.currentTimeMillis();
 
@@ -95,9 +99,15 @@ public class UpdatableRegFile extends RegFile<UpdatableRegFile> {
                                 toRecords(delta.getFileInfos()),
                                 delta.getContextStore());
 
-                session.write(channel);
+                session.write(channel, index);
                 sessions.add(session);
             }
+            final long lastSessionLoc = channel.position() - 1L;
+            if (index != null) {
+                index.build().write(channel, latestVersion, lastSessionLoc);
+            }
+            //Drop whatever followed the previous last session
+            channel.truncate(channel.position());
 
             //Update the header with new values
             final RegHeader header =
@@ -106,7 +116,7 @@ public class UpdatableRegFile extends RegFile<UpdatableRegFile> {
                             latestVersion,
                             maxSlotLength,
                             this.header.getCoverageLocation(),
-                            channel.position() - 1L,
+                            lastSessionLoc,
                             getName());
 
             channel.position(0);
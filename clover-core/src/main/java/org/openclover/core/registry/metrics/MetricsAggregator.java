@@ -0,0 +1,323 @@
+package org.openclover.core.registry.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.CoverageData;
+import org.openclover.core.api.registry.BranchInfo;
+import org.openclover.core.api.registry.ClassInfo;
+import org.openclover.core.api.registry.ContextSet;
+import org.openclover.core.api.registry.CoverageDataProvider;
+import org.openclover.core.api.registry.CoverageDataReceptor;
+import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.HasMetrics;
+import org.openclover.core.api.registry.MethodInfo;
+import org.openclover.core.api.registry.PackageInfo;
+import org.openclover.core.api.registry.ProjectInfo;
+import org.openclover.core.api.registry.StatementInfo;
+import org.openclover.core.api.registry.TestCaseInfo;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calculates metrics of a whole project in one bottom-up pass, as an alternative to the lazy, per-node
+ * <code>getMetrics()</code> of model entities, which is recalculated for a subtree whenever a context filter
+ * changes. Hit counts of every file are read once into a contiguous array covering the file's data range, and
+ * metrics of each node are calculated exactly once, from metrics of its children.
+ * <p/>
+ * Results are the same as those of {@link HasMetrics#getMetrics()} for the project's context filter set to the
+ * given one; with a <code>null</code> filter they match {@link HasMetrics#getRawMetrics()}, except that nodes
+ * nested in methods are unfiltered as well. The model isn't modified.
+ * <p/>
+ * Packages are independent of each other, so they can be processed in parallel, in which case the project totals
+ * are reduced from package metrics in the order of packages.
+ */
+public class MetricsAggregator {
+    private final ContextSet filter;
+
+    /*private*/ MetricsAggregator(@Nullable ContextSet filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Calculates metrics of the project in the current thread
+     *
+     * @param filter context filter to apply or <code>null</code> for raw metrics
+     */
+    public static MetricsTable aggregate(@NotNull ProjectInfo project, @Nullable ContextSet filter) {
+        final MetricsAggregator aggregator = new MetricsAggregator(filter);
+        final List<PackageInfo> packages = project.getAllPackages();
+        final IdentityHashMap<HasMetrics, BlockMetrics> table = new IdentityHashMap<>();
+        for (PackageInfo packageInfo : packages) {
+            aggregator.calcPackageMetrics(packageInfo, table);
+        }
+        return aggregator.toTable(project, packages, table);
+    }
+
+    /**
+     * Calculates metrics of the project, processing packages in parallel on the pool
+     *
+     * @param filter context filter to apply or <code>null</code> for raw metrics
+     */
+    public static MetricsTable aggregate(@NotNull ProjectInfo project, @Nullable ContextSet filter,
+                                         @NotNull ForkJoinPool pool) {
+        final MetricsAggregator aggregator = new MetricsAggregator(filter);
+        final List<PackageInfo> packages = project.getAllPackages();
+        final IdentityHashMap<HasMetrics, BlockMetrics> table =
+                pool.invoke(aggregator.new PackagesTask(packages, 0, packages.size()));
+        return aggregator.toTable(project, packages, table);
+    }
+
+    private MetricsTable toTable(ProjectInfo project, List<PackageInfo> packages,
+                                 IdentityHashMap<HasMetrics, BlockMetrics> table) {
+        final ProjectMetrics projectMetrics = new ProjectMetrics(project);
+        for (PackageInfo packageInfo : packages) {
+            projectMetrics.add((PackageMetrics) table.get(packageInfo));
+        }
+        projectMetrics.setNumPackages(packages.size());
+        table.put(project, projectMetrics);
+        return new MetricsTable(filter, table, projectMetrics);
+    }
+
+    /**
+     * Calculates metrics of a range of packages, splitting it in halves until a single package is left
+     */
+    private class PackagesTask extends RecursiveTask<IdentityHashMap<HasMetrics, BlockMetrics>> {
+        private final List<PackageInfo> packages;
+        private final int from;
+        private final int to;
+
+        PackagesTask(List<PackageInfo> packages, int from, int to) {
+            this.packages = packages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IdentityHashMap<HasMetrics, BlockMetrics> compute() {
+            if (to - from <= 1) {
+                final IdentityHashMap<HasMetrics, BlockMetrics> table = new IdentityHashMap<>();
+                if (from < to) {
+                    calcPackageMetrics(packages.get(from), table);
+                }
+                return table;
+            }
+            final int middle = (from + to) >>> 1;
+            final PackagesTask right = new PackagesTask(packages, middle, to);
+            right.fork();
+            final IdentityHashMap<HasMetrics, BlockMetrics> table = new PackagesTask(packages, from, middle).compute();
+            table.putAll(right.join());
+            return table;
+        }
+    }
+
+    private void calcPackageMetrics(PackageInfo packageInfo, IdentityHashMap<HasMetrics, BlockMetrics> table) {
+        final PackageMetrics packageMetrics = new PackageMetrics(packageInfo);
+        final List<FileInfo> files = packageInfo.getFiles();
+        for (FileInfo fileInfo : files) {
+            packageMetrics.add(calcFileMetrics(fileInfo, table));
+        }
+        packageMetrics.setNumFiles(files.size());
+        table.put(packageInfo, packageMetrics);
+    }
+
+    private FileMetrics calcFileMetrics(FileInfo fileInfo, IdentityHashMap<HasMetrics, BlockMetrics> table) {
+        final FileHits hits = new FileHits(fileInfo);
+        final FileMetrics fileMetrics = new FileMetrics(fileInfo);
+        fileMetrics.setLineCount(fileInfo.getLineCount());
+        fileMetrics.setNcLineCount(fileInfo.getNcLineCount());
+
+        int numClasses = 0;
+        for (ClassInfo classInfo : fileInfo.getClasses()) {
+            fileMetrics.add(calcClassMetrics(classInfo, hits, table));
+            numClasses += 1 + classInfo.getClasses().size(); // top-level class and its inner classes
+        }
+        fileMetrics.setNumClasses(numClasses);
+
+        // top-level methods (functions)
+        int numMethods = 0;
+        int covered = 0;
+        int numTestMethods = 0;
+        for (MethodInfo methodInfo : fileInfo.getMethods()) {
+            if (methodInfo.isFiltered(filter)) {
+                continue;
+            }
+            fileMetrics.add(calcMethodMetrics(methodInfo, hits, table));
+            if (hits.get(methodInfo.getDataIndex()) > 0) {
+                covered++;
+            }
+            if (methodInfo.isTest()) {
+                numTestMethods++;
+            }
+            numMethods++;
+        }
+        fileMetrics.addNumMethods(numMethods);
+        fileMetrics.addNumCoveredMethods(covered);
+        fileMetrics.addNumTestMethods(numTestMethods);
+
+        addStatements(fileMetrics, fileInfo.getStatements(), hits);
+        table.put(fileInfo, fileMetrics);
+        return fileMetrics;
+    }
+
+    private ClassMetrics calcClassMetrics(ClassInfo classInfo, FileHits hits,
+                                          IdentityHashMap<HasMetrics, BlockMetrics> table) {
+        final ClassMetrics classMetrics = new ClassMetrics(classInfo);
+
+        int numMethods = 0;
+        int covered = 0;
+        int numTestMethods = 0;
+        for (MethodInfo methodInfo : classInfo.getMethods()) {
+            if (methodInfo.isFiltered(filter)) {
+                continue;
+            }
+            classMetrics.add(calcMethodMetrics(methodInfo, hits, table));
+
+            // count covered methods - the current one and inner ones
+            final List<MethodInfo> innerMethods = methodInfo.getAllMethods();
+            for (MethodInfo innerMethod : innerMethods) {
+                if (hits.get(innerMethod.getDataIndex()) > 0) {
+                    covered++;
+                }
+            }
+            if (hits.get(methodInfo.getDataIndex()) > 0) {
+                covered++;
+            }
+            if (methodInfo.isTest()) {
+                numTestMethods++;
+            }
+            numMethods += 1 + innerMethods.size();
+        }
+        classMetrics.addNumMethods(numMethods);
+        classMetrics.addNumCoveredMethods(covered);
+        classMetrics.addNumTestMethods(numTestMethods);
+
+        for (ClassInfo innerClass : classInfo.getClasses()) {
+            classMetrics.add(calcClassMetrics(innerClass, hits, table));
+        }
+        addStatements(classMetrics, classInfo.getStatements(), hits);
+        addTestCases(classMetrics, classInfo);
+
+        table.put(classInfo, classMetrics);
+        return classMetrics;
+    }
+
+    private BlockMetrics calcMethodMetrics(MethodInfo methodInfo, FileHits hits,
+                                           IdentityHashMap<HasMetrics, BlockMetrics> table) {
+        final BlockMetrics methodMetrics = new BlockMetrics(methodInfo);
+        for (ClassInfo innerClass : methodInfo.getClasses()) {
+            methodMetrics.add(calcClassMetrics(innerClass, hits, table));
+        }
+        for (MethodInfo innerMethod : methodInfo.getMethods()) {
+            methodMetrics.add(calcMethodMetrics(innerMethod, hits, table));
+        }
+        addStatements(methodMetrics, methodInfo.getStatements(), hits);
+        addBranches(methodMetrics, methodInfo.getBranches(), hits);
+        methodMetrics.addComplexity(1); // empty methods have a complexity of 1
+
+        table.put(methodInfo, methodMetrics);
+        return methodMetrics;
+    }
+
+    private void addStatements(BlockMetrics metrics, List<StatementInfo> statements, FileHits hits) {
+        int covered = 0;
+        int numStatements = 0;
+        int complexity = 0;
+        for (StatementInfo statementInfo : statements) {
+            if (statementInfo.isFiltered(filter)) {
+                continue;
+            }
+            if (hits.get(statementInfo.getDataIndex()) > 0) {
+                covered++;
+            }
+            complexity += statementInfo.getComplexity();
+            numStatements++;
+        }
+        metrics.addNumCoveredStatements(covered);
+        metrics.addNumStatements(numStatements);
+        metrics.addComplexity(complexity);
+    }
+
+    private void addBranches(BlockMetrics metrics, List<BranchInfo> branches, FileHits hits) {
+        int covered = 0;
+        int numBranches = 0;
+        int complexity = 0;
+        for (BranchInfo branchInfo : branches) {
+            if (branchInfo.isFiltered(filter)) {
+                continue;
+            }
+            if (hits.get(branchInfo.getDataIndex()) > 0) {
+                covered++;
+            }
+            if (hits.get(branchInfo.getDataIndex() + 1) > 0) {
+                covered++;
+            }
+            complexity += branchInfo.getComplexity();
+            numBranches += 2;
+        }
+        metrics.addNumCoveredBranches(covered);
+        metrics.addNumBranches(numBranches);
+        metrics.addComplexity(complexity);
+    }
+
+    private static void addTestCases(ClassMetrics classMetrics, ClassInfo classInfo) {
+        int numTests = 0;
+        int numPasses = 0;
+        int numFailures = 0;
+        int numErrors = 0;
+        double executionTime = 0.0;
+        for (TestCaseInfo test : classInfo.getTestCases()) {
+            if (test.isHasResult()) {
+                numTests++;
+                if (test.isSuccess()) {
+                    numPasses++;
+                } else if (test.isError()) {
+                    numErrors++;
+                } else {
+                    numFailures++;
+                }
+                executionTime += test.getDuration();
+            }
+        }
+        classMetrics.setNumTests(numTests);
+        classMetrics.setNumTestPasses(numPasses);
+        classMetrics.setNumTestFailures(numFailures);
+        classMetrics.setNumTestErrors(numErrors);
+        classMetrics.setTestExecutionTime(executionTime);
+    }
+
+    /**
+     * Hit counts of a data range of one file, copied from its coverage data provider
+     */
+    static final class FileHits {
+        private final int dataIndex;
+        private final int[] hits;
+        private final CoverageDataProvider data;
+
+        FileHits(FileInfo fileInfo) {
+            this.dataIndex = fileInfo.getDataIndex();
+            this.data = fileInfo instanceof CoverageDataReceptor
+                    ? ((CoverageDataReceptor) fileInfo).getDataProvider() : null;
+            this.hits = new int[data == null ? 0 : fileInfo.getDataLength()];
+            if (data instanceof CoverageData) {
+                final int[] all = ((CoverageData) data).getHitCounts();
+                System.arraycopy(all, dataIndex, hits, 0, Math.max(0, Math.min(hits.length, all.length - dataIndex)));
+            } else if (data != null) {
+                for (int i = 0; i < hits.length; i++) {
+                    hits[i] = data.getHitCount(dataIndex + i);
+                }
+            }
+        }
+
+        int get(int index) {
+            final int offset = index - dataIndex;
+            if (offset >= 0 && offset < hits.length) {
+                return hits[offset];
+            }
+            // outside of the file's range, e.g. in a file without a data length
+            return data == null ? 0 : data.getHitCount(index);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.openclover.core.registry.metrics;
+
+import org.jetbrains.annotations.Nullable;
+import org.openclover.core.api.registry.ContextSet;
+import org.openclover.core.api.registry.HasMetrics;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of every node of a project - methods, classes, files, packages and the project itself - calculated for
+ * one context filter by {@link MetricsAggregator}. Nodes are looked up by identity. The table is a snapshot: it
+ * doesn't change when the model, its coverage data or its context filter change. Metrics returned must not be
+ * modified.
+ */
+public final class MetricsTable {
+    private final ContextSet filter;
+    private final Map<HasMetrics, BlockMetrics> metrics;
+    private final ProjectMetrics projectMetrics;
+
+    MetricsTable(@Nullable ContextSet filter, IdentityHashMap<HasMetrics, BlockMetrics> metrics,
+                 ProjectMetrics projectMetrics) {
+        this.filter = filter;
+        this.metrics = Collections.unmodifiableMap(metrics);
+        this.projectMetrics = projectMetrics;
+    }
+
+    /**
+     * @return metrics of the node or <code>null</code> if the node is not a part of the project or is a method
+     * excluded by the filter
+     */
+    @Nullable
+    public BlockMetrics getMetrics(HasMetrics node) {
+        return metrics.get(node);
+    }
+
+    public ProjectMetrics getProjectMetrics() {
+        return projectMetrics;
+    }
+
+    /**
+     * @return context filter the metrics were calculated for, <code>null</code> for raw metrics
+     */
+    @Nullable
+    public ContextSet getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return number of nodes in the table
+     */
+    public int size() {
+        return metrics.size();
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "MetricsTable{" +
+                "filter=" + filter +
+                ", size=" + metrics.size() +
+                ", projectMetrics=" + projectMetrics +
+                '}';
+    }
+    ///CLOVER:ON
+}
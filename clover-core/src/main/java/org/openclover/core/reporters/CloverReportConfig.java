@@ -15,8 +15,10 @@ import org_openclover_runtime.Clover;
 
 import java.io.File;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
+import static org.openclover.core.util.Lists.newArrayList;
 import static org.openclover.core.util.Maps.newHashMap;
 
 public abstract class CloverReportConfig {
@@ -328,16 +330,46 @@ public abstract class CloverReportConfig {
             CoverageDataSpec spec = new CoverageDataSpec(effectiveTestFilter(), getSpan().getValueInMillis());
             spec.setFilterTraces(getFormat().isFilterTrace());
             spec.setLoadPerTestData(isLoadPerTestData());
-            spec.setPerTestStrategy(
-                    coverageCacheSize.equals(StorageSize.MAX)
-                            ? PerTestCoverageStrategy.IN_MEMORY
-                            : PerTestCoverageStrategy.SAMPLING);
+            spec.setPerTestStrategy(getPerTestCoverageStrategy());
             spec.setPerTestStorageSize(coverageCacheSize);
             database.loadCoverageData(spec);
         }
         return database;
     }
 
+    /**
+     * Returns a key identifying the coverage database this config loads. Configs with equal keys load equal
+     * databases in {@link #getCoverageDatabase()}, so a {@link ReportSession} loads it once for all of them.
+     * Filters are compared as they are, so configs sharing a database must share the filter instances.
+     *
+     * @return key of the database or <code>null</code> if this config doesn't load one
+     */
+    public List<Object> getCoverageDatabaseKey() {
+        if (getInitString() == null) {
+            return null;
+        }
+        return newArrayList(getClass(), getInitString(), includeFilter, projectName,
+                getFormat().getFilter(), getFormat().isFilterTrace(),
+                getSourcepath() != null ? getSourcepath().toString() : null,
+                testFilter, getSpan().getValueInMillis(), isLoadPerTestData(), coverageCacheSize);
+    }
+
+    private PerTestCoverageStrategy getPerTestCoverageStrategy() {
+        final PerTestCoverageStrategy defaultStrategy = coverageCacheSize.equals(StorageSize.MAX)
+                ? PerTestCoverageStrategy.IN_MEMORY
+                : PerTestCoverageStrategy.SAMPLING;
+        final String strategy = System.getProperty(CloverNames.PROP_MEMORY_STRATEGY_REPORT);
+        if (strategy == null) {
+            return defaultStrategy;
+        }
+        try {
+            return PerTestCoverageStrategy.valueOf(strategy);
+        } catch (IllegalArgumentException ex) {
+            Logger.getInstance().warn("Unknown per-test coverage strategy " + strategy + ", using " + defaultStrategy);
+            return defaultStrategy;
+        }
+    }
+
     protected HasMetricsFilter.Invertable effectiveTestFilter() {
         return testFilter;
     }
@@ -56,12 +56,25 @@ public abstract class CloverReporter {
         if (!config.validate()) {
             throw new CloverException(config.getValidationFailureReason());
         }
+        return buildReporter(config, config.getCoverageDatabase());
+    }
+
+    /**
+     * Builds a reporter for a database already loaded, which must be the one the config would load.
+     *
+     * @see ReportSession
+     */
+    public static CloverReporter buildReporter(final CloverReportConfig config, final CloverDatabase database)
+            throws CloverException {
+        if (!config.validate()) {
+            throw new CloverException(config.getValidationFailureReason());
+        }
 
         switch (config.getFormat().getType()) {
-            case PDF: return new PDFReporter(config);
-            case XML: return new XMLReporter(config);
-            case JSON: return new JSONReporter(config);
-            default: return new HtmlReporter(config);
+            case PDF: return new PDFReporter(database, config, new CloverReportConfig[] {});
+            case XML: return new XMLReporter(database, config);
+            case JSON: return new JSONReporter(database, config);
+            default: return new HtmlReporter(database, config);
         }
     }
 
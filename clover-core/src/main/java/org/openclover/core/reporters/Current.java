@@ -181,6 +181,17 @@ public class Current extends CloverReportConfig {
         return db;
     }
 
+    @Override
+    public List<Object> getCoverageDatabaseKey() {
+        final List<Object> key = super.getCoverageDatabaseKey();
+        if (key != null) {
+            key.add(newArrayList(testSourceFiles));
+            key.add(testResultFiles != null ? newArrayList(testResultFiles) : null);
+            key.add(isIncludeFailedTestCoverage());
+        }
+        return key;
+    }
+
     @Override
     protected HasMetricsFilter.Invertable effectiveTestFilter() {
         if (testSourceFiles.size() > 0) {
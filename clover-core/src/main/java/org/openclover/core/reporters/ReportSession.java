@@ -0,0 +1,310 @@
+package org.openclover.core.reporters;
+
+import org.openclover.core.CloverDatabase;
+import org.openclover.core.api.registry.ProjectInfo;
+import org.openclover.core.reporters.html.HtmlReporter;
+import org.openclover.core.reporters.json.JSONReporter;
+import org.openclover.core.reporters.pdf.PDFReporter;
+import org.openclover.core.reporters.xml.XMLReporter;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.api.CloverException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.openclover.core.util.Lists.newArrayList;
+import static org.openclover.core.util.Maps.newLinkedHashMap;
+
+/**
+ * Produces several reports, loading the coverage database once for all reports with the same
+ * {@link CloverReportConfig#getCoverageDatabaseKey() database key} instead of once per report. Reports of the same
+ * database may be rendered concurrently. Reporters share the models of the database, whose caches and metrics are
+ * otherwise built lazily by the first reporter to use them, so these are built before concurrent reporters start.
+ * <p/>
+ * Reports are produced in the order in which they were added, except that reports of the same database are
+ * produced together, after which the database is released.
+ */
+public class ReportSession {
+
+    private final int numThreads;
+    private final List<CloverReportConfig> configs = newArrayList();
+    private int numDatabaseLoads;
+
+    public ReportSession() {
+        this(1);
+    }
+
+    /**
+     * @param numThreads number of reports of the same database rendered concurrently, 1 renders them one by one
+     */
+    public ReportSession(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public ReportSession add(CloverReportConfig config) {
+        configs.add(config);
+        return this;
+    }
+
+    /**
+     * Produces all reports added. If a report fails, the remaining reports are still produced.
+     *
+     * @return 0 if all reports were produced, a result of a failed report otherwise
+     * @throws CloverException the first exception of a report or of loading the database
+     */
+    public int execute() throws CloverException {
+        for (CloverReportConfig config : configs) {
+            if (!config.validate()) {
+                throw new CloverException(config.getValidationFailureReason());
+            }
+        }
+
+        int result = 0;
+        CloverException failure = null;
+        for (List<CloverReportConfig> group : groupByDatabase()) {
+            final CloverDatabase database;
+            try {
+                database = loadDatabase(group);
+            } catch (CloverException e) {
+                failure = failure == null ? e : failure;
+                continue;
+            }
+            final List<Outcome> outcomes = executeReports(group, database);
+            if (database != null && outcomes.size() == group.size()) {
+                // no report is still reading the database
+                database.releaseCoverageData();
+            }
+            for (Outcome outcome : outcomes) {
+                if (outcome.exception != null) {
+                    failure = failure == null ? outcome.exception : failure;
+                } else if (result == 0) {
+                    result = outcome.result;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    /**
+     * @return how many times a coverage database was loaded by {@link #execute()}
+     */
+    public int getNumDatabaseLoads() {
+        return numDatabaseLoads;
+    }
+
+    private List<List<CloverReportConfig>> groupByDatabase() {
+        final Map<Object, List<CloverReportConfig>> groups = newLinkedHashMap();
+        for (CloverReportConfig config : configs) {
+            final List<Object> key = config.getCoverageDatabaseKey();
+            // a config without a database key gets a group of its own
+            groups.computeIfAbsent(key != null ? key : new Object(), k -> newArrayList()).add(config);
+        }
+        return newArrayList(groups.values());
+    }
+
+    private CloverDatabase loadDatabase(List<CloverReportConfig> group) throws CloverException {
+        final CloverReportConfig config = group.get(0);
+        if (config.getCoverageDatabaseKey() == null) {
+            return config.getCoverageDatabase();
+        }
+        final long start = System.currentTimeMillis();
+        final CloverDatabase database = config.getCoverageDatabase();
+        numDatabaseLoads++;
+        Logger.getInstance().debug("Loaded coverage database " + config.getInitString() + " in "
+                + (System.currentTimeMillis() - start) + "ms for " + group.size() + " report(s)");
+        return database;
+    }
+
+    private List<Outcome> executeReports(List<CloverReportConfig> group, CloverDatabase database) {
+        final List<Outcome> outcomes = newArrayList();
+        if (numThreads == 1 || group.size() == 1) {
+            for (CloverReportConfig config : group) {
+                outcomes.add(executeReport(config, database));
+            }
+            return outcomes;
+        }
+
+        if (database != null) {
+            buildCaches(database);
+        }
+        final ExecutorService service = Executors.newFixedThreadPool(Math.min(numThreads, group.size()), r -> {
+            final Thread thread = new Thread(r, "clover-report-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<Outcome>> futures = newArrayList();
+            for (CloverReportConfig config : group) {
+                futures.add(service.submit(() -> executeReport(config, database)));
+            }
+            for (Future<Outcome> future : futures) {
+                try {
+                    outcomes.add(future.get());
+                } catch (ExecutionException e) {
+                    outcomes.add(new Outcome(new CloverException(e.getCause())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    outcomes.add(new Outcome(new CloverException("Interrupted while rendering reports")));
+                    break;
+                }
+            }
+        } finally {
+            service.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Builds the caches and computes the metrics of all models of the database, so that reporters only read them
+     */
+    private static void buildCaches(CloverDatabase database) {
+        for (ProjectInfo model : Arrays.asList(
+                database.getFullModel(), database.getAppOnlyModel(), database.getTestOnlyModel())) {
+            if (model != null) {
+                model.buildCaches();
+                model.getMetrics();
+                model.getRawMetrics();
+            }
+        }
+    }
+
+    private static Outcome executeReport(CloverReportConfig config, CloverDatabase database) {
+        try {
+            return new Outcome(CloverReporter.buildReporter(config, database).execute());
+        } catch (CloverException e) {
+            Logger.getInstance().error("Failed to produce " + config.getFormat().getType() + " report "
+                    + config.getOutFile() + ": " + e.getMessage(), e);
+            return new Outcome(e);
+        }
+    }
+
+    private static final class Outcome {
+        final int result;
+        final CloverException exception;
+
+        Outcome(int result) {
+            this.result = result;
+            this.exception = null;
+        }
+
+        Outcome(CloverException exception) {
+            this.result = 1;
+            this.exception = exception;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(runReports(args));
+    }
+
+    /**
+     * Produces reports of several formats from one load of the coverage database. Arguments before the first
+     * format switch apply to all reports, the ones following a format switch to the report of that format only.
+     * See the command line of each reporter for the arguments.
+     *
+     * @return 0 if all reports were produced
+     */
+    public static int runReports(String[] args) {
+        final ReportSession session = processArgs(args);
+        if (session == null) {
+            return 1;
+        }
+        try {
+            return session.execute();
+        } catch (CloverException e) {
+            Logger.getInstance().error("A problem was encountered while rendering the reports: " + e.getMessage(), e);
+        }
+        return 1;
+    }
+
+    private static ReportSession processArgs(String[] args) {
+        int threads = 1;
+        final List<String> common = newArrayList();
+        final List<String> formats = newArrayList();
+        final List<List<String>> formatArgs = newArrayList();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--html":
+                    case "--xml":
+                    case "--json":
+                    case "--pdf":
+                        formats.add(args[i]);
+                        formatArgs.add(newArrayList());
+                        break;
+                    case "-rt":
+                    case "--reportthreads":
+                        i++;
+                        try {
+                            threads = Integer.parseInt(args[i]);
+                        } catch (NumberFormatException e) {
+                            threads = 0;
+                        }
+                        if (threads <= 0) {
+                            usage("Bad number of report threads '" + args[i] + "', expected a positive number");
+                            return null;
+                        }
+                        break;
+                    default:
+                        (formats.isEmpty() ? common : formatArgs.get(formatArgs.size() - 1)).add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("Missing a parameter.");
+            return null;
+        }
+        if (formats.isEmpty()) {
+            usage("Need to specify at least one report format.");
+            return null;
+        }
+
+        final ReportSession session = new ReportSession(threads);
+        for (int i = 0; i < formats.size(); i++) {
+            final List<String> reportArgs = newArrayList(common);
+            reportArgs.addAll(formatArgs.get(i));
+            final CloverReportConfig config = processFormatArgs(formats.get(i), reportArgs.toArray(new String[0]));
+            if (!CloverReporter.canProceedWithReporting(config)) {
+                return null;
+            }
+            session.add(config);
+        }
+        return session;
+    }
+
+    private static CloverReportConfig processFormatArgs(String format, String[] args) {
+        switch (format) {
+            case "--xml": return XMLReporter.processArgs(args);
+            case "--json": return JSONReporter.processArgs(args);
+            case "--pdf": return PDFReporter.processArgs(args);
+            default: return HtmlReporter.processArgs(args);
+        }
+    }
+
+    private static void usage(String msg) {
+        System.err.println();
+        if (msg != null) {
+            System.err.println("  *** ERROR: " + msg);
+        }
+        System.err.println();
+        System.err.println("  USAGE: " + ReportSession.class.getName() + " [OPTIONS] [ARGS] FORMAT [ARGS] [FORMAT [ARGS] ...]");
+        System.err.println();
+        System.err.println("  FORMAT:");
+        System.err.println("    --html, --xml, --json, --pdf\t Report to produce, followed by the arguments of its reporter,");
+        System.err.println("\t\t\t\t\t e.g. \"--html -o report\". Arguments before the first format, such");
+        System.err.println("\t\t\t\t\t as \"-i clover.db\", apply to all reports.");
+        System.err.println();
+        System.err.println("  OPTIONS:");
+        System.err.println("    -rt, --reportthreads <n>\t\t Number of reports rendered concurrently. Defaults to 1.");
+        System.err.println();
+        System.err.println("  See " + Arrays.asList(HtmlReporter.class.getName(), XMLReporter.class.getName(),
+                JSONReporter.class.getName(), PDFReporter.class.getName()) + " for the arguments of reports.");
+    }
+}
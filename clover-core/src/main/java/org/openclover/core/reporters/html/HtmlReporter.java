@@ -5,6 +5,7 @@ import org.jfree.chart.ChartRenderingInfo;
 import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jetbrains.annotations.NotNull;
+import org.openclover.core.CloverDatabase;
 import org.openclover.core.api.command.ArgProcessor;
 import org.openclover.core.api.command.HelpBuilder;
 import org.openclover.core.api.registry.ClassInfo;
@@ -174,7 +175,11 @@ public class HtmlReporter extends CloverReporter {
     private Comparator<HasMetrics> detailComparator;
 
     public HtmlReporter(CloverReportConfig config) throws CloverException {
-        super(config);
+        this(config.getCoverageDatabase(), config);
+    }
+
+    public HtmlReporter(CloverDatabase database, CloverReportConfig config) {
+        super(database, config);
         rederingHelper = new HtmlRenderingSupportImpl(this.reportConfig.getFormat(), true); // TODO: detect a model with a filter
         basePath = this.reportConfig.getOutFile();
         baseImagePath = new File(basePath, "img");
@@ -256,57 +261,50 @@ public class HtmlReporter extends CloverReporter {
             TreeInfo appCloudTree = new TreeInfo("", "AppCloud");
             TreeInfo testSrcTree = new TreeInfo("testsrc-", "Test");
 
-            try {
-                List<ClassInfo> targetClasses = getConfiguredModel().getClasses(HasMetricsFilter.ACCEPT_ALL);
-                List<ClassInfo> testClasses = getTestModel().getClasses(HasMetricsFilter.ACCEPT_ALL);
-                List<FileInfo> targetFiles = getFullModel().getFiles(new SourceFileFilter());
-
-                final Map<Integer, CloverChartFactory.ChartInfo> srcFileCharts =
-                        CloverChartFactory.generateSrcFileCharts(targetFiles, baseImagePath);
-
-                final CloverExecutor<Object> service = CloverExecutors.newCloverExecutor(
-                        reportAsCurrent().getNumThreads(), "OpenClover");
-                RenderFileAction.initThreadLocals();
-                RenderMetricsJSONAction.initThreadLocals();
-                for (PackageInfo pkg : allPackages) {
-
-                    Logger.getInstance().verbose("Processing package " + pkg.getName());
-                    long start = System.currentTimeMillis();
-                    processPackage(pkg, appSrcTree, appCloudTree, testSrcTree, service, srcFileCharts);
-                    long total = System.currentTimeMillis() - start;
-                    if (Logger.isDebug()) {
-                        Logger.getInstance().debug(
-                                "Processed package: " + pkg.getName() +
-                                        " (" + pkg.getClasses().size() + " classes, " +
-                                        pkg.getMetrics().getNumTests() + " tests)" +
-                                        " in " + total + "ms");
-                    }
+            List<ClassInfo> targetClasses = getConfiguredModel().getClasses(HasMetricsFilter.ACCEPT_ALL);
+            List<ClassInfo> testClasses = getTestModel().getClasses(HasMetricsFilter.ACCEPT_ALL);
+            List<FileInfo> targetFiles = getFullModel().getFiles(new SourceFileFilter());
+
+            final Map<Integer, CloverChartFactory.ChartInfo> srcFileCharts =
+                    CloverChartFactory.generateSrcFileCharts(targetFiles, baseImagePath);
+
+            final CloverExecutor<Object> service = CloverExecutors.newCloverExecutor(
+                    reportAsCurrent().getNumThreads(), "OpenClover");
+            for (PackageInfo pkg : allPackages) {
+
+                Logger.getInstance().verbose("Processing package " + pkg.getName());
+                long start = System.currentTimeMillis();
+                processPackage(pkg, appSrcTree, appCloudTree, testSrcTree, service, srcFileCharts);
+                long total = System.currentTimeMillis() - start;
+                if (Logger.isDebug()) {
+                    Logger.getInstance().debug(
+                            "Processed package: " + pkg.getName() +
+                                    " (" + pkg.getClasses().size() + " classes, " +
+                                    pkg.getMetrics().getNumTests() + " tests)" +
+                                    " in " + total + "ms");
                 }
+            }
 
-                renderPackageNodesTree(service);
-                renderDashboard(service,
-                        CloverChartFactory.generateHistogramChart(targetClasses, baseImagePath),
-                        CloverChartFactory.generateScatterChart(targetClasses, baseImagePath));
-                renderProjectCoverageCloudPage(appCloudTree, service);
-                renderProjectTreeMapPage(service);
-                renderBasePages();
-                renderTestResultsPkgsSummaryPage();
-                renderAggregatePkgPage(getConfiguredModel(), appSrcTree, true);
-                renderPackagesSummaryPage(getConfiguredModel(), appSrcTree, true);
-                renderAggregatePkgPage(getTestModel(), testSrcTree, false);
-                renderPackagesSummaryPage(getTestModel(), testSrcTree, false);
-
-                copyCommonResources(); // copy png, css, js etc
-
-                service.shutdown();
-                Interval timeOut = reportAsCurrent().getTimeOut();
-                if (!service.awaitTermination(timeOut.getValueInMillis(), TimeUnit.MILLISECONDS)) {
-                    throw new CloverException("Timeout of '" + timeOut + "' reached during report generation. " +
-                            "Please increase this value and try again.");
-                }
-            } finally {
-                RenderFileAction.resetThreadLocals();
-                RenderMetricsJSONAction.resetThreadLocals();
+            renderPackageNodesTree(service);
+            renderDashboard(service,
+                    CloverChartFactory.generateHistogramChart(targetClasses, baseImagePath),
+                    CloverChartFactory.generateScatterChart(targetClasses, baseImagePath));
+            renderProjectCoverageCloudPage(appCloudTree, service);
+            renderProjectTreeMapPage(service);
+            renderBasePages();
+            renderTestResultsPkgsSummaryPage();
+            renderAggregatePkgPage(getConfiguredModel(), appSrcTree, true);
+            renderPackagesSummaryPage(getConfiguredModel(), appSrcTree, true);
+            renderAggregatePkgPage(getTestModel(), testSrcTree, false);
+            renderPackagesSummaryPage(getTestModel(), testSrcTree, false);
+
+            copyCommonResources(); // copy png, css, js etc
+
+            service.shutdown();
+            Interval timeOut = reportAsCurrent().getTimeOut();
+            if (!service.awaitTermination(timeOut.getValueInMillis(), TimeUnit.MILLISECONDS)) {
+                throw new CloverException("Timeout of '" + timeOut + "' reached during report generation. " +
+                        "Please increase this value and try again.");
             }
 
             final long currentTotalTime = System.currentTimeMillis() - currentStartTime;
@@ -397,7 +395,7 @@ public class HtmlReporter extends CloverReporter {
         return ((Current) reportConfig);
     }
 
-    static Current processArgs(String[] args) {
+    public static Current processArgs(String[] args) {
         final Current cfg = new Current();
         cfg.setFormat(Format.DEFAULT_HTML);
         try {
@@ -44,8 +44,6 @@ import static org.openclover.core.util.Sets.newHashSet;
 /**
  */
 public class RenderFileAction implements Callable {
-    protected static ThreadLocal<List<Column>> columnsTL;
-    protected static ThreadLocal<ContextSet> contextSetTL;
 
     private final static Comparator TEST_METRICS_COMPARATOR = (object, object1) -> {
         BlockMetrics m = (BlockMetrics) ((Map.Entry) object).getValue();
@@ -61,6 +59,8 @@ public class RenderFileAction implements Callable {
     protected final ProjectInfo fullModel; // shared - call buildCaches first!
     protected final Map<Integer, CloverChartFactory.ChartInfo> charts;
     protected List<TestCaseInfo>[] testLineInfo;
+    protected List<Column> columns; // not shared - columns hold values of the rendered element
+    private ContextSet contextSet;
 
     public RenderFileAction(
         FileInfo fileInfo,
@@ -80,36 +80,13 @@ public class RenderFileAction implements Callable {
         this.charts = charts;
     }
 
-    /**
-     * Initialises all thread locals.
-     * This is to be called once before the {@link #call} method .
-     */
-    public static void initThreadLocals() {
-        columnsTL = new ThreadLocal<>();
-        contextSetTL = new ThreadLocal<>();
-    }
-
-    /**
-     * Resets all thread locals.
-     * This is to be called once all files have been rendered.
-     * NB: {@link ThreadLocal#remove} can't be used since it is since jdk 1.5 .
-     */
-    public static void resetThreadLocals() {
-        columnsTL = null;
-        contextSetTL = null;
-    }
-
     @Override
     public Object call() throws Exception {
-        //First action to be called per-thread sets up the TLS columns and contextset
-        if (columnsTL.get() == null) {
-            columnsTL.set(reportConfig.getColumns().getMethodColumnsCopy());
-        }
-        if (contextSetTL.get() == null) {
-            contextSetTL.set(database.getContextSet(reportConfig.getFormat().getFilter()));
-        }
+        // set up per action, not per thread, as reports rendered concurrently may share threads
+        columns = reportConfig.getColumns().getMethodColumnsCopy();
+        contextSet = database.getContextSet(reportConfig.getFormat().getFilter());
 
-        HtmlReportUtil.addColumnsToContext(velocity, columnsTL.get(), fileInfo, fileInfo.getClasses());
+        HtmlReportUtil.addColumnsToContext(velocity, columns, fileInfo, fileInfo.getClasses());
         render();
         return null;
     }
@@ -294,7 +271,7 @@ public class RenderFileAction implements Callable {
     }
 
     protected ContextSet getContextSet() {
-        return contextSetTL.get();
+        return contextSet;
     }
 
     static String createOutFileName(String basename) {
@@ -15,6 +15,7 @@ import org.openclover.core.util.CloverUtils;
 import org.openclover.runtime.util.Formatting;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -23,8 +24,20 @@ import java.util.Objects;
 import java.util.concurrent.Callable;
 
 public class RenderTestResultAction implements Callable<Object> {
-    private static final ThreadLocal<ProjectInfo> REUSABLE_MODEL = new ThreadLocal<>();
-    private static final ThreadLocal<ProjectInfo> CONFIGURABLE_MODEL = new ThreadLocal<>();
+    private static final ThreadLocal<ModelCopies> MODEL_COPIES = new ThreadLocal<>();
+
+    /** Copies of a read only model, reused by the actions run by a thread while they render tests of that model */
+    private static final class ModelCopies {
+        private final ProjectInfo source;
+        private final ProjectInfo reusable;
+        private final ProjectInfo configurable;
+
+        private ModelCopies(ProjectInfo source) {
+            this.source = source;
+            this.reusable = source.copy();
+            this.configurable = source.copy();
+        }
+    }
 
     private static final Comparator<HasMetrics> TARGET_CLASS_COMPARATOR = (hasMetrics1, hasMetrics2) ->
             Float.compare(hasMetrics2.getMetrics().getPcCoveredElements(), hasMetrics1.getMetrics().getPcCoveredElements());
@@ -58,23 +71,22 @@ public class RenderTestResultAction implements Callable<Object> {
 
     @Override
     public Object call() throws Exception {
-        //First action to be called per-thread sets up the TLS models
-        if (REUSABLE_MODEL.get() == null) {
-            REUSABLE_MODEL.set(readOnlyModel.copy());
-        }
-
-        if (CONFIGURABLE_MODEL.get() == null) {
-            CONFIGURABLE_MODEL.set(readOnlyModel.copy());
+        //First action to be called per-thread sets up the TLS models, again if the thread moved to another report
+        ModelCopies copies = MODEL_COPIES.get();
+        if (copies == null || copies.source != readOnlyModel) {
+            copies = new ModelCopies(readOnlyModel);
+            MODEL_COPIES.set(copies);
         }
 
         final FileInfo fileInfo = Objects.requireNonNull(testCaseInfo.getRuntimeType().getContainingFile());
         final StringBuffer outName = renderingHelper.getTestFileName(testCaseInfo);
         final File outfile = CloverUtils.createOutFile(fileInfo, outName.toString(), reportConfig.getOutFile());
 
-        ProjectInfo projectInfo = CONFIGURABLE_MODEL.get();
+        ProjectInfo projectInfo = copies.configurable;
 
         final CoverageData data = database.getCoverageData();
-        projectInfo.setDataProvider(new BitSetCoverageProvider(data.getHitsFor(testCaseInfo), data)); // read only
+        // a copy of the hits, as the hits of a single test are returned as a modifiable set
+        projectInfo.setDataProvider(new BitSetCoverageProvider(data.getHitsFor(Collections.singleton(testCaseInfo)), data));
 
         List<ClassInfo> classes = getCoverageByTest(projectInfo);
 
@@ -138,7 +150,7 @@ public class RenderTestResultAction implements Callable<Object> {
     }
 
     private ProjectInfo createUniqueCoverageModel(TestCaseInfo tci) {
-        final ProjectInfo projectInfo = REUSABLE_MODEL.get();
+        final ProjectInfo projectInfo = MODEL_COPIES.get().reusable;
         final CoverageData data = database.getCoverageData();
         projectInfo.setDataProvider(new BitSetCoverageProvider(data.getUniqueHitsFor(tci), data)); // all read only
         return projectInfo;
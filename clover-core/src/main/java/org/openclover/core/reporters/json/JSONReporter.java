@@ -1,5 +1,6 @@
 package org.openclover.core.reporters.json;
 
+import org.openclover.core.CloverDatabase;
 import org.openclover.core.api.command.ArgProcessor;
 import org.openclover.core.api.command.HelpBuilder;
 import org.openclover.core.api.registry.FileInfo;
@@ -58,7 +59,11 @@ public class JSONReporter extends CloverReporter {
     private final File basePath;
 
     public JSONReporter(CloverReportConfig config) throws CloverException {
-        super(config);
+        this(config.getCoverageDatabase(), config);
+    }
+
+    public JSONReporter(CloverDatabase database, CloverReportConfig config) {
+        super(database, config);
         renderingHelper = new HtmlRenderingSupportImpl(config.getFormat(), true);
         basePath = config.getOutFile();
     }
@@ -82,9 +87,6 @@ public class JSONReporter extends CloverReporter {
                     "OpenClover-JSON");
             Logger.getInstance().info("Generating JSON report to: " + getConfigAsCurrent().getOutFile().getAbsolutePath());
 
-            RenderFileJSONAction.initThreadLocals();
-            RenderMetricsJSONAction.initThreadLocals();
-
             service.submit(
                 new RenderColophonJSONAction(VelocityContextBuilder.create(), new File(getConfigAsCurrent().getOutFile(), "colophon.js"), getConfigAsCurrent()));
 
@@ -133,9 +135,6 @@ public class JSONReporter extends CloverReporter {
             }
         } catch (Exception e) {
             throw new CloverException(e);
-        } finally {
-            RenderFileJSONAction.resetThreadLocals();
-            RenderMetricsJSONAction.resetThreadLocals();
         }
 
         final long currentTotalTime = System.currentTimeMillis() - currentStartTime;
@@ -32,7 +32,7 @@ public class RenderFileJSONAction extends RenderFileAction {
 
         try {
             final Map<String, Number> columnValues =
-                JSONReportUtils.collectColumnValuesFor(columnsTL.get(), fileInfo, renderingHelper);
+                JSONReportUtils.collectColumnValuesFor(columns, fileInfo, renderingHelper);
 
             final SourceRenderHelper srh = new SourceRenderHelper(database, reportConfig, renderingHelper);
             final FileInfo fcopy = fileInfo.copy(fileInfo.getContainingPackage(), HasMetricsFilter.ACCEPT_ALL);
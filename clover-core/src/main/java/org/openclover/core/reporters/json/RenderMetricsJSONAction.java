@@ -18,8 +18,6 @@ import java.util.concurrent.Callable;
 import static org.openclover.core.util.Lists.newArrayList;
 
 public class RenderMetricsJSONAction implements Callable<Object> {
-    private static ThreadLocal columns;
-
     private final HasMetrics mInfo;
     private final File mFile;
     private final HtmlRenderingSupportImpl mHelper;
@@ -36,37 +34,16 @@ public class RenderMetricsJSONAction implements Callable<Object> {
         mFile = outfile;
     }
 
-    /**
-     * Initialises all thread locals.
-     * This is to be called once before the {@link #call} method .
-     */
-    public static void initThreadLocals() {
-        columns = new ThreadLocal();
-    }
-
-    /**
-     * Resets all thread locals.
-     * This is to be called once all files have been rendered.
-     * NB: {@link ThreadLocal#remove} can't be used since it is since jdk 1.5 .
-     */
-    public static void resetThreadLocals() {
-        columns = null;
-    }
-
     @Override
     public Object call() throws Exception {
-        //First action to be called per-thread sets up the TLS columns and contextset
-        if (columns.get() == null) {
-            final List cols = mCfg.isColumnsSet() ? mCfg.getColumns().getProjectColumnsCopy() : Columns.getAllColumns();
-            columns.set(cols);
-        }
         render();
         return null;
     }
 
     public void render() throws Exception {
+        final List columns = mCfg.isColumnsSet() ? mCfg.getColumns().getProjectColumnsCopy() : Columns.getAllColumns();
         final Map<String, Number> columnValues =
-            JSONReportUtils.collectColumnValuesFor((List)columns.get(), mInfo, mHelper);
+            JSONReportUtils.collectColumnValuesFor(columns, mInfo, mHelper);
         
         final JSONObject json =
             new JSONObject()
@@ -4,6 +4,7 @@ import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.PdfWriter;
+import org.openclover.core.CloverDatabase;
 import org.openclover.core.CodeType;
 import org.openclover.core.api.command.ArgProcessor;
 import org.openclover.core.api.command.HelpBuilder;
@@ -94,7 +95,12 @@ public class PDFReporter extends CloverReporter {
     }
 
     public PDFReporter(CloverReportConfig config, CloverReportConfig[] secondaryConfigs) throws CloverException {
-        super(config);
+        this(config.getCoverageDatabase(), config, secondaryConfigs);
+    }
+
+    public PDFReporter(CloverDatabase database, CloverReportConfig config, CloverReportConfig[] secondaryConfigs)
+            throws CloverException {
+        super(database, config);
         try {
             this.secondaryConfigs = secondaryConfigs;
             this.reportTitle = config.getTitle();
@@ -293,7 +299,7 @@ public class PDFReporter extends CloverReporter {
         return 1;
     }
 
-    private static CloverReportConfig processArgs(String[] args) {
+    public static CloverReportConfig processArgs(String[] args) {
         Current config = new Current(Current.DEFAULT_PDF);
         config.setFormat(Format.DEFAULT_PDF);
         try {
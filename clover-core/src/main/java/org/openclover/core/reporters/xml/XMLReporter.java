@@ -8,6 +8,7 @@ import org.openclover.core.api.registry.BranchInfo;
 import org.openclover.core.api.registry.ClassInfo;
 import org.openclover.core.api.registry.ContextSet;
 import org.openclover.core.api.registry.FileInfo;
+import org.openclover.core.api.registry.HasMetrics;
 import org.openclover.core.api.registry.MethodInfo;
 import org.openclover.core.api.registry.PackageInfo;
 import org.openclover.core.api.registry.ProjectInfo;
@@ -18,6 +19,8 @@ import org.openclover.core.registry.entities.FullClassInfo;
 import org.openclover.core.registry.entities.LineInfo;
 import org.openclover.core.registry.metrics.ClassMetrics;
 import org.openclover.core.registry.metrics.FileMetrics;
+import org.openclover.core.registry.metrics.MetricsAggregator;
+import org.openclover.core.registry.metrics.MetricsTable;
 import org.openclover.core.registry.metrics.PackageMetrics;
 import org.openclover.core.registry.metrics.ProjectMetrics;
 import org.openclover.core.reporters.CloverReportConfig;
@@ -36,6 +39,7 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.GZIPOutputStream;
 
 import static org.openclover.core.reporters.CommandLineArgProcessors.AlwaysReport;
@@ -154,7 +158,8 @@ public class XMLReporter extends CloverReporter {
 
         attributes.put(XmlNames.A_TIMESTAMP, String.valueOf(ts));
         out.writeElementStart(enclosingTag, attributes);
-        writeMetrics(out, proj.getMetrics());
+        final MetricsTable metrics = calcMetrics(proj);
+        writeMetrics(out, metrics.getProjectMetrics());
 
         List<PackageInfo> packages = proj.getAllPackages();
         if (packages.size() > 0) {
@@ -170,12 +175,12 @@ public class XMLReporter extends CloverReporter {
 
                 out.writeElementStart(XmlNames.E_PACKAGE, attributes);
 
-                writeMetrics(out, pkg.getMetrics());
+                writeMetrics(out, metricsOf(pkg, metrics));
 
                 // if we are generating a full report, we want to add the data
                 // below the package level.
                 if (!summaryReport) {
-                    writeFilesForPkg(out, pkg);
+                    writeFilesForPkg(out, pkg, metrics);
                 }
 
                 out.writeElementEnd(XmlNames.E_PACKAGE);
@@ -184,6 +189,27 @@ public class XMLReporter extends CloverReporter {
         out.writeElementEnd(enclosingTag);
     }
 
+    /**
+     * Calculates metrics of all nodes of the project in one pass, instead of calculating them node by node
+     */
+    private MetricsTable calcMetrics(ProjectInfo proj) {
+        final int numThreads = reportConfig instanceof Current ? ((Current) reportConfig).getNumThreads() : 1;
+        if (numThreads <= 1) {
+            return MetricsAggregator.aggregate(proj, proj.getContextFilter());
+        }
+        final ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            return MetricsAggregator.aggregate(proj, proj.getContextFilter(), pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BlockMetrics metricsOf(HasMetrics node, MetricsTable metrics) {
+        final BlockMetrics nodeMetrics = metrics.getMetrics(node);
+        return nodeMetrics != null ? nodeMetrics : node.getMetrics();
+    }
+
     private void writeMetrics(XMLWriter out, BlockMetrics metrics) throws IOException {
 
         Map<String, String> attribs = newHashMap();
@@ -242,7 +268,7 @@ public class XMLReporter extends CloverReporter {
         out.writeElement(XmlNames.E_METRICS, attribs);
     }
 
-    private void writeFilesForPkg(XMLWriter out, PackageInfo pkg) throws IOException {
+    private void writeFilesForPkg(XMLWriter out, PackageInfo pkg, MetricsTable metrics) throws IOException {
         //get the files contained within the package.
         final List<FileInfo> files = pkg.getFiles();
 
@@ -252,8 +278,8 @@ public class XMLReporter extends CloverReporter {
             attribs.put(XmlNames.A_NAME, fileInfo.getName());
             attribs.put(XmlNames.A_PATH, fileInfo.getPhysicalFile().getAbsolutePath());
             out.writeElementStart(XmlNames.E_FILE, attribs);
-            writeMetrics(out, fileInfo.getMetrics());
-            writeClassesForFile(out, fileInfo.getClasses());
+            writeMetrics(out, metricsOf(fileInfo, metrics));
+            writeClassesForFile(out, fileInfo.getClasses(), metrics);
 
             if (reportConfig.getFormat().getSrcLevel()) {
                 writeLineInfo(out, fileInfo);
@@ -262,12 +288,12 @@ public class XMLReporter extends CloverReporter {
         }
     }
 
-    private void writeClassesForFile(XMLWriter out, List<ClassInfo> classes) throws IOException {
+    private void writeClassesForFile(XMLWriter out, List<ClassInfo> classes, MetricsTable metrics) throws IOException {
         for (ClassInfo info : classes) {
             final Map<String, String> attribs = newHashMap();
             attribs.put(XmlNames.A_NAME, info.getName());
             out.writeElementStart(XmlNames.E_CLASS, attribs);
-            writeMetrics(out, info.getMetrics());
+            writeMetrics(out, metricsOf(info, metrics));
             out.writeElementEnd(XmlNames.E_CLASS);
         }
     }
@@ -342,7 +368,7 @@ public class XMLReporter extends CloverReporter {
     }
 
 
-    private static CloverReportConfig processArgs(String[] args) {
+    public static CloverReportConfig processArgs(String[] args) {
         Current cfg = new Current();
         cfg.setFormat(Format.DEFAULT_XML);
 
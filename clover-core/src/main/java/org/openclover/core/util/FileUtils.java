@@ -16,7 +16,9 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.StringTokenizer;
@@ -129,6 +131,18 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Renames a file, replacing the destination if it exists. The rename is atomic if the file system supports it,
+     * so readers of the destination see either the old or the new content.
+     */
+    public static void moveReplacing(File src, File dest) throws IOException {
+        try {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Copies the whole content (files and subdirectories) from <pre>srcDir</pre> to <pre>destDir</pre> preserving
      * directory layout. If <pre>deleteDestDir</pre> is set to true, destination directory will be deleted if exists.
@@ -0,0 +1,199 @@
+package org.openclover.core
+
+import junit.framework.TestCase
+import org.openclover.core.api.registry.HasMetricsFilter
+import org.openclover.core.context.ContextSetImpl
+import org.openclover.core.instr.InstrumentationSessionImpl
+import org.openclover.core.recorder.PerTestCoverageStrategy
+import org.openclover.core.recorder.RecordingTranscripts
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.entities.FullMethodInfo
+import org.openclover.core.registry.entities.FullTestCaseInfo
+import org.openclover.core.util.SimpleCoverageRange
+import org.openclover.runtime.CloverNames
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org_openclover_runtime.CoverageRecorder
+
+/**
+ * Test for {@link CoverageDataCache} and loading of coverage with {@link CoverageDataSpec#isPersistentCache()}
+ */
+class CoverageDataCacheTest extends TestCase {
+    private File recDir
+    private File regFile
+    private Clover2Registry reg
+    private FullMethodInfo bar_it
+    private FullMethodInfo baz_it
+    private FullMethodInfo barTest_testIt
+    private int testId
+
+    @Override
+    protected void setUp() throws Exception {
+        recDir = TestUtils.createEmptyDirFor(getClass(), getName())
+        regFile = new File(recDir, getName())
+        reg = new Clover2Registry(regFile, getName())
+
+        final InstrumentationSessionImpl session = (InstrumentationSessionImpl) reg.startInstr()
+        bar_it = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "Bar", "void it()", false)
+        baz_it = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "Baz", "void it()", false)
+        barTest_testIt = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "BarTest", "void testIt()", true)
+        session.finishAndApply()
+        reg.saveAndOverwriteFile()
+        testId = 0
+
+        // see CoverageDataCollatorTest.elapse200ms()
+        Thread.sleep(200)
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FullTestCaseInfo.Factory.reset()
+    }
+
+    private CoverageRecorder newRecorder() {
+        new FixedSizeCoverageRecorder(regFile.getAbsolutePath(), reg.getVersion(), reg.getProject().getDataLength(), 0)
+    }
+
+    private void runTests(CoverageRecorder recorder, int numTests, FullMethodInfo[] covered) {
+        for (int i = 0; i < numTests; i++) {
+            TestUtils.runTestMethod(recorder, "BarTest", testId++, barTest_testIt, covered)
+        }
+    }
+
+    /** Makes recordings written so far old enough to be cached */
+    private void ageRecordings(long age) {
+        final long time = System.currentTimeMillis() - age
+        for (File file : recDir.listFiles()) {
+            if (file != regFile && !file.getName().endsWith(CloverNames.COVERAGE_CACHE_SUFFIX)) {
+                file.setLastModified(time)
+            }
+        }
+    }
+
+    private static CoverageDataSpec newSpec(boolean persistentCache, long span = 0) {
+        final CoverageDataSpec spec = new CoverageDataSpec(
+                HasMetricsFilter.ACCEPT_NONE, span, false, false, false, true, PerTestCoverageStrategy.IN_MEMORY)
+        spec.setPersistentCache(persistentCache)
+        spec
+    }
+
+    private CoverageData load(boolean persistentCache) {
+        final CoverageData data = new CoverageDataCollator(reg).loadCoverageData(newSpec(persistentCache), ProgressListener.NOOP_LISTENER)
+        FullTestCaseInfo.Factory.reset()
+        data
+    }
+
+    private File cacheFile() {
+        new File(regFile.getPath() + CloverNames.COVERAGE_CACHE_SUFFIX)
+    }
+
+    private CoverageDataCache.Restored readCache() {
+        final CoverageDataSpec spec = newSpec(true)
+        final CoverageDataCache.Restored restored = new CoverageDataCache(reg, new RecordingTranscripts.Filter(
+                recDir, regFile.getName(), reg.getVersion(), Long.MAX_VALUE, false, true), spec).read()
+        FullTestCaseInfo.Factory.reset()
+        restored
+    }
+
+    private int testsCovering(CoverageData data, FullMethodInfo method) {
+        data.getTestsCovering(new SimpleCoverageRange(method.getDataIndex(), 1)).size()
+    }
+
+    private void assertSameCoverage(CoverageData expected, CoverageData actual) {
+        assertEquals(expected.getHitCounts() as List, actual.getHitCounts() as List)
+        assertEquals(expected.isEmpty(), actual.isEmpty())
+        assertEquals(expected.getTimestamp(), actual.getTimestamp())
+        assertEquals(expected.getTests().size(), actual.getTests().size())
+        assertEquals(testsCovering(expected, bar_it), testsCovering(actual, bar_it))
+        assertEquals(testsCovering(expected, baz_it), testsCovering(actual, baz_it))
+    }
+
+    void testCacheIsNotWrittenUnlessEnabled() {
+        runTests(newRecorder(), 2, [ bar_it ] as FullMethodInfo[])
+        ageRecordings(10000)
+
+        load(false)
+        assertFalse(cacheFile().exists())
+    }
+
+    void testCachedCoverageMatchesFullLoad() {
+        runTests(newRecorder(), 2, [ bar_it ] as FullMethodInfo[])
+        runTests(newRecorder(), 1, [ bar_it, baz_it ] as FullMethodInfo[])
+        ageRecordings(10000)
+
+        final CoverageData expected = load(false)
+        final CoverageData written = load(true)
+        assertTrue(cacheFile().isFile())
+        assertEquals(2, readCache().included.size())
+
+        final CoverageData restored = load(true)
+        assertEquals(3, restored.getHitCount(bar_it.getDataIndex()))
+        assertEquals(1, restored.getHitCount(baz_it.getDataIndex()))
+        assertFalse(restored.getTests().isEmpty())
+        assertSameCoverage(expected, written)
+        assertSameCoverage(expected, restored)
+    }
+
+    void testOnlyNewRecordingsAreRead() {
+        runTests(newRecorder(), 2, [ bar_it ] as FullMethodInfo[])
+        ageRecordings(10000)
+        load(true)
+
+        // replace the cached recording by garbage which looks unchanged; it must not be read again
+        final File cached = recDir.listFiles().find { readCache().included.contains(it.getName()) }
+        assertNotNull(cached)
+        final long lastModified = cached.lastModified()
+        cached.bytes = new byte[cached.length()]
+        cached.setLastModified(lastModified)
+
+        runTests(newRecorder(), 1, [ baz_it ] as FullMethodInfo[])
+        ageRecordings(5000)
+        cached.setLastModified(lastModified)
+
+        final CoverageData data = load(true)
+        assertEquals(2, data.getHitCount(bar_it.getDataIndex()))
+        assertEquals(1, data.getHitCount(baz_it.getDataIndex()))
+        assertEquals(load(false).getTests().size(), data.getTests().size())
+        assertEquals(2, readCache().included.size())
+    }
+
+    void testChangedRecordingReloadsAllRecordings() {
+        final CoverageRecorder recorder = newRecorder()
+        runTests(recorder, 1, [ bar_it ] as FullMethodInfo[])
+        runTests(newRecorder(), 1, [ bar_it ] as FullMethodInfo[])
+        ageRecordings(10000)
+        assertEquals(2, load(true).getHitCount(bar_it.getDataIndex()))
+
+        // the recorder rewrites its recording
+        runTests(recorder, 1, [ baz_it ] as FullMethodInfo[])
+        ageRecordings(5000)
+
+        final CoverageData data = load(true)
+        assertEquals(2, data.getHitCount(bar_it.getDataIndex()))
+        assertEquals(1, data.getHitCount(baz_it.getDataIndex()))
+        assertEquals(3, data.getHitCount(barTest_testIt.getDataIndex()))
+        assertSameCoverage(load(false), data)
+    }
+
+    void testRecentRecordingsAreReadEveryTime() {
+        runTests(newRecorder(), 2, [ bar_it ] as FullMethodInfo[])
+
+        // written just now, so they may still change without a change of their modification time
+        final CoverageData written = load(true)
+        assertEquals(2, written.getHitCount(bar_it.getDataIndex()))
+        assertTrue(readCache().included.isEmpty())
+
+        final CoverageData restored = load(true)
+        assertSameCoverage(written, restored)
+        assertFalse(restored.getTests().isEmpty())
+    }
+
+    void testCacheOfAnotherSpanIsIgnored() {
+        runTests(newRecorder(), 1, [ bar_it ] as FullMethodInfo[])
+        ageRecordings(10000)
+        load(true)
+
+        final CoverageDataSpec spec = newSpec(true, 1000)
+        final CoverageData data = new CoverageDataCollator(reg).loadCoverageData(spec, ProgressListener.NOOP_LISTENER)
+        assertEquals(1, data.getHitCount(bar_it.getDataIndex()))
+    }
+}
@@ -8,6 +8,8 @@ import org.openclover.core.registry.Clover2Registry
 import org.openclover.core.registry.entities.FullMethodInfo
 import org.openclover.core.api.registry.HasMetricsFilter
 import org.openclover.core.util.SimpleCoverageRange
+import org.openclover.runtime.CloverNames
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
 import org_openclover_runtime.CoverageRecorder
 
 import java.lang.reflect.Field
@@ -151,6 +153,66 @@ class CoverageDataCollatorTest extends TestCase {
         assertEquals(0, data.getHitCount(2))
     }
 
+    void testParallelCollationMatchesSequential() throws Exception {
+        final File recDir = TestUtils.createEmptyDirFor(getClass(), getName())
+        final File regFile = new File(recDir, getName())
+        final Clover2Registry reg = new Clover2Registry(regFile, getName())
+
+        final InstrumentationSessionImpl session = (InstrumentationSessionImpl) reg.startInstr()
+        final FullMethodInfo bar_it = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "Bar", "void it()", false)
+        final FullMethodInfo baz_it = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "Baz", "void it()", false)
+        final FullMethodInfo barTest_testIt = TestUtils.addClassWithSingleMethod(session, new ContextSetImpl(), "com.foo", System.currentTimeMillis(), 0l, "BarTest", "void testIt()", true)
+        session.finishAndApply()
+        reg.saveAndOverwriteFile()
+
+        elapse200ms()
+
+        // several recorders, each writing its own global recording and a few per-test recordings
+        for (int r = 0; r < 5; r++) {
+            final CoverageRecorder recorder = new FixedSizeCoverageRecorder(
+                    regFile.getAbsolutePath(), reg.getVersion(), reg.getProject().getDataLength(), 0)
+            for (int t = 0; t < 3; t++) {
+                TestUtils.runTestMethod(recorder, "FooTest", r * 3 + t, barTest_testIt,
+                        (t % 2 == 0 ? [ bar_it ] : [ bar_it, baz_it ]) as FullMethodInfo[])
+            }
+        }
+
+        elapse200ms()
+
+        final CoverageData sequential = loadWithThreads(reg, 1, [])
+        final List<String> progress = Collections.synchronizedList([])
+        final CoverageData parallel = loadWithThreads(reg, 4, progress)
+        // the index of tests is built by the first lookup of tests by slots, not by the load
+        final File indexFile = new File(regFile.getPath() + CloverNames.PER_TEST_INDEX_SUFFIX)
+        assertFalse(indexFile.exists())
+
+        assertEquals(15, sequential.getHitCount(bar_it.getDataIndex()))
+        assertEquals(5, sequential.getHitCount(baz_it.getDataIndex()))
+        assertEquals(sequential.getHitCounts() as List, parallel.getHitCounts() as List)
+        assertEquals(sequential.getTimestamp(), parallel.getTimestamp())
+        assertEquals(sequential.getTestsCovering(new SimpleCoverageRange(bar_it.getDataIndex(), 1)).size(),
+                parallel.getTestsCovering(new SimpleCoverageRange(bar_it.getDataIndex(), 1)).size())
+        assertEquals(sequential.getTestsCovering(new SimpleCoverageRange(baz_it.getDataIndex(), 1)).size(),
+                parallel.getTestsCovering(new SimpleCoverageRange(baz_it.getDataIndex(), 1)).size())
+        assertTrue(indexFile.exists())
+        assertTrue(progress.any { it.startsWith("Reading coverage data") })
+        assertTrue(progress.any { it.startsWith("Reading per-test data") })
+    }
+
+    void testPartitionsAreBoundedByAvailableMemory() {
+        // every partition holds a copy of the hit counts, which can't exceed the heap
+        final int hugeCoverageSize = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory().intdiv(4))
+        assertEquals(1, CoverageDataCollator.maxPartitionsFor(hugeCoverageSize))
+        assertTrue(CoverageDataCollator.maxPartitionsFor(1000) > 1)
+    }
+
+    private static CoverageData loadWithThreads(Clover2Registry reg, int numThreads, List<String> progress) {
+        final CoverageDataSpec spec = new CoverageDataSpec(
+                HasMetricsFilter.ACCEPT_NONE, 0, false, false, false, true, PerTestCoverageStrategy.IN_MEMORY)
+        spec.setNumThreads(numThreads)
+        new CoverageDataCollator(reg).loadCoverageData(spec, { String desc, float pc -> progress.add(desc) } as ProgressListener)
+    }
+
     /**
      * Our code expects at least 1ms will have elapsed between instrumentation and execution
      * of instrumented code. Not an unreasonable expectation. But it screws with tests because
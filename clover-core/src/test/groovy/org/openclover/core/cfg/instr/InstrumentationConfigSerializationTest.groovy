@@ -45,6 +45,8 @@ class InstrumentationConfigSerializationTest {
         config.setEnabled(false)
         config.setFlushPolicy(InstrumentationConfig.INTERVAL_FLUSHING)
         config.setFlushInterval(1234)
+        config.setStripedCounters(true)
+        config.setBooleanCoverage(true)
         config.setSliceRecording(false)
         config.setReportInitErrors(false)
         config.setRecordTestResults(false)
@@ -63,6 +65,8 @@ class InstrumentationConfigSerializationTest {
         assertFalse(read.isEnabled())
         assertEquals(InstrumentationConfig.INTERVAL_FLUSHING, read.getFlushPolicy())
         assertEquals(1234, read.getFlushInterval())
+        assertTrue(read.isStripedCounters())
+        assertTrue(read.isBooleanCoverage())
         assertFalse(read.isSliceRecording())
         assertFalse(read.isReportInitErrors())
         assertFalse(read.isRecordTestResults())
@@ -136,6 +136,29 @@ class CloverInstrArgProcessorsTest {
                 equalTo(200))
     }
 
+    @Test
+    void processThreads() {
+        assertConfig(["--threads", "4"],
+                CloverInstrArgProcessors.Threads,
+                { JavaInstrumentationConfig config -> config.getNumThreads() },
+                equalTo(4))
+    }
+
+    @Test
+    void processStripedCounters() {
+        assertConfig(["--stripedCounters"],
+                CloverInstrArgProcessors.StripedCounters,
+                { JavaInstrumentationConfig config -> config.isStripedCounters() },
+                equalTo(true))
+    }
+
+    @Test
+    void processBooleanCoverage() {
+        assertConfig(["--booleanCoverage"],
+                CloverInstrArgProcessors.BooleanCoverage,
+                { JavaInstrumentationConfig config -> config.isBooleanCoverage() },
+                equalTo(true))
+    }
 
     @Test
     void processEncoding() {
@@ -0,0 +1,207 @@
+package org.openclover.core.instr.java
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.api.registry.FileInfo
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.entities.FullFileInfo
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.CloverNames
+import org_openclover_runtime.CoverageRecorder
+
+import java.util.regex.Pattern
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotEquals
+import static org.junit.Assert.assertTrue
+
+class InstrumentationCacheTest {
+    private File workingDir
+    private File srcDir
+    private File destDir
+    private File registryFile
+    private File cacheDir
+    private List<File> srcFiles
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        srcDir = new File(workingDir, "src")
+        destDir = new File(workingDir, "instr")
+        registryFile = new File(workingDir, "clover.db")
+        cacheDir = new File(workingDir, "cache")
+        srcFiles = (0..<12).collect { int i -> writeSource(i, 0) }
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testUnchangedFilesAreReplayedSequentially() throws Exception {
+        checkUnchangedFilesAreReplayed(1)
+    }
+
+    @Test
+    void testUnchangedFilesAreReplayedInParallel() throws Exception {
+        checkUnchangedFilesAreReplayed(4)
+    }
+
+    private void checkUnchangedFilesAreReplayed(int numThreads) {
+        final Instrumenter first = instrument(newConfig(), numThreads)
+        assertEquals(0, first.getNumCachedFiles())
+        final Clover2Registry firstRegistry = first.endInstrumentation()
+        final Map<String, String> firstSources = instrumentedSources(firstRegistry)
+        final Map<String, String> firstStructure = registeredStructure(firstRegistry)
+
+        writeSource(5, 1)
+        final Instrumenter second = instrument(newConfig(), numThreads)
+        assertEquals(srcFiles.size() - 1, second.getNumCachedFiles())
+        final Clover2Registry registry = second.endInstrumentation()
+        final Map<String, String> secondSources = instrumentedSources(registry)
+        final Map<String, String> secondStructure = registeredStructure(registry)
+
+        firstSources.each { String name, String text ->
+            if (name == "p2/C5.java") {
+                assertNotEquals(text, secondSources[name])
+                assertNotEquals(firstStructure[name], secondStructure[name])
+            } else {
+                // replayed files keep their slots, so their instrumented code differs only in the database version
+                assertEquals(name, text, secondSources[name])
+                assertEquals(name, firstStructure[name], secondStructure[name])
+            }
+        }
+        registry.getProject().visitFiles { FileInfo fileInfo ->
+            assertTrue(((FullFileInfo) fileInfo).supportsVersion(registry.getVersion()))
+        }
+    }
+
+    @Test
+    void testEntriesAreReplayedIntoEmptyRegistry() throws Exception {
+        final Clover2Registry firstRegistry = instrument(newConfig(), 1).endInstrumentation()
+        registryFile.delete()
+        FileUtils.deltree(destDir)
+
+        // other files in other order, so the replayed files get other slots
+        srcFiles = srcFiles.subList(3, srcFiles.size()).reverse()
+        final Instrumenter replayed = instrument(newConfig(), 2)
+        assertEquals(srcFiles.size(), replayed.getNumCachedFiles())
+        final Clover2Registry replayedRegistry = replayed.endInstrumentation()
+        final Map<String, String> replayedSources = instrumentedSources(replayedRegistry)
+        final Map<String, String> replayedStructure = registeredStructure(replayedRegistry)
+
+        registryFile.delete()
+        FileUtils.deltree(destDir)
+        final JavaInstrumentationConfig config = newConfig()
+        config.setCacheDir(null)
+        final Instrumenter parsed = instrument(config, 1)
+        final Clover2Registry parsedRegistry = parsed.endInstrumentation()
+
+        // relocated code refers to the same slots as the code of freshly parsed files
+        assertEquals(registeredStructure(parsedRegistry), replayedStructure)
+        assertEquals(instrumentedSources(parsedRegistry), replayedSources)
+        assertNotEquals(firstRegistry.getProject().findFile("p2/C11.java").getDataIndex(),
+                replayedRegistry.getProject().findFile("p2/C11.java").getDataIndex())
+    }
+
+    @Test
+    void testCacheIsNotUsedWhenConfigChanges() throws Exception {
+        instrument(newConfig(), 1).endInstrumentation()
+
+        final JavaInstrumentationConfig config = newConfig()
+        config.setFlushPolicy(CoverageRecorder.FLUSHPOLICY_INTERVAL)
+        config.setFlushInterval(5000)
+        final Instrumenter second = instrument(config, 1)
+        assertEquals(0, second.getNumCachedFiles())
+        second.endInstrumentation()
+    }
+
+    @Test
+    void testCorruptEntryIsIgnored() throws Exception {
+        instrument(newConfig(), 1).endInstrumentation()
+        cacheDir.eachFileRecurse { File file ->
+            if (file.isFile()) {
+                file.bytes = [1, 2, 3] as byte[]
+            }
+        }
+
+        final Instrumenter second = instrument(newConfig(), 1)
+        assertEquals(0, second.getNumCachedFiles())
+        second.endInstrumentation()
+    }
+
+    private JavaInstrumentationConfig newConfig() {
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(registryFile.getAbsolutePath())
+        config.setProjectName(testName.methodName)
+        config.setCacheDir(cacheDir)
+        return config
+    }
+
+    private Instrumenter instrument(JavaInstrumentationConfig config, int numThreads) {
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(srcFiles, destDir, null, numThreads)
+        return instrumenter
+    }
+
+    /**
+     * @return instrumented sources, with names of recorders (which contain a timestamp) and the database version
+     * normalized
+     */
+    private Map<String, String> instrumentedSources(Clover2Registry registry) {
+        final Map<String, String> result = [:]
+        destDir.eachFileRecurse { File file ->
+            if (file.isFile()) {
+                final String text = file.text
+                assertTrue(file.name, text.contains(registry.getVersion() + "L"))
+                result[file.parentFile.name + "/" + file.name] = text
+                        .replaceAll(Pattern.quote(CloverNames.CLOVER_RECORDER_PREFIX) + "[0-9a-z]+", "RECORDER")
+                        .replace(registry.getVersion() + "L", "VERSION")
+            }
+        }
+        return result
+    }
+
+    private static Map<String, String> registeredStructure(Clover2Registry registry) {
+        final Map<String, String> result = [:]
+        registry.getProject().visitFiles { FileInfo fileInfo ->
+            final FullFileInfo file = (FullFileInfo) fileInfo
+            result[file.getPackagePath()] = [file.getDataIndex(), file.getDataLength(), file.getChecksum(),
+                    file.getLineCount(), file.getNcLineCount(),
+                    file.getAllMethods().collect { it.getName() + "@" + it.getDataIndex() },
+                    file.getAllMethods().collectMany { it.getStatements() }
+                            .collect { it.getStartLine() + "@" + it.getDataIndex() }].toString()
+        }
+        return result
+    }
+
+    private File writeSource(int i, int revision) {
+        final File pkgDir = new File(srcDir, "p" + (i % 3))
+        pkgDir.mkdirs()
+        final File file = new File(pkgDir, "C" + i + ".java")
+        final StringBuilder methods = new StringBuilder()
+        for (int m = 0; m <= i % 4 + revision; m++) {
+            methods.append("""
+    int m${m}(int a) {
+        if (a > ${m} && a < ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        return a > 0 ? a : -a;
+    }
+""")
+        }
+        file.text = "package p${i % 3};\n\npublic class C${i} {${methods}}\n"
+        return file
+    }
+}
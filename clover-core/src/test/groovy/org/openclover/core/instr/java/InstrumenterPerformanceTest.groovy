@@ -0,0 +1,106 @@
+package org.openclover.core.instr.java
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.util.FileUtils
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ * Benchmark of {@link Instrumenter#instrument(List, File, String, int)} on a generated source tree. Results are
+ * printed as files per second and bytes of instrumented sources written, for 1 and 4 threads. Sizes are overridable
+ * via system properties for CI tuning.
+ */
+class InstrumenterPerformanceTest {
+
+    private static final int NUM_FILES = Integer.getInteger("clover.perf.instr.files", 100)
+    private static final int NUM_METHODS = Integer.getInteger("clover.perf.instr.methods", 10)
+
+    private File workingDir
+    private List<File> srcFiles
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        final File srcDir = new File(workingDir, "src")
+        srcFiles = (0..<NUM_FILES).collect { int i -> writeSource(srcDir, i) }
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testInstrumentationThroughput() throws Exception {
+        [1, 4].each { int numThreads ->
+            runRound("warmup" + numThreads, numThreads)
+            final File destDir = new File(workingDir, "instr" + numThreads)
+            final long nanos = runRound(destDir.name, numThreads)
+
+            long bytesWritten = 0
+            int numWritten = 0
+            destDir.eachFileRecurse { File file ->
+                if (file.isFile()) {
+                    assertTrue(file.name, file.name.endsWith(".java"))
+                    bytesWritten += file.length()
+                    numWritten++
+                }
+            }
+            assertEquals(NUM_FILES, numWritten)
+            println(String.format("files: %d, threads: %d, %.0f files/s, %d bytes written",
+                    NUM_FILES, numThreads, NUM_FILES * 1e9d / nanos, bytesWritten))
+        }
+    }
+
+    /**
+     * Instruments all sources into a new registry and destination directory
+     *
+     * @return time spent, in nanoseconds
+     */
+    private long runRound(String name, int numThreads) {
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(new File(workingDir, name + ".db").getAbsolutePath())
+        config.setProjectName(testName.methodName)
+
+        final Instrumenter instrumenter = new Instrumenter(config)
+        final long start = System.nanoTime()
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(srcFiles, new File(workingDir, name), null, numThreads)
+        instrumenter.endInstrumentation()
+        return System.nanoTime() - start
+    }
+
+    private static File writeSource(File srcDir, int i) {
+        final File pkgDir = new File(srcDir, "p" + (i % 10))
+        pkgDir.mkdirs()
+        final File file = new File(pkgDir, "C" + i + ".java")
+        final StringBuilder methods = new StringBuilder()
+        for (int m = 0; m < NUM_METHODS; m++) {
+            methods.append("""
+    /** method ${m} */
+    int m${m}(int a) {
+        if (a > ${m} && a < ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        switch (a) {
+            case 1: return ${m};
+            default: return a > 0 ? a : -a;
+        }
+    }
+""")
+        }
+        file.text = "package p${i % 10};\n\npublic class C${i} {${methods}}\n"
+        return file
+    }
+}
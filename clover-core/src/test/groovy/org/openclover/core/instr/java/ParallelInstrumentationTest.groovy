@@ -0,0 +1,116 @@
+package org.openclover.core.instr.java
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.api.registry.FileInfo
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.entities.FullFileInfo
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.api.CloverException
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+class ParallelInstrumentationTest {
+    private File workingDir
+    private File srcDir
+    private List<File> srcFiles
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        srcDir = new File(workingDir, "src")
+        srcFiles = (0..<40).collect { int i -> writeSource(i) }
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testParallelInstrumentationMatchesSequential() throws Exception {
+        final Map<String, String> sequential = instrument("seq", 1)
+        final Map<String, String> parallel = instrument("par", 4)
+
+        assertEquals(srcFiles.size() * 2, sequential.size())
+        assertEquals(sequential.keySet(), parallel.keySet())
+        sequential.each { String key, String value ->
+            assertEquals(key, value, parallel[key])
+        }
+    }
+
+    @Test
+    void testParseErrorIsReported() throws Exception {
+        new File(srcFiles[20].parentFile, "Broken.java").text = "package p0; class Broken { void m( }"
+        srcFiles.add(20, new File(srcFiles[20].parentFile, "Broken.java"))
+        try {
+            instrument("par", 4)
+            fail("Expected parse error")
+        } catch (CloverException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Broken.java:1:"))
+        }
+    }
+
+    /**
+     * Instruments all sources and returns registered file structure and instrumented sources, keyed by file name
+     */
+    private Map<String, String> instrument(String name, int numThreads) {
+        final File destDir = new File(workingDir, name)
+        final File registryFile = new File(workingDir, name + ".db")
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(registryFile.getAbsolutePath())
+        config.setProjectName(testName.methodName)
+
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        final List<File> instrFiles = instrumenter.instrument(srcFiles, destDir, null, numThreads)
+        final Clover2Registry registry = instrumenter.endInstrumentation()
+        assertEquals(srcFiles.size(), instrFiles.size())
+
+        final Map<String, String> result = [:]
+        registry.getProject().visitFiles { FileInfo fileInfo ->
+            final FullFileInfo file = (FullFileInfo) fileInfo
+            result["registry:" + file.getPackagePath()] = [file.getDataIndex(), file.getDataLength(), file.getChecksum(),
+                    file.getLineCount(), file.getNcLineCount(),
+                    file.getAllMethods().collect { it.getName() + "@" + it.getDataIndex() }].toString()
+        }
+        instrFiles.each { File instr ->
+            // recorder class names and the registry literal are derived from the registry location and version
+            result["source:" + instr.parentFile.name + "/" + instr.name] = instr.text
+                    .replaceAll(/__CLR\w+/, "__CLR")
+                    .replaceAll(/getRecorder\("[^"]*"/, "getRecorder(DB")
+                    .replace(Long.toString(registry.getVersion()), "VERSION")
+        }
+        return result
+    }
+
+    private File writeSource(int i) {
+        final File pkgDir = new File(srcDir, "p" + (i % 3))
+        pkgDir.mkdirs()
+        final File file = new File(pkgDir, "C" + i + ".java")
+        final StringBuilder methods = new StringBuilder()
+        for (int m = 0; m <= i % 5; m++) {
+            methods.append("""
+    int m${m}(int a) {
+        if (a > ${m} && a < ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        return a > 0 ? a : -a;
+    }
+""")
+        }
+        file.text = "package p${i % 3};\n\npublic class C${i} {${methods}}\n"
+        return file
+    }
+}
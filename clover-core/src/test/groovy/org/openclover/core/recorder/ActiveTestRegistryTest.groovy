@@ -0,0 +1,159 @@
+package org.openclover.core.recorder
+
+import org.junit.Test
+import org.openclover.runtime.recorder.ActiveTestRegistry
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.LivePerTestRecording
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+
+class ActiveTestRegistryTest {
+    private static final String TYPE = ActiveTestRegistryTest.class.getName()
+
+    private final ActiveTestRegistry registry = new ActiveTestRegistry(
+            new FixedSizeCoverageRecorder("clover.db", 0, 100000, 0))
+
+    @Test
+    void testSingleTest() {
+        registry.set(1) // no active test, shall not be recorded
+        registry.testStarted(TYPE, 0, 0, 0)
+        registry.set(2)
+        registry.set(2)
+        registry.set(99999)
+
+        final FileBasedPerTestRecording coverage = finish(0)
+        assertFalse(coverage.get(1))
+        assertTrue(coverage.get(2))
+        assertTrue(coverage.get(99999))
+        assertEquals(2, degree(coverage))
+        assertEquals(0, registry.getActiveCount())
+    }
+
+    @Test
+    void testOverlappingTestsFinishingOutOfOrder() {
+        registry.testStarted(TYPE, 0, 0, 1)
+        registry.set(1)
+        registry.testStarted(TYPE, 0, 0, 2)
+        registry.set(1)
+        registry.set(2)
+        registry.testStarted(TYPE, 0, 0, 3)
+        registry.set(3)
+
+        final FileBasedPerTestRecording first = finish(1)
+        registry.set(4)
+        final FileBasedPerTestRecording third = finish(3)
+        registry.set(5)
+        final FileBasedPerTestRecording second = finish(2)
+
+        assertEquals([1, 2, 3], members(first))
+        assertEquals([1, 2, 3, 4, 5], members(second))
+        assertEquals([3, 4], members(third))
+    }
+
+    @Test
+    void testTestWithoutHitsAndUnknownTest() {
+        registry.testStarted(TYPE, 0, 0, 0)
+        assertSame(LivePerTestRecording.NULL, registry.testFinished(TYPE, "test", null, 0, 0, 0, 0, null))
+        assertSame(LivePerTestRecording.NULL, registry.testFinished(TYPE, "test", null, 0, 0, 7, 0, null))
+    }
+
+    @Test
+    void testLogIsReleasedWhenTestsFinish() {
+        registry.testStarted(TYPE, 0, 0, 0)
+        for (int epoch = 0; epoch < 20; epoch++) {
+            registry.testStarted(TYPE, 0, 1, epoch)
+            for (int i = 0; i < 4096; i++) {
+                registry.set(i)
+            }
+            finish(epoch, 1)
+        }
+        assertTrue(registry.getRetainedLogSize() >= 20 * 4096)
+
+        final FileBasedPerTestRecording coverage = finish(0)
+        assertEquals(4096, degree(coverage))
+        assertTrue(registry.getRetainedLogSize() <= 4096)
+    }
+
+    @Test
+    void testLogIsCompactedWhileLongTestIsActive() {
+        final ActiveTestRegistry compacting = new ActiveTestRegistry(
+                new FixedSizeCoverageRecorder("clover.db", 0, 100000, 0), 2)
+        compacting.testStarted(TYPE, 0, 0, 0)
+        for (int epoch = 0; epoch < 20; epoch++) {
+            compacting.testStarted(TYPE, 0, 1, epoch)
+            for (int i = 0; i < 4096; i++) {
+                compacting.set(epoch * 4096 + i)
+            }
+            final FileBasedPerTestRecording inner =
+                    (FileBasedPerTestRecording) compacting.testFinished(TYPE, "test", null, 0, 1, epoch, 0, null)
+            assertEquals((epoch * 4096..<(epoch + 1) * 4096).toList(), members(inner))
+            assertTrue(compacting.getRetainedLogSize() <= 4 * 4096)
+        }
+
+        final FileBasedPerTestRecording outer =
+                (FileBasedPerTestRecording) compacting.testFinished(TYPE, "test", null, 0, 0, 0, 0, null)
+        assertEquals(20 * 4096, degree(outer))
+    }
+
+    @Test
+    void testDurationIsMeasuredInSeconds() {
+        registry.testStarted(TYPE, 0, 0, 0)
+        registry.set(1)
+        Thread.sleep(50)
+        final FileBasedPerTestRecording coverage = finish(0)
+        assertTrue(String.valueOf(coverage.getDuration()), coverage.getDuration() >= 0.05d)
+        assertTrue(String.valueOf(coverage.getDuration()), coverage.getDuration() < 60d)
+    }
+
+    @Test
+    void testHitsFromManyThreads() {
+        final int numThreads = 8
+        final int numElements = 20000
+        final CountDownLatch started = new CountDownLatch(numThreads)
+        final Queue<Integer> missed = new ConcurrentLinkedQueue<>()
+        registry.testStarted(TYPE, 0, 0, 0)
+
+        final List<Thread> threads = (0..<numThreads).collect { int t ->
+            Thread.start {
+                // every thread runs its own tests while the outer test is active
+                registry.testStarted(TYPE, 0, 1, t)
+                started.countDown()
+                started.await()
+                for (int i = t; i < numElements; i += numThreads) {
+                    registry.set(i)
+                }
+                final FileBasedPerTestRecording own = finish(t, 1)
+                for (int i = t; i < numElements; i += numThreads) {
+                    if (!own.get(i)) {
+                        missed.add(i)
+                    }
+                }
+            }
+        }
+        threads*.join()
+        assertTrue(missed.toString(), missed.isEmpty())
+
+        final FileBasedPerTestRecording all = finish(0)
+        assertEquals(numElements, degree(all))
+    }
+
+    private FileBasedPerTestRecording finish(int testRunId, int slice = 0) {
+        final LivePerTestRecording recording = registry.testFinished(TYPE, "test", null, 0, slice, testRunId, 0, null)
+        return (FileBasedPerTestRecording) recording
+    }
+
+    private static List<Integer> members(FileBasedPerTestRecording coverage) {
+        (0..<100000).findAll { coverage.get(it) }
+    }
+
+    private static int degree(FileBasedPerTestRecording coverage) {
+        members(coverage).size()
+    }
+}
@@ -0,0 +1,135 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.buildutil.testutils.IOHelper
+import org.openclover.core.CoverageDataSpec
+import org.openclover.runtime.CloverNames
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.recorder.AsyncPerTestRecordingWriter
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.LivePerTestRecording
+import org.openclover.runtime.recorder.PerTestRecorder
+import org.openclover.runtime.recorder.PerTestRecordingJournal
+import org.openclover.runtime.util.CloverBitSet
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
+import static org.junit.Assert.assertTrue
+
+class AsyncPerTestRecordingWriterTest {
+    private File tmpDir
+    private final String basename = "clover.db"
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        tmpDir = IOHelper.createTmpDir(testName.methodName)
+    }
+
+    @After
+    void tearDown() throws Exception {
+        System.clearProperty(CloverNames.PROP_PER_TEST_ASYNC_WRITE)
+        if (!IOHelper.delete(tmpDir)) {
+            throw new RuntimeException("Unable to delete temporary test directory ${tmpDir.absolutePath}".toString())
+        }
+    }
+
+    @Test
+    void testDrainWritesAllRecordings() {
+        final AsyncPerTestRecordingWriter writer = new AsyncPerTestRecordingWriter("rec", null, 4, Thread.currentThread().getThreadGroup())
+        (0..<50).each { writer.submit(newRecording(it)) }
+        writer.drain()
+
+        assertEquals(50, writer.getWrittenCount())
+        assertEquals(0, writer.getQueueDepth())
+        assertTrue(writer.getMaxQueueDepth() <= 4)
+        assertTrue(writer.getMaxWriteNanos() > 0)
+        assertTrue(writer.getTotalWriteNanos() >= writer.getMaxWriteNanos())
+        assertEquals(50, tmpDir.listFiles().findAll { it.name.endsWith(".s") }.size())
+    }
+
+    @Test
+    void testDrainWritesToJournal() {
+        final PerTestRecordingJournal journal = new PerTestRecordingJournal(new File(tmpDir, basename).getAbsolutePath(), 1)
+        final AsyncPerTestRecordingWriter writer = new AsyncPerTestRecordingWriter("rec", journal, 16, Thread.currentThread().getThreadGroup())
+        (0..<10).each { writer.submit(newRecording(it)) }
+        writer.drain()
+        journal.close()
+
+        final RecordingTranscripts.Filter filter = new RecordingTranscripts.Filter(tmpDir, basename, 0, Long.MAX_VALUE, false, true)
+        filter.collectAllFiles()
+        int numRead = 0
+        filter.getPerTestRecordingFiles().each {
+            numRead += RecordingTranscripts.readJournalFromDisk(it, new CoverageDataSpec(), { })
+        }
+        assertEquals(10, numRead)
+    }
+
+    @Test
+    void testBackPressureBlocksSubmitter() {
+        final CountDownLatch writeStarted = new CountDownLatch(1)
+        final CountDownLatch releaseWrite = new CountDownLatch(1)
+        final LivePerTestRecording slowRecording = [transcribe: { ->
+            writeStarted.countDown()
+            releaseWrite.await()
+            "slow"
+        }] as LivePerTestRecording
+
+        final AsyncPerTestRecordingWriter writer = new AsyncPerTestRecordingWriter("rec", null, 1, Thread.currentThread().getThreadGroup())
+        writer.submit(slowRecording)
+        writeStarted.await()
+        writer.submit(newRecording(1)) // fills the queue
+
+        final Thread submitter = Thread.start { writer.submit(newRecording(2)) }
+        submitter.join(200)
+        assertTrue("submitter shall wait for a free slot in the queue", submitter.isAlive())
+
+        releaseWrite.countDown()
+        submitter.join()
+        writer.drain()
+        assertEquals(3, writer.getWrittenCount())
+    }
+
+    @Test
+    void testEnabledBySystemProperty() {
+        assertNull(new FixedSizeCoverageRecorder(new File(tmpDir, basename).getAbsolutePath(), 0, 10, 0L).getPerTestWriter())
+
+        System.setProperty(CloverNames.PROP_PER_TEST_ASYNC_WRITE, "true")
+        assertNotNull(new FixedSizeCoverageRecorder(new File(tmpDir, basename).getAbsolutePath(), 0, 10, 0L).getPerTestWriter())
+    }
+
+    @Test
+    void testExplicitFlushWritesQueuedRecordings() {
+        System.setProperty(CloverNames.PROP_PER_TEST_ASYNC_WRITE, "true")
+        final FixedSizeCoverageRecorder recorder = new FixedSizeCoverageRecorder(
+                new File(tmpDir, basename).getAbsolutePath(), 0, 10, 0L)
+        (0..<5).each {
+            final long now = System.currentTimeMillis()
+            recorder.sliceStart("TestClass", now, it, it)
+            recorder.inc(it)
+            recorder.sliceEnd("TestClass", "test" + it, null, now, it, it, PerTestRecorder.NORMAL_EXIT, null)
+        }
+        recorder.flush()
+
+        assertEquals(5, recorder.getPerTestWriter().getWrittenCount())
+        assertEquals(5, tmpDir.listFiles().findAll { it.name.endsWith(".s") }.size())
+    }
+
+    private LivePerTestRecording newRecording(int i) {
+        final CloverBitSet coverage = new CloverBitSet()
+        coverage.add(i)
+        final long now = System.currentTimeMillis()
+        new FileBasedPerTestRecording(new File(tmpDir, basename).getAbsolutePath(), 1, 123, coverage, "test" + i, null,
+                now, now, 0.001, new RuntimeType("TestClass"), i, 0, PerTestRecorder.NORMAL_EXIT, null)
+    }
+}
@@ -0,0 +1,114 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.CloverNames
+import org.openclover.runtime.ErrorInfo
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.recorder.BaseCoverageRecording
+import org.openclover.runtime.recorder.FileBasedGlobalCoverageRecording
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.GlobalCoverageRecording
+import org.openclover.runtime.recorder.PerTestRecorder
+import org.openclover.runtime.recorder.PerTestRecording
+import org.openclover.runtime.util.CloverBitSet
+import org_openclover_runtime.Clover
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+class BlockCoverageRecordingTest {
+    private File recDir
+    private CoverageDataSpec spec
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        recDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        recDir.delete()
+        recDir.mkdir()
+        spec = new CoverageDataSpec()
+        spec.setFilterTraces(false)
+        System.setProperty(CloverNames.PROP_BLOCK_COVERAGE, "true")
+    }
+
+    @After
+    void tearDown() throws Exception {
+        System.clearProperty(CloverNames.PROP_BLOCK_COVERAGE)
+        FileUtils.deltree(recDir)
+    }
+
+    @Test
+    void testGlobalRecordingWriteRead() throws IOException {
+        final String recname = Clover.getRecordingName(hashCode(), "testrec", System.currentTimeMillis())
+        final File recFile = new File(recDir, recname)
+        final int[] elements = new int[10000]
+        elements[0] = 1
+        elements[5000] = 300
+        elements[9999] = 2
+
+        final long ts = System.currentTimeMillis()
+        FileBasedGlobalCoverageRecording.flushToDisk(recFile.getAbsolutePath(), 1L, ts, elements)
+        assertEquals(GlobalCoverageRecording.BLOCK_FORMAT, readRawHeader(recFile).getFormat())
+
+        final GlobalCoverageRecordingTranscript read = RecordingTranscripts.readCoverageFromDisk(recDir, recname, spec)
+        assertEquals(1L, read.getDbVersion())
+        assertEquals(ts, read.getWriteTimeStamp())
+        assertEquals(303, read.getCoverageSum())
+        assertEquals(10000, read.getCount())
+        assertEquals(300, read.get(5000))
+        assertEquals(2, read.get(9999))
+    }
+
+    @Test
+    void testBlockAndDeflatedRecordingsAreReadTogether() throws IOException {
+        final String recname = Clover.getRecordingName(hashCode(), "testrec", System.currentTimeMillis())
+        final File recFile = new File(recDir, recname)
+        final int[] elements = new int[40]
+        final long ts = System.currentTimeMillis()
+        FileBasedGlobalCoverageRecording.flushToDisk(recFile.getAbsolutePath(), 1L, ts, elements)
+
+        // newer alternate file in the default format
+        System.clearProperty(CloverNames.PROP_BLOCK_COVERAGE)
+        Arrays.fill(elements, 1)
+        FileBasedGlobalCoverageRecording.flushToDisk(recFile.getAbsolutePath() + GlobalCoverageRecording.ALT_SUFFIX, 1L, ts + 1, elements)
+
+        final GlobalCoverageRecordingTranscript read = RecordingTranscripts.readCoverageFromDisk(recDir, recname, spec)
+        assertEquals(ts + 1, read.getWriteTimeStamp())
+        assertEquals(40, read.getCoverageSum())
+    }
+
+    @Test
+    void testPerTestRecordingWriteRead() throws IOException {
+        final CloverBitSet coverage = new CloverBitSet()
+        coverage.add(3)
+        coverage.add(70000)
+        final long now = System.currentTimeMillis()
+        final File recFile = new File(new FileBasedPerTestRecording(new File(recDir, "clover.db").getAbsolutePath(), 1L, 123,
+                coverage, "testFoo", null, now, now, 0.5, new RuntimeType("FooTest"), 1, 0,
+                PerTestRecorder.ABNORMAL_EXIT, new ErrorInfo("failed", "a stack trace")).transcribe())
+        assertEquals(PerTestRecording.BLOCK_FORMAT, readRawHeader(recFile).getFormat())
+
+        final PerTestRecordingTranscript read = RecordingTranscripts.readSliceFromDisk(recFile.getParentFile(), recFile.getName(), spec)
+        assertEquals("FooTest", read.getTestTypeName())
+        assertEquals("testFoo", read.getTestMethodName())
+        assertEquals("failed", read.getExitMessage())
+        assertEquals("a stack trace", read.getStackTrace())
+        assertFalse(read.isResultPassed())
+        assertTrue(read.get(3))
+        assertTrue(read.get(70000))
+        assertFalse(read.get(4))
+    }
+
+    private static BaseCoverageRecording.Header readRawHeader(File file) {
+        new DataInputStream(new FileInputStream(file)).withCloseable { new BaseCoverageRecording.Header(it) }
+    }
+}
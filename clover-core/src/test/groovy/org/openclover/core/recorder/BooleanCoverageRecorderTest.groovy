@@ -0,0 +1,164 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.recorder.BooleanCoverageRecorder
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.GlobalCoverageRecording
+import org.openclover.runtime.recorder.GlobalRecordingWriteStrategy
+import org.openclover.runtime.recorder.NullRecorder
+import org.openclover.runtime.recorder.StripedCoverageRecorder
+import org.openclover.runtime.registry.format.RegAccessMode
+import org.openclover.runtime.util.CloverBitSet
+import org_openclover_runtime.CoverageRecorder
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertArrayEquals
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+
+class BooleanCoverageRecorderTest {
+    File recDir
+    File testDb
+    long dbVersion
+    CoverageDataSpec spec
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        recDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        recDir.delete()
+        recDir.mkdir()
+        dbVersion = System.currentTimeMillis()
+        testDb = new File(recDir, "testdb")
+        spec = new CoverageDataSpec()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(recDir)
+    }
+
+    @Test
+    void testHitsAreRecordedAsFlags() {
+        final BooleanCoverageRecorder recorder = new BooleanCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 130, 0L)
+        recorder.inc(0)
+        recorder.inc(0)
+        recorder.inc(64)
+        assertEquals(1, recorder.iget(129))
+        assertEquals(1, recorder.iget(129))
+
+        final int[] hits = recorder.getCoverageSnapshot().getCoverage()[0]
+        assertEquals(130, hits.length)
+        assertEquals(3, hits.sum())
+        assertEquals(1, hits[0])
+        assertEquals(1, hits[64])
+        assertEquals(1, hits[129])
+    }
+
+    @Test
+    void testNoHitsLostWhenManyThreadsMarkTheSameWord() throws Exception {
+        final int numThreads = 8
+        final BooleanCoverageRecorder recorder = new BooleanCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 64 * numThreads, 0L)
+        final CountDownLatch startGate = new CountDownLatch(1)
+
+        final List<Thread> threads = (0..<numThreads).collect { int t ->
+            Thread.start {
+                startGate.await()
+                // every thread marks different bits within the same words
+                for (int i = t; i < 64 * numThreads; i += numThreads) {
+                    recorder.inc(i)
+                }
+            }
+        }
+        startGate.countDown()
+        threads*.join()
+
+        final int[] hits = recorder.getCoverageSnapshot().getCoverage()[0]
+        assertEquals(64 * numThreads, hits.sum())
+    }
+
+    @Test
+    void testWriteAndRead() throws Exception {
+        final BooleanCoverageRecorder recorder = new BooleanCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 2000, 0L)
+        recorder.startRun()
+        Runtime.getRuntime().removeShutdownHook(recorder.getShutdownFlusher())
+        final File recordingFile = new File(recorder.getRecordingName())
+
+        recorder.inc(0)
+        recorder.inc(0)
+        recorder.inc(1999)
+        recorder.forceFlush()
+
+        final GlobalCoverageRecordingTranscript recording = RecordingTranscripts.readCoverageFromDisk(recordingFile, spec)
+        assertEquals(GlobalCoverageRecording.BITMAP_FORMAT, recording.getFormat())
+        assertEquals(2000, recording.getCount())
+        assertEquals(2, recording.getCoverageSum())
+        assertEquals(1, recording.get(0))
+        assertEquals(0, recording.get(1))
+        assertEquals(1, recording.get(1999))
+    }
+
+    @Test
+    void testDefaultBitmapWriteExpandsToHitCounts() throws Exception {
+        int[] written = null
+        final GlobalRecordingWriteStrategy strategy = new GlobalRecordingWriteStrategy() {
+            @Override
+            String write(String recordingFileName, long dbVersion, long lastFlush, int[][] hits, int elementCount) {
+                written = hits[0]
+                return recordingFileName
+            }
+        }
+        final BooleanCoverageRecorder recorder = new BooleanCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 5, 0L, strategy)
+        recorder.inc(1)
+        recorder.inc(4)
+        recorder.forceFlush()
+
+        assertArrayEquals([0, 1, 0, 0, 1] as int[], written)
+    }
+
+    @Test
+    void testCompareCoverageWith() {
+        final BooleanCoverageRecorder recorder = new BooleanCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 100, 0L)
+        recorder.inc(1)
+        final def before = recorder.getCoverageSnapshot()
+        recorder.inc(1)
+        recorder.inc(2)
+
+        final CloverBitSet diff = recorder.compareCoverageWith(before)
+        assertFalse(diff.member(1))
+        assertTrue(diff.member(2))
+    }
+
+    @Test
+    void testCapacity() {
+        final CoverageRecorder recorder = new BooleanCoverageRecorder("foo", 0, 1000, 0L)
+        assertSame(recorder, recorder.withCapacityFor(1000))
+        assertSame(NullRecorder.INSTANCE, recorder.withCapacityFor(1001))
+    }
+
+    @Test
+    void testSelectedByConfigBits() throws Exception {
+        final Clover2Registry reg = new Clover2Registry(testDb, RegAccessMode.READWRITE, testName.methodName)
+        reg.saveAndOverwriteFile()
+
+        final long booleanBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, 0, false, false, false, true,
+                CoverageRecorder.RECORDING_FORMAT_BOOLEAN)
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, booleanBits) instanceof BooleanCoverageRecorder)
+
+        final long stripedBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, 0, false, false, false, true,
+                CoverageRecorder.RECORDING_FORMAT_INTEGER)
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, stripedBits) instanceof StripedCoverageRecorder)
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.rules.TestName
 import org.openclover.buildutil.testutils.IOHelper
 import org.openclover.core.CloverDatabase
 import org.openclover.core.CloverDatabaseSpec
+import org.openclover.core.CloverMerge
 import org.openclover.core.CodeType
 import org.openclover.core.CoverageDataSpec
 import org.openclover.core.ProgressListener
@@ -40,6 +41,8 @@ import org_openclover_runtime.Clover
 import java.util.regex.Pattern
 
 import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
 import static org.junit.Assert.assertSame
 import static org.junit.Assert.assertTrue
 import static org.openclover.core.util.Lists.newArrayList
@@ -289,6 +292,91 @@ class CloverDatabaseTest {
         assertEquals("classes", 4, metrics.getNumClasses())
     }
 
+    @Test
+    void testParallelMergeMatchesSequential() throws Exception {
+        final File notADatabase = File.createTempFile("garbage", ".cdb", tmpDir)
+        notADatabase.text = "not a database"
+
+        final List<CloverDatabaseSpec> specs = newArrayList()
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("a", "a", 32000, 1, 1, [1, 0, 0, 0, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("a", "a", 32000, 1, 1, [0, 2, 0, 0, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(notADatabase.getAbsolutePath()))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 2, 2, [0, 0, 1, 0, 0] as int[])))
+        // a newer record replaces "b" and drops its coverage, an older one is ignored
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 3, 3, [0, 0, 0, 1, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 4, 1, [1, 1, 1, 1, 1] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("c", "c", 32000, 5, 5, [0, 0, 0, 0, 3] as int[])))
+
+        final File sequentialDb = File.createTempFile("merge", ".cdb", tmpDir)
+        final File parallelDb = File.createTempFile("merge", ".cdb", tmpDir)
+        CloverDatabase.merge(newArrayList(specs), sequentialDb.getAbsolutePath(), false, Interval.DEFAULT_SPAN,
+                ProgressListener.NOOP_LISTENER, 1)
+        CloverDatabase.merge(newArrayList(specs), parallelDb.getAbsolutePath(), false, Interval.DEFAULT_SPAN,
+                ProgressListener.NOOP_LISTENER, 4)
+
+        final CloverDatabase sequential = new CloverDatabase(sequentialDb.getAbsolutePath())
+        sequential.loadCoverageData()
+        final CloverDatabase parallel = new CloverDatabase(parallelDb.getAbsolutePath())
+        parallel.loadCoverageData()
+
+        assertEquals(15, sequential.getFullModel().getDataLength())
+        assertEquals(sequential.getFullModel().getDataLength(), parallel.getFullModel().getDataLength())
+        assertEquals(sequential.getFullModel().getMetrics(), parallel.getFullModel().getMetrics())
+        assertEquals(sequential.getCoverageData().getHitCounts().toList(), parallel.getCoverageData().getHitCounts().toList())
+        assertEquals(3L, sequential.getFullModel().findClass("b.b").getContainingFile().getChecksum())
+        assertEquals(4, sequential.getFullModel().findClass("a.a").getMetrics().getNumCoveredElements()
+                + sequential.getFullModel().findClass("b.b").getMetrics().getNumCoveredElements()
+                + sequential.getFullModel().findClass("c.c").getMetrics().getNumCoveredElements())
+    }
+
+    @Test
+    void testMergeOfPartsMatchesFlatMerge() throws Exception {
+        final List<CloverDatabaseSpec> specs = newArrayList()
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("a", "a", 32000, 1, 1, [1, 0, 0, 0, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 2, 2, [0, 0, 1, 0, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("a", "a", 32000, 2, 2, [0, 1, 0, 0, 0] as int[])))
+        // newer records replace older ones, in another part too
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("a", "a", 32000, 4, 3, [0, 0, 1, 0, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 2, 2, [0, 0, 0, 4, 0] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("c", "c", 32000, 5, 5, [0, 0, 0, 0, 3] as int[])))
+        specs.add(new CloverDatabaseSpec(createSingleClassDatabase("b", "b", 32000, 6, 1, [1, 1, 1, 1, 1] as int[])))
+
+        final File flatDb = File.createTempFile("merge", ".cdb", tmpDir)
+        CloverDatabase.merge(newArrayList(specs), flatDb.getAbsolutePath(), false, Interval.DEFAULT_SPAN,
+                ProgressListener.NOOP_LISTENER, 1)
+
+        // parts merged by separate invocations of the command line tool, then merged together
+        final List<String> partDbs = (1..3).collect { int part ->
+            final File partDb = File.createTempFile("part", ".cdb", tmpDir)
+            final List<String> args = ["-i", partDb.getAbsolutePath(), "--part", part + "/3", "--threads", "2"]
+            args.addAll(specs*.getInitString())
+            assertEquals(0, CloverMerge.mainImpl(args as String[]))
+            partDb.getAbsolutePath()
+        }
+        // only databases of a part are merged in the part
+        assertNull(new CloverDatabase(partDbs[0]).getFullModel().findClass("c.c"))
+        assertNotNull(new CloverDatabase(partDbs[2]).getFullModel().findClass("c.c"))
+
+        final File partsDb = File.createTempFile("merge", ".cdb", tmpDir)
+        CloverDatabase.merge(partDbs.collect { new CloverDatabaseSpec(it) }, partsDb.getAbsolutePath())
+
+        final CloverDatabase flat = new CloverDatabase(flatDb.getAbsolutePath())
+        flat.loadCoverageData()
+        assertEquals(15, flat.getFullModel().getDataLength())
+        assertEquals(3L, flat.getFullModel().findClass("a.a").getContainingFile().getTimestamp())
+        final CloverDatabase merged = new CloverDatabase(partsDb.getAbsolutePath())
+        merged.loadCoverageData()
+        assertEquals(flat.getFullModel().getDataLength(), merged.getFullModel().getDataLength())
+        assertEquals(flat.getFullModel().getMetrics(), merged.getFullModel().getMetrics())
+        assertEquals(flat.getCoverageData().getHitCounts().toList(), merged.getCoverageData().getHitCounts().toList())
+        ["a.a", "b.b", "c.c"].each { String name ->
+            assertEquals(name, flat.getFullModel().findClass(name).getContainingFile().getChecksum(),
+                    merged.getFullModel().findClass(name).getContainingFile().getChecksum())
+            assertEquals(name, flat.getFullModel().findClass(name).getContainingFile().getDataIndex(),
+                    merged.getFullModel().findClass(name).getContainingFile().getDataIndex())
+        }
+    }
+
     @Test
     void testMergeDatabaseMarking() throws Exception {
         CloverDatabaseSpec dbspec1 = new CloverDatabaseSpec(createSingleClassDatabase("a.b.c", "d", 32000, 1234, 4321,
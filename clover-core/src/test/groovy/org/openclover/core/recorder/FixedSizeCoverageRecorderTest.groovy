@@ -15,7 +15,9 @@ import org.openclover.runtime.registry.format.RegAccessMode
 import org_openclover_runtime.CoverageRecorder
 
 import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
 import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
 
 class FixedSizeCoverageRecorderTest {
     File recDir
@@ -196,6 +198,14 @@ class FixedSizeCoverageRecorderTest {
         assertSame(recorder, recorder.withCapacityFor(1000))
     }
 
+    @Test
+    void testCapacityCheckMatchesRecorderReturned() {
+        CoverageRecorder recorder = new FixedSizeCoverageRecorder("foo", 0, 1000, 0L)
+        assertTrue(recorder.hasCapacityFor(1000))
+        assertFalse(recorder.hasCapacityFor(1001))
+        assertTrue(NullRecorder.INSTANCE.hasCapacityFor(1001))
+    }
+
     @Test
     void testNullRecorderReturnedWhenMergedDatabaseUsed() throws IOException, CloverException {
         Clover2Registry reg = new Clover2Registry(testDb, RegAccessMode.READONLY, testName.methodName)
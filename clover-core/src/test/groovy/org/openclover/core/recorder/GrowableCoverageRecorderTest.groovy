@@ -68,6 +68,8 @@ class GrowableCoverageRecorderTest {
         recorder.iget(7)
 
         assertSame(recorder, recorder.withCapacityFor((GrowableCoverageRecorder.CoverageMatrix.WIDTH / 2) as int))
+        assertTrue(recorder.hasCapacityFor(GrowableCoverageRecorder.CoverageMatrix.WIDTH))
+        assertFalse(recorder.hasCapacityFor(GrowableCoverageRecorder.CoverageMatrix.WIDTH + 1))
     }
 
     @Test
@@ -2,7 +2,12 @@ package org.openclover.core.recorder
 
 import org.openclover.core.CoverageDataSpec
 import org.openclover.core.CoverageDataTestBase
+import org.openclover.core.api.registry.TestCaseInfo
 import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.entities.FullTestCaseInfo
+import org.openclover.core.util.SimpleCoverageRange
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.util.CloverBitSet
 
 class InMemPerTestCoverageTest extends CoverageDataTestBase {
     protected CoverageDataSpec newCoverageDataSpec() {
@@ -12,4 +17,67 @@ class InMemPerTestCoverageTest extends CoverageDataTestBase {
     protected InMemPerTestCoverage newPerTestCoverage(Clover2Registry registry) {
         return new InMemPerTestCoverage(registry)
     }
+
+    /**
+     * An index persisted for other recordings must not be reused
+     */
+    void testIndexOfOtherRecordingsIsRebuilt() throws Exception {
+        final File indexFile = File.createTempFile(getClass().getName(), ".tix")
+        indexFile.delete()
+        try {
+            final InMemPerTestCoverage written = coverageHitting(10, 100, 300)
+            written.setIndexFile(indexFile, 1)
+            assertFalse("index is built on first use only", indexFile.exists())
+            assertEquals(1, written.getTestsCovering(new SimpleCoverageRange(100, 1)).size())
+            assertTrue(indexFile.exists())
+
+            // other slots in other blocks of the index
+            final InMemPerTestCoverage other = coverageHitting(10, 200, 300)
+            other.setIndexFile(indexFile, 2)
+            assertEquals(0, other.getTestsCovering(new SimpleCoverageRange(100, 1)).size())
+            assertEquals(1, other.getTestsCovering(new SimpleCoverageRange(200, 1)).size())
+
+            final InMemPerTestCoverage same = coverageHitting(10, 200, 300)
+            same.setIndexFile(indexFile, 2)
+            assertEquals(1, same.getTestsCovering(new SimpleCoverageRange(200, 1)).size())
+        } finally {
+            indexFile.delete()
+            FullTestCaseInfo.Factory.reset()
+        }
+    }
+
+    /**
+     * Hits changed through the set returned for a test, as a merge does, must be seen by later lookups and must not
+     * be persisted as the index of the recordings
+     */
+    void testIndexIsDroppedWhenHitsOfTestAreChanged() throws Exception {
+        final File indexFile = File.createTempFile(getClass().getName(), ".tix")
+        indexFile.delete()
+        try {
+            final InMemPerTestCoverage coverage = coverageHitting(10)
+            coverage.setIndexFile(indexFile, 1)
+            assertEquals(0, coverage.getTestsCovering(new SimpleCoverageRange(400, 1)).size())
+            assertTrue(indexFile.delete())
+
+            final TestCaseInfo tci = coverage.getTests().iterator().next()
+            coverage.getHitsFor(tci).set(400)
+            assertEquals([tci] as Set, coverage.getTestsCovering(new SimpleCoverageRange(400, 1)))
+            assertFalse(indexFile.exists())
+        } finally {
+            indexFile.delete()
+            FullTestCaseInfo.Factory.reset()
+        }
+    }
+
+    private static InMemPerTestCoverage coverageHitting(int... slots) {
+        final CloverBitSet hits = new CloverBitSet(512)
+        slots.each { hits.add(it) }
+        final PerTestRecordingTranscript recording = new PerTestRecordingTranscript(
+                hits, null, 0, "test", "testAtRuntime", 1, 2, 0.001,
+                new RuntimeType("com.foo.Test"), 0, 0, 1, null)
+        final TestCaseInfo tci = FullTestCaseInfo.Factory.getInstanceForSlice(recording)
+        final InMemPerTestCoverage coverage = new InMemPerTestCoverage(512)
+        coverage.addCoverage(tci, recording)
+        return coverage
+    }
 }
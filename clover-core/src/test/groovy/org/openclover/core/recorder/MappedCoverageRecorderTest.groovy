@@ -0,0 +1,118 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.CloverNames
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.MappedCoverageRecorder
+import org.openclover.runtime.recorder.NullRecorder
+import org.openclover.runtime.registry.format.RegAccessMode
+import org.openclover.runtime.util.CloverBitSet
+import org_openclover_runtime.CoverageRecorder
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+
+class MappedCoverageRecorderTest {
+    File recDir
+    File testDb
+    long dbVersion
+    CoverageDataSpec spec
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        recDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        recDir.delete()
+        recDir.mkdir()
+        dbVersion = System.currentTimeMillis()
+        testDb = new File(recDir, "testdb")
+        spec = new CoverageDataSpec()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        System.clearProperty(CloverNames.PROP_MAPPED_COVERAGE)
+        FileUtils.deltree(recDir)
+    }
+
+    @Test
+    void testHitsAreVisibleInFileAfterFlush() throws Exception {
+        final MappedCoverageRecorder recorder = new MappedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 2000, 0L)
+        final File recordingFile = new File(recorder.getRecordingName())
+        assertTrue(MappedCoverageRecordingTranscript.isMappedRecording(recordingFile))
+
+        recorder.inc(0)
+        recorder.inc(1999)
+        assertEquals(2, recorder.iget(1999))
+        recorder.forceFlush()
+
+        final GlobalCoverageRecordingTranscript recording = RecordingTranscripts.readCoverageFromDisk(recordingFile, spec)
+        assertTrue(recording instanceof MappedCoverageRecordingTranscript)
+        assertEquals(dbVersion, recording.getDbVersion())
+        assertEquals(2000, recording.getCount())
+        assertEquals(3, recording.getCoverageSum())
+        assertEquals(1, recording.get(0))
+        assertEquals(2, recording.get(1999))
+        final long firstFlush = recording.getWriteTimeStamp()
+
+        // no alternate file, the same file is updated in place
+        recorder.inc(5)
+        recorder.forceFlush()
+        assertFalse(new File(recordingFile.getPath() + ".1").exists())
+        final GlobalCoverageRecordingTranscript updated = RecordingTranscripts.readCoverageFromDisk(recordingFile, spec)
+        assertEquals(4, updated.getCoverageSum())
+        assertTrue(updated.getWriteTimeStamp() > firstFlush)
+    }
+
+    @Test
+    void testCompressedRecordingIsNotMapped() throws Exception {
+        final FixedSizeCoverageRecorder recorder = new FixedSizeCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 2000, 0L)
+        recorder.inc(3)
+        recorder.forceFlush()
+        final File recordingFile = new File(recorder.getRecordingName())
+        assertFalse(MappedCoverageRecordingTranscript.isMappedRecording(recordingFile))
+        assertEquals(1, RecordingTranscripts.readCoverageFromDisk(recordingFile, spec).get(3))
+    }
+
+    @Test
+    void testSnapshotAndCompareCoverageWith() throws Exception {
+        final MappedCoverageRecorder recorder = new MappedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 100, 0L)
+        recorder.inc(1)
+        final def before = recorder.getCoverageSnapshot()
+        assertEquals(1, before.getCoverage()[0][1])
+        recorder.inc(2)
+
+        final CloverBitSet diff = recorder.compareCoverageWith(before)
+        assertFalse(diff.member(1))
+        assertTrue(diff.member(2))
+    }
+
+    @Test
+    void testCapacity() throws Exception {
+        final CoverageRecorder recorder = new MappedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 1000, 0L)
+        assertSame(recorder, recorder.withCapacityFor(1000))
+        assertSame(NullRecorder.INSTANCE, recorder.withCapacityFor(1001))
+    }
+
+    @Test
+    void testSelectedBySystemProperty() throws Exception {
+        final Clover2Registry reg = new Clover2Registry(testDb, RegAccessMode.READWRITE, testName.methodName)
+        reg.saveAndOverwriteFile()
+        final long cfgBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, 0, false, false, false)
+
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, cfgBits) instanceof FixedSizeCoverageRecorder)
+        System.setProperty(CloverNames.PROP_MAPPED_COVERAGE, "true")
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, cfgBits) instanceof MappedCoverageRecorder)
+    }
+}
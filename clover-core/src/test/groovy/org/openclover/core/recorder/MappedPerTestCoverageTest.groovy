@@ -0,0 +1,77 @@
+package org.openclover.core.recorder
+
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.CoverageDataTestBase
+import org.openclover.core.api.registry.TestCaseInfo
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.entities.FullFileInfo
+import org.openclover.core.registry.entities.FullTestCaseInfo
+import org.openclover.core.util.SimpleCoverageRange
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.util.CloverBitSet
+
+class MappedPerTestCoverageTest extends CoverageDataTestBase {
+    protected CoverageDataSpec newCoverageDataSpec() {
+        return new CoverageDataSpec(null, 0, false, true, false, true, PerTestCoverageStrategy.MAPPED)
+    }
+
+    protected PerTestCoverage newPerTestCoverage(Clover2Registry registry) {
+        return new MappedPerTestCoverage(registry)
+    }
+
+    /**
+     * Records spanning many small segments, both sparse (stored as runs) and dense (stored as bitmaps),
+     * must read back the same as in memory
+     */
+    void testRecordsAcrossSegments() throws Exception {
+        final int coverageSize = 1000
+        final MappedPerTestCoverage mapped = new MappedPerTestCoverage(coverageSize, 256)
+        final InMemPerTestCoverage inMem = new InMemPerTestCoverage(coverageSize)
+        final Random random = new Random(42)
+
+        final List<TestCaseInfo> tcis = []
+        for (int i = 0; i < 50; i++) {
+            final CloverBitSet hits = new CloverBitSet(coverageSize)
+            final int count = i % 2 == 0 ? 5 : 700
+            for (int j = 0; j < count; j++) {
+                hits.add(random.nextInt(coverageSize))
+            }
+            final PerTestRecordingTranscript recording = new PerTestRecordingTranscript(
+                    hits, null, 0, "test" + i, "test" + i + "AtRuntime", i, i + 1, 0.001,
+                    new RuntimeType("com.foo.Test" + (i % 3)), 0, i, i % 5 == 0 ? 1 : 0, null)
+            final TestCaseInfo tci = FullTestCaseInfo.Factory.getInstanceForSlice(recording)
+            mapped.addCoverage(tci, recording)
+            inMem.addCoverage(tci, recording)
+            tcis.add(tci)
+        }
+
+        assertEquals(inMem.getTests(), mapped.getTests())
+        tcis.each { TestCaseInfo tci ->
+            assertEquals(inMem.getHitsFor(tci), mapped.getHitsFor(tci))
+        }
+        assertEquals(inMem.getAllHits(), mapped.getAllHits())
+        assertEquals(inMem.getPassOnlyHits(), mapped.getPassOnlyHits())
+
+        final SimpleCoverageRange range = new SimpleCoverageRange(100, 50)
+        assertEquals(inMem.getTestsCovering(range), mapped.getTestsCovering(range))
+        assertEquals(inMem.getHitsFor(tcis.subList(10, 20) as Set, range),
+                mapped.getHitsFor(tcis.subList(10, 20) as Set, range))
+        assertEquals(inMem.getUniqueHitsFor(tcis[1]), mapped.getUniqueHitsFor(tcis[1]))
+
+        // hits of a file are limited to its slots
+        final FullFileInfo file = new FullFileInfo(null, new File("Foo.java"), null, 100, 0, 0, 0, 0, 0, 0)
+        file.setDataLength(50)
+        final Map<TestCaseInfo, BitSet> fileCoverage = mapped.mapTestsAndCoverageForFile(file)
+        assertEquals(inMem.getTestsCovering(range), fileCoverage.keySet())
+        fileCoverage.each { TestCaseInfo tci, BitSet hits ->
+            final BitSet expected = inMem.getHitsFor(tci).get(0, 150)
+            expected.clear(0, 100)
+            assertEquals(expected, hits)
+        }
+
+        mapped.release()
+        assertFalse(mapped.hasPerTestData())
+        assertTrue(mapped.getTests().isEmpty())
+        assertTrue(mapped.getAllHits().isEmpty())
+    }
+}
@@ -0,0 +1,88 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
+
+class PerTestCoverageIndexTest {
+    private static final int COVERAGE_SIZE = 1000
+
+    private File indexFile
+    private List<BitSet> hits
+
+    @Before
+    void setUp() throws Exception {
+        indexFile = File.createTempFile(getClass().getName(), ".tix")
+        indexFile.delete()
+
+        final Random random = new Random(7)
+        hits = (0..<200).collect { int ordinal ->
+            final BitSet testHits = new BitSet(COVERAGE_SIZE)
+            // a mix of narrow, wide and empty tests
+            final int numHits = ordinal % 10 == 0 ? 0 : (ordinal % 3 == 0 ? 300 : 4)
+            final int from = random.nextInt(COVERAGE_SIZE)
+            for (int i = 0; i < numHits; i++) {
+                testHits.set((from + random.nextInt(200)) % COVERAGE_SIZE)
+            }
+            testHits
+        }
+    }
+
+    @After
+    void tearDown() throws Exception {
+        indexFile.delete()
+    }
+
+    @Test
+    void testTestsCoveringMatchesScan() {
+        final PerTestCoverageIndex index = PerTestCoverageIndex.build(hits, COVERAGE_SIZE, 1L)
+        checkMatchesScan(index)
+    }
+
+    @Test
+    void testWriteAndRead() throws Exception {
+        PerTestCoverageIndex.build(hits, COVERAGE_SIZE, 1L).write(indexFile)
+
+        final PerTestCoverageIndex index = PerTestCoverageIndex.read(indexFile, COVERAGE_SIZE, 1L)
+        assertNotNull(index)
+        checkMatchesScan(index)
+
+        assertNull(PerTestCoverageIndex.read(indexFile, COVERAGE_SIZE, 2L))
+        assertNull(PerTestCoverageIndex.read(indexFile, COVERAGE_SIZE + 1, 1L))
+        assertNull(PerTestCoverageIndex.read(new File(indexFile.getPath() + ".missing"), COVERAGE_SIZE, 1L))
+    }
+
+    @Test
+    void testRangesOutsideOfCoverage() {
+        final PerTestCoverageIndex index = PerTestCoverageIndex.build(hits, COVERAGE_SIZE, 1L)
+        assertEquals(new BitSet(), index.getTestsCovering(COVERAGE_SIZE, 10, { hits[it] }))
+        assertEquals(new BitSet(), index.getTestsCovering(10, 0, { hits[it] }))
+        assertEquals(scan(COVERAGE_SIZE - 10, 10), index.getTestsCovering(COVERAGE_SIZE - 10, Integer.MAX_VALUE, { hits[it] }))
+    }
+
+    private void checkMatchesScan(PerTestCoverageIndex index) {
+        final Random random = new Random(11)
+        for (int i = 0; i < 500; i++) {
+            final int from = random.nextInt(COVERAGE_SIZE)
+            final int length = random.nextInt(i % 2 == 0 ? 10 : 300) + 1
+            assertEquals("[" + from + ", " + (from + length) + ")",
+                    scan(from, length), index.getTestsCovering(from, length, { hits[it] }))
+        }
+        assertEquals(scan(0, COVERAGE_SIZE), index.getTestsCovering(0, COVERAGE_SIZE, { hits[it] }))
+    }
+
+    private BitSet scan(int from, int length) {
+        final BitSet ordinals = new BitSet()
+        hits.eachWithIndex { BitSet testHits, int ordinal ->
+            final int first = testHits.nextSetBit(from)
+            if (first >= 0 && first < from + length) {
+                ordinals.set(ordinal)
+            }
+        }
+        return ordinals
+    }
+}
@@ -0,0 +1,147 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.buildutil.testutils.IOHelper
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.util.collections.Pair
+import org.openclover.runtime.ErrorInfo
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.PerTestRecorder
+import org.openclover.runtime.recorder.PerTestRecordingJournal
+import org.openclover.runtime.util.CloverBitSet
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertNull
+import static org.junit.Assert.assertTrue
+
+class PerTestRecordingJournalTest {
+    private File tmpDir
+    private final String basename = "clover.db"
+    private CoverageDataSpec spec
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        tmpDir = IOHelper.createTmpDir(testName.methodName)
+        spec = new CoverageDataSpec()
+        spec.setFilterTraces(false)
+    }
+
+    @After
+    void tearDown() throws Exception {
+        if (!IOHelper.delete(tmpDir)) {
+            throw new RuntimeException("Unable to delete temporary test directory ${tmpDir.absolutePath}".toString())
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        final PerTestRecordingJournal journal = new PerTestRecordingJournal(dbPath(), 123)
+        append(journal, 0, null)
+        append(journal, 1, new ErrorInfo("failed", "a stack trace"))
+        append(journal, 2, null)
+        journal.close()
+
+        final List<PerTestRecordingTranscript> read = readAll(collectPerTestFiles(null).second)
+        assertEquals(3, read.size())
+        assertEquals(["test0", "test1", "test2"], read*.testMethodName)
+        assertNull(read[0].getRuntimeTestName())
+        assertTrue(read[0].isResultPassed())
+        assertFalse(read[1].isResultPassed())
+        assertEquals("failed", read[1].getExitMessage())
+        assertEquals("a stack trace", read[1].getStackTrace())
+        assertTrue(read[2].get(2))
+        assertFalse(read[2].get(1))
+    }
+
+    @Test
+    void testSegmentsAreRolledOver() throws IOException {
+        final PerTestRecordingJournal journal = new PerTestRecordingJournal(dbPath(), 123, 1)
+        append(journal, 0, null)
+        append(journal, 1, null)
+        append(journal, 2, null)
+        journal.close()
+
+        final Set<RecordingTranscripts.FileRef> segments = collectPerTestFiles(null).second
+        assertEquals(3, segments.size())
+        assertTrue(segments.every { it.isJournal() && it.isTestRecording() })
+        assertEquals(["test0", "test1", "test2"], readAll(segments)*.testMethodName.sort())
+    }
+
+    @Test
+    void testAppendedRecordsAreReadIncrementally() throws IOException {
+        final PerTestRecordingJournal journal = new PerTestRecordingJournal(dbPath(), 123)
+        append(journal, 0, null)
+
+        final RecordingTranscripts.Filter filter1 = new RecordingTranscripts.Filter(tmpDir, basename, 0, Long.MAX_VALUE, false, true)
+        final Pair<Set<RecordingTranscripts.FileRef>, Set<RecordingTranscripts.FileRef>> files1 = filter1.collectUnseenFilesAnd(null)
+        assertEquals(["test0"], readAll(files1.second)*.testMethodName)
+
+        // nothing new yet
+        final RecordingTranscripts.Filter filter2 = new RecordingTranscripts.Filter(tmpDir, basename, 0, Long.MAX_VALUE, false, true)
+        assertTrue(filter2.collectUnseenFilesAnd(filter1).second.isEmpty())
+        assertEquals(1, filter2.getPerTestRecordingFiles().size())
+
+        append(journal, 1, null)
+        append(journal, 2, null)
+        journal.close()
+
+        final RecordingTranscripts.Filter filter3 = new RecordingTranscripts.Filter(tmpDir, basename, 0, Long.MAX_VALUE, false, true)
+        final Pair<Set<RecordingTranscripts.FileRef>, Set<RecordingTranscripts.FileRef>> files3 = filter3.collectUnseenFilesAnd(filter2)
+        assertEquals(["test1", "test2"], readAll(files3.second)*.testMethodName)
+        assertEquals(1, filter3.getPerTestRecordingFiles().size())
+    }
+
+    @Test
+    void testTornRecordIsSkipped() throws IOException {
+        final PerTestRecordingJournal journal = new PerTestRecordingJournal(dbPath(), 123)
+        append(journal, 0, null)
+        append(journal, 1, null)
+        journal.close()
+
+        final RecordingTranscripts.FileRef segment = collectPerTestFiles(null).second.iterator().next()
+        final File file = segment.getDatafile()
+        final byte[] intact = file.bytes
+        file.withOutputStream { OutputStream out ->
+            out.write(intact, 0, intact.length - 3) // truncate the last record
+        }
+
+        final List<PerTestRecordingTranscript> read = readAll([segment] as Set)
+        assertEquals(["test0"], read*.testMethodName)
+        assertTrue(segment.getJournalEnd() < file.length())
+    }
+
+    private String dbPath() {
+        new File(tmpDir, basename).getAbsolutePath()
+    }
+
+    private Pair<Set<RecordingTranscripts.FileRef>, Set<RecordingTranscripts.FileRef>> collectPerTestFiles(RecordingTranscripts.Filter orig) {
+        new RecordingTranscripts.Filter(tmpDir, basename, 0, Long.MAX_VALUE, false, true).collectUnseenFilesAnd(orig)
+    }
+
+    private List<PerTestRecordingTranscript> readAll(Set<RecordingTranscripts.FileRef> segments) {
+        final List<PerTestRecordingTranscript> read = []
+        segments.each { RecordingTranscripts.FileRef segment ->
+            RecordingTranscripts.readJournalFromDisk(segment, spec, { read.add(it) })
+        }
+        read
+    }
+
+    private void append(PerTestRecordingJournal journal, int i, ErrorInfo errorInfo) {
+        final CloverBitSet coverage = new CloverBitSet()
+        coverage.add(i)
+        final long now = System.currentTimeMillis()
+        new FileBasedPerTestRecording(dbPath(), 1, 123, coverage, "test" + i, null, now, now, 0.001,
+                new RuntimeType("TestClass"), i, 0,
+                errorInfo == null ? PerTestRecorder.NORMAL_EXIT : PerTestRecorder.ABNORMAL_EXIT, errorInfo)
+                .transcribe(journal)
+    }
+}
@@ -0,0 +1,165 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.recorder.PerTestRecorder
+import org.openclover.runtime.registry.format.RegAccessMode
+import org_openclover_runtime.Clover
+import org_openclover_runtime.CoverageRecorder
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotEquals
+import static org.junit.Assert.assertNotSame
+import static org.junit.Assert.assertSame
+
+/**
+ * Micro-benchmark of the slice broadcast in {@link Clover#allRecordersSliceStart(String, int, long)} and
+ * {@link Clover#allRecordersSliceEnd(String, String, String, int, int, org.openclover.runtime.ErrorInfo)}, which
+ * iterates over all registered recorders. Results are printed as slices per second for 1, 8 and 64 threads.
+ * Sizes are overridable via system properties for CI tuning.
+ */
+class RecorderRegistryPerformanceTest {
+
+    private static final int NUM_RECORDERS = Integer.getInteger("clover.perf.registry.recorders", 8)
+    private static final int NUM_SLICES = Integer.getInteger("clover.perf.registry.slices", 20000)
+
+    private static final String TYPE = RecorderRegistryPerformanceTest.class.getName()
+
+    File recDir
+    Clover2Registry registry
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        recDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        recDir.delete()
+        recDir.mkdir()
+        registry = new Clover2Registry(new File(recDir, "clover.db"), RegAccessMode.READWRITE, testName.methodName)
+        registry.saveAndOverwriteFile()
+        Clover.resetRecorders()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        Clover.resetRecorders()
+        FileUtils.deltree(recDir)
+    }
+
+    @Test
+    void testExistingRecorderIsReturned() {
+        final CoverageRecorder recorder = getRecorder(0)
+        assertSame(recorder, getRecorder(0))
+        assertNotSame(recorder, getRecorder(1))
+    }
+
+    @Test
+    void testOverlappingSlicesKeepTheirOwnIds() {
+        final CountDownLatch otherStarted = new CountDownLatch(1)
+        final CountDownLatch otherMayEnd = new CountDownLatch(1)
+        int otherId = -1
+        final Thread other = Thread.start {
+            Clover.allRecordersSliceStart(TYPE, 1, 0)
+            otherId = Clover.getCurrentTestRunID()
+            otherStarted.countDown()
+            otherMayEnd.await()
+            Clover.allRecordersSliceEnd(TYPE, "test", null, 1, PerTestRecorder.NORMAL_EXIT, null)
+        }
+        otherStarted.await()
+
+        Clover.allRecordersSliceStart(TYPE, 0, 0)
+        final int ownId = Clover.getCurrentTestRunID()
+        assertNotEquals(otherId, ownId)
+
+        // the other slice ends first, which must not change the id of the slice still running on this thread
+        otherMayEnd.countDown()
+        other.join()
+        assertEquals(ownId, Clover.getCurrentTestRunID())
+        Clover.allRecordersSliceEnd(TYPE, "test", null, 0, PerTestRecorder.NORMAL_EXIT, null)
+    }
+
+    @Test
+    void testSliceEndedOnAnotherThreadKeepsItsId() {
+        Clover.allRecordersSliceStart(TYPE, 0, 0)
+        final int startedId = Clover.getCurrentTestRunID()
+        int seenId = -1
+        Thread.start {
+            // the id is shared, not kept per thread
+            seenId = Clover.getCurrentTestRunID()
+            Clover.allRecordersSliceEnd(TYPE, "test", null, 0, PerTestRecorder.NORMAL_EXIT, null)
+        }.join()
+        assertEquals(startedId, seenId)
+
+        // the next slice gets the next id, i.e. the ended slice didn't consume one more
+        Clover.allRecordersSliceStart(TYPE, 0, 0)
+        assertEquals(startedId + 1, Clover.getCurrentTestRunID())
+        Clover.allRecordersSliceEnd(TYPE, "test", null, 0, PerTestRecorder.NORMAL_EXIT, null)
+    }
+
+    @Test
+    void testSliceThroughput() {
+        for (int i = 0; i < NUM_RECORDERS; i++) {
+            getRecorder(i)
+        }
+
+        [1, 8, 64].each { int numThreads ->
+            runRound(numThreads) // warm-up
+            final long nanos = runRound(numThreads)
+            println(String.format("recorders: %d, threads: %2d, %.0f slices/s",
+                    NUM_RECORDERS, numThreads, NUM_SLICES * 1e9d / nanos))
+        }
+    }
+
+    /**
+     * Starts and ends NUM_SLICES slices split among threads
+     *
+     * @return time spent, in nanoseconds
+     */
+    private static long runRound(int numThreads) {
+        final int testRunId = nextTestRunId()
+        final int slicesPerThread = NUM_SLICES.intdiv(numThreads)
+        final CountDownLatch startGate = new CountDownLatch(1)
+        final List<Thread> threads = (0..<numThreads).collect { int t ->
+            Thread.start {
+                startGate.await()
+                for (int i = 0; i < slicesPerThread; i++) {
+                    Clover.allRecordersSliceStart(TYPE, i, 0)
+                    Clover.allRecordersSliceEnd(TYPE, "test", null, i, PerTestRecorder.NORMAL_EXIT, null)
+                }
+            }
+        }
+        final long start = System.nanoTime()
+        startGate.countDown()
+        threads*.join()
+        final long nanos = System.nanoTime() - start
+
+        assertEquals(testRunId + slicesPerThread * numThreads + 1, nextTestRunId())
+        return nanos
+    }
+
+    /**
+     * @return id of a slice started and ended by this method
+     */
+    private static int nextTestRunId() {
+        Clover.allRecordersSliceStart(TYPE, -1, 0)
+        final int testRunId = Clover.getCurrentTestRunID()
+        Clover.allRecordersSliceEnd(TYPE, "test", null, -1, PerTestRecorder.NORMAL_EXIT, null)
+        return testRunId
+    }
+
+    private CoverageRecorder getRecorder(int flushInterval) {
+        // no sliced flushing, so that only the broadcast itself is measured; flush interval makes a distinct key
+        final long cfgBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, flushInterval,
+                false, true, true)
+        Clover.getRecorder(registry.getRegistryFile().getAbsolutePath(), registry.getVersion(), cfgBits,
+                registry.getProject().getDataLength(), null, null)
+    }
+}
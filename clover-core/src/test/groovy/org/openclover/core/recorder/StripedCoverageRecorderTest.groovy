@@ -0,0 +1,137 @@
+package org.openclover.core.recorder
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.NullRecorder
+import org.openclover.runtime.recorder.StripedCoverageRecorder
+import org.openclover.runtime.registry.format.RegAccessMode
+import org.openclover.runtime.util.CloverBitSet
+import org_openclover_runtime.CoverageRecorder
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+
+class StripedCoverageRecorderTest {
+    File recDir
+    File testDb
+    long dbVersion
+    CoverageDataSpec spec
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        recDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        recDir.delete()
+        recDir.mkdir()
+        dbVersion = System.currentTimeMillis()
+        testDb = new File(recDir, "testdb")
+        spec = new CoverageDataSpec()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(recDir)
+    }
+
+    @Test
+    void testNoHitsLostWhenManyThreadsIncrement() throws Exception {
+        final int numThreads = 8
+        final int numIterations = 100000
+        final int numElements = 3000 // spans several counter pages
+        final StripedCoverageRecorder recorder = new StripedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, numElements, 0L)
+        final CountDownLatch startGate = new CountDownLatch(1)
+
+        final List<Thread> threads = (0..<numThreads).collect { int t ->
+            Thread.start {
+                startGate.await()
+                for (int i = 0; i < numIterations; i++) {
+                    recorder.inc(0)
+                    recorder.inc(numElements - 1)
+                    recorder.iget(t * 300)
+                }
+            }
+        }
+        startGate.countDown()
+        threads*.join()
+
+        final int[] hits = recorder.getCoverageSnapshot().getCoverage()[0]
+        assertEquals(numElements, hits.length)
+        assertEquals((numThreads + 1) * numIterations, hits[0]) // thread #0 also hits index 0 via iget
+        assertEquals(numThreads * numIterations, hits[numElements - 1])
+        for (int t = 1; t < numThreads; t++) {
+            assertEquals(numIterations, hits[t * 300])
+        }
+    }
+
+    @Test
+    void testIgetReturnsNonZero() {
+        final StripedCoverageRecorder recorder = new StripedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 10, 0L)
+        assertEquals(1, recorder.iget(5))
+        assertEquals(2, recorder.iget(5))
+    }
+
+    @Test
+    void testWriteAndRead() throws Exception {
+        final StripedCoverageRecorder recorder = new StripedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 2000, 0L)
+        recorder.startRun()
+        Runtime.getRuntime().removeShutdownHook(recorder.getShutdownFlusher())
+        final File recordingFile = new File(recorder.getRecordingName())
+
+        recorder.inc(0)
+        recorder.inc(1999)
+        Thread.start { recorder.inc(1999) }.join()
+        recorder.forceFlush()
+
+        final GlobalCoverageRecordingTranscript recording = RecordingTranscripts.readCoverageFromDisk(recordingFile, spec)
+        assertEquals(2000, recording.getCount())
+        assertEquals(3, recording.getCoverageSum())
+        assertEquals(1, recording.get(0))
+        assertEquals(2, recording.get(1999))
+    }
+
+    @Test
+    void testCompareCoverageWith() {
+        final StripedCoverageRecorder recorder = new StripedCoverageRecorder(testDb.getAbsolutePath(), dbVersion, 100, 0L)
+        recorder.inc(1)
+        final def before = recorder.getCoverageSnapshot()
+        recorder.inc(2)
+        Thread.start { recorder.inc(3) }.join()
+
+        final CloverBitSet diff = recorder.compareCoverageWith(before)
+        assertFalse(diff.member(1))
+        assertTrue(diff.member(2))
+        assertTrue(diff.member(3))
+    }
+
+    @Test
+    void testCapacity() {
+        final CoverageRecorder recorder = new StripedCoverageRecorder("foo", 0, 1000, 0L)
+        assertSame(recorder, recorder.withCapacityFor(1000))
+        assertSame(NullRecorder.INSTANCE, recorder.withCapacityFor(1001))
+    }
+
+    @Test
+    void testSelectedByConfigBits() throws Exception {
+        final Clover2Registry reg = new Clover2Registry(testDb, RegAccessMode.READWRITE, testName.methodName)
+        reg.saveAndOverwriteFile()
+
+        final long stripedBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, 0, false, false, false, true)
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, stripedBits) instanceof StripedCoverageRecorder)
+
+        final long plainBits = CoverageRecorder.getConfigBits(CoverageRecorder.FLUSHPOLICY_DIRECTED, 0, false, false, false)
+        assertTrue(FixedSizeCoverageRecorder.createFor(testDb, reg.getVersion(), 0, plainBits) instanceof FixedSizeCoverageRecorder)
+    }
+}
@@ -0,0 +1,110 @@
+package org.openclover.core.recorder
+
+import org.junit.Test
+import org_openclover_runtime.CloverProfile
+import org_openclover_runtime.CoverageRecorder
+
+/**
+ * Concurrent test for {@link org.openclover.runtime.recorder.ThreadVisibilityStrategy.Concurrent}
+ * against different coverage recorders:
+ * <ul>
+ *   <li>{@link org.openclover.runtime.recorder.FixedSizeCoverageRecorder}</li>
+ *   <li>{@link org.openclover.runtime.recorder.GrowableCoverageRecorder}</li>
+ *   <li>{@link org.openclover.runtime.recorder.SharedCoverageRecorder}</li>
+ * </ul>
+ */
+class ThreadVisibilityStrategyConcurrentConcurrentTest extends ThreadVisibilityStrategyConcurrentTestBase {
+
+    public static final String CONCURRENT_STRATEGY = "concurrent"
+
+    @Test
+    void testConcurrent_FixedRecorder_InOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_fixed_inorder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.FIXED, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsInOrderMTC mtc = runInOrderTestCompletion(recorder)
+
+        // verify results
+        assertInOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+    @Test
+    void testConcurrent_GrowableRecorder_InOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_growable_inorder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.GROWABLE, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsInOrderMTC mtc = runInOrderTestCompletion(recorder)
+
+        // verify results
+        assertInOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+    @Test
+    void testConcurrent_SharedRecorder_InOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_shared_inorder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.SHARED, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsInOrderMTC mtc = runInOrderTestCompletion(recorder)
+
+        // verify results
+        assertInOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+    @Test
+    void testConcurrent_FixedRecorder_OutOfOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_fixed_outoforder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.FIXED, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsOutOfOrderMTC mtc = runOutOfOrderTestCompletion(recorder)
+
+        // verify results
+        assertOutOfOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+    @Test
+    void testConcurrent_GrowableRecorder_OutOfOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_growable_outoforder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.GROWABLE, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsOutOfOrderMTC mtc = runOutOfOrderTestCompletion(recorder)
+
+        // verify results
+        assertOutOfOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+    @Test
+    void testConcurrent_SharedRecorder_OutOfOrder() throws Throwable {
+        // prepare recorder
+        final String dbName = "concurrent_shared_outoforder.db"
+        final File cloverDb = new File(tempDir, dbName)
+        final CoverageRecorder recorder = newCoverageRecorder(
+                cloverDb, CloverProfile.CoverageRecorderType.SHARED, CONCURRENT_STRATEGY)
+
+        // run tests
+        RunTestsOutOfOrderMTC mtc = runOutOfOrderTestCompletion(recorder)
+
+        // verify results
+        assertOutOfOrderTestCompletion(mtc, createFilterForDb(tempDir, dbName))
+    }
+
+}
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals
  *   <li>{@link org.openclover.runtime.recorder.ThreadVisibilityStrategy.Volatile}</li>
  *   <li>{@link org.openclover.runtime.recorder.ThreadVisibilityStrategy.Synchronized}</li>
  *   <li>{@link org.openclover.runtime.recorder.ThreadVisibilityStrategy.SingleThreaded}</li>
+ *   <li>{@link org.openclover.runtime.recorder.ThreadVisibilityStrategy.Concurrent}</li>
  * </ul>
  * against different coverage recorders:
  * <ul>
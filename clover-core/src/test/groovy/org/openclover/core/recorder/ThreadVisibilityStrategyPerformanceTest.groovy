@@ -0,0 +1,80 @@
+package org.openclover.core.recorder
+
+import org.junit.Test
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.openclover.runtime.recorder.ThreadVisibilityStrategy
+import org_openclover_runtime.CoverageRecorder
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertTrue
+
+/**
+ * Micro-benchmark of the hit recording path of {@link ThreadVisibilityStrategy} variants with many tests
+ * active at the same time. Every variant runs a warm-up round followed by a measured round; results are printed
+ * as nanoseconds per hit. Sizes are overridable via system properties for CI tuning.
+ */
+class ThreadVisibilityStrategyPerformanceTest {
+
+    private static final int NUM_ACTIVE_TESTS = Integer.getInteger("clover.perf.pertest.active", 64)
+    private static final int NUM_THREADS = Integer.getInteger("clover.perf.pertest.threads", 4)
+    private static final int NUM_HITS = Integer.getInteger("clover.perf.pertest.hits", 200000)
+    private static final int NUM_ELEMENTS = 10000
+
+    private static final String TYPE = ThreadVisibilityStrategyPerformanceTest.class.getName()
+
+    @Test
+    void testHitCostWithManyActiveTests() {
+        final Map<String, Closure<ThreadVisibilityStrategy>> strategies = [
+                "SingleThreaded" : { CoverageRecorder r -> new ThreadVisibilityStrategy.SingleThreaded(r) },
+                "Volatile"       : { CoverageRecorder r -> new ThreadVisibilityStrategy.Volatile(r) },
+                "Synchronized"   : { CoverageRecorder r -> new ThreadVisibilityStrategy.Synchronized(r) },
+                "Concurrent"     : { CoverageRecorder r -> new ThreadVisibilityStrategy.Concurrent(r) }
+        ]
+
+        strategies.each { String name, Closure<ThreadVisibilityStrategy> factory ->
+            runRound(factory) // warm-up
+            final long nanos = runRound(factory)
+            println(String.format("%-16s active tests: %d, threads: %d, %.2f ns/hit",
+                    name, NUM_ACTIVE_TESTS, NUM_THREADS, nanos / (double) (NUM_THREADS * NUM_HITS)))
+        }
+    }
+
+    /**
+     * Starts all tests, records hits from all threads, finishes the tests and checks that the last one has seen
+     * hits of all threads.
+     *
+     * @return time spent on recording hits, in nanoseconds
+     */
+    private static long runRound(Closure<ThreadVisibilityStrategy> factory) {
+        final ThreadVisibilityStrategy strategy = factory.call(
+                new FixedSizeCoverageRecorder("clover.db", 0, NUM_ELEMENTS, 0))
+        for (int test = 0; test < NUM_ACTIVE_TESTS; test++) {
+            strategy.testStarted(TYPE, 0, 0, test)
+        }
+
+        final CountDownLatch startGate = new CountDownLatch(1)
+        final List<Thread> threads = (0..<NUM_THREADS).collect { int t ->
+            Thread.start {
+                startGate.await()
+                for (int i = 0; i < NUM_HITS; i++) {
+                    strategy.set((i * 31 + t) % NUM_ELEMENTS)
+                }
+            }
+        }
+        final long start = System.nanoTime()
+        startGate.countDown()
+        threads*.join()
+        final long nanos = System.nanoTime() - start
+
+        FileBasedPerTestRecording last = null
+        for (int test = NUM_ACTIVE_TESTS - 1; test >= 0; test--) {
+            last = (FileBasedPerTestRecording) strategy.testFinished(TYPE, "test", null, 0, 0, test, 0, null)
+        }
+        for (int t = 0; t < NUM_THREADS; t++) {
+            assertTrue(last.get(t))
+        }
+        return nanos
+    }
+}
@@ -21,6 +21,7 @@ import org.openclover.core.registry.entities.MethodSignature
 import org.openclover.core.registry.entities.Modifiers
 import org.openclover.core.registry.format.InaccessibleRegFileException
 import org.openclover.core.registry.format.RegFile
+import org.openclover.core.registry.format.UpdatableRegFile
 import org.openclover.core.api.registry.HasMetricsFilter
 import org.openclover.core.registry.metrics.ProjectMetrics
 import org.openclover.core.util.FileUtils
@@ -526,9 +527,11 @@ class Clover2RegistryTest {
         final File registryFile = File.createTempFile("registry","cdb", tmpDir)
 
         prepareDatabaseFile(registryFile)
+        // the last byte of the last session, the file index follows it
+        final long lastSessionLocation = new UpdatableRegFile(registryFile).getHeader().getLastSessionLocation()
 
         final RandomAccessFile raf = new RandomAccessFile(registryFile, "rw")
-        raf.seek(raf.length() - 1)
+        raf.seek(lastSessionLocation)
         raf.write(0)
         raf.close()
 
@@ -544,9 +547,10 @@ class Clover2RegistryTest {
         File registryFile = File.createTempFile("registry","cdb", tmpDir)
 
         prepareDatabaseFile(registryFile)
+        final long lastSessionLocation = new UpdatableRegFile(registryFile).getHeader().getLastSessionLocation()
 
         final RandomAccessFile raf = new RandomAccessFile(registryFile, "rw")
-        raf.setLength(raf.length() -1)
+        raf.setLength(lastSessionLocation)
         raf.close()
 
         try {
@@ -0,0 +1,213 @@
+package org.openclover.core.registry.entities
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CloverDatabase
+import org.openclover.core.CloverDatabaseSpec
+import org.openclover.core.api.registry.BranchInfo
+import org.openclover.core.api.registry.ContextSet
+import org.openclover.core.api.registry.CoverageDataProvider
+import org.openclover.core.api.registry.FileInfo
+import org.openclover.core.api.registry.HasMetricsFilter
+import org.openclover.core.api.registry.MethodInfo
+import org.openclover.core.api.registry.ProjectInfo
+import org.openclover.core.api.registry.StatementInfo
+import org.openclover.core.cfg.instr.StatementContextDef
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.context.ContextSetImpl
+import org.openclover.core.context.ContextStore
+import org.openclover.core.instr.java.Instrumenter
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.CloverNames
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertSame
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+class ColumnarModelTest {
+    private File workingDir
+    private File registryFile
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        registryFile = new File(workingDir, "clover.db")
+        instrumentSources()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        System.clearProperty(CloverNames.PROP_COLUMNAR_MODEL)
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testColumnarModelMatchesFullModel() throws Exception {
+        final List<String> expected = describe(read(registryFile, false).getProject())
+        final ProjectInfo columnar = read(registryFile, true).getProject()
+
+        assertTrue(expected.size() > 100)
+        assertEquals(expected, describe(columnar))
+        final MethodInfo method = columnar.getFiles(HasMetricsFilter.ACCEPT_ALL)[0].getAllMethods()[0]
+        assertTrue(method.getStatements()[0] instanceof ColumnarStatementInfo)
+        assertEquals(method.getStatements()[0], method.getStatements()[0])
+    }
+
+    @Test
+    void testEqualContextsAreShared() throws Exception {
+        final ProjectInfo columnar = read(registryFile, true).getProject()
+        columnar.getFiles(HasMetricsFilter.ACCEPT_ALL).each { FileInfo file ->
+            file.getAllMethods().each { MethodInfo method ->
+                final List<StatementInfo> statements = method.getStatements()
+                for (int i = 1; i < statements.size(); i++) {
+                    if (statements[i].getContext() == statements[0].getContext()) {
+                        assertSame(statements[0].getContext(), statements[i].getContext())
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCopiedColumnarModelMatchesFullModel() throws Exception {
+        final ProjectInfo full = read(registryFile, false).getProject().copy(HasMetricsFilter.ACCEPT_ALL)
+        final ProjectInfo columnar = read(registryFile, true).getProject().copy(HasMetricsFilter.ACCEPT_ALL)
+        setDataProvider(full)
+        setDataProvider(columnar)
+
+        assertEquals(describe(full), describe(columnar))
+    }
+
+    @Test
+    void testColumnarModelIsWrittenInTheSameFormat() throws Exception {
+        final File copy = new File(workingDir, "copy.db")
+        FileUtils.fileCopy(registryFile, copy)
+        read(copy, true).saveAndOverwriteFile()
+
+        assertEquals(describe(read(registryFile, false).getProject()), describe(read(copy, false).getProject()))
+    }
+
+    @Test
+    void testOnlyContextOfColumnarElementCanBeChanged() throws Exception {
+        final MethodInfo method = read(registryFile, true).getProject().getFiles(HasMetricsFilter.ACCEPT_ALL)[0].getAllMethods()[0]
+        final StatementInfo statement = method.getStatements()[0]
+        try {
+            method.addStatement(statement)
+            fail("Expected UnsupportedOperationException")
+        } catch (UnsupportedOperationException expected) {
+        }
+        final ContextSet context = new ContextSetImpl().set(ContextStore.CONTEXT_IF)
+        statement.setContext(context)
+        assertSame(context, method.getStatements()[0].getContext())
+        assertFalse(statement.copy(method) instanceof FullStatementInfo)
+    }
+
+    @Test
+    void testMergeOfColumnarModelMatchesMergeOfFullModel() throws Exception {
+        final File other = new File(workingDir, "other.db")
+        FileUtils.fileCopy(registryFile, other)
+        final List<CloverDatabaseSpec> specs = [new CloverDatabaseSpec(registryFile.getPath()), new CloverDatabaseSpec(other.getPath())]
+
+        final File fullMerge = new File(workingDir, "full.db")
+        CloverDatabase.merge(specs, fullMerge.getPath())
+        final File columnarMerge = new File(workingDir, "columnar.db")
+        System.setProperty(CloverNames.PROP_COLUMNAR_MODEL, "true")
+        try {
+            CloverDatabase.merge(specs, columnarMerge.getPath())
+        } finally {
+            System.clearProperty(CloverNames.PROP_COLUMNAR_MODEL)
+        }
+
+        assertEquals(describe(read(fullMerge, false).getProject()), describe(read(columnarMerge, false).getProject()))
+    }
+
+    private static Clover2Registry read(File file, boolean columnar) {
+        System.setProperty(CloverNames.PROP_COLUMNAR_MODEL, Boolean.toString(columnar))
+        try {
+            final Clover2Registry registry = Clover2Registry.fromFile(file)
+            setDataProvider(registry.getProject())
+            return registry
+        } finally {
+            System.clearProperty(CloverNames.PROP_COLUMNAR_MODEL)
+        }
+    }
+
+    private static void setDataProvider(ProjectInfo project) {
+        // hit count of every slot is its index
+        project.setDataProvider({ int index -> index } as CoverageDataProvider)
+    }
+
+    /**
+     * @return attributes of all statements and branches in the model
+     */
+    private static List<String> describe(ProjectInfo project) {
+        final List<String> result = []
+        project.getFiles(HasMetricsFilter.ACCEPT_ALL).sort { it.getPackagePath() }.each { FileInfo file ->
+            file.getAllMethods().each { MethodInfo method ->
+                method.getStatements().each { StatementInfo stmt ->
+                    result << [file.getPackagePath(), method.getName(), region(stmt), stmt.getDataIndex(),
+                               stmt.getDataLength(), stmt.getComplexity(), stmt.getConstruct().getId(),
+                               stmt.getContext().toString(), stmt.getHitCount(),
+                               stmt.getContainingFile().getPackagePath(), stmt.getContainingMethod().getName(),
+                               stmt.getContainingClass()].toString()
+                }
+                method.getBranches().each { BranchInfo branch ->
+                    result << [file.getPackagePath(), method.getName(), region(branch), branch.getDataIndex(),
+                               branch.getDataLength(), branch.getComplexity(), branch.getConstruct().getId(),
+                               branch.getContext().toString(), branch.getTrueHitCount(), branch.getFalseHitCount(),
+                               branch.isInstrumented(), branch.getParent().getClass().getSimpleName()].toString()
+                }
+            }
+        }
+        return result
+    }
+
+    private static String region(def element) {
+        "${element.startLine}:${element.startColumn}-${element.endLine}:${element.endColumn}"
+    }
+
+    private void instrumentSources() {
+        final File srcDir = new File(workingDir, "src")
+        final List<File> srcFiles = (0..<6).collect { int i ->
+            final File pkgDir = new File(srcDir, "p" + (i % 2))
+            pkgDir.mkdirs()
+            final File file = new File(pkgDir, "C" + i + ".java")
+            final StringBuilder methods = new StringBuilder()
+            for (int m = 0; m <= i; m++) {
+                methods.append("""
+    private int m${m}(int a) {
+        if (a > ${m} && a < ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        System.out.println(a);
+        return a > 0 ? a : -a;
+    }
+""")
+            }
+            file.text = "package p${i % 2};\n\npublic class C${i} {${methods}}\n"
+            file
+        }
+
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(registryFile.getAbsolutePath())
+        config.setProjectName(testName.methodName)
+        // a user context, which is remapped by a merge
+        config.addStatementContext(new StatementContextDef("print", "System\\.out\\.println.*"))
+        ContextStore.saveCustomContexts(config)
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(srcFiles, new File(workingDir, "instr"), null, 1)
+        instrumenter.endInstrumentation()
+    }
+}
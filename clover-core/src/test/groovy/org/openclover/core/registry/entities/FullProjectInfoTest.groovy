@@ -64,4 +64,23 @@ class FullProjectInfoTest {
         assertNotNull(project.findClass("com.foo.Foo"))
         assertNotNull(project.findFile("com/foo/Foo.java"))
     }
+
+    @Test
+    void testBuildCachesBuildsAllLookups() {
+        ProjectInfo project = new FullProjectInfo(testName.methodName)
+        final FullPackageInfo pkg = new FullPackageInfo(project, "com.foo", 0)
+        project.addPackage(pkg)
+        final FullFileInfo file = new FullFileInfo(pkg, new File("Foo.java"), "UTF-8", 0, 0, 0, 0L, 0L, 0L, 0L)
+        pkg.addFile(file)
+        file.addClass(new FullClassInfo(pkg, file, 0, "Foo", new FixedSourceRegion(0, 0), new Modifiers(),
+                false, false, false))
+
+        project.buildCaches()
+
+        // nothing is left to be built lazily, so the model can be shared by concurrent readers
+        assertNotNull(project.@classLookup)
+        assertNotNull(project.@fileLookup)
+        assertEquals(1, pkg.@classes.size())
+        assertEquals(1, pkg.@allClasses.size())
+    }
 }
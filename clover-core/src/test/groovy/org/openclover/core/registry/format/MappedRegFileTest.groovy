@@ -0,0 +1,173 @@
+package org.openclover.core.registry.format
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CloverDatabase
+import org.openclover.core.api.registry.FileInfo
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.instr.java.Instrumenter
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.registry.PackageFilter
+import org.openclover.core.util.FileUtils
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
+
+class MappedRegFileTest {
+    private File workingDir
+    private File registryFile
+    private List<File> srcFiles
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        registryFile = new File(workingDir, "clover.db")
+        srcFiles = writeSources()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testIndexedReadMatchesFullRead() throws Exception {
+        instrument(srcFiles)
+        assertNotNull(readIndex())
+        checkMatchesFullRead(null)
+    }
+
+    @Test
+    void testPackageSubsetRead() throws Exception {
+        instrument(srcFiles)
+        checkMatchesFullRead(["p1"])
+        checkMatchesFullRead(["p0", "p2"])
+        checkMatchesFullRead(["nonexistent"])
+    }
+
+    @Test
+    void testDatabaseWithPackageFilterReadsPackageSubset() throws Exception {
+        instrument(srcFiles)
+        final CloverDatabase database = new CloverDatabase(registryFile.getAbsolutePath(),
+                new PackageFilter(["p0", "p2"]), null)
+        assertEquals(["p0/C0.java", "p0/C3.java", "p2/C2.java", "p2/C5.java"] as Set,
+                filesOf(database.getRegistry()).keySet())
+        assertEquals(filesOf(Clover2Registry.fromFile(registryFile))["p2/C5.java"].getDataIndex(),
+                filesOf(database.getRegistry())["p2/C5.java"].getDataIndex())
+    }
+
+    @Test
+    void testIndexIsUpdatedOnAppend() throws Exception {
+        instrument(srcFiles)
+        srcFiles[1].text = srcFiles[1].text.replace("return a;", "a++;\n        return a;")
+        instrument([srcFiles[1], srcFiles[4]])
+
+        final RegIndex index = readIndex()
+        assertNotNull(index)
+        assertEquals(2, index.getSessions().size())
+        assertEquals(1, index.getEntries().find { it.getName() == "C1.java" }.getOlderVersions().length)
+        assertEquals(0, index.getEntries().find { it.getName() == "C2.java" }.getOlderVersions().length)
+        checkMatchesFullRead(null)
+        checkMatchesFullRead(["p1"])
+    }
+
+    @Test
+    void testRegistryWithoutIndex() throws Exception {
+        instrument(srcFiles)
+        final UpdatableRegFile regFile = new UpdatableRegFile(registryFile)
+        new RandomAccessFile(registryFile, "rw").withCloseable { RandomAccessFile file ->
+            file.setLength(regFile.getHeader().getLastSessionLocation() + 1)
+        }
+        assertNull(readIndex())
+        checkMatchesFullRead(null)
+        checkMatchesFullRead(["p1"])
+
+        // an index is not added to a registry which had none, but the registry stays readable
+        instrument([srcFiles[2]])
+        assertNull(readIndex())
+        checkMatchesFullRead(["p2"])
+    }
+
+    private RegIndex readIndex() {
+        final UpdatableRegFile regFile = new UpdatableRegFile(registryFile)
+        MappedRegFile.open(registryFile, regFile.getHeader()).withCloseable { MappedRegFile mappedFile ->
+            return mappedFile.getIndex()
+        }
+    }
+
+    private void checkMatchesFullRead(Collection<String> packageNames) {
+        final Clover2Registry expected = Clover2Registry.fromFile(registryFile,
+                { packageNames == null || packageNames.contains(((FileInfo) it).getContainingPackage().getName()) },
+                null)
+        final Clover2Registry actual = Clover2Registry.fromFile(registryFile, packageNames)
+
+        assertEquals(expected.getVersion(), actual.getVersion())
+        assertEquals(expected.getDataLength(), actual.getDataLength())
+        assertEquals(expected.getInstrHistory()*.getVersion(), actual.getInstrHistory()*.getVersion())
+        assertEquals(expected.getContextStore().size(), actual.getContextStore().size())
+        assertEquals(expected.getCoverageData() == null, actual.getCoverageData() == null)
+
+        final Map<String, FileInfo> expectedFiles = filesOf(expected)
+        final Map<String, FileInfo> actualFiles = filesOf(actual)
+        assertEquals(expectedFiles.keySet(), actualFiles.keySet())
+        expectedFiles.each { String path, FileInfo expectedFile ->
+            final FileInfo actualFile = actualFiles[path]
+            assertEquals(path, expectedFile.getContainingPackage().getName(), actualFile.getContainingPackage().getName())
+            assertEquals(path, expectedFile.getDataIndex(), actualFile.getDataIndex())
+            assertEquals(path, expectedFile.getDataLength(), actualFile.getDataLength())
+            assertEquals(path, expectedFile.getChecksum(), actualFile.getChecksum())
+            assertEquals(path, expectedFile.getMinVersion(), actualFile.getMinVersion())
+            assertEquals(path, expectedFile.getMaxVersion(), actualFile.getMaxVersion())
+            assertEquals(path, expectedFile.getRawMetrics().getNumStatements(), actualFile.getRawMetrics().getNumStatements())
+            assertEquals(path, expectedFile.getRawMetrics().getNumBranches(), actualFile.getRawMetrics().getNumBranches())
+        }
+    }
+
+    private static Map<String, FileInfo> filesOf(Clover2Registry registry) {
+        final Map<String, FileInfo> files = [:]
+        registry.getProject().getAllPackages().each { pkg ->
+            pkg.getFiles().each { FileInfo file -> files[file.getPackagePath()] = file }
+        }
+        return files
+    }
+
+    private void instrument(List<File> files) {
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(registryFile.getAbsolutePath())
+        config.setProjectName(testName.methodName)
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(files, new File(workingDir, "instr"), null, 1)
+        instrumenter.endInstrumentation(true)
+    }
+
+    private List<File> writeSources() {
+        final File srcDir = new File(workingDir, "src")
+        return (0..<6).collect { int i ->
+            final File pkgDir = new File(srcDir, "p" + (i % 3))
+            pkgDir.mkdirs()
+            final File file = new File(pkgDir, "C" + i + ".java")
+            file.text = """package p${i % 3};
+
+public class C${i} {
+    int m(int a) {
+        if (a > ${i}) {
+            a = -a;
+        }
+        return a;
+    }
+}
+"""
+            file
+        }
+    }
+}
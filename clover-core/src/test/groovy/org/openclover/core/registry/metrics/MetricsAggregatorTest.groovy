@@ -0,0 +1,185 @@
+package org.openclover.core.registry.metrics
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageData
+import org.openclover.core.api.registry.ClassInfo
+import org.openclover.core.api.registry.ContextSet
+import org.openclover.core.api.registry.CoverageDataProvider
+import org.openclover.core.api.registry.HasMetrics
+import org.openclover.core.api.registry.MethodInfo
+import org.openclover.core.api.registry.ProjectInfo
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.context.ContextStore
+import org.openclover.core.instr.java.Instrumenter
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.util.FileUtils
+
+import java.util.concurrent.ForkJoinPool
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNull
+import static org.junit.Assert.assertSame
+
+class MetricsAggregatorTest {
+    private File workingDir
+    private Clover2Registry registry
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        registry = instrumentSources()
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testRawMetricsMatchModel() {
+        final int[] hits = newHits(3)
+        registry.getProject().setDataProvider(new CoverageData(0L, hits, null))
+        checkMatchesModel(registry.getProject(), null)
+    }
+
+    @Test
+    void testFilteredMetricsMatchModel() {
+        registry.getProject().setDataProvider({ int index -> index % 3 == 0 ? 0 : index } as CoverageDataProvider)
+        ["if", "for", "private", "method", "if, private"].each { String names ->
+            checkMatchesModel(registry.getProject(), new ContextStore().createContextSetFilter(names))
+        }
+    }
+
+    @Test
+    void testParallelAggregationMatchesSequential() {
+        final ProjectInfo project = registry.getProject()
+        project.setDataProvider(new CoverageData(0L, newHits(2), null))
+        final ContextSet filter = new ContextStore().createContextSetFilter("if")
+
+        final MetricsTable sequential = MetricsAggregator.aggregate(project, filter)
+        final ForkJoinPool pool = new ForkJoinPool(4)
+        try {
+            final MetricsTable parallel = MetricsAggregator.aggregate(project, filter, pool)
+            assertEquals(sequential.size(), parallel.size())
+            assertEquals(sequential.getProjectMetrics(), parallel.getProjectMetrics())
+            nodesOf(project).each { HasMetrics node ->
+                assertEquals(node.getName(), sequential.getMetrics(node), parallel.getMetrics(node))
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    void testTableIsASnapshot() {
+        final ProjectInfo project = registry.getProject()
+        final MetricsTable table = MetricsAggregator.aggregate(project, null)
+        assertEquals(0, table.getProjectMetrics().getNumCoveredElements())
+        assertSame(table.getProjectMetrics(), table.getMetrics(project))
+        assertNull(table.getMetrics(project.copy()))
+
+        project.setDataProvider({ int index -> 1 } as CoverageDataProvider)
+        assertEquals(0, table.getProjectMetrics().getNumCoveredElements())
+        assertEquals(project.getMetrics().getNumElements(),
+                MetricsAggregator.aggregate(project, null).getProjectMetrics().getNumCoveredElements())
+    }
+
+    private static void checkMatchesModel(ProjectInfo project, ContextSet filter) {
+        project.setContextFilter(filter)
+        final MetricsTable table = MetricsAggregator.aggregate(project, filter)
+        // children first, so that metrics cached by the model are calculated for the current filter
+        nodesOf(project).reverse().each { HasMetrics node ->
+            final BlockMetrics metrics = table.getMetrics(node)
+            if (node instanceof MethodInfo && node.isFiltered(filter)) {
+                assertNull(node.getName(), metrics)
+            } else {
+                assertEquals(filter.toString() + " " + node.getName(),
+                        filter == null ? node.getRawMetrics() : node.getMetrics(), metrics)
+            }
+        }
+    }
+
+    /**
+     * @return project and all packages, files, classes and methods in it, including nested ones
+     */
+    private static List<HasMetrics> nodesOf(ProjectInfo project) {
+        final List<HasMetrics> nodes = [project]
+        project.getAllPackages().each { pkg ->
+            nodes << pkg
+            pkg.getFiles().each { file ->
+                nodes << file
+                file.getClasses().each { addClass(nodes, it) }
+                file.getMethods().each { addMethod(nodes, it) }
+            }
+        }
+        return nodes
+    }
+
+    private static void addClass(List<HasMetrics> nodes, ClassInfo classInfo) {
+        nodes << classInfo
+        classInfo.getClasses().each { addClass(nodes, it) }
+        classInfo.getMethods().each { addMethod(nodes, it) }
+    }
+
+    private static void addMethod(List<HasMetrics> nodes, MethodInfo methodInfo) {
+        nodes << methodInfo
+        methodInfo.getClasses().each { addClass(nodes, it) }
+        methodInfo.getMethods().each { addMethod(nodes, it) }
+    }
+
+    /**
+     * @return hit counts where every n-th slot is not covered
+     */
+    private int[] newHits(int n) {
+        final int[] hits = new int[registry.getDataLength()]
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = i % n == 0 ? 0 : i
+        }
+        return hits
+    }
+
+    private Clover2Registry instrumentSources() {
+        final File srcDir = new File(workingDir, "src")
+        final List<File> srcFiles = (0..<8).collect { int i ->
+            final File pkgDir = new File(srcDir, "p" + (i % 3))
+            pkgDir.mkdirs()
+            final File file = new File(pkgDir, "C" + i + ".java")
+            final StringBuilder methods = new StringBuilder()
+            for (int m = 0; m <= i % 4; m++) {
+                methods.append("""
+    ${m % 2 == 0 ? "private" : "public"} int m${m}(int a) {
+        if (a > ${m} && a < ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        Runnable r = new Runnable() {
+            public void run() {
+                if (${m} > 1) { System.out.println(${m}); }
+            }
+        };
+        java.util.function.IntUnaryOperator f = x -> x > 0 ? x : -x;
+        return f.applyAsInt(a);
+    }
+""")
+            }
+            file.text = "package p${i % 3};\n\npublic class C${i} {${methods}\n    static class Inner { void n() { } }\n}\n"
+            file
+        }
+
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(new File(workingDir, "clover.db").getAbsolutePath())
+        config.setProjectName(testName.methodName)
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(srcFiles, new File(workingDir, "instr"), null, 1)
+        return instrumenter.endInstrumentation()
+    }
+}
@@ -0,0 +1,297 @@
+package org.openclover.core.remote
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CoverageDataSpec
+import org.openclover.core.recorder.GlobalCoverageRecordingTranscript
+import org.openclover.core.recorder.PerTestRecordingTranscript
+import org.openclover.core.recorder.RecordingTranscripts
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.RuntimeType
+import org.openclover.runtime.recorder.FileBasedPerTestRecording
+import org.openclover.runtime.recorder.GlobalCoverageRecording
+import org.openclover.runtime.remote.CollectorRecordingWriteStrategy
+import org.openclover.runtime.remote.CoverageCollector
+import org.openclover.runtime.remote.DistributedConfig
+import org.openclover.runtime.remote.MessageCodec
+import org.openclover.runtime.util.CloverBitSet
+import org.openclover.runtime.util.IOStreamUtils
+import org_openclover_runtime.Clover
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ * Test for {@link CoverageCollector} and {@link CollectorRecordingWriteStrategy}
+ */
+class CoverageCollectorTest {
+    private static final long DB_VERSION = 7L
+
+    @Rule
+    public TestName testName = new TestName()
+
+    private File dbDir
+    private String initString
+    private DistributedConfig config
+    private CoverageCollector collector
+    private final List<CollectorRecordingWriteStrategy> strategies = new ArrayList<>()
+    private final CoverageDataSpec spec = new CoverageDataSpec()
+
+    @Before
+    void setUp() {
+        dbDir = File.createTempFile(getClass().getName() + "." + testName.methodName, "dir")
+        dbDir.delete()
+        dbDir.mkdir()
+        initString = new File(dbDir, "clover.db").getAbsolutePath()
+        // an ephemeral port, so that no test can reach the collector of another one
+        config = new DistributedConfig("${DistributedConfig.PORT}=0;" +
+                "${DistributedConfig.TIMEOUT}=2000;${DistributedConfig.RETRY_PERIOD}=0")
+        spec.setFilterTraces(false)
+    }
+
+    @After
+    void tearDown() {
+        strategies.each { it.disconnect() }
+        collector?.stop()
+        FileUtils.deltree(dbDir)
+    }
+
+    private void startCollector() {
+        // never written by the timer during a test, only explicitly
+        collector = new CoverageCollector(initString, config, Long.MAX_VALUE)
+        collector.start()
+        // clients connect to the bound port, and a restarted collector binds it again
+        config.setPort(collector.getLocalPort())
+    }
+
+    /** A strategy of a recorder in a remote JVM, where the database lives at another path */
+    private CollectorRecordingWriteStrategy newStrategy() {
+        final CollectorRecordingWriteStrategy strategy = new CollectorRecordingWriteStrategy(config, "/remote/clover.db")
+        strategies.add(strategy)
+        strategy
+    }
+
+    private static String recordingName(int hash) {
+        Clover.getRecordingName(hash, "/remote/clover.db", 1000L)
+    }
+
+    private GlobalCoverageRecordingTranscript readGlobal(int hash) {
+        final File file = new File(Clover.getRecordingName(hash, initString, 1000L))
+        assertTrue(file.getPath(), file.isFile())
+        RecordingTranscripts.readCoverageFromDisk(file, spec)
+    }
+
+    @Test
+    void testHitsOfSessionsAreMergedAndWritten() {
+        startCollector()
+        final CollectorRecordingWriteStrategy a = newStrategy()
+        final CollectorRecordingWriteStrategy b = newStrategy()
+
+        final int[] hitsA = new int[100]
+        hitsA[1] = 1
+        a.write(recordingName(1), DB_VERSION, 2000L, [hitsA] as int[][], 100)
+        hitsA[1] = 3
+        hitsA[99] = 5
+        // alternate file of the recorder, same recording
+        a.write(recordingName(1) + GlobalCoverageRecording.ALT_SUFFIX, DB_VERSION, 3000L, [hitsA] as int[][], 100)
+
+        final int[] hitsB = new int[50]
+        hitsB[10] = 2
+        b.write(recordingName(2), DB_VERSION, 2500L, [hitsB] as int[][], 50)
+
+        assertEquals(2, collector.getNumSessions())
+        assertEquals(2, collector.writeRecordings())
+        assertEquals(0, collector.writeRecordings())
+
+        final GlobalCoverageRecordingTranscript readA = readGlobal(1)
+        assertEquals(DB_VERSION, readA.getDbVersion())
+        assertEquals(3000L, readA.getWriteTimeStamp())
+        assertEquals(100, readA.getCount())
+        assertEquals(3, readA.get(1))
+        assertEquals(5, readA.get(99))
+        assertEquals(8, readA.getCoverageSum())
+
+        final GlobalCoverageRecordingTranscript readB = readGlobal(2)
+        assertEquals(2, readB.get(10))
+        assertEquals(2, readB.getCoverageSum())
+    }
+
+    @Test
+    void testRecordingsAreKeptWhileCollectorIsUnreachable() {
+        // a port which is free until the collector is started again
+        startCollector()
+        collector.stop()
+
+        final CollectorRecordingWriteStrategy strategy = newStrategy()
+        final int[] hits = new int[10]
+        hits[0] = 1
+        try {
+            strategy.write(recordingName(1), DB_VERSION, 2000L, [hits] as int[][], 10)
+            fail("Collector is not running")
+        } catch (IOException expected) {
+        }
+        hits[0] = 2
+        hits[5] = 1
+        try {
+            strategy.write(recordingName(1), DB_VERSION, 2001L, [hits] as int[][], 10)
+            fail("Collector is not running")
+        } catch (IOException expected) {
+        }
+
+        startCollector()
+        hits[9] = 4
+        strategy.write(recordingName(1), DB_VERSION, 2002L, [hits] as int[][], 10)
+        collector.writeRecordings()
+
+        final GlobalCoverageRecordingTranscript read = readGlobal(1)
+        assertEquals(2, read.get(0))
+        assertEquals(1, read.get(5))
+        assertEquals(4, read.get(9))
+        assertEquals(2002L, read.getWriteTimeStamp())
+    }
+
+    @Test
+    void testReconnectDoesNotApplyHitsTwice() {
+        startCollector()
+        final CollectorRecordingWriteStrategy strategy = newStrategy()
+        final int[] hits = new int[10]
+        hits[3] = 1
+        strategy.write(recordingName(1), DB_VERSION, 2000L, [hits] as int[][], 10)
+        strategy.disconnect()
+        hits[3] = 2
+        strategy.write(recordingName(1), DB_VERSION, 2001L, [hits] as int[][], 10)
+        collector.writeRecordings()
+
+        assertEquals(1, collector.getNumSessions())
+        assertEquals(2, readGlobal(1).get(3))
+    }
+
+    @Test
+    void testDuplicateFramesAreAcknowledgedButNotApplied() {
+        startCollector()
+        final Socket socket = new Socket("localhost", config.getPort())
+        try {
+            socket.setSoTimeout(2000)
+            final DataInputStream input = IOStreamUtils.bufferedDataInput(socket)
+            final DataOutputStream output = IOStreamUtils.bufferedDataOutput(socket)
+            MessageCodec.writeClientHandshake(output)
+            MessageCodec.readCollectorHandshake(input)
+            MessageCodec.writeSession(output, "session")
+            assertEquals(0L, MessageCodec.readCumulativeAck(input))
+
+            final String suffix = recordingName(1).substring("/remote/clover.db".length())
+            final byte[] frame = hitsFrame(1L, suffix, 4, 3)
+            output.write(frame)
+            output.flush()
+            assertEquals(1L, MessageCodec.readCumulativeAck(input))
+            // delivered again, e.g. because the acknowledgement was lost
+            output.write(frame)
+            output.flush()
+            assertEquals(1L, MessageCodec.readCumulativeAck(input))
+        } finally {
+            socket.close()
+        }
+
+        // a reconnecting client is told what's applied already
+        final Socket again = new Socket("localhost", config.getPort())
+        try {
+            again.setSoTimeout(2000)
+            final DataInputStream input = IOStreamUtils.bufferedDataInput(again)
+            final DataOutputStream output = IOStreamUtils.bufferedDataOutput(again)
+            MessageCodec.writeClientHandshake(output)
+            MessageCodec.readCollectorHandshake(input)
+            MessageCodec.writeSession(output, "session")
+            assertEquals(1L, MessageCodec.readCumulativeAck(input))
+        } finally {
+            again.close()
+        }
+
+        collector.writeRecordings()
+        assertEquals(3, readGlobal(1).get(4))
+        assertEquals(3, readGlobal(1).getCoverageSum())
+    }
+
+    /** Frame with increment of a single hit count, encoded by hand to check the wire format */
+    private static byte[] hitsFrame(long sequence, String suffix, int index, int count) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        final DataOutputStream out = new DataOutputStream(bytes)
+        out.writeLong(sequence)
+        out.writeByte(4) // OP_HITS
+        out.writeUTF(suffix)
+        out.writeLong(DB_VERSION)
+        out.writeLong(2000L)
+        out.writeInt(10) // number of elements
+        out.writeInt(1) // number of increments
+        out.writeByte(index) // varint gap from 0
+        out.writeByte(count) // varint increment
+        out.flush()
+        bytes.toByteArray()
+    }
+
+    @Test
+    void testRestartedCollectorGetsAllHits() {
+        startCollector()
+        final CollectorRecordingWriteStrategy strategy = newStrategy()
+        final int[] hits = new int[10]
+        hits[1] = 1
+        strategy.write(recordingName(1), DB_VERSION, 2000L, [hits] as int[][], 10)
+        collector.stop()
+        FileUtils.deltree(dbDir)
+        dbDir.mkdir()
+
+        startCollector()
+        hits[2] = 1
+        strategy.write(recordingName(1), DB_VERSION, 2001L, [hits] as int[][], 10)
+        collector.writeRecordings()
+
+        final GlobalCoverageRecordingTranscript read = readGlobal(1)
+        assertEquals(1, read.get(1))
+        assertEquals(1, read.get(2))
+        assertEquals(2, read.getCoverageSum())
+    }
+
+    @Test
+    void testPerTestRecordingsAreWritten() {
+        startCollector()
+        final CollectorRecordingWriteStrategy strategy = newStrategy()
+        final RuntimeType type = new RuntimeType("com.acme.FooTest")
+        final CloverBitSet coverage = new CloverBitSet()
+        coverage.add(2)
+        coverage.add(7)
+        final FileBasedPerTestRecording recording = new FileBasedPerTestRecording("/remote/clover.db", DB_VERSION, 1,
+                coverage, "com.acme.FooTest.testFoo", "testFoo", 1000L, 1010L, 0.01, type, 3, 4, 1, null)
+        strategy.writePerTest(recording, null)
+        // a global recording waits for everything sent before it
+        strategy.write(recordingName(1), DB_VERSION, 2000L, [new int[10]] as int[][], 10)
+
+        final String name = new File(Clover.getSliceRecordingName(type.id, 3, 4, 1, "clover.db", 1000L)).getName()
+        final PerTestRecordingTranscript read = RecordingTranscripts.readSliceFromDisk(dbDir, name, spec)
+        assertEquals(DB_VERSION, read.getDbVersion())
+        assertEquals("com.acme.FooTest.testFoo", read.getTestMethodName())
+        assertEquals("testFoo", read.getRuntimeTestName())
+        assertTrue(read.isResultPassed())
+        assertTrue(read.get(2))
+        assertTrue(read.get(7))
+        assertFalse(read.get(3))
+    }
+
+    @Test
+    void testInvalidRecordingNameIsRejected() {
+        startCollector()
+        final CollectorRecordingWriteStrategy strategy = new CollectorRecordingWriteStrategy(config, "/remote/clover.db")
+        strategies.add(strategy)
+        try {
+            strategy.write("/remote/clover.db/../../evil", DB_VERSION, 2000L, [new int[10]] as int[][], 10)
+            fail("Recording outside of the database directory must be rejected")
+        } catch (IOException expected) {
+        }
+        collector.writeRecordings()
+        assertEquals(0, dbDir.list().length)
+        assertFalse(new File(dbDir.getParentFile(), "evil").exists())
+    }
+}
@@ -98,8 +98,46 @@ class MessageCodecTest {
         MessageCodec.readClientHandshake(reader(clientBytes.toByteArray()))   // must not throw
 
         final ByteArrayOutputStream serverBytes = new ByteArrayOutputStream()
-        MessageCodec.writeServerHandshake(new DataOutputStream(serverBytes))
-        MessageCodec.readServerHandshake(reader(serverBytes.toByteArray()))   // must not throw
+        MessageCodec.writeServerHandshake(new DataOutputStream(serverBytes), MessageCodec.MODE_PIPELINED)
+        assertEquals(MessageCodec.MODE_PIPELINED, MessageCodec.readServerHandshake(reader(serverBytes.toByteArray())))
+    }
+
+    @Test
+    void testUnknownModeRejected() {
+        final ByteArrayOutputStream serverBytes = new ByteArrayOutputStream()
+        MessageCodec.writeServerHandshake(new DataOutputStream(serverBytes), 42 as byte)
+        try {
+            MessageCodec.readServerHandshake(reader(serverBytes.toByteArray()))
+            fail("Expected IOException on unknown mode")
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    void testSequencedFrames() {
+        final byte[] event = MessageCodec.encode(RpcMessage.createMethodStart("t", 1, 1L))
+        final DataInputStream input = reader(MessageCodec.encodeSequenced(12345678901L, event))
+        assertEquals(12345678901L, input.readLong())
+        assertEquals(MessageCodec.OP_SLICE_START, input.readByte())
+
+        // a flush frame dispatches nothing and is reported with a negated sequence number
+        assertEquals(-7L, MessageCodec.decodeAndDispatchSequenced(reader(MessageCodec.encodeFlush(7L))))
+    }
+
+    @Test
+    void testInvalidSequenceRejected() {
+        try {
+            MessageCodec.decodeAndDispatchSequenced(reader(MessageCodec.encodeFlush(0L)))
+            fail("Expected IOException on invalid sequence number")
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    void testCumulativeAckRoundTrip() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        MessageCodec.writeCumulativeAck(new DataOutputStream(bytes), 42L)
+        assertEquals(42L, MessageCodec.readCumulativeAck(reader(bytes.toByteArray())))
     }
 
     @Test
@@ -0,0 +1,209 @@
+package org.openclover.core.remote
+
+import org.junit.After
+import org.junit.Test
+import org.openclover.runtime.remote.DistributedConfig
+import org.openclover.runtime.remote.MessageCodec
+import org.openclover.runtime.remote.NioRecorderService
+import org.openclover.runtime.remote.RemoteFactory
+import org.openclover.runtime.remote.RpcMessage
+import org.openclover.runtime.remote.TcpRecorderListener
+import org.openclover.runtime.util.IOStreamUtils
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+/**
+ * Test for {@link NioRecorderService}. Like {@link TcpRecorderServiceTest} it uses raw protocol-speaking sockets as
+ * clients, so the broadcast, barrier and ACK behaviour can be observed deterministically.
+ */
+class NioRecorderServiceTest {
+
+    private NioRecorderService service
+    private final List<Socket> clientSockets = new ArrayList<>()
+    private TcpRecorderListener listener
+
+    @After
+    void tearDown() {
+        listener?.disconnect()
+        clientSockets.each { IOStreamUtils.close(it) }
+        service?.stop()
+    }
+
+    /** A config binding an ephemeral port, so that no test can reach the service of another one */
+    private static DistributedConfig config(int timeout, int numClients) {
+        final DistributedConfig config = (DistributedConfig) RemoteFactory.getInstance().createConfig(
+                "${DistributedConfig.PORT}=0;" +
+                        "${DistributedConfig.TIMEOUT}=${timeout};" +
+                        "${DistributedConfig.NUM_CLIENTS}=${numClients}")
+        config.setNio(true)
+        config
+    }
+
+    private void startService(DistributedConfig config) {
+        service = (NioRecorderService) RemoteFactory.getInstance().createService(config)
+        service.start()
+    }
+
+    private RawClient connectRawClient() {
+        final Socket socket = new Socket()
+        socket.connect(new InetSocketAddress("localhost", service.getLocalPort()), 500)
+        socket.setSoTimeout(5000)
+        clientSockets.add(socket)
+        final DataInputStream input = IOStreamUtils.bufferedDataInput(socket)
+        final DataOutputStream output = IOStreamUtils.bufferedDataOutput(socket)
+        MessageCodec.writeClientHandshake(output)
+        MessageCodec.readServerHandshake(input)
+        new RawClient(input, output)
+    }
+
+    private void waitForRegistered(int expected) {
+        final long deadline = System.currentTimeMillis() + 1000
+        while (service.getNumRegisteredListeners() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        assertEquals(expected, service.getNumRegisteredListeners())
+    }
+
+    @Test
+    void testBroadcastAndAck() {
+        startService(config(2000, 0))
+        final List<RawClient> rawClients = (1..20).collect { connectRawClient() }
+        waitForRegistered(20)
+
+        final def pool = Executors.newSingleThreadExecutor()
+        for (int slice = 0; slice < 5; slice++) {
+            final RpcMessage msg = RpcMessage.createMethodStart("test.Type", slice, 100L + slice)
+            final Future<Object> sent = pool.submit({ service.sendMessage(msg) } as Callable)
+            rawClients.each { it.readAndAckSliceStart("test.Type", slice, 100L + slice) }
+            assertEquals(20, sent.get(1, TimeUnit.SECONDS))
+        }
+        pool.shutdownNow()
+
+        assertEquals(20, service.getClientStats().size())
+        service.getClientStats().each {
+            assertEquals(5L, it.getNumAcks())
+            assertTrue(it.getMaxAckLatencyMillis() >= it.getMeanAckLatencyMillis())
+        }
+        assertEquals(0, service.getNumDroppedClients())
+    }
+
+    @Test
+    void testSlowClientIsDroppedOthersUnaffected() {
+        startService(config(500, 0))
+        final RawClient good = connectRawClient()
+        connectRawClient() // never ACKs
+        waitForRegistered(2)
+
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<Object> sent = pool.submit(
+                { service.sendMessage(RpcMessage.createMethodStart("t", 1, 1L)) } as Callable)
+        good.readAndAckSliceStart("t", 1, 1L)
+        assertEquals(1, sent.get(5, TimeUnit.SECONDS))
+        waitForRegistered(1)
+        assertEquals(1, service.getNumDroppedClients())
+        pool.shutdownNow()
+    }
+
+    @Test
+    void testStalledHandshakeIsRejected() {
+        startService(config(300, 0))
+        final Socket stalled = new Socket()
+        stalled.connect(new InetSocketAddress("localhost", service.getLocalPort()), 500)
+        clientSockets.add(stalled)
+
+        connectRawClient()
+        waitForRegistered(1)
+
+        // the stalled peer is disconnected once its handshake times out
+        stalled.setSoTimeout(5000)
+        assertEquals(-1, stalled.getInputStream().read())
+        assertEquals(0, service.getNumDroppedClients())
+    }
+
+    @Test
+    void testPipelinedEventsAreNotAwaited() {
+        final DistributedConfig config = config(2000, 0)
+        config.setPipelined(true)
+        startService(config)
+        final RawClient a = connectRawClient()
+        final RawClient b = connectRawClient()
+        waitForRegistered(2)
+
+        (1..3).each { assertEquals(2, service.sendMessage(RpcMessage.createMethodStart("t", it, it as long))) }
+        [a, b].each { client ->
+            (1..3).each { client.readSequencedSliceStart(it as long, "t", it, it as long) }
+        }
+
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<Object> flushed = pool.submit({ service.flush() } as Callable)
+        [a, b].each { it.readFlushAndAck(4L) }
+        assertEquals(2, flushed.get(1, TimeUnit.SECONDS))
+        pool.shutdownNow()
+    }
+
+    @Test
+    void testLoopbackListener() {
+        final DistributedConfig config = config(2000, 1)
+        config.setPipelined(true)
+        service = (NioRecorderService) RemoteFactory.getInstance().createService(config)
+
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<?> started = pool.submit({ service.start() } as Runnable)
+        final long deadline = System.currentTimeMillis() + 5000
+        while (service.getLocalPort() <= 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        config.setPort(service.getLocalPort())
+        listener = (TcpRecorderListener) RemoteFactory.getInstance().createListener(config)
+        listener.connect()
+        // start() returns once the listener attached
+        started.get(5, TimeUnit.SECONDS)
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(1, service.sendMessage(RpcMessage.createMethodStart("com.foo.Test", i, i)))
+            assertEquals(1, service.sendMessage(RpcMessage.createMethodEnd("com.foo.Test", "test", null, i, 0, null)))
+        }
+        assertEquals(1, service.flush())
+        pool.shutdownNow()
+    }
+
+    /** A raw protocol client used by the tests in place of the real listener. */
+    private static class RawClient {
+        final DataInputStream input
+        final DataOutputStream output
+
+        RawClient(DataInputStream input, DataOutputStream output) {
+            this.input = input
+            this.output = output
+        }
+
+        void readAndAckSliceStart(String expectedType, int expectedSlice, long expectedStart) {
+            assertEquals(MessageCodec.OP_SLICE_START, input.readByte())
+            assertEquals(expectedType, input.readUTF())
+            assertEquals(expectedSlice, input.readInt())
+            assertEquals(expectedStart, input.readLong())
+            output.writeByte(MessageCodec.ACK)
+            output.flush()
+        }
+
+        void readSequencedSliceStart(long expectedSequence, String expectedType, int expectedSlice, long expectedStart) {
+            assertEquals(expectedSequence, input.readLong())
+            assertEquals(MessageCodec.OP_SLICE_START, input.readByte())
+            assertEquals(expectedType, input.readUTF())
+            assertEquals(expectedSlice, input.readInt())
+            assertEquals(expectedStart, input.readLong())
+        }
+
+        void readFlushAndAck(long expectedSequence) {
+            assertEquals(expectedSequence, input.readLong())
+            assertEquals(MessageCodec.OP_FLUSH, input.readByte())
+            MessageCodec.writeCumulativeAck(output, expectedSequence)
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Before
 import org.junit.Test
 import org.openclover.runtime.remote.Config
 import org.openclover.runtime.remote.DistributedConfig
+import org.openclover.runtime.remote.NioRecorderService
 import org.openclover.runtime.remote.RecorderListener
 import org.openclover.runtime.remote.RecorderService
 import org.openclover.runtime.remote.RemoteFactory
@@ -40,6 +41,13 @@ class RemoteFactoryTest {
         assertTrue(service instanceof TcpRecorderService)
     }    
 
+    @Test
+    void testCreateNioService() {
+        final RecorderService service = RemoteFactory.getInstance().createService(
+                RemoteFactory.getInstance().createConfig(location + ";" + DistributedConfig.NIO + "=true"))
+        assertTrue(service instanceof NioRecorderService)
+    }
+
     @Test
     void testCreateListener() {
         final RecorderListener listener = RemoteFactory.getInstance().createListener(config)
@@ -6,6 +6,7 @@ import org.openclover.core.util.RecordingLogger
 import org.openclover.runtime.Logger
 import org.openclover.runtime.remote.DistributedConfig
 import org.openclover.runtime.remote.RemoteFactory
+import org.openclover.runtime.remote.RpcMessage
 import org.openclover.runtime.remote.TcpRecorderListener
 import org.openclover.runtime.remote.TcpRecorderService
 
@@ -25,14 +26,25 @@ class TcpRecorderListenerTest {
         Logger.setInstance(origLogger)
     }
 
-    private DistributedConfig config() {
-        (DistributedConfig) RemoteFactory.getInstance().createConfig(
-                "${DistributedConfig.PORT}=${TcpRecorderServiceTest.TEST_PORT}")
+    /** A config binding an ephemeral port; listeners get the port the service is bound to */
+    private static DistributedConfig config() {
+        (DistributedConfig) RemoteFactory.getInstance().createConfig("${DistributedConfig.PORT}=0")
+    }
+
+    /** Starts the service, then points the config at its port for the listener */
+    private void startService(DistributedConfig config) {
+        service = (TcpRecorderService) RemoteFactory.getInstance().createService(config)
+        service.start()
+        config.setPort(service.getLocalPort())
     }
 
     @Test
     void testConnectFailsGracefullyWithoutServer() {
         final DistributedConfig config = config()
+        // a port nobody listens on
+        final ServerSocket unused = new ServerSocket(0)
+        config.setPort(unused.getLocalPort())
+        unused.close()
         listener = (TcpRecorderListener) RemoteFactory.getInstance().createListener(config)
         final RecordingLogger logger = new RecordingLogger()
         Logger.setInstance(logger)
@@ -47,8 +59,7 @@ class TcpRecorderListenerTest {
     @Test
     void testListenerRegistersWithService() {
         final DistributedConfig config = config()
-        service = (TcpRecorderService) RemoteFactory.getInstance().createService(config)
-        service.start()
+        startService(config)
 
         listener = (TcpRecorderListener) RemoteFactory.getInstance().createListener(config)
         listener.connect()
@@ -59,4 +70,26 @@ class TcpRecorderListenerTest {
         }
         assertEquals(1, service.getNumRegisteredListeners())
     }
+
+    @Test
+    void testPipelinedEventsAppliedByLoopbackListener() {
+        final DistributedConfig config = config()
+        config.setPipelined(true)
+        startService(config)
+
+        listener = (TcpRecorderListener) RemoteFactory.getInstance().createListener(config)
+        listener.connect()
+        final long deadline = System.currentTimeMillis() + 500
+        while (service.getNumRegisteredListeners() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        // many more events than the listener acknowledges in one batch
+        for (int i = 0; i < 3 * TcpRecorderListener.ACK_BATCH_SIZE; i++) {
+            assertEquals(1, service.sendMessage(RpcMessage.createMethodStart("com.foo.Test", i, i)))
+            assertEquals(1, service.sendMessage(RpcMessage.createMethodEnd("com.foo.Test", "test", null, i, 0, null)))
+        }
+        assertEquals(1, service.flush())
+        assertEquals(1, service.getNumRegisteredListeners())
+    }
 }
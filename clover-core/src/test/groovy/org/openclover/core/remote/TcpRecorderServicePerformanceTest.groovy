@@ -21,7 +21,7 @@ import static org.junit.Assert.assertTrue
  */
 class TcpRecorderServicePerformanceTest {
 
-    private static final String PORT = System.getProperty("clover.perf.tcp.port", "1200")
+    private static final String PORT = System.getProperty("clover.perf.tcp.port", "0")
     private static final int NUM_CLIENTS = Integer.getInteger("clover.perf.clients", 500)
     private static final int NUM_MESSAGES = Integer.getInteger("clover.perf.messages", 100)
     private static final int GENEROUS_TIMEOUT_MS = 10000
@@ -44,7 +44,7 @@ class TcpRecorderServicePerformanceTest {
 
     private void connectClients(int count, long ackDelayMillis) {
         count.times {
-            final PerfClient client = new PerfClient(Integer.parseInt(PORT), ackDelayMillis)
+            final PerfClient client = new PerfClient(service.getLocalPort(), ackDelayMillis)
             client.start()
             clients.add(client)
         }
@@ -36,17 +36,25 @@ class TcpRecorderServiceTest {
         service?.stop()
     }
 
+    /** A config binding an ephemeral port, so that no test can reach the service of another one */
     private static DistributedConfig config(int timeout, int numClients) {
         (DistributedConfig) RemoteFactory.getInstance().createConfig(
-                "${DistributedConfig.PORT}=${TEST_PORT};" +
+                "${DistributedConfig.PORT}=0;" +
                         "${DistributedConfig.TIMEOUT}=${timeout};" +
                         "${DistributedConfig.NUM_CLIENTS}=${numClients}")
     }
 
+    private static DistributedConfig pipelinedConfig(int timeout, int window) {
+        final DistributedConfig config = config(timeout, 0)
+        config.setPipelined(true)
+        config.setWindow(window)
+        config
+    }
+
     /** Opens a raw socket, performs the client handshake and returns it registered in {@link #clientSockets}. */
     private RawClient connectRawClient() {
         final Socket socket = new Socket()
-        socket.connect(new InetSocketAddress("localhost", Integer.parseInt(TEST_PORT)), 500)
+        socket.connect(new InetSocketAddress("localhost", service.getLocalPort()), 500)
         // bound every client-side read so a lost timing race fails fast instead of wedging a test thread forever
         socket.setSoTimeout(5000)
         clientSockets.add(socket)
@@ -114,7 +122,7 @@ class TcpRecorderServiceTest {
 
         // connects but never sends the handshake bytes - must not wedge the accept loop
         final Socket stalled = new Socket()
-        stalled.connect(new InetSocketAddress("localhost", Integer.parseInt(TEST_PORT)), 500)
+        stalled.connect(new InetSocketAddress("localhost", service.getLocalPort()), 500)
         clientSockets.add(stalled)
 
         // a well-behaved client that connects afterwards still registers
@@ -132,6 +140,7 @@ class TcpRecorderServiceTest {
         // start() must not complete until a client attaches
         Thread.sleep(100)
         assertTrue("start() should still be blocking on the barrier", !started.isDone())
+        assertTrue(service.getLocalPort() > 0)
 
         connectRawClient() // late client
         started.get(100, TimeUnit.MILLISECONDS)    // the barrier releases once the client is registered
@@ -139,6 +148,76 @@ class TcpRecorderServiceTest {
         pool.shutdownNow()
     }
 
+    @Test
+    void testPipelinedEventsAreNotAwaited() {
+        service = (TcpRecorderService) RemoteFactory.getInstance().createService(pipelinedConfig(2000, 100))
+        service.start()
+
+        final RawClient a = connectRawClient()
+        final RawClient b = connectRawClient()
+        waitForRegistered(service, 2)
+
+        // nothing is acknowledged yet, still every event is sent right away
+        (1..3).each { assertEquals(2, service.sendMessage(RpcMessage.createMethodStart("t", it, it as long))) }
+        [a, b].each { client ->
+            (1..3).each { client.readSequencedSliceStart(it as long, "t", it, it as long) }
+        }
+
+        // the barrier is enforced on flush only, and a cumulative ACK covers all events
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<Object> flushed = pool.submit({ service.flush() } as Callable)
+        [a, b].each { it.readFlushAndAck(4L) }
+        assertEquals(2, flushed.get(500, TimeUnit.MILLISECONDS))
+        pool.shutdownNow()
+    }
+
+    @Test
+    void testPipelinedClientLaggingBeyondWindowIsDropped() {
+        service = (TcpRecorderService) RemoteFactory.getInstance().createService(pipelinedConfig(500, 2))
+        service.start()
+
+        final RawClient good = connectRawClient()
+        connectRawClient() // never ACKs
+        waitForRegistered(service, 2)
+
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<Object> acks = pool.submit({
+            (1..3).each {
+                good.readSequencedSliceStart(it as long, "t", it, it as long)
+                good.ackUpTo(it as long)
+            }
+        } as Callable)
+        assertEquals(2, service.sendMessage(RpcMessage.createMethodStart("t", 1, 1L)))
+        assertEquals(2, service.sendMessage(RpcMessage.createMethodStart("t", 2, 2L)))
+        // the window is full, the good client catches up and the one never acknowledging is dropped on timeout
+        assertEquals(1, service.sendMessage(RpcMessage.createMethodStart("t", 3, 3L)))
+        acks.get(1, TimeUnit.SECONDS)
+        waitForRegistered(service, 1)
+        pool.shutdownNow()
+    }
+
+    @Test
+    void testPipelinedClientConnectingLateIsNotAwaitedForEarlierEvents() {
+        service = (TcpRecorderService) RemoteFactory.getInstance().createService(pipelinedConfig(500, 2))
+        service.start()
+
+        // many more events than the window before the client connects
+        (1..5).each { assertEquals(0, service.sendMessage(RpcMessage.createMethodStart("t", it, it as long))) }
+
+        final RawClient late = connectRawClient()
+        waitForRegistered(service, 1)
+        // a full window is sent without waiting, as events before the client connected are not awaited
+        (6..7).each { assertEquals(1, service.sendMessage(RpcMessage.createMethodStart("t", it, it as long))) }
+        (6..7).each { late.readSequencedSliceStart(it as long, "t", it, it as long) }
+        late.ackUpTo(7L)
+
+        final def pool = Executors.newSingleThreadExecutor()
+        final Future<Object> flushed = pool.submit({ service.flush() } as Callable)
+        late.readFlushAndAck(8L)
+        assertEquals(1, flushed.get(500, TimeUnit.MILLISECONDS))
+        pool.shutdownNow()
+    }
+
     private static void closeQuietly(Socket socket) {
         try {
             socket.close()
@@ -164,5 +243,23 @@ class TcpRecorderServiceTest {
             output.writeByte(MessageCodec.ACK)
             output.flush()
         }
+
+        void readSequencedSliceStart(long expectedSequence, String expectedType, int expectedSlice, long expectedStart) {
+            assertEquals(expectedSequence, input.readLong())
+            assertEquals(MessageCodec.OP_SLICE_START, input.readByte())
+            assertEquals(expectedType, input.readUTF())
+            assertEquals(expectedSlice, input.readInt())
+            assertEquals(expectedStart, input.readLong())
+        }
+
+        void readFlushAndAck(long expectedSequence) {
+            assertEquals(expectedSequence, input.readLong())
+            assertEquals(MessageCodec.OP_FLUSH, input.readByte())
+            ackUpTo(expectedSequence)
+        }
+
+        void ackUpTo(long sequence) {
+            MessageCodec.writeCumulativeAck(output, sequence)
+        }
     }
 }
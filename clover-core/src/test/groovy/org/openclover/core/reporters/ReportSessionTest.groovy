@@ -0,0 +1,149 @@
+package org.openclover.core.reporters
+
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.TestUtils
+import org.openclover.core.cfg.Interval
+import org.openclover.core.registry.metrics.HasMetricsTestFixture
+import org.openclover.core.reporters.filters.DefaultTestFilter
+import org.openclover.core.reporters.json.JSONReporter
+import org.openclover.core.reporters.xml.XMLReporter
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
+import static org.junit.Assert.assertTrue
+
+/**
+ * Test for {@link ReportSession}
+ */
+class ReportSessionTest {
+    @Rule
+    public TestName testName = new TestName()
+
+    private HasMetricsTestFixture fixture
+    private File outDir
+
+    @Before
+    void setUp() {
+        fixture = new HasMetricsTestFixture("Report Session Test")
+        fixture.createSampleRegistry()
+        outDir = TestUtils.createEmptyDirFor(getClass(), testName.methodName)
+    }
+
+    private File outFile(String name) {
+        new File(outDir, name)
+    }
+
+    /** Report without the parts which differ between runs, i.e. the donation comment and the timestamp */
+    private String xmlContent(String name) {
+        outFile(name).text.replaceAll("<!--.*-->", "").replaceAll('generated="\\d+"', "")
+    }
+
+    private CloverReportConfig xmlConfig(String name) {
+        final CloverReportConfig config = XMLReporter.processArgs(
+                ["-i", fixture.getInitStr(), "-a", "-o", outFile(name).getAbsolutePath()] as String[])
+        assertNotNull(config)
+        config
+    }
+
+    private CloverReportConfig jsonConfig(String name) {
+        final CloverReportConfig config = JSONReporter.processArgs(
+                ["-i", fixture.getInitStr(), "-o", outFile(name).getAbsolutePath()] as String[])
+        assertNotNull(config)
+        config
+    }
+
+    @Test
+    void testDatabaseIsLoadedOnceForReportsOfSameDatabase() {
+        final ReportSession session = new ReportSession()
+                .add(xmlConfig("clover.xml"))
+                .add(jsonConfig("json"))
+                .add(xmlConfig("clover2.xml"))
+
+        assertEquals(0, session.execute())
+        assertEquals(1, session.getNumDatabaseLoads())
+        assertTrue(outFile("clover.xml").isFile())
+        assertTrue(outFile("clover2.xml").isFile())
+        assertTrue(outFile("json").list().length > 0)
+        assertEquals(xmlContent("clover.xml"), xmlContent("clover2.xml"))
+    }
+
+    @Test
+    void testDatabaseIsLoadedForEachDistinctKey() {
+        final CloverReportConfig withSpan = xmlConfig("span.xml")
+        withSpan.setSpan(new Interval("10s"))
+        final CloverReportConfig withFilter = xmlConfig("filter.xml")
+        withFilter.setTestFilter(new DefaultTestFilter())
+
+        final ReportSession session = new ReportSession()
+                .add(xmlConfig("clover.xml"))
+                .add(withSpan)
+                .add(withFilter)
+                .add(jsonConfig("json"))
+
+        assertEquals(0, session.execute())
+        assertEquals(3, session.getNumDatabaseLoads())
+        assertTrue(outFile("clover.xml").isFile())
+        assertTrue(outFile("span.xml").isFile())
+        assertTrue(outFile("filter.xml").isFile())
+    }
+
+    @Test
+    void testCoverageDatabaseKey() {
+        assertEquals(xmlConfig("a.xml").getCoverageDatabaseKey(), jsonConfig("b").getCoverageDatabaseKey())
+
+        final Current withResults = (Current) xmlConfig("c.xml")
+        withResults.addTestResultFile(new File("TEST-Foo.xml"))
+        assertNotEquals(xmlConfig("a.xml").getCoverageDatabaseKey(), withResults.getCoverageDatabaseKey())
+
+        final Current noInitString = new Current(Current.DEFAULT_XML)
+        noInitString.setFormat(Format.DEFAULT_XML)
+        assertNull(noInitString.getCoverageDatabaseKey())
+    }
+
+    @Test
+    void testReportsOfSameDatabaseAreRenderedConcurrently() {
+        final ReportSession session = new ReportSession(3)
+        for (int i = 0; i < 6; i++) {
+            session.add(xmlConfig("clover" + i + ".xml"))
+        }
+
+        assertEquals(0, session.execute())
+        assertEquals(1, session.getNumDatabaseLoads())
+        for (int i = 1; i < 6; i++) {
+            assertEquals(xmlContent("clover0.xml"), xmlContent("clover" + i + ".xml"))
+        }
+    }
+
+    @Test
+    void testReportsOfDifferentFormatsAreRenderedConcurrently() {
+        final ReportSession session = new ReportSession(4)
+                .add(jsonConfig("json0"))
+                .add(xmlConfig("clover0.xml"))
+                .add(jsonConfig("json1"))
+                .add(xmlConfig("clover1.xml"))
+
+        assertEquals(0, session.execute())
+        assertEquals(1, session.getNumDatabaseLoads())
+        assertEquals(xmlContent("clover0.xml"), xmlContent("clover1.xml"))
+        assertEquals(outFile("json0").list().sort(), outFile("json1").list().sort())
+    }
+
+    @Test
+    void testCommandLine() {
+        assertEquals(0, ReportSession.runReports([
+                "-i", fixture.getInitStr(), "--reportthreads", "2",
+                "--xml", "-a", "-o", outFile("clover.xml").getAbsolutePath(),
+                "--json", "-o", outFile("json").getAbsolutePath()
+        ] as String[]))
+        assertTrue(outFile("clover.xml").isFile())
+        assertTrue(outFile("json").list().length > 0)
+
+        assertEquals(1, ReportSession.runReports(["-i", fixture.getInitStr()] as String[]))
+        assertEquals(1, ReportSession.runReports(["--xml"] as String[]))
+    }
+}
@@ -19,7 +19,6 @@ class RenderFileActionTest extends TestCase {
     CloverDatabase cloverDatabase
 
     void setUp() throws IOException, CloverException {
-        RenderFileAction.initThreadLocals()
         fixture = new HasMetricsTestFixture("Render File Action Test")
 
         Clover2Registry reg = fixture.createSampleRegistry()
@@ -36,10 +35,6 @@ class RenderFileActionTest extends TestCase {
 
     }
 
-    void tearDown() {
-        RenderFileAction.resetThreadLocals()
-    }
-
     void testInsertSrcFileProperties() throws Exception {
         HtmlRenderingSupportImpl helper = new HtmlRenderingSupportImpl()
         VelocityContextBuilder ctx = VelocityContextBuilder.create()
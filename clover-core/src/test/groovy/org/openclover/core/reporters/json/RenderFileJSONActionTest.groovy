@@ -19,8 +19,6 @@ class RenderFileJSONActionTest extends TestCase {
     private CloverDatabase cloverDatabase
 
     void setUp() throws IOException, CloverException {
-        RenderFileJSONAction.initThreadLocals()
-
         fixture = new HasMetricsTestFixture("Render JSON Action Test")
 
         Clover2Registry reg = fixture.createSampleRegistry()
@@ -37,10 +35,6 @@ class RenderFileJSONActionTest extends TestCase {
 
     }
 
-    void tearDown() {
-        RenderFileJSONAction.resetThreadLocals()
-    }
-
     void testRenderJSON() throws Exception {
         HtmlRenderingSupportImpl helper = new HtmlRenderingSupportImpl()
 
@@ -75,11 +69,9 @@ class RenderFileJSONActionTest extends TestCase {
 
         File outfile = new File(CloverUtils.createOutDir(pinfo, config.getOutFile()), "package.js")
 
-        RenderMetricsJSONAction.initThreadLocals()
         RenderMetricsJSONAction action =
                 new RenderMetricsJSONAction(ctx, pinfo, config, outfile, helper)
         action.call()
-        RenderMetricsJSONAction.resetThreadLocals()
         
         final JSONObject json = (JSONObject) ctx.get("json")
         JSONObject stats = json.getJSONObject("stats")
@@ -0,0 +1,173 @@
+package org.openclover.core.reporters.xml
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TestName
+import org.openclover.core.CloverDatabase
+import org.openclover.core.api.registry.BlockMetrics
+import org.openclover.core.api.registry.ClassInfo
+import org.openclover.core.api.registry.FileInfo
+import org.openclover.core.api.registry.PackageInfo
+import org.openclover.core.api.registry.ProjectInfo
+import org.openclover.core.cfg.instr.java.JavaInstrumentationConfig
+import org.openclover.core.instr.java.Instrumenter
+import org.openclover.core.model.XmlNames
+import org.openclover.core.registry.Clover2Registry
+import org.openclover.core.reporters.Current
+import org.openclover.core.reporters.Format
+import org.openclover.core.util.FileUtils
+import org.openclover.runtime.recorder.FixedSizeCoverageRecorder
+import org.w3c.dom.Element
+import org.w3c.dom.Node
+import org_openclover_runtime.CoverageRecorder
+
+import javax.xml.parsers.DocumentBuilderFactory
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertTrue
+
+/**
+ * Test for metrics written by {@link XMLReporter}, which are calculated by
+ * {@link org.openclover.core.registry.metrics.MetricsAggregator}
+ */
+class XMLReporterTest {
+    private File workingDir
+    private File registryFile
+
+    @Rule
+    public TestName testName = new TestName()
+
+    @Before
+    void setUp() throws Exception {
+        workingDir = File.createTempFile(getClass().getName() + "." + testName.methodName, ".tmp")
+        workingDir.delete()
+        workingDir.mkdir()
+        registryFile = new File(workingDir, "clover.db")
+        final Clover2Registry registry = instrumentSources()
+        // see CoverageDataCollatorTest.elapse200ms()
+        Thread.sleep(200)
+        recordEveryOtherElement(registry)
+    }
+
+    @After
+    void tearDown() throws Exception {
+        FileUtils.deltree(workingDir)
+    }
+
+    @Test
+    void testMetricsMatchModel() throws Exception {
+        checkMetricsMatchModel("", 1)
+    }
+
+    @Test
+    void testFilteredMetricsMatchModel() throws Exception {
+        checkMetricsMatchModel("if", 1)
+    }
+
+    @Test
+    void testMetricsCalculatedInParallelMatchModel() throws Exception {
+        checkMetricsMatchModel("if", 4)
+    }
+
+    private void checkMetricsMatchModel(String filter, int numThreads) {
+        final File outFile = new File(workingDir, "clover.xml")
+        final Current config = new Current()
+        config.setInitString(registryFile.getAbsolutePath())
+        config.setOutFile(outFile)
+        config.setNumThreads(numThreads)
+        final Format format = new Format(Format.DEFAULT_XML)
+        format.setFilter(filter)
+        config.setFormat(format)
+
+        final CloverDatabase database = config.getCoverageDatabase()
+        assertEquals(0, new XMLReporter(database, config).execute())
+
+        final Element xml = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(outFile).getDocumentElement()
+        final Element projectXml = child(xml, XmlNames.E_PROJECT, null)
+        final ProjectInfo project = database.getAppOnlyModel()
+        assertTrue(project.getMetrics().getNumCoveredElements() > 0)
+        assertMetrics(project.getMetrics(), projectXml)
+
+        final List<PackageInfo> packages = project.getAllPackages()
+        assertEquals(packages.size(), children(projectXml, XmlNames.E_PACKAGE).size())
+        packages.each { PackageInfo pkg ->
+            final Element pkgXml = child(projectXml, XmlNames.E_PACKAGE, pkg.getName())
+            assertMetrics(pkg.getMetrics(), pkgXml)
+            pkg.getFiles().each { FileInfo file ->
+                final Element fileXml = child(pkgXml, XmlNames.E_FILE, file.getName())
+                assertMetrics(file.getMetrics(), fileXml)
+                file.getClasses().each { ClassInfo classInfo ->
+                    assertMetrics(classInfo.getMetrics(), child(fileXml, XmlNames.E_CLASS, classInfo.getName()))
+                }
+            }
+        }
+    }
+
+    private static void assertMetrics(BlockMetrics expected, Element element) {
+        final Element metrics = child(element, XmlNames.E_METRICS, null)
+        assertEquals(expected.getNumElements(), metrics.getAttribute(XmlNames.A_ELEMENTS).toInteger())
+        assertEquals(expected.getNumStatements(), metrics.getAttribute(XmlNames.A_STATEMENTS).toInteger())
+        assertEquals(expected.getNumBranches(), metrics.getAttribute(XmlNames.A_CONDITIONALS).toInteger())
+        assertEquals(expected.getNumCoveredElements(), metrics.getAttribute(XmlNames.A_COVEREDELEMENTS).toInteger())
+        assertEquals(expected.getComplexity(), metrics.getAttribute(XmlNames.A_COMPLEXITY).toInteger())
+    }
+
+    private static List<Element> children(Element parent, String tag) {
+        final List<Element> children = []
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && node.getTagName() == tag) {
+                children << (Element) node
+            }
+        }
+        return children
+    }
+
+    private static Element child(Element parent, String tag, String name) {
+        final Element child = children(parent, tag).find { name == null || it.getAttribute(XmlNames.A_NAME) == name }
+        assertNotNull(tag + " " + name, child)
+        return child
+    }
+
+    private void recordEveryOtherElement(Clover2Registry registry) {
+        final CoverageRecorder recorder = new FixedSizeCoverageRecorder(registryFile.getAbsolutePath(),
+                registry.getVersion(), registry.getDataLength(), 0)
+        for (int i = 0; i < registry.getDataLength(); i += 2) {
+            recorder.inc(i)
+        }
+        recorder.forceFlush()
+    }
+
+    private Clover2Registry instrumentSources() {
+        final File srcDir = new File(workingDir, "src")
+        final List<File> srcFiles = (0..<4).collect { int i ->
+            final File pkgDir = new File(srcDir, "p" + (i % 2))
+            pkgDir.mkdirs()
+            final File file = new File(pkgDir, "C" + i + ".java")
+            file.text = """package p${i % 2};
+
+public class C${i} {
+    public int m(int a) {
+        if (a > ${i}) {
+            for (int j = 0; j < a; j++) { a += j; }
+        }
+        return a;
+    }
+
+    static class Inner { void n() { } }
+}
+"""
+            file
+        }
+
+        final JavaInstrumentationConfig config = new JavaInstrumentationConfig()
+        config.setInitstring(registryFile.getAbsolutePath())
+        config.setProjectName(testName.methodName)
+        final Instrumenter instrumenter = new Instrumenter(config)
+        instrumenter.startInstrumentation()
+        instrumenter.instrument(srcFiles, new File(workingDir, "instr"), null, 1)
+        return instrumenter.endInstrumentation()
+    }
+}
@@ -0,0 +1,94 @@
+package org.openclover.core.util
+
+import org.junit.Test
+import org.openclover.runtime.util.AdaptiveHitSet
+import org.openclover.runtime.util.CloverBitSet
+
+import java.util.concurrent.CountDownLatch
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+class AdaptiveHitSetTest {
+
+    @Test
+    void testStaysSparseForFewHitsInLargeRange() {
+        final AdaptiveHitSet hits = new AdaptiveHitSet()
+        assertFalse(hits.isModified())
+
+        (0..<1000).each { hits.add(it * 3000) } // 1000 hits spread over 3M elements
+        hits.add(3000) // duplicate
+
+        assertTrue(hits.isModified())
+        assertFalse(hits.isDense())
+        assertEquals(1000, hits.cardinality())
+        assertTrue(hits.member(0))
+        assertTrue(hits.member(2997000))
+        assertFalse(hits.member(2999))
+    }
+
+    @Test
+    void testTurnsDenseWhenCrossingDensityThreshold() {
+        final AdaptiveHitSet hits = new AdaptiveHitSet()
+        (0..<1000).each { hits.add(it) }
+
+        assertTrue(hits.isDense())
+        assertEquals(1000, hits.cardinality())
+        assertTrue(hits.member(999))
+        assertFalse(hits.member(1000))
+
+        hits.add(100000) // dense bitmap grows as needed
+        assertTrue(hits.member(100000))
+        assertEquals(1001, hits.cardinality())
+    }
+
+    @Test
+    void testWriteAndReadAsCloverBitSet() {
+        [[1, 64, 2999999], (0..<5000).toList()].each { List<Integer> indexes ->
+            final AdaptiveHitSet hits = new AdaptiveHitSet()
+            indexes.each { hits.add(it) }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+            hits.write(new DataOutputStream(bytes))
+            final CloverBitSet read = CloverBitSet.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+
+            assertEquals(hits.toBitSet(), read)
+            indexes.each { assertTrue(read.member(it)) }
+            assertEquals(indexes.size(), read.degree())
+        }
+    }
+
+    @Test
+    void testWrapsCloverBitSet() {
+        final CloverBitSet bitSet = new CloverBitSet(128)
+        bitSet.add(7)
+        final AdaptiveHitSet hits = new AdaptiveHitSet(bitSet)
+
+        assertTrue(hits.isDense())
+        assertTrue(hits.isModified())
+        assertTrue(hits.member(7))
+        assertEquals(bitSet, hits.toBitSet())
+    }
+
+    @Test
+    void testNoHitsLostWhenManyThreadsAdd() {
+        final int numThreads = 8
+        final int perThread = 20000
+        final AdaptiveHitSet hits = new AdaptiveHitSet()
+        final CountDownLatch startGate = new CountDownLatch(1)
+
+        final List<Thread> threads = (0..<numThreads).collect { int t ->
+            Thread.start {
+                startGate.await()
+                for (int i = 0; i < perThread; i++) {
+                    hits.add(i * numThreads + t)
+                }
+            }
+        }
+        startGate.countDown()
+        threads*.join()
+
+        assertEquals(numThreads * perThread, hits.cardinality())
+    }
+}
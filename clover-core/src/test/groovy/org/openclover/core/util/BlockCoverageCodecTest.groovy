@@ -0,0 +1,95 @@
+package org.openclover.core.util
+
+import org.junit.Test
+import org.openclover.runtime.util.BlockCoverageCodec
+import org.openclover.runtime.util.LzCodec
+
+import static org.junit.Assert.assertArrayEquals
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+class BlockCoverageCodecTest {
+
+    @Test
+    void testZeroBlocksTakeOneByte() throws IOException {
+        final int[] elements = new int[BlockCoverageCodec.BLOCK_SIZE * 10]
+        final BlockCoverageCodec.Encoded encoded = BlockCoverageCodec.encode([elements] as int[][], elements.length)
+        assertEquals(10, encoded.length)
+        assertRoundTrip([elements] as int[][], elements)
+    }
+
+    @Test
+    void testConstantAndNegativeValues() throws IOException {
+        final int[] elements = new int[300]
+        Arrays.fill(elements, 0, 128, 7)                  // constant block, width 0
+        Arrays.fill(elements, 128, 256, -3)               // negative minimum
+        elements[200] = 5
+        elements[299] = Integer.MAX_VALUE                 // partial last block
+        elements[260] = Integer.MIN_VALUE                 // range needing 32 bits
+        assertRoundTrip([elements] as int[][], elements)
+    }
+
+    @Test
+    void testBlocksSpanningSections() throws IOException {
+        final int[][] sections = [[1, 2, 3] as int[], new int[0], (0..<200).collect { it * 2 } as int[], [9] as int[]] as int[][]
+        final int[] flat = sections.collectMany { it as List } as int[]
+        assertRoundTrip(sections, flat)
+    }
+
+    @Test
+    void testRandomData() throws IOException {
+        final Random rnd = new Random(42)
+        final int[] elements = new int[100000]
+        for (int i = 0; i < elements.length; i++) {
+            // mostly zeroes with bursts of small and occasionally large counters
+            final int r = rnd.nextInt(10)
+            elements[i] = r < 6 ? 0 : (r < 9 ? rnd.nextInt(16) : rnd.nextInt())
+        }
+        assertRoundTrip([elements] as int[][], elements)
+    }
+
+    @Test
+    void testCorruptDataIsRejected() {
+        final int[] elements = (0..<256).collect { it } as int[]
+        final BlockCoverageCodec.Encoded encoded = BlockCoverageCodec.encode([elements] as int[][], elements.length)
+        try {
+            BlockCoverageCodec.decode(encoded.data, encoded.length - 10, elements.length, new long[1])
+            fail("Truncated data should be rejected")
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    void testLzCodecRoundTrip() throws IOException {
+        final Random rnd = new Random(7)
+        final List<byte[]> inputs = [
+                new byte[0],
+                "abc".bytes,
+                ("abcdefgh" * 1000).bytes,
+                new byte[70000],                          // long runs, offsets up to the window size
+                (0..<5000).collect { (byte) rnd.nextInt() } as byte[]
+        ]
+        inputs.each { byte[] input ->
+            final byte[] compressed = LzCodec.compress(input, input.length)
+            assertArrayEquals(input, LzCodec.decompress(compressed, compressed.length, input.length))
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+            LzCodec.writeBlock(new DataOutputStream(bytes), input, input.length)
+            assertArrayEquals(input, LzCodec.readBlock(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))))
+        }
+        assertTrue(LzCodec.compress(new byte[70000], 70000).length < 1000)
+    }
+
+    private static void assertRoundTrip(int[][] coverage, int[] expected) throws IOException {
+        final BlockCoverageCodec.Encoded encoded = BlockCoverageCodec.encode(coverage, expected.length)
+        final long[] sum = new long[1]
+        final int[] decoded = BlockCoverageCodec.decode(encoded.data, encoded.length, expected.length, sum)
+        assertArrayEquals(expected, decoded)
+        long expectedSum = 0
+        for (int value : expected) {
+            expectedSum += value
+        }
+        assertEquals(expectedSum, sum[0])
+    }
+}
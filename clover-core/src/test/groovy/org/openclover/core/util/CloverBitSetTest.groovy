@@ -32,6 +32,25 @@ public class CloverBitSetTest {
         assertEquals(bs, newBs)
     }
 
+    @Test
+    public void testSparseBitSetIsWrittenCompactly() throws IOException {
+        CloverBitSet bs = new CloverBitSet(3000000)
+        bs.add(5)
+        bs.add(1000000)
+        bs.add(2999999)
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream()
+        DataOutputStream daos = new DataOutputStream(baos)
+        bs.write(daos)
+        daos.flush()
+        assertEquals(4 * 3 + 4 * 3, baos.size()) // marker, size, count + 3 indexes
+
+        CloverBitSet newBs = CloverBitSet.read(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())))
+        assertEquals(bs, newBs)
+        assertTrue(newBs.member(1000000))
+        assertFalse(newBs.member(1000001))
+    }
+
     @Test
     public void testCanApplyToJavaUtilBitset() {
         //> long # bits count
@@ -228,7 +228,8 @@ public class CloverAstTransformerInstructionSelection extends CloverAstTransform
                 CoverageRecorder.getConfigBits(
                         config.getFlushPolicy(),
                         config.getFlushInterval(),
-                        false, false, !config.isSliceRecording()),
+                        false, false, !config.isSliceRecording(), config.isStripedCounters(),
+                        config.isBooleanCoverage() ? CoverageRecorder.RECORDING_FORMAT_BOOLEAN : CoverageRecorder.RECORDING_FORMAT_INTEGER),
                 fileInfo.getDataIndex() + fileInfo.getDataLength(),
                 config.getProfiles());
 
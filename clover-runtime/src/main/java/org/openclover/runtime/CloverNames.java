@@ -38,10 +38,26 @@ public class CloverNames {
     public static final String PROP_CLOVER_JARPATH = PROP_PREFIX + "jarpath";
     public static final String PROP_SYNCHRONOUS_IO = PROP_PREFIX + "synchronous.io";
     public static final String PROP_RLE_COVERAGE = PROP_PREFIX + "rle.coverage";
+    /** If true, recordings are written in the block-encoded format instead of the deflated one */
+    public static final String PROP_BLOCK_COVERAGE = PROP_PREFIX + "block.coverage";
     public static final String PROP_PER_TEST_COV = PROP_PREFIX + "pertest.coverage";
     public static final String PROP_PER_TEST_COV_THREADING = PROP_PREFIX + "pertest.coverage.threading";
+    /** If true, per-test recordings are appended to a journal instead of being written to separate files */
+    public static final String PROP_PER_TEST_JOURNAL = PROP_PREFIX + "pertest.journal";
+    /** If true, per-test recordings are written on a background thread */
+    public static final String PROP_PER_TEST_ASYNC_WRITE = PROP_PREFIX + "pertest.async";
+    /** Maximum number of per-test recordings waiting to be written on a background thread */
+    public static final String PROP_PER_TEST_ASYNC_QUEUE_SIZE = PROP_PREFIX + "pertest.async.queue.size";
+    /** If true, global hit counters are kept in a memory-mapped recording file */
+    public static final String PROP_MAPPED_COVERAGE = PROP_PREFIX + "mapped.coverage";
+    /** If true, statements and branches of a database being read are kept in a compact, columnar form */
+    public static final String PROP_COLUMNAR_MODEL = PROP_PREFIX + "columnar.model";
+    /** If true, collated coverage is kept in a cache file next to the database and only new recordings are read */
+    public static final String PROP_COVERAGE_CACHE = PROP_PREFIX + "coverage.cache";
 
     public static final String PROP_MEMORY_STRATEGY_SNAPSHOT = PROP_PREFIX + "memory.strategy.snapshot";
+    /** Name of a PerTestCoverageStrategy used to load per-test coverage for reports, overrides the coverage cache size */
+    public static final String PROP_MEMORY_STRATEGY_REPORT = PROP_PREFIX + "memory.strategy.report";
 
     public static final String PROP_CLOVER_OPTIMIZATION_ENABLED = PROP_PREFIX + "optimization.enabled";
     public static final String PROP_SKIP_TREE_MAP_REPORT = PROP_PREFIX + "skipTreeMap";
@@ -55,10 +71,14 @@ public class CloverNames {
     public static final String HISTPOINT_SUFFIX = ".xml.gz";
     public static final String SNAPSHOT_SUFFIX = ".snapshot";
     public static final String LIVEREC_SUFFIX = ".liverec";
+    public static final String PER_TEST_INDEX_SUFFIX = ".tix";
+    public static final String COVERAGE_CACHE_SUFFIX = ".cvc";
 
     public static final String PROP_SERVER = PROP_PREFIX + "server";
 
     public static final String PROP_DISTRIBUTED_CONFIG = PROP_PREFIX + "distributed.coverage";
+    /** Location of a coverage collector to send recordings to instead of writing them to files, e.g. "host=ci;port=1199" */
+    public static final String PROP_COLLECTOR = PROP_PREFIX + "collector";
 
     public static final String PROP_GROVER_PREFIX = PROP_PREFIX + "grover.";
     public static final String PROP_GROVER_NO_POSTBUILD_CLEANUP = PROP_GROVER_PREFIX + "no.postbuild.cleanup";
@@ -3,6 +3,7 @@ package org.openclover.runtime.recorder;
 import org.openclover.runtime.ErrorInfo;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.RuntimeType;
+import org.openclover.runtime.util.AdaptiveHitSet;
 import org_openclover_runtime.CoverageRecorder;
 
 import java.util.ArrayList;
@@ -31,7 +32,7 @@ public final class ActivePerTestRecorderMany extends ActivePerTestRecorderAny {
     @Override
     public ActivePerTestRecorderAny testStarted(String type, long start, int slice, int testRunID) {
         ActivePerTestRecorderOne[] unaries = new ActivePerTestRecorderOne[this.those.length + 1];
-        unaries[0] = new ActivePerTestRecorderOne(coverageRecorder, coverageRecorder.createEmptyHitsMask(), new RuntimeType(type), start, slice, testRunID);
+        unaries[0] = new ActivePerTestRecorderOne(coverageRecorder, new AdaptiveHitSet(), new RuntimeType(type), start, slice, testRunID);
         System.arraycopy(this.those, 0, unaries, 1, this.those.length);
         return new ActivePerTestRecorderMany(coverageRecorder, unaries);
     }
@@ -3,6 +3,7 @@ package org.openclover.runtime.recorder;
 import org.openclover.runtime.ErrorInfo;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.RuntimeType;
+import org.openclover.runtime.util.AdaptiveHitSet;
 import org_openclover_runtime.CoverageRecorder;
 
 /**
@@ -19,7 +20,7 @@ public final class ActivePerTestRecorderNone extends ActivePerTestRecorderAny {
 
     @Override
     public ActivePerTestRecorderAny testStarted(String type, long start, int slice, int testRunID) {
-        return new ActivePerTestRecorderOne(coverageRecorder, coverageRecorder.createEmptyHitsMask(), new RuntimeType(type), start, slice, testRunID);
+        return new ActivePerTestRecorderOne(coverageRecorder, new AdaptiveHitSet(), new RuntimeType(type), start, slice, testRunID);
     }
 
     @Override
@@ -3,23 +3,21 @@ package org.openclover.runtime.recorder;
 import org.openclover.runtime.ErrorInfo;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.RuntimeType;
-import org.openclover.runtime.util.CloverBitSet;
+import org.openclover.runtime.util.AdaptiveHitSet;
 import org_openclover_runtime.CoverageRecorder;
 
 /**
  * Exactly one active per-test recorders
  */
 public final class ActivePerTestRecorderOne extends ActivePerTestRecorderAny {
-    private volatile boolean[] coverageShortcut;
-    final CloverBitSet coverage;
+    final AdaptiveHitSet coverage;
     private final RuntimeType type;
     final long start;
     private final int slice;
     private final int testRunID;
 
-    public ActivePerTestRecorderOne(CoverageRecorder coverageRecorder, CloverBitSet coverage, RuntimeType type, long start, int slice, int testRunID) {
+    public ActivePerTestRecorderOne(CoverageRecorder coverageRecorder, AdaptiveHitSet coverage, RuntimeType type, long start, int slice, int testRunID) {
         super(coverageRecorder);
-        this.coverageShortcut = new boolean[coverage.size()];
         this.coverage = coverage;
         this.type = type;
         this.start = start;
@@ -29,20 +27,9 @@ public final class ActivePerTestRecorderOne extends ActivePerTestRecorderAny {
 
     @Override
     public void set(int index) {
-        if (index > coverageShortcut.length - 1) {
-            // reallocate as CloverBitSet is growable; at least double the size to avoid too frequent reallocs
-            synchronized (this) {
-                final int newSize = Math.max(coverageShortcut.length * 2, index + 1);
-                final boolean[] newShortcut = new boolean[newSize];
-                System.arraycopy(coverageShortcut, 0, newShortcut, 0, coverageShortcut.length);
-                coverageShortcut = newShortcut;
-            }
-        }
-
-        if (!coverageShortcut[index]) {
-            coverageShortcut[index] = true;
-            coverage.add(index);
-        }
+        // the hit set is sparse and grows as needed, so a test touching a small part of a large
+        // database doesn't allocate memory for all elements
+        coverage.add(index);
     }
 
     @Override
@@ -50,7 +37,7 @@ public final class ActivePerTestRecorderOne extends ActivePerTestRecorderAny {
         return new ActivePerTestRecorderMany(
                 coverageRecorder,
                 new ActivePerTestRecorderOne[]{
-                        new ActivePerTestRecorderOne(coverageRecorder, coverageRecorder.createEmptyHitsMask(), new RuntimeType(type), start, slice, testRunID),
+                        new ActivePerTestRecorderOne(coverageRecorder, new AdaptiveHitSet(), new RuntimeType(type), start, slice, testRunID),
                         this});
     }
 
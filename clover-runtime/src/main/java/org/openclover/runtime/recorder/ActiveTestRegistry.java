@@ -0,0 +1,418 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.ErrorInfo;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.RuntimeType;
+import org.openclover.runtime.util.AdaptiveHitSet;
+import org_openclover_runtime.CoverageRecorder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A registry of active per-test recorders for applications running many tests concurrently. Unlike the
+ * {@link ActivePerTestRecorderMany}, which copies the array of active recorders on every test start / finish and
+ * marks a hit in every active recorder, the cost of a hit does not depend on the number of active tests:
+ * <ul>
+ *     <li>tests are kept in a concurrent map, so starting and finishing a test doesn't copy anything</li>
+ *     <li>hits are appended to a single, shared hit log; every test remembers the log position at which it started
+ *     and resolves its coverage from the log range [start, finish) when it finishes</li>
+ *     <li>every start of a test opens a new epoch; an element is appended to the log only once per epoch, which
+ *     is checked by comparing an epoch stamp kept for every element, so hot elements don't flood the log</li>
+ * </ul>
+ * Log chunks older than the oldest active test are released when tests finish. No hits are logged when there
+ * are no active tests. When a long-running test keeps more than {@link #MAX_RETAINED_LOG_CHUNKS} chunks alive, the
+ * log is compacted: the hits already logged for every active test are moved to a hit set of its own and the chunks
+ * are released, so that the memory held by the log is bounded.
+ * <p/>
+ * Like the other strategies, a hit racing with a test start or finish may or may not be attributed to that test.
+ */
+public final class ActiveTestRegistry {
+    static final int STAMP_PAGE_EXPONENT = 10;
+    static final int STAMP_PAGE_SIZE = 1 << STAMP_PAGE_EXPONENT; //1024
+    static final int STAMP_PAGE_MOD_MASK = STAMP_PAGE_SIZE - 1;
+
+    static final int LOG_CHUNK_EXPONENT = 12;
+    static final int LOG_CHUNK_SIZE = 1 << LOG_CHUNK_EXPONENT; //4096
+    static final int LOG_CHUNK_MOD_MASK = LOG_CHUNK_SIZE - 1;
+
+    /** How many log chunks can be held in memory before the log is compacted; 256 chunks take 4MB */
+    static final int MAX_RETAINED_LOG_CHUNKS = 256;
+
+    /** How many times to re-read a log slot which is reserved but not written yet before parking */
+    static final int SLOT_SPINS = 64;
+    static final long MIN_SLOT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    static final long MAX_SLOT_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** How long to wait for a hit which has a log slot reserved but is not written yet */
+    static final long MAX_SLOT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final CoverageRecorder coverageRecorder;
+
+    private final int maxRetainedLogChunks;
+
+    private final ConcurrentHashMap<TestKey, ActiveTest> activeTests = new ConcurrentHashMap<>();
+
+    /** Guards test registration and log trimming */
+    private final Object lock = new Object();
+
+    /** Number of active tests; written under the lock */
+    private volatile int activeCount;
+
+    /** Current epoch, incremented at every test start; written under the lock */
+    private volatile int epoch = 1;
+
+    /** Epoch in which an element was appended to the log for the last time, allocated lazily in pages */
+    private volatile int[][] stampPages = new int[0][];
+
+    /** Next free position in the hit log */
+    private final AtomicLong logTail = new AtomicLong();
+
+    /** Chunks of the hit log which are still needed by active tests */
+    private volatile LogChunks logChunks = new LogChunks(0, new AtomicIntegerArray[0]);
+
+    public ActiveTestRegistry(CoverageRecorder coverageRecorder) {
+        this(coverageRecorder, MAX_RETAINED_LOG_CHUNKS);
+    }
+
+    ActiveTestRegistry(CoverageRecorder coverageRecorder, int maxRetainedLogChunks) {
+        this.coverageRecorder = coverageRecorder;
+        this.maxRetainedLogChunks = maxRetainedLogChunks;
+    }
+
+    /**
+     * Records a hit of the element for all active tests.
+     */
+    public void set(int index) {
+        if (activeCount == 0) {
+            return;
+        }
+        final int currentEpoch = epoch;
+        final int[] page = stampPageFor(index);
+        final int slot = index & STAMP_PAGE_MOD_MASK;
+        if (page[slot] != currentEpoch) {
+            // racing threads may both log the element, which is harmless
+            page[slot] = currentEpoch;
+            appendToLog(index);
+        }
+    }
+
+    public void testStarted(String type, long start, int slice, int testRunId) {
+        synchronized (lock) {
+            final ActiveTest test = new ActiveTest(new RuntimeType(type), start, System.nanoTime(), logTail.get());
+            if (activeTests.put(new TestKey(type, slice, testRunId), test) == null) {
+                activeCount++;
+            } else {
+                Logger.getInstance().verbose(
+                        "Test starting " + asString(type, slice, testRunId) + " but the same test is already active");
+            }
+            // hits logged in the new epoch are guaranteed to be at or after the test's start position
+            epoch++;
+        }
+    }
+
+    public LivePerTestRecording testFinished(String type, String method, /*@Nullable*/ String runtimeTestName,
+                                             long end, int slice, int testRunId, int exitStatus, ErrorInfo errorInfo) {
+        final TestKey key = new TestKey(type, slice, testRunId);
+        final ActiveTest test = activeTests.get(key);
+        if (test == null || !test.type.matches(type)) {
+            Logger.getInstance().verbose(
+                    "Test ending " + asString(type, slice, testRunId) + " but no active per-test recorders match");
+            return LivePerTestRecording.NULL;
+        }
+
+        // a finishing test is not compacted, so its log range can't be released until it is unregistered
+        final long logStart;
+        final AdaptiveHitSet coverage;
+        synchronized (lock) {
+            test.finishing = true;
+            logStart = test.logStart;
+            coverage = test.compacted != null ? test.compacted : new AdaptiveHitSet();
+        }
+        resolveCoverage(logStart, logTail.get(), coverage);
+
+        synchronized (lock) {
+            if (activeTests.remove(key, test)) {
+                activeCount--;
+            }
+            trimLog();
+        }
+
+        // in seconds, measured with the monotonic timer, as the wall clock may be adjusted while the test runs
+        final double duration = (System.nanoTime() - test.startNanos) / 1e9;
+        // optimization: flush to disk non-empty coverage only
+        return coverage.isModified() ?
+                new FileBasedPerTestRecording(coverageRecorder, coverage, method, runtimeTestName,
+                        test.start, end, duration, test.type, slice, testRunId, exitStatus, errorInfo)
+                : LivePerTestRecording.NULL;
+    }
+
+    int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return number of log entries currently held in memory (including unused parts of the chunks)
+     */
+    int getRetainedLogSize() {
+        int retained = 0;
+        for (AtomicIntegerArray chunk : logChunks.chunks) {
+            if (chunk != null) {
+                retained += LOG_CHUNK_SIZE;
+            }
+        }
+        return retained;
+    }
+
+    private int[] stampPageFor(int index) {
+        final int pageIndex = index >> STAMP_PAGE_EXPONENT;
+        final int[][] pages = stampPages;
+        if (pageIndex < pages.length) {
+            final int[] page = pages[pageIndex];
+            if (page != null) {
+                return page;
+            }
+        }
+        return allocateStampPage(pageIndex);
+    }
+
+    private int[] allocateStampPage(int pageIndex) {
+        synchronized (lock) {
+            int[][] pages = stampPages;
+            if (pageIndex >= pages.length) {
+                final int[][] grown = new int[Math.max(pageIndex + 1, pages.length * 2)][];
+                System.arraycopy(pages, 0, grown, 0, pages.length);
+                pages = grown;
+            }
+            if (pages[pageIndex] == null) {
+                pages[pageIndex] = new int[STAMP_PAGE_SIZE];
+            }
+            stampPages = pages;
+            return pages[pageIndex];
+        }
+    }
+
+    private void appendToLog(int index) {
+        final long position = logTail.getAndIncrement();
+        final AtomicIntegerArray chunk = logChunkFor(position);
+        if (chunk != null) {
+            // store index + 1, so that zero marks a slot which is reserved but not written yet
+            chunk.set((int)(position & LOG_CHUNK_MOD_MASK), index + 1);
+        }
+    }
+
+    /**
+     * @return chunk for the log position or <code>null</code> if the position is older than any active test
+     */
+    private AtomicIntegerArray logChunkFor(long position) {
+        final long chunkNumber = position >> LOG_CHUNK_EXPONENT;
+        final LogChunks chunks = logChunks;
+        final long chunkIndex = chunkNumber - chunks.firstChunk;
+        if (chunkIndex >= 0 && chunkIndex < chunks.chunks.length) {
+            final AtomicIntegerArray chunk = chunks.chunks[(int)chunkIndex];
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        return allocateLogChunk(chunkNumber);
+    }
+
+    private AtomicIntegerArray allocateLogChunk(long chunkNumber) {
+        synchronized (lock) {
+            LogChunks chunks = logChunks;
+            final long chunkIndex = chunkNumber - chunks.firstChunk;
+            if (chunkIndex < 0) {
+                return null;
+            }
+            if (chunkIndex >= chunks.chunks.length) {
+                final AtomicIntegerArray[] grown = new AtomicIntegerArray[
+                        (int)Math.max(chunkIndex + 1, chunks.chunks.length * 2L)];
+                System.arraycopy(chunks.chunks, 0, grown, 0, chunks.chunks.length);
+                chunks = new LogChunks(chunks.firstChunk, grown);
+            }
+            AtomicIntegerArray chunk = chunks.chunks[(int)chunkIndex];
+            if (chunk == null) {
+                chunk = new AtomicIntegerArray(LOG_CHUNK_SIZE);
+                chunks.chunks[(int)chunkIndex] = chunk;
+            }
+            logChunks = chunks;
+            if (chunkIndex >= maxRetainedLogChunks) {
+                compactLog(chunkNumber);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Moves hits logged for active tests before the given chunk (or before the first chunk which is not allocated
+     * yet, as its writers wait for the lock) to the tests' own hit sets and releases the chunks. Tests which are
+     * finishing are skipped, they release their log range shortly. Must be called under the lock.
+     */
+    private void compactLog(long chunkNumber) {
+        final LogChunks chunks = logChunks;
+        long compactedChunk = chunks.firstChunk;
+        while (compactedChunk < chunkNumber && chunks.chunkFor(compactedChunk << LOG_CHUNK_EXPONENT) != null) {
+            compactedChunk++;
+        }
+        final long compactedTail = compactedChunk << LOG_CHUNK_EXPONENT;
+        for (ActiveTest test : activeTests.values()) {
+            if (!test.finishing && test.logStart < compactedTail) {
+                if (test.compacted == null) {
+                    test.compacted = new AdaptiveHitSet();
+                }
+                resolveCoverage(test.logStart, compactedTail, test.compacted);
+                test.logStart = compactedTail;
+            }
+        }
+        trimLog();
+    }
+
+    private void resolveCoverage(long from, long to, AdaptiveHitSet coverage) {
+        final LogChunks chunks = logChunks;
+        for (long position = from; position < to; position++) {
+            final AtomicIntegerArray chunk = chunks.chunkFor(position);
+            int entry = chunk != null ? chunk.get((int)(position & LOG_CHUNK_MOD_MASK)) : 0;
+            if (entry == 0) {
+                entry = awaitSlot(position);
+            }
+            if (entry != 0) {
+                coverage.add(entry - 1);
+            }
+        }
+    }
+
+    /**
+     * Waits until a thread which has reserved the log slot (allocates a chunk for it and) writes into it. The
+     * writer does so right after the reservation, so the slot is re-read a few times first; if the writer got
+     * descheduled in between, the thread parks for increasingly longer periods, up to {@link #MAX_SLOT_WAIT_NANOS}.
+     *
+     * @return the entry or 0 if it was not written in time
+     */
+    private int awaitSlot(long position) {
+        final int slot = (int)(position & LOG_CHUNK_MOD_MASK);
+        long deadline = 0;
+        long parkNanos = MIN_SLOT_PARK_NANOS;
+        for (int attempt = 0; ; attempt++) {
+            final AtomicIntegerArray chunk = logChunks.chunkFor(position);
+            final int entry = chunk != null ? chunk.get(slot) : 0;
+            if (entry != 0) {
+                return entry;
+            }
+            if (attempt < SLOT_SPINS) {
+                continue;
+            }
+            final long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + MAX_SLOT_WAIT_NANOS;
+            } else if (now - deadline >= 0) {
+                return 0;
+            }
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_SLOT_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Releases log chunks which are older than the oldest active test. Must be called under the lock.
+     */
+    private void trimLog() {
+        long oldestStart = logTail.get();
+        for (ActiveTest test : activeTests.values()) {
+            oldestStart = Math.min(oldestStart, test.logStart);
+        }
+        final LogChunks chunks = logChunks;
+        final long firstNeededChunk = oldestStart >> LOG_CHUNK_EXPONENT;
+        final long dropped = firstNeededChunk - chunks.firstChunk;
+        if (dropped > 0) {
+            final int kept = (int)Math.max(0, chunks.chunks.length - dropped);
+            final AtomicIntegerArray[] remaining = new AtomicIntegerArray[Math.max(kept, 1)];
+            if (kept > 0) {
+                System.arraycopy(chunks.chunks, (int)dropped, remaining, 0, kept);
+            }
+            logChunks = new LogChunks(firstNeededChunk, remaining);
+        }
+    }
+
+    private static String asString(String typeName, int slice, int testRunId) {
+        return "[" + typeName + "," + slice + "," + testRunId + "]";
+    }
+
+    /**
+     * An immutable view of the hit log chunks, starting from the given chunk number. Chunk slots are filled
+     * lazily under the registry lock.
+     */
+    private static final class LogChunks {
+        final long firstChunk;
+        final AtomicIntegerArray[] chunks;
+
+        LogChunks(long firstChunk, AtomicIntegerArray[] chunks) {
+            this.firstChunk = firstChunk;
+            this.chunks = chunks;
+        }
+
+        /**
+         * @return chunk for the log position or <code>null</code> if it was released or is not allocated yet
+         */
+        AtomicIntegerArray chunkFor(long position) {
+            final long chunkIndex = (position >> LOG_CHUNK_EXPONENT) - firstChunk;
+            return chunkIndex >= 0 && chunkIndex < chunks.length ? chunks[(int)chunkIndex] : null;
+        }
+    }
+
+    private static final class ActiveTest {
+        final RuntimeType type;
+        final long start;
+        final long startNanos;
+        /** Position from which the test's hits are kept in the log; guarded by the registry lock */
+        long logStart;
+        /** Hits moved from the log by a compaction or <code>null</code>; guarded by the registry lock */
+        AdaptiveHitSet compacted;
+        /** Set when the test started to finish, after which it is not compacted; guarded by the registry lock */
+        boolean finishing;
+
+        ActiveTest(RuntimeType type, long start, long startNanos, long logStart) {
+            this.type = type;
+            this.start = start;
+            this.startNanos = startNanos;
+            this.logStart = logStart;
+        }
+    }
+
+    private static final class TestKey {
+        private final String typeName;
+        private final int slice;
+        private final int testRunId;
+
+        TestKey(String typeName, int slice, int testRunId) {
+            this.typeName = typeName;
+            this.slice = slice;
+            this.testRunId = testRunId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            final TestKey that = (TestKey)o;
+            return slice == that.slice && testRunId == that.testRunId && typeName.equals(that.typeName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeName.hashCode();
+            result = 31 * result + slice;
+            result = 31 * result + testRunId;
+            return result;
+        }
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "ActiveTestRegistry[active=" + activeCount + ", epoch=" + epoch + ", logTail=" + logTail.get() + "]";
+    }
+    ///CLOVER:ON
+}
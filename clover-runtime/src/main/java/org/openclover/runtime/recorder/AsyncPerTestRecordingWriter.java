@@ -0,0 +1,203 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.CloverNames;
+import org.openclover.runtime.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes per-test recordings on a background thread, so that tests don't pay for compression and file creation
+ * when they finish. Recordings are passed via a bounded queue; when the queue is full, the test thread blocks until
+ * the writer catches up (back-pressure), so memory held by pending recordings stays bounded.
+ * <p/>
+ * The queue must be drained via {@link #drain()} before JVM exits - it's done by an explicit flush of the
+ * coverage recorder (e.g. <code>Clover.allRecordersFlush()</code>) and by its shutdown flusher.
+ * <p/>
+ * Enabled via the {@link CloverNames#PROP_PER_TEST_ASYNC_WRITE} system property; the queue capacity can be set via
+ * {@link CloverNames#PROP_PER_TEST_ASYNC_QUEUE_SIZE}.
+ */
+public class AsyncPerTestRecordingWriter {
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final String recName;
+    /** journal to append recordings to or <code>null</code> if recordings shall be written to separate files */
+    private final PerTestRecordingJournal journal;
+    /** strategy writing the recordings */
+    private final GlobalRecordingWriteStrategy writeStrategy;
+    private final ThreadGroup threadGroup;
+    private final BlockingQueue<LivePerTestRecording> queue;
+
+    /** guards submitted and completed counters */
+    private final Object lock = new Object();
+    private long submitted;
+    private long completed;
+
+    private Thread writerThread;
+
+    // metrics
+    private volatile int maxQueueDepth;
+    private volatile long totalWriteNanos;
+    private volatile long maxWriteNanos;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CloverNames.PROP_PER_TEST_ASYNC_WRITE);
+    }
+
+    public static int getQueueSize() {
+        return Integer.getInteger(CloverNames.PROP_PER_TEST_ASYNC_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    public AsyncPerTestRecordingWriter(String recName, PerTestRecordingJournal journal, int queueSize, ThreadGroup threadGroup) {
+        this(recName, journal, GlobalRecordingWriteStrategy.WRITE_TO_FILE, queueSize, threadGroup);
+    }
+
+    public AsyncPerTestRecordingWriter(String recName, PerTestRecordingJournal journal, GlobalRecordingWriteStrategy writeStrategy,
+                                       int queueSize, ThreadGroup threadGroup) {
+        this.recName = recName;
+        this.journal = journal;
+        this.writeStrategy = writeStrategy;
+        this.threadGroup = threadGroup;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+    }
+
+    /**
+     * Enqueues the recording for writing. Blocks if the queue is full.
+     */
+    public void submit(LivePerTestRecording recording) {
+        synchronized (lock) {
+            submitted++;
+            if (writerThread == null) {
+                writerThread = new WriterThread(threadGroup);
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+        try {
+            queue.put(recording);
+        } catch (InterruptedException e) {
+            // don't lose the recording, write it on the caller's thread
+            Thread.currentThread().interrupt();
+            write(recording);
+        }
+        final int depth = queue.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Waits until all recordings submitted so far have been written.
+     */
+    public void drain() {
+        synchronized (lock) {
+            while (completed < submitted) {
+                if (writerThread == null || !writerThread.isAlive()) {
+                    // writer is gone (e.g. killed by an Error), finish the job on the caller's thread
+                    final LivePerTestRecording recording = queue.poll();
+                    if (recording == null) {
+                        break;
+                    }
+                    write(recording);
+                } else {
+                    try {
+                        lock.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        if (Logger.isDebug()) {
+            Logger.getInstance().debug("[drained per-test recordings writer: " + this + "]");
+        }
+    }
+
+    private void write(LivePerTestRecording recording) {
+        final Logger logger = Logger.getInstance();
+        final long start = System.nanoTime();
+        try {
+            final String memento = writeStrategy.writePerTest(recording, journal);
+            logger.debug("[flushed per-test recording (" + memento + ") ]");
+        } catch (Exception e) {
+            logger.error(e.getClass().getName() + " flushing per-test coverage for recorder " + recName + ": " + e.getMessage());
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            synchronized (lock) {
+                totalWriteNanos += elapsed;
+                if (elapsed > maxWriteNanos) {
+                    maxWriteNanos = elapsed;
+                }
+                completed++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return number of recordings waiting to be written
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the highest number of recordings waiting to be written observed so far
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return number of recordings written so far
+     */
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return completed;
+        }
+    }
+
+    /**
+     * @return total time spent on writing recordings, in nanoseconds
+     */
+    public long getTotalWriteNanos() {
+        return totalWriteNanos;
+    }
+
+    /**
+     * @return the longest time spent on writing a single recording, in nanoseconds
+     */
+    public long getMaxWriteNanos() {
+        return maxWriteNanos;
+    }
+
+    class WriterThread extends Thread {
+        WriterThread(ThreadGroup group) {
+            super(group, "CloverPerTestWriterThread");
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    write(queue.take());
+                } catch (InterruptedException e) {
+                    // keep serving the queue, the writer is a daemon thread
+                }
+            }
+        }
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        final long written = getWrittenCount();
+        return "AsyncPerTestRecordingWriter[written=" + written
+                + ", queueDepth=" + getQueueDepth()
+                + ", maxQueueDepth=" + maxQueueDepth
+                + ", avgWriteMicros=" + (written == 0 ? 0 : totalWriteNanos / written / 1000)
+                + ", maxWriteMicros=" + maxWriteNanos / 1000 + "]";
+    }
+    ///CLOVER:ON
+}
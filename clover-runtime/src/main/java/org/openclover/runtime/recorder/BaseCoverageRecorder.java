@@ -16,7 +16,8 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
     private static final Class<?>[] FORCE_THESE_TO_LOAD = {
             LiveGlobalCoverageRecording.class,
             FileBasedGlobalCoverageRecording.class,
-            FileBasedGlobalCoverageRecording.REQUIRED_CLASSES.getClass() // force loading dependencies
+            FileBasedGlobalCoverageRecording.REQUIRED_CLASSES.getClass(), // force loading dependencies
+            FileBasedGlobalBitmapCoverageRecording.class
     };
 
     /** D indicates whether coverage needs flushing **/
@@ -40,6 +41,10 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
     protected final String recName;
     protected final String alternateRecName;
     protected final PerTestRecorder testCoverage;
+    /** journal for per-test recordings or <code>null</code> if every recording shall be written to a separate file */
+    protected final PerTestRecordingJournal testJournal;
+    /** background writer for per-test recordings or <code>null</code> if they shall be written on the test thread */
+    protected final AsyncPerTestRecordingWriter testWriter;
     protected final GlobalRecordingWriteStrategy writeStrategy;
 
     public BaseCoverageRecorder(String dbName, long dbVersion, long cfgbits, GlobalRecordingWriteStrategy writeStrategy) {
@@ -57,6 +62,10 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
         long initTS = System.currentTimeMillis();
         recName = Clover.getRecordingName(hashcode, dbName, initTS);
         alternateRecName = recName + GlobalCoverageRecording.ALT_SUFFIX;
+        testJournal = PerTestRecordingJournal.isEnabled() ? new PerTestRecordingJournal(dbName, hashcode) : null;
+        testWriter = AsyncPerTestRecordingWriter.isEnabled()
+                ? new AsyncPerTestRecordingWriter(recName, testJournal, writeStrategy, AsyncPerTestRecordingWriter.getQueueSize(), getTargetThreadGroup())
+                : null;
     }
 
     private PerTestRecorder newPerSliceRecorder() {
@@ -71,6 +80,8 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
                 return new ThreadVisibilityStrategy.Volatile(this);
             } else if ("synchronized".equalsIgnoreCase(perTestThreadingModel)) {
                 return new ThreadVisibilityStrategy.Synchronized(this);
+            } else if ("concurrent".equalsIgnoreCase(perTestThreadingModel)) {
+                return new ThreadVisibilityStrategy.Concurrent(this);
             } else {
                 return new ThreadVisibilityStrategy.SingleThreaded(this);
             }
@@ -96,6 +107,22 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
         sliceFlushingEnabled = (cfgbits & DISABLE_SLICE_FLUSHING_MASK) == 0;
     }
 
+    /**
+     * @return true if the configuration bits request per-thread (striped) hit counters
+     */
+    static boolean isStripedCounters(long cfg) {
+        int cfgbits = (int)(cfg >> 32);
+        return (cfgbits & STRIPED_COUNTERS_MASK) != 0;
+    }
+
+    /**
+     * @return true if the configuration bits request recording of hit/not-hit flags instead of hit counts
+     */
+    static boolean isBooleanRecordingFormat(long cfg) {
+        int cfgbits = (int)(cfg >> 32);
+        return ((cfgbits & RECORDING_FORMAT_MASK) >> 3) == RECORDING_FORMAT_BOOLEAN;
+    }
+
     protected String chooseRecordingName() {
         return useAlternate ? alternateRecName : recName;
     }
@@ -104,6 +131,10 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
         return writeStrategy.write(chooseRecordingName(), dbVersion, lastFlush, hits, elementCount);
     }
 
+    protected String writeBitmap(long[] hitBits, int elementCount) throws IOException {
+        return writeStrategy.writeBitmap(chooseRecordingName(), dbVersion, lastFlush, hitBits, elementCount);
+    }
+
     @Override
     public final void globalSliceStart(String runtimeType, int id) {
         globalSliceStart(runtimeType, id, System.currentTimeMillis());
@@ -187,6 +218,11 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
                         }
                         //Ensure that a flush fully completes before returning from this method
                         forceFlush(null, true);
+                        //Ensure that all pending per-test recordings are written
+                        drainPerTestRecordings();
+                        if (testJournal != null) {
+                            testJournal.close();
+                        }
                     }
                 };
                 Runtime.getRuntime().addShutdownHook(shutdownFlusher);
@@ -252,6 +288,14 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
         return shutdownFlusher;
     }
 
+    /**
+     * @return background writer of per-test recordings (exposing its metrics) or <code>null</code> if recordings
+     * are written synchronously
+     */
+    public AsyncPerTestRecordingWriter getPerTestWriter() {
+        return testWriter;
+    }
+
     @Override
     public void flushNeeded() {
         flushNeeded = true;
@@ -263,19 +307,30 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
             return;
         }
         if (System.currentTimeMillis() - lastFlush > flushInterval) {
-            // in interval mode, always flush
-            forceFlush();
+            // in interval mode, always flush; the test thread doesn't wait for per-test recordings here
+            forceFlush(Logger.getInstance(), false);
         }
     }
 
     @Override
     public void forceFlush() {
         forceFlush(Logger.getInstance(), false);
+        drainPerTestRecordings();
     }
 
     @Override
     public void flush() {
         flush(Logger.getInstance(), false);
+        drainPerTestRecordings();
+    }
+
+    /**
+     * Waits until per-test recordings queued so far are written, so that an explicit flush covers them too
+     */
+    private void drainPerTestRecordings() {
+        if (testWriter != null) {
+            testWriter.drain();
+        }
     }
 
     private void forceFlush(Logger logger, boolean guaranteeFlushHasFinishedOnce) {
@@ -362,15 +417,22 @@ public abstract class BaseCoverageRecorder extends CoverageRecorder {
         //as sometimes seems to happen when the JVM exits, the coverage should
         //still be accurately recorded.
         if (Boolean.getBoolean(CloverNames.PROP_FLUSH_EVERY_TEST)) {
-            forceFlush();
+            forceFlush(Logger.getInstance(), false);
         }
 
         if (sliceFlushingEnabled) {
             Logger logger = Logger.getInstance();
             try {
-                final String memento = testCoverage.testFinished(runtimeType, method, runtimeTestName,
-                        endTime, id, rid, exitStatus, ei).transcribe();
-                logger.debug("[flushed per-test recording (" + memento + ") ]");
+                final LivePerTestRecording recording = testCoverage.testFinished(runtimeType, method, runtimeTestName,
+                        endTime, id, rid, exitStatus, ei);
+                if (testWriter != null) {
+                    if (recording != LivePerTestRecording.NULL) {
+                        testWriter.submit(recording);
+                    }
+                } else {
+                    final String memento = writeStrategy.writePerTest(recording, testJournal);
+                    logger.debug("[flushed per-test recording (" + memento + ") ]");
+                }
             } catch (Exception e) {
                 logger.error(e.getClass().getName() + " flushing per-test coverage for recorder " + recName + ": " + e.getMessage());
             } catch (Error e) {
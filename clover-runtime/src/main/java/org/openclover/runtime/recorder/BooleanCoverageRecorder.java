@@ -0,0 +1,135 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.util.CloverBitSet;
+import org_openclover_runtime.CoverageRecorder;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size {@link CoverageRecorder} which records only whether an element was hit, not how many times.
+ * Flags are packed into a bitmap, which is 32 times smaller than the int[] of the {@link FixedSizeCoverageRecorder}
+ * and is written to disk as such (see {@link FileBasedGlobalBitmapCoverageRecording}).
+ * <p/>
+ * The hot path reads the word first and issues an atomic update only when the element is hit for the first time,
+ * so once the application warms up recording is a plain read of a shared, mostly read-only cache line.
+ * Reports show a hit count of 1 for every covered element.
+ * <p/>
+ * Selected via the {@link CoverageRecorder#RECORDING_FORMAT_MASK} configuration bits.
+ */
+public final class BooleanCoverageRecorder extends BaseCoverageRecorder {
+    private final int numElements;
+    private final AtomicLongArray hitBits;
+
+    /*private*/ BooleanCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits) {
+        this(dbName, dbVersion, numElements, cfgbits, GlobalRecordingWriteStrategy.forDatabase(dbName));
+    }
+
+    /*private*/ BooleanCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits, GlobalRecordingWriteStrategy writeStrategy) {
+        super(dbName, dbVersion, cfgbits, writeStrategy);
+        this.numElements = numElements;
+        this.hitBits = new AtomicLongArray((numElements + 63) >> 6);
+    }
+
+    /**
+     * Mark slot at index as hit
+     */
+    @Override
+    public void inc(int index) {
+        testCoverage.set(index);
+        mark(index);
+    }
+
+    /**
+     * @return always 1 (slot at index is marked as hit before evaluation)
+     */
+    @Override
+    public int iget(int index) {
+        testCoverage.set(index);
+        mark(index);
+        return 1;
+    }
+
+    private void mark(int index) {
+        final int word = index >> 6;
+        final long bit = 1L << index;
+        long current = hitBits.get(word);
+        while ((current & bit) == 0) {
+            if (hitBits.compareAndSet(word, current, current | bit)) {
+                return;
+            }
+            current = hitBits.get(word);
+        }
+    }
+
+    @Override
+    protected String write() throws IOException {
+        return writeBitmap(copyBits(), numElements);
+    }
+
+    @Override
+    public CloverBitSet compareCoverageWith(CoverageSnapshot before) {
+        final int[] elements = expandBits();
+        final int[] beforeElements = before.getCoverage()[0];
+        for (int i = 0; i < beforeElements.length; i++) {
+            beforeElements[i] = beforeElements[i] - elements[i];
+        }
+        return CloverBitSet.forHits(beforeElements);
+    }
+
+    @Override
+    public CloverBitSet createEmptyHitsMask() {
+        return new CloverBitSet(numElements);
+    }
+
+    @Override
+    public CoverageRecorder withCapacityFor(int maxNumElements) {
+        return FixedSizeCoverageRecorder.recorderBigEnoughFor(dbName, maxNumElements, numElements,
+                new FixedSizeCoverageRecorder.NewRecorderBlock() {
+                    @Override
+                    public CoverageRecorder call() {
+                        return BooleanCoverageRecorder.this;
+                    }
+                });
+    }
+
+    @Override
+    public boolean hasCapacityFor(int maxNumElements) {
+        return maxNumElements <= numElements;
+    }
+
+    @Override
+    public CoverageSnapshot getCoverageSnapshot() {
+        return new CoverageSnapshot(new int[][] { expandBits() });
+    }
+
+    private long[] copyBits() {
+        final long[] bits = new long[hitBits.length()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = hitBits.get(i);
+        }
+        return bits;
+    }
+
+    /**
+     * @return hit flags expanded to hit counts of 0 or 1
+     */
+    private int[] expandBits() {
+        final int[] elements = new int[numElements];
+        for (int w = 0; w < hitBits.length(); w++) {
+            long word = hitBits.get(w);
+            while (word != 0) {
+                elements[(w << 6) + Long.numberOfTrailingZeros(word)] = 1;
+                word &= word - 1;
+            }
+        }
+        return elements;
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "BooleanCoverageRecorder[numElements=" + numElements + "]";
+    }
+    ///CLOVER:ON
+}
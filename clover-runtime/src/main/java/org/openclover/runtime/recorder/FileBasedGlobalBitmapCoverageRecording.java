@@ -0,0 +1,40 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.CoverageUtils;
+import org.openclover.runtime.util.IOStreamUtils;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Global coverage recording which stores only hit/not-hit flags, packed into a bitmap. Written by the
+ * {@link BooleanCoverageRecorder}; it's 32 times smaller than the integer format before compression.
+ */
+public class FileBasedGlobalBitmapCoverageRecording extends BaseCoverageRecording implements LiveGlobalCoverageRecording {
+    private final long[] hitBits;
+    private final int numElements;
+
+    public FileBasedGlobalBitmapCoverageRecording(String path, long dbVersion, long timeStamp, long[] hitBits, int numElements) {
+        super(new Header(dbVersion, timeStamp, GlobalCoverageRecording.BITMAP_FORMAT), new File(path));
+        this.hitBits = hitBits;
+        this.numElements = numElements;
+    }
+
+    @Override
+    public String write() throws IOException {
+        Logger.getInstance().verbose("Writing global bitmap coverage file " + fileOnDisk.getAbsolutePath());
+        File file = createCoverageFolderFor(fileOnDisk);
+
+        DataOutputStream out = new DataOutputStream(IOStreamUtils.createDeflateOutputStream(file));
+        try {
+            header.write(out);
+            CoverageUtils.writeBitmapCoverage(out, hitBits, numElements);
+            out.flush();
+        } finally {
+            IOStreamUtils.close(out);
+        }
+        return file.getAbsolutePath();
+    }
+}
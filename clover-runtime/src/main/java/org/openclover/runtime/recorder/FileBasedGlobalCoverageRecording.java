@@ -2,9 +2,11 @@ package org.openclover.runtime.recorder;
 
 import org.openclover.runtime.CloverNames;
 import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.BlockCoverageCodec;
 import org.openclover.runtime.util.CoverageUtils;
 import org.openclover.runtime.util.FOSFactory;
 import org.openclover.runtime.util.IOStreamUtils;
+import org.openclover.runtime.util.LzCodec;
 
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
@@ -27,17 +29,27 @@ public class FileBasedGlobalCoverageRecording extends BaseCoverageRecording impl
         FileNotFoundException.class, BufferedOutputStream.class,
         FileOutputStream.class, Deflater.class, DeflaterOutputStream.class, FOSFactory.class,
         FOSFactory.REQUIRED_CLASSES.getClass(), Header.class, File.class, IOStreamUtils.class,
-        CoverageUtils.class, ArrayIndexOutOfBoundsException.class
+        CoverageUtils.class, ArrayIndexOutOfBoundsException.class, BlockCoverageCodec.class,
+        BlockCoverageCodec.Encoded.class, LzCodec.class
     };
 
     private static final boolean USE_RLE_COMPRESSION =
             Boolean.parseBoolean(System.getProperty(CloverNames.PROP_RLE_COVERAGE, Boolean.TRUE.toString()));
 
+    /**
+     * @return true if recordings shall be written in the block-encoded format, see {@link CloverNames#PROP_BLOCK_COVERAGE}
+     */
+    static boolean isBlockEncodingEnabled() {
+        return Boolean.getBoolean(CloverNames.PROP_BLOCK_COVERAGE);
+    }
+
     private final int[][] elements;
     private final int numElements;
 
     public FileBasedGlobalCoverageRecording(String path, long dbVersion, long timeStamp, int[][] elements, int numElements) {
-        super(new Header(dbVersion, timeStamp, GlobalCoverageRecording.FORMAT), new File(path));
+        super(new Header(dbVersion, timeStamp,
+                isBlockEncodingEnabled() ? GlobalCoverageRecording.BLOCK_FORMAT : GlobalCoverageRecording.FORMAT),
+                new File(path));
         this.elements = elements;
         this.numElements = numElements;
     }
@@ -47,6 +59,15 @@ public class FileBasedGlobalCoverageRecording extends BaseCoverageRecording impl
         Logger.getInstance().verbose("Writing global coverage file " + fileOnDisk.getAbsolutePath());
         File file = createCoverageFolderFor(fileOnDisk);
 
+        if (header.getFormat() == GlobalCoverageRecording.BLOCK_FORMAT) {
+            // block encoded data is compressed on its own, the header is not compressed at all
+            try (DataOutputStream out = new DataOutputStream(IOStreamUtils.createOutputStream(file))) {
+                header.write(out);
+                CoverageUtils.writeBlockCoverage(out, elements, numElements);
+            }
+            return file.getAbsolutePath();
+        }
+
         DataOutputStream out = new DataOutputStream(IOStreamUtils.createDeflateOutputStream(file));
         try {
             header.write(out);
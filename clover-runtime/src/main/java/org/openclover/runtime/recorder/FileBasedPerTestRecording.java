@@ -3,11 +3,14 @@ package org.openclover.runtime.recorder;
 import org.openclover.runtime.ErrorInfo;
 import org.openclover.runtime.Logger;
 import org.openclover.runtime.RuntimeType;
+import org.openclover.runtime.util.AdaptiveHitSet;
 import org.openclover.runtime.util.CloverBitSet;
 import org.openclover.runtime.util.IOStreamUtils;
+import org.openclover.runtime.util.LzCodec;
 import org_openclover_runtime.Clover;
 import org_openclover_runtime.CoverageRecorder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -16,7 +19,7 @@ import java.io.IOException;
  * Per-test coverage recording from the currently running application
  */
 public class FileBasedPerTestRecording extends BaseCoverageRecording implements LivePerTestRecording {
-    private final CloverBitSet coverage;
+    private final AdaptiveHitSet coverage;
     private final String testTypeName;
     private final String testMethodName;
     private final String runtimeTestName;
@@ -30,6 +33,14 @@ public class FileBasedPerTestRecording extends BaseCoverageRecording implements
             String testMethodName, String runtimeTestName,
             long start, long end, double duration, RuntimeType testType,
             int slice, int testRunId, int exitStatus, ErrorInfo errorInfo) {
+        this(dbName, dbVersion, recorderId, new AdaptiveHitSet(coverage), testMethodName, runtimeTestName,
+                start, end, duration, testType, slice, testRunId, exitStatus, errorInfo);
+    }
+
+    public FileBasedPerTestRecording(String dbName, long dbVersion, int recorderId, AdaptiveHitSet coverage,
+            String testMethodName, String runtimeTestName,
+            long start, long end, double duration, RuntimeType testType,
+            int slice, int testRunId, int exitStatus, ErrorInfo errorInfo) {
         super(
             new Header(dbVersion, end, FORMAT),
             new File(Clover.getSliceRecordingName(testType.id, slice, testRunId, recorderId, dbName, start)));
@@ -48,6 +59,14 @@ public class FileBasedPerTestRecording extends BaseCoverageRecording implements
             String testMethodName, String runtimeTestName,
             long start, long end, double duration, RuntimeType testType,
             int slice, int testRunId, int exitStatus, ErrorInfo errorInfo) {
+        this(recorder, new AdaptiveHitSet(coverage), testMethodName, runtimeTestName, start, end, duration, testType,
+                slice, testRunId, exitStatus, errorInfo);
+    }
+
+    public FileBasedPerTestRecording(CoverageRecorder recorder, AdaptiveHitSet coverage,
+            String testMethodName, String runtimeTestName,
+            long start, long end, double duration, RuntimeType testType,
+            int slice, int testRunId, int exitStatus, ErrorInfo errorInfo) {
         this(recorder.getDbName(), recorder.getDbVersion(), recorder.hashCode(), coverage,
                 testMethodName, runtimeTestName, start, end, duration, testType, slice, testRunId,
                 exitStatus, errorInfo);
@@ -59,21 +78,11 @@ public class FileBasedPerTestRecording extends BaseCoverageRecording implements
     @Override
     public String transcribe() throws IOException {
         File file = createCoverageFolderFor(fileOnDisk);
+        if (FileBasedGlobalCoverageRecording.isBlockEncodingEnabled()) {
+            return transcribeBlock(file);
+        }
         try (DataOutputStream out = new DataOutputStream(IOStreamUtils.createDeflateOutputStream(file))) {
-            header.write(out);
-            out.writeUTF(testTypeName);
-            out.writeUTF(testMethodName);
-            out.writeUTF(runtimeTestName != null ? runtimeTestName : ""); // value might be null, protect against NPE
-            out.writeInt(exitStatus);
-            if (exitStatus == PerTestRecorder.ABNORMAL_EXIT) {
-                IOStreamUtils.writeChars(exitMessage, out);
-                IOStreamUtils.writeChars(stackTrace, out);
-            }
-
-            out.writeLong(start);
-            out.writeDouble(duration);
-            coverage.write(out);
-
+            writeTo(out);
             out.flush();
         } catch (IOException e) {
             Logger.getInstance().error("IO Exception flushing sliced coverage for recorder: " + fileOnDisk.getAbsolutePath(), e);
@@ -81,6 +90,50 @@ public class FileBasedPerTestRecording extends BaseCoverageRecording implements
         return file.getAbsolutePath();
     }
 
+    /**
+     * Writes uncompressed header of the {@link PerTestRecording#BLOCK_FORMAT} followed by the content of the
+     * recording compressed by the {@link LzCodec}
+     */
+    private String transcribeBlock(File file) {
+        try (DataOutputStream out = new DataOutputStream(IOStreamUtils.createOutputStream(file))) {
+            new Header(header.getDbVersion(), header.getWriteTimeStamp(), BLOCK_FORMAT).write(out);
+            final ByteArrayOutputStream content = new ByteArrayOutputStream(256);
+            writeContentTo(new DataOutputStream(content));
+            LzCodec.writeBlock(out, content.toByteArray(), content.size());
+        } catch (IOException e) {
+            Logger.getInstance().error("IO Exception flushing sliced coverage for recorder: " + fileOnDisk.getAbsolutePath(), e);
+        }
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public String transcribe(PerTestRecordingJournal journal) throws IOException {
+        return journal.append(this);
+    }
+
+    /**
+     * Writes header and content of the recording (uncompressed)
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        header.write(out);
+        writeContentTo(out);
+    }
+
+    private void writeContentTo(DataOutputStream out) throws IOException {
+        out.writeUTF(testTypeName);
+        out.writeUTF(testMethodName);
+        out.writeUTF(runtimeTestName != null ? runtimeTestName : ""); // value might be null, protect against NPE
+        out.writeInt(exitStatus);
+        if (exitStatus == PerTestRecorder.ABNORMAL_EXIT) {
+            IOStreamUtils.writeChars(exitMessage, out);
+            IOStreamUtils.writeChars(stackTrace, out);
+        }
+
+        out.writeLong(start);
+        out.writeDouble(duration);
+        coverage.write(out);
+    }
+
     public boolean get(int sliceIndex) {
         return coverage.member(sliceIndex);
     }
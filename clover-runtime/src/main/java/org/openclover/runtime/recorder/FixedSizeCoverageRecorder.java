@@ -35,6 +35,16 @@ public final class FixedSizeCoverageRecorder extends BaseCoverageRecorder {
                     new NewRecorderBlock() {
                         @Override
                         public CoverageRecorder call() {
+                            if (isBooleanRecordingFormat(cfgbits)) {
+                                return new BooleanCoverageRecorder(dbFile.getAbsolutePath(), dbVersion, numElementsInDb, cfgbits);
+                            } else if (isStripedCounters(cfgbits)) {
+                                return new StripedCoverageRecorder(dbFile.getAbsolutePath(), dbVersion, numElementsInDb, cfgbits);
+                            } else if (MappedCoverageRecorder.isEnabled()) {
+                                final CoverageRecorder mapped = MappedCoverageRecorder.createFor(dbFile.getAbsolutePath(), dbVersion, numElementsInDb, cfgbits);
+                                if (mapped != null) {
+                                    return mapped;
+                                }
+                            }
                             return new FixedSizeCoverageRecorder(dbFile.getAbsolutePath(), dbVersion, numElementsInDb, cfgbits);
                         }
                     });
@@ -50,7 +60,7 @@ public final class FixedSizeCoverageRecorder extends BaseCoverageRecorder {
     }
 
     /*private*/ FixedSizeCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits) {
-        this(dbName, dbVersion, numElements, cfgbits, GlobalRecordingWriteStrategy.WRITE_TO_FILE);
+        this(dbName, dbVersion, numElements, cfgbits, GlobalRecordingWriteStrategy.forDatabase(dbName));
     }
 
     /*private*/ FixedSizeCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits, GlobalRecordingWriteStrategy writeStrategy) {
@@ -105,12 +115,17 @@ public final class FixedSizeCoverageRecorder extends BaseCoverageRecorder {
         });
     }
 
+    @Override
+    public boolean hasCapacityFor(int maxNumElements) {
+        return maxNumElements <= elements.length;
+    }
+
     @Override
     public CoverageSnapshot getCoverageSnapshot() {
         return new CoverageSnapshot(new int[][] {elements.clone()});
     }
 
-    private static CoverageRecorder recorderBigEnoughFor(String dbName, int numRequiredElements, int numAvailableElements, NewRecorderBlock recorderIfSufficient) {
+    static CoverageRecorder recorderBigEnoughFor(String dbName, int numRequiredElements, int numAvailableElements, NewRecorderBlock recorderIfSufficient) {
         if (numRequiredElements > numAvailableElements) {
             logInsufficientCapacity(dbName, numRequiredElements, numAvailableElements);
             return NullRecorder.INSTANCE;
@@ -129,7 +144,7 @@ public final class FixedSizeCoverageRecorder extends BaseCoverageRecorder {
         }
     }
 
-    private interface NewRecorderBlock extends Callable<CoverageRecorder> {
+    interface NewRecorderBlock extends Callable<CoverageRecorder> {
         @Override
         CoverageRecorder call();
     }
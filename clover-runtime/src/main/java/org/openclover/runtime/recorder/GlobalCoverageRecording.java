@@ -5,5 +5,11 @@ package org.openclover.runtime.recorder;
  */
 public interface GlobalCoverageRecording extends CoverageRecording {
     int FORMAT = 0;
+    /** Hit/not-hit flags stored as a packed bitmap, see {@link FileBasedGlobalBitmapCoverageRecording} */
+    int BITMAP_FORMAT = 2;
+    /** Uncompressed hit counts in a memory-mapped file, see {@link MappedCoverageRecorder} */
+    int MAPPED_FORMAT = 3;
+    /** Block-encoded hit counts, see {@link org.openclover.runtime.util.BlockCoverageCodec} */
+    int BLOCK_FORMAT = 4;
     String ALT_SUFFIX = ".1";
 }
@@ -1,5 +1,8 @@
 package org.openclover.runtime.recorder;
 
+import org.openclover.runtime.CloverNames;
+import org.openclover.runtime.remote.CollectorRecordingWriteStrategy;
+
 import java.io.IOException;
 
 /**
@@ -12,7 +15,45 @@ public interface GlobalRecordingWriteStrategy {
             return new FileBasedGlobalCoverageRecording(
                 recordingFileName, dbVersion, lastFlush, hits, elementCount).write();
         }
+
+        @Override
+        public String writeBitmap(String recordingFileName, long dbVersion, long lastFlush, long[] hitBits, int elementCount) throws IOException {
+            return new FileBasedGlobalBitmapCoverageRecording(
+                recordingFileName, dbVersion, lastFlush, hitBits, elementCount).write();
+        }
     };
 
     String write(String recordingFileName, long dbVersion, long lastFlush, int[][] hits, int elementCount) throws IOException;
+
+    /**
+     * Writes hit/not-hit flags packed into a bitmap (bit i of hitBits[i / 64] is set if element i was hit).
+     * By default the bitmap is expanded to hit counts of 0 or 1 and written via
+     * {@link #write(String, long, long, int[][], int)}.
+     */
+    default String writeBitmap(String recordingFileName, long dbVersion, long lastFlush, long[] hitBits, int elementCount) throws IOException {
+        final int[] hits = new int[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            hits[i] = (int) ((hitBits[i >> 6] >>> i) & 1L);
+        }
+        return write(recordingFileName, dbVersion, lastFlush, new int[][] { hits }, elementCount);
+    }
+
+    /**
+     * Writes a per-test recording. By default it's appended to the journal, if there's one, or transcribed
+     * to a file of its own.
+     *
+     * @param journal journal of the recorder or <code>null</code>
+     */
+    default String writePerTest(LivePerTestRecording recording, PerTestRecordingJournal journal) throws IOException {
+        return journal != null ? recording.transcribe(journal) : recording.transcribe();
+    }
+
+    /**
+     * @return strategy sending recordings to the coverage collector set by the {@link CloverNames#PROP_COLLECTOR}
+     * system property or {@link #WRITE_TO_FILE} if it's not set
+     */
+    static GlobalRecordingWriteStrategy forDatabase(String dbName) {
+        final String collector = System.getProperty(CloverNames.PROP_COLLECTOR);
+        return collector != null ? CollectorRecordingWriteStrategy.create(collector, dbName) : WRITE_TO_FILE;
+    }
 }
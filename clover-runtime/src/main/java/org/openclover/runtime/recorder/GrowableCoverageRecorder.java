@@ -43,7 +43,7 @@ public class GrowableCoverageRecorder extends BaseCoverageRecorder {
     }
 
     /*private*/ GrowableCoverageRecorder(String dbName, long dbVersion, long cfgbits, int maxNumElements) {
-        this(dbName, dbVersion, cfgbits, maxNumElements, GlobalRecordingWriteStrategy.WRITE_TO_FILE);
+        this(dbName, dbVersion, cfgbits, maxNumElements, GlobalRecordingWriteStrategy.forDatabase(dbName));
     }
 
     /*private*/ GrowableCoverageRecorder(String dbName, long dbVersion, long cfgbits, int maxNumElements, GlobalRecordingWriteStrategy writeStrategy) {
@@ -253,6 +253,11 @@ public class GrowableCoverageRecorder extends BaseCoverageRecorder {
             }
         }
 
+        @Override
+        public boolean hasCapacityFor(int maxNumElements) {
+            return maxNumElements <= coverage.getNumElements();
+        }
+
         ///CLOVER:OFF
         @Override
         public CloverBitSet compareCoverageWith(CoverageSnapshot before) {
@@ -11,6 +11,11 @@ public interface LivePerTestRecording extends PerTestRecording {
      */
     String transcribe() throws IOException;
 
+    /**
+     * Transcribe the coverage by appending it to the journal, returning a memento of the transcription
+     */
+    String transcribe(PerTestRecordingJournal journal) throws IOException;
+
     LivePerTestRecording NULL = new LivePerTestRecording() {
         ///CLOVER:OFF
         @Override
@@ -73,6 +78,11 @@ public interface LivePerTestRecording extends PerTestRecording {
             return null;
         }
 
+        @Override
+        public String transcribe(PerTestRecordingJournal journal) {
+            return null;
+        }
+
         @Override
         public long getDbVersion() {
             return 0;
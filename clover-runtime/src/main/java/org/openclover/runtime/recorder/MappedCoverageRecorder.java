@@ -0,0 +1,166 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.CloverNames;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.CloverBitSet;
+import org_openclover_runtime.CoverageRecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size {@link CoverageRecorder} which keeps hit counters directly in a memory-mapped recording file.
+ * A flush doesn't compress and rewrite the whole recording - it only updates the write timestamp in the file
+ * header and forces dirty pages to disk, so periodic flushes in long-running applications are almost free.
+ * <p/>
+ * File layout (not compressed):
+ * <pre>
+ *     0: recording header, as written by {@link BaseCoverageRecording.Header} with the
+ *        {@link GlobalCoverageRecording#MAPPED_FORMAT} format
+ *    32: int number of elements
+ *    36: byte order of hit counters: 0 - big endian, 1 - little endian
+ *    64: int[number of elements] hit counters
+ * </pre>
+ * As the recording file is always up to date, there's no alternate recording file.
+ * <p/>
+ * Enabled via the {@link CloverNames#PROP_MAPPED_COVERAGE} system property.
+ */
+public final class MappedCoverageRecorder extends BaseCoverageRecorder {
+    public static final int TIMESTAMP_OFFSET = 20;
+    public static final int NUM_ELEMENTS_OFFSET = 32;
+    public static final int BYTE_ORDER_OFFSET = 36;
+    public static final int HEADER_SIZE = 64;
+
+    public static final byte BIG_ENDIAN = 0;
+    public static final byte LITTLE_ENDIAN = 1;
+
+    private final int numElements;
+    private final MappedByteBuffer buffer;
+    /** View of hit counters in the native byte order */
+    private final IntBuffer elements;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CloverNames.PROP_MAPPED_COVERAGE);
+    }
+
+    /**
+     * @return new recorder or <code>null</code> if the recording file could not be mapped
+     */
+    static CoverageRecorder createFor(String dbName, long dbVersion, int numElements, long cfgbits) {
+        try {
+            return new MappedCoverageRecorder(dbName, dbVersion, numElements, cfgbits);
+        } catch (IOException e) {
+            Logger.getInstance().warn("Failed to map coverage recording file for " + dbName
+                    + ", falling back to the default recorder: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*private*/ MappedCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits) throws IOException {
+        super(dbName, dbVersion, cfgbits, GlobalRecordingWriteStrategy.WRITE_TO_FILE);
+        this.numElements = numElements;
+        this.buffer = map(new File(recName), HEADER_SIZE + 4L * numElements);
+
+        buffer.putLong(BaseCoverageRecording.Header.REC_MAGIC);
+        buffer.putInt(BaseCoverageRecording.Header.REC_FORMAT_VERSION);
+        buffer.putLong(dbVersion);
+        buffer.putLong(lastFlush);
+        buffer.put((byte) GlobalCoverageRecording.MAPPED_FORMAT);
+        buffer.putInt(NUM_ELEMENTS_OFFSET, numElements);
+        buffer.put(BYTE_ORDER_OFFSET, ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN);
+
+        buffer.position(HEADER_SIZE);
+        this.elements = buffer.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.position(0);
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Failed to create parent folders for coverage file " + file.getAbsolutePath());
+        }
+        // the mapping remains valid after the file is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Increment slot at index
+     */
+    @Override
+    public void inc(int index) {
+        testCoverage.set(index);
+        elements.put(index, elements.get(index) + 1);
+    }
+
+    /**
+     * @return coverage for slot at index but increment by one before evaluation
+     */
+    @Override
+    public int iget(int index) {
+        testCoverage.set(index);
+        final int hits = elements.get(index) + 1;
+        elements.put(index, hits);
+        return hits;
+    }
+
+    /**
+     * Updates the write timestamp and forces hit counters to disk.
+     */
+    @Override
+    protected String write() throws IOException {
+        buffer.putLong(TIMESTAMP_OFFSET, lastFlush);
+        buffer.force();
+        return recName;
+    }
+
+    @Override
+    public CloverBitSet compareCoverageWith(CoverageSnapshot before) {
+        final int[] beforeElements = before.getCoverage()[0];
+        for (int i = 0; i < beforeElements.length; i++) {
+            beforeElements[i] = beforeElements[i] - elements.get(i);
+        }
+        return CloverBitSet.forHits(beforeElements);
+    }
+
+    @Override
+    public CloverBitSet createEmptyHitsMask() {
+        return new CloverBitSet(numElements);
+    }
+
+    @Override
+    public CoverageRecorder withCapacityFor(int maxNumElements) {
+        return FixedSizeCoverageRecorder.recorderBigEnoughFor(dbName, maxNumElements, numElements,
+                new FixedSizeCoverageRecorder.NewRecorderBlock() {
+                    @Override
+                    public CoverageRecorder call() {
+                        return MappedCoverageRecorder.this;
+                    }
+                });
+    }
+
+    @Override
+    public boolean hasCapacityFor(int maxNumElements) {
+        return maxNumElements <= numElements;
+    }
+
+    @Override
+    public CoverageSnapshot getCoverageSnapshot() {
+        final int[] copy = new int[numElements];
+        elements.duplicate().get(copy);
+        return new CoverageSnapshot(new int[][] { copy });
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "MappedCoverageRecorder[numElements=" + numElements + ", file=" + recName + "]";
+    }
+    ///CLOVER:ON
+}
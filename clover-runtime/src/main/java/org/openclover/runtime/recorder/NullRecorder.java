@@ -80,6 +80,11 @@ public final class NullRecorder extends CoverageRecorder {
         return this;
     }
 
+    @Override
+    public boolean hasCapacityFor(int maxNumElements) {
+        return true;
+    }
+
     @Override
     public CoverageSnapshot getCoverageSnapshot() {
         return null;
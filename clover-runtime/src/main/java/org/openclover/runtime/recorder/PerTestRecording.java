@@ -2,6 +2,8 @@ package org.openclover.runtime.recorder;
 
 public interface PerTestRecording extends CoverageRecording {
     int FORMAT = 1;
+    /** Content of the {@link #FORMAT} compressed by the {@link org.openclover.runtime.util.LzCodec} */
+    int BLOCK_FORMAT = 5;
 
     /**
      * Return name of the class related with the executed test. Note that name of the test class at runtime may
@@ -0,0 +1,162 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.CloverNames;
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.IOStreamUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static java.lang.Math.abs;
+
+/**
+ * Append-only journal of per-test recordings written by a single coverage recorder. Instead of creating a separate
+ * file for every test, each test's recording is appended to the current journal segment as one framed record:
+ * <pre>
+ *   int  length of the payload
+ *   int  CRC32 of the payload
+ *   byte[] payload - deflated per-test recording (the same content as a per-test recording file)
+ * </pre>
+ * A new segment is started when the current one exceeds the maximum segment size. Every record is flushed to
+ * the operating system as soon as it's written and a segment is forced to the storage device when it's closed,
+ * at the latest on shutdown of the recorder. A record torn by a crash is detected by the reader via the length
+ * and the checksum, and it's skipped together with anything following it.
+ * <p/>
+ * Enabled via the {@link CloverNames#PROP_PER_TEST_JOURNAL} system property.
+ * <p/>
+ * See <code>org.openclover.core.recorder.RecordingTranscripts#readJournalFromDisk</code>
+ */
+public class PerTestRecordingJournal {
+    /** Default maximum size of a journal segment, in bytes */
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Suffix of journal segment files */
+    public static final String JOURNAL_SUFFIX = ".sj";
+
+    private final String dbName;
+    private final int recorderId;
+    private final long maxSegmentSize;
+
+    private final RecordBuffer buffer = new RecordBuffer(8192);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+
+    private int segment = 0;
+    private File segmentFile;
+    private FileOutputStream segmentFileOut;
+    private DataOutputStream segmentOut;
+    private long segmentSize;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CloverNames.PROP_PER_TEST_JOURNAL);
+    }
+
+    public PerTestRecordingJournal(String dbName, int recorderId) {
+        this(dbName, recorderId, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    /*private*/ PerTestRecordingJournal(String dbName, int recorderId, long maxSegmentSize) {
+        this.dbName = dbName;
+        this.recorderId = recorderId;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Generate a unique file name for a journal segment.
+     * See <code>org.openclover.core.recorder.RecordingTranscripts#JOURNAL_SUFFIX</code> - regexp for journal segment name
+     * @param hash      unique hash identifying the coverage recorder
+     * @param dbname    base name of the clover database (used as prefix)
+     * @param timestamp segment creation timestamp
+     * @param segment   sequential number of the segment
+     * @return String generated file name
+     */
+    public static String getSegmentName(int hash, String dbname, long timestamp, int segment) {
+        return dbname
+                + Integer.toString(abs(hash), 36) + "_"
+                + Long.toString(abs(timestamp), 36) + "_"
+                + Integer.toString(abs(segment), 36) + JOURNAL_SUFFIX;
+    }
+
+    /**
+     * Appends the recording to the journal.
+     *
+     * @return String memento of the write - the segment file and the offset of the record
+     */
+    public synchronized String append(FileBasedPerTestRecording recording) throws IOException {
+        buffer.reset();
+        deflater.reset();
+        final DataOutputStream payloadOut = new DataOutputStream(new DeflaterOutputStream(buffer, deflater));
+        recording.writeTo(payloadOut);
+        payloadOut.close(); // finishes deflation; the deflater itself is not released as it's not owned by the stream
+
+        crc.reset();
+        buffer.updateChecksum(crc);
+
+        final DataOutputStream out = segmentOut();
+        final long offset = segmentSize;
+        out.writeInt(buffer.size());
+        out.writeInt((int) crc.getValue());
+        buffer.writeTo(out);
+        out.flush();
+        segmentSize += 8 + buffer.size();
+
+        return segmentFile.getAbsolutePath() + "@" + offset;
+    }
+
+    private DataOutputStream segmentOut() throws IOException {
+        if (segmentOut != null && segmentSize >= maxSegmentSize) {
+            close();
+            segment++;
+        }
+        if (segmentOut == null) {
+            segmentFile = new File(getSegmentName(recorderId, dbName, System.currentTimeMillis(), segment));
+            if (!segmentFile.getParentFile().exists() && !segmentFile.getParentFile().mkdirs()) {
+                throw new IOException("Failed to create parent folders for coverage file " + segmentFile.getAbsolutePath());
+            }
+            segmentFileOut = new FileOutputStream(segmentFile, true);
+            segmentOut = new DataOutputStream(new BufferedOutputStream(segmentFileOut, 8192));
+            segmentSize = segmentFile.length();
+            Logger.getInstance().verbose("Writing per-test recording journal " + segmentFile.getAbsolutePath());
+        }
+        return segmentOut;
+    }
+
+    /**
+     * Closes the current segment, forcing its records to the storage device; next append will start a new one.
+     */
+    public synchronized void close() {
+        if (segmentOut == null) {
+            return;
+        }
+        try {
+            segmentOut.flush();
+            segmentFileOut.getChannel().force(false);
+        } catch (IOException e) {
+            Logger.getInstance().verbose("Failed to sync per-test recording journal " + segmentFile.getAbsolutePath(), e);
+        } finally {
+            IOStreamUtils.close(segmentOut);
+            segmentOut = null;
+            segmentFileOut = null;
+        }
+    }
+
+    /**
+     * Buffer of a record which gives the checksum access to its content without copying it
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        void updateChecksum(CRC32 crc) {
+            crc.update(buf, 0, count);
+        }
+    }
+}
@@ -40,7 +40,7 @@ public final class SharedCoverageRecorder extends GrowableCoverageRecorder {
     }
 
     private SharedCoverageRecorder(final String dbName, final long dbVersion, final long cfgbits, final int maxNumElements) {
-        super(dbName, dbVersion, cfgbits, maxNumElements, GlobalRecordingWriteStrategy.WRITE_TO_FILE);
+        super(dbName, dbVersion, cfgbits, maxNumElements, GlobalRecordingWriteStrategy.forDatabase(dbName));
     }
 
     ///CLOVER:OFF
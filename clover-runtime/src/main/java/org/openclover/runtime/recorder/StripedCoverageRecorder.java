@@ -0,0 +1,176 @@
+package org.openclover.runtime.recorder;
+
+import org.openclover.runtime.util.CloverBitSet;
+import org_openclover_runtime.CoverageRecorder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A fixed size {@link CoverageRecorder} which keeps a separate set of hit counters for every thread
+ * recording coverage. It's an alternative to the {@link FixedSizeCoverageRecorder} for heavily multi-threaded
+ * applications, where the single shared int[] suffers from lost updates (the elements[i]++ MT problem) and from
+ * cache lines bouncing between cores for hot methods.
+ * <p/>
+ * Every thread increments only its own counters, so no hits are lost and the hot path remains a plain,
+ * unsynchronized increment. Counters are allocated lazily in pages, so threads touching a small part of the
+ * application don't pay for the whole database. Pages are padded on both ends to avoid false sharing with
+ * pages owned by other threads. Counters of all threads are summed up when coverage is written or snapshotted.
+ * <p/>
+ * Selected via the {@link CoverageRecorder#STRIPED_COUNTERS_MASK} configuration bit.
+ */
+public final class StripedCoverageRecorder extends BaseCoverageRecorder {
+    static final int PAGE_EXPONENT = 10;
+    static final int PAGE_SIZE = 1 << PAGE_EXPONENT; //1024
+    static final int PAGE_MOD_MASK = PAGE_SIZE - 1;
+    /** 16 ints = 64 bytes, a typical cache line size */
+    static final int PAGE_PADDING = 16;
+
+    private final int numElements;
+    private final int numPages;
+
+    /** Counters of all threads which have ever recorded coverage, including dead ones */
+    private final List<ThreadCounters> allCounters = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<ThreadCounters> counters = new ThreadLocal<ThreadCounters>() {
+        @Override
+        protected ThreadCounters initialValue() {
+            final ThreadCounters threadCounters = new ThreadCounters(numPages);
+            allCounters.add(threadCounters);
+            return threadCounters;
+        }
+    };
+
+    /*private*/ StripedCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits) {
+        this(dbName, dbVersion, numElements, cfgbits, GlobalRecordingWriteStrategy.forDatabase(dbName));
+    }
+
+    /*private*/ StripedCoverageRecorder(String dbName, long dbVersion, int numElements, long cfgbits, GlobalRecordingWriteStrategy writeStrategy) {
+        super(dbName, dbVersion, cfgbits, writeStrategy);
+        this.numElements = numElements;
+        this.numPages = (numElements + PAGE_SIZE - 1) >> PAGE_EXPONENT;
+    }
+
+    /**
+     * Increment slot at index
+     */
+    @Override
+    public void inc(int index) {
+        testCoverage.set(index);
+        counters.get().inc(index);
+    }
+
+    /**
+     * @return coverage for slot at index but increment by one before evaluation; note that the value returned
+     * is the number of hits recorded by the current thread, which is always greater than zero
+     */
+    @Override
+    public int iget(int index) {
+        testCoverage.set(index);
+        return counters.get().iget(index);
+    }
+
+    @Override
+    protected String write() throws IOException {
+        return write(new int[][] { mergeCounters() }, numElements);
+    }
+
+    @Override
+    public CloverBitSet compareCoverageWith(CoverageSnapshot before) {
+        final int[] elements = mergeCounters();
+        final int[] beforeElements = before.getCoverage()[0];
+        for (int i = 0; i < beforeElements.length; i++) {
+            beforeElements[i] = beforeElements[i] - elements[i];
+        }
+        return CloverBitSet.forHits(beforeElements);
+    }
+
+    @Override
+    public CloverBitSet createEmptyHitsMask() {
+        return new CloverBitSet(numElements);
+    }
+
+    @Override
+    public CoverageRecorder withCapacityFor(int maxNumElements) {
+        return FixedSizeCoverageRecorder.recorderBigEnoughFor(dbName, maxNumElements, numElements,
+                new FixedSizeCoverageRecorder.NewRecorderBlock() {
+                    @Override
+                    public CoverageRecorder call() {
+                        return StripedCoverageRecorder.this;
+                    }
+                });
+    }
+
+    @Override
+    public boolean hasCapacityFor(int maxNumElements) {
+        return maxNumElements <= numElements;
+    }
+
+    @Override
+    public CoverageSnapshot getCoverageSnapshot() {
+        return new CoverageSnapshot(new int[][] { mergeCounters() });
+    }
+
+    /**
+     * Sums up hit counters of all threads. Counters owned by other threads are read without synchronization,
+     * so the result reflects their state as of some recent point in time - which is the same guarantee
+     * as for the {@link FixedSizeCoverageRecorder}.
+     */
+    private int[] mergeCounters() {
+        final int[] merged = new int[numElements];
+        for (ThreadCounters threadCounters : allCounters) {
+            threadCounters.addTo(merged, numElements);
+        }
+        return merged;
+    }
+
+    /**
+     * Hit counters owned by a single thread. Only the owning thread writes to it.
+     */
+    static final class ThreadCounters {
+        private final int[][] pages;
+
+        ThreadCounters(int numPages) {
+            this.pages = new int[numPages][];
+        }
+
+        void inc(int index) {
+            pageFor(index)[PAGE_PADDING + (index & PAGE_MOD_MASK)]++;
+        }
+
+        int iget(int index) {
+            return ++pageFor(index)[PAGE_PADDING + (index & PAGE_MOD_MASK)];
+        }
+
+        private int[] pageFor(int index) {
+            final int pageIndex = index >> PAGE_EXPONENT;
+            int[] page = pages[pageIndex];
+            if (page == null) {
+                page = new int[PAGE_PADDING + PAGE_SIZE + PAGE_PADDING];
+                pages[pageIndex] = page;
+            }
+            return page;
+        }
+
+        void addTo(int[] merged, int numElements) {
+            for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+                final int[] page = pages[pageIndex];
+                if (page != null) {
+                    final int base = pageIndex << PAGE_EXPONENT;
+                    final int length = Math.min(PAGE_SIZE, numElements - base);
+                    for (int i = 0; i < length; i++) {
+                        merged[base + i] += page[PAGE_PADDING + i];
+                    }
+                }
+            }
+        }
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "StripedCoverageRecorder[numElements=" + numElements + ", threads=" + allCounters.size() + "]";
+    }
+    ///CLOVER:ON
+}
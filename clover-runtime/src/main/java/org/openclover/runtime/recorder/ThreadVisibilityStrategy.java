@@ -7,7 +7,7 @@ import org_openclover_runtime.CoverageRecorder;
  * Base interface for different strategies for handling how the current collection of active per test recorders are made
  * visible across different threads.
  * <p/>
- * Three subclasses: Volatile, Synchronized and SingleThreaded
+ * Four subclasses: Volatile, Synchronized, SingleThreaded and Concurrent
  */
 public interface ThreadVisibilityStrategy extends PerTestRecorder {
     /**
@@ -126,4 +126,33 @@ public interface ThreadVisibilityStrategy extends PerTestRecorder {
             recorders.set(index);
         }
     }
+
+    /**
+     * A Holder for applications running many tests concurrently. Tests are kept in an {@link ActiveTestRegistry},
+     * so starting or finishing a test takes constant time and recording a hit does not depend on the number of
+     * active tests. Hits are not synchronized.
+     */
+    class Concurrent implements ThreadVisibilityStrategy {
+        private final ActiveTestRegistry registry;
+
+        public Concurrent(CoverageRecorder coverageRecorder) {
+            registry = new ActiveTestRegistry(coverageRecorder);
+        }
+
+        @Override
+        public void testStarted(String runtimeType, long start, int slice, int testRunId) {
+            registry.testStarted(runtimeType, start, slice, testRunId);
+        }
+
+        @Override
+        public LivePerTestRecording testFinished(String runtimeType, String method, /*@Nullable*/ String runtimeTestName,
+                long end, int slice, int testRunId, int exitStatus, ErrorInfo ei) {
+            return registry.testFinished(runtimeType, method, runtimeTestName, end, slice, testRunId, exitStatus, ei);
+        }
+
+        @Override
+        public void set(int index) {
+            registry.set(index);
+        }
+    }
 }
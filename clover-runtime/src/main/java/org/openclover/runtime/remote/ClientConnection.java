@@ -8,17 +8,30 @@ import java.io.IOException;
 import java.net.Socket;
 
 /**
- * Server-side handle for a single connected client. Because slice boundaries are serialized there is
- * at most one in-flight event per client, so no outbound queue is needed and a single read/write pair suffices.
+ * Server-side handle for a single connected client.
+ * <p/>
+ * In the lockstep mode slice boundaries are serialized, so there is at most one in-flight event per client,
+ * no outbound queue is needed and a single read/write pair suffices.
+ * <p/>
+ * In the pipelined mode frames are written without waiting and a reader thread collects the cumulative
+ * acknowledgements, so the sender only blocks when the client lags behind by more than a window of events
+ * or when it explicitly waits for an acknowledgement at a flush point.
  *
  * @see TcpRecorderService
  */
 class ClientConnection {
 
+    private static final DaemonThreadFactory ACK_READERS = new DaemonThreadFactory("clover-remote-ack");
+
     private final Socket socket;
     private final DataInputStream in;
     private final DataOutputStream out;
 
+    /** Pipelined mode: highest sequence number acknowledged by the client, guarded by {@code this} */
+    private long ackedSequence;
+    /** Pipelined mode: set once the acknowledgement reader stops */
+    private IOException readerFailure;
+
     ClientConnection(final Socket socket, final DataInputStream in, final DataOutputStream out) {
         this.socket = socket;
         this.in = in;
@@ -28,13 +41,21 @@ class ClientConnection {
     /**
      * Accepts a client socket: reads and validates the client handshake, replies with the server handshake,
      * and returns a ready {@link ClientConnection}.
+     *
+     * @param mode {@link MessageCodec#MODE_LOCKSTEP} or {@link MessageCodec#MODE_PIPELINED}
      */
-    static ClientConnection accept(final Socket socket) throws IOException {
+    static ClientConnection accept(final Socket socket, final byte mode) throws IOException {
         final DataInputStream in = IOStreamUtils.bufferedDataInput(socket);
         final DataOutputStream out = IOStreamUtils.bufferedDataOutput(socket);
         MessageCodec.readClientHandshake(in);
-        MessageCodec.writeServerHandshake(out);
-        return new ClientConnection(socket, in, out);
+        MessageCodec.writeServerHandshake(out, mode);
+        final ClientConnection connection = new ClientConnection(socket, in, out);
+        if (mode == MessageCodec.MODE_PIPELINED) {
+            // acknowledgements arrive at any time, never time out reading them
+            socket.setSoTimeout(0);
+            ACK_READERS.newThread(connection::ackReaderLoop).start();
+        }
+        return connection;
     }
 
     /**
@@ -56,6 +77,77 @@ class ClientConnection {
         }
     }
 
+    /**
+     * Pipelined mode: writes one sequenced frame without waiting for it to be acknowledged. Blocks only while
+     * the client lags behind by a full window of frames.
+     *
+     * @param sequence  sequence number of the frame
+     * @param frame     the encoded frame
+     * @param window    maximum number of unacknowledged frames
+     * @param msTimeout maximum time to wait for the client to catch up, in milliseconds
+     */
+    void send(final long sequence, final byte[] frame, final int window, final int msTimeout) throws IOException {
+        awaitAck(sequence - Math.max(1, window), msTimeout);
+        out.write(frame);
+        out.flush();
+    }
+
+    /**
+     * Pipelined mode: blocks until the client acknowledges all frames up to the sequence number.
+     *
+     * @param msTimeout maximum time to wait, in milliseconds
+     */
+    synchronized void awaitAck(final long sequence, final int msTimeout) throws IOException {
+        final long deadline = System.currentTimeMillis() + msTimeout;
+        while (ackedSequence < sequence) {
+            if (readerFailure != null) {
+                throw readerFailure;
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Timed out waiting for client " + socket.getRemoteSocketAddress()
+                        + " to acknowledge event " + sequence + ", last acknowledged " + ackedSequence);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for client " + socket.getRemoteSocketAddress());
+            }
+        }
+    }
+
+    /**
+     * Pipelined mode: treats all frames up to the sequence number as acknowledged, as a client which connects
+     * late is only sent the frames which follow.
+     */
+    synchronized void startAfter(final long sequence) {
+        ackedSequence = sequence;
+    }
+
+    synchronized long getAckedSequence() {
+        return ackedSequence;
+    }
+
+    private void ackReaderLoop() {
+        try {
+            while (true) {
+                final long sequence = MessageCodec.readCumulativeAck(in);
+                synchronized (this) {
+                    if (sequence > ackedSequence) {
+                        ackedSequence = sequence;
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                readerFailure = e;
+                notifyAll();
+            }
+        }
+    }
+
     void closeQuietly() {
         IOStreamUtils.close(socket);
     }
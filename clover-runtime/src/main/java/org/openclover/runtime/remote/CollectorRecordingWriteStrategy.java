@@ -0,0 +1,311 @@
+package org.openclover.runtime.remote;
+
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.recorder.FileBasedPerTestRecording;
+import org.openclover.runtime.recorder.GlobalCoverageRecording;
+import org.openclover.runtime.recorder.GlobalRecordingWriteStrategy;
+import org.openclover.runtime.recorder.LivePerTestRecording;
+import org.openclover.runtime.recorder.PerTestRecordingJournal;
+import org.openclover.runtime.util.IOStreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends recordings of a coverage recorder to a {@link CoverageCollector} instead of writing them to files.
+ * <p/>
+ * Global recordings are sent as increments of hit counts since the previous flush, per-test recordings as they
+ * are. Every recording gets the next sequence number of the session of this recorder and is kept until the
+ * collector acknowledges it. Per-test recordings are sent without waiting, a global recording waits for the
+ * acknowledgement of everything sent before it.
+ * <p/>
+ * If the collector can't be reached, recordings are kept and sent once it's reachable again; increments of hit
+ * counts not sent yet are merged into one. On reconnect the collector tells which recordings it already has, so
+ * nothing is applied twice. If the collector lost the session (it was restarted), all hit counts are sent again.
+ */
+public class CollectorRecordingWriteStrategy implements GlobalRecordingWriteStrategy {
+
+    /** Maximum size of recordings kept for a collector which can't be reached, beyond it per-test recordings are dropped */
+    static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final DistributedConfig config;
+    private final String dbName;
+    private final String sessionId = UUID.randomUUID().toString();
+
+    /** Hit counts as of the last increments queued, guarded by {@code this} */
+    private final int[][] baseline = { new int[0] };
+    /** Recordings not acknowledged yet, in order of sequence numbers, guarded by {@code this} */
+    private final List<Pending> pending = new ArrayList<>();
+    private long pendingBytes;
+    private long sequence;
+    private long ackedSequence;
+    private long lastFailure;
+    /** The last increments of hit counts acknowledged by the collector */
+    private HitDelta lastHits;
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    /**
+     * @param configString collector location, in the format of {@link DistributedConfig}
+     * @param dbName       path of the database, recordings are sent with file names relative to it
+     * @return strategy sending recordings to the collector or {@link #WRITE_TO_FILE} if the location is invalid
+     */
+    public static GlobalRecordingWriteStrategy create(String configString, String dbName) {
+        try {
+            return new CollectorRecordingWriteStrategy(new DistributedConfig(configString), dbName);
+        } catch (RuntimeException e) {
+            Logger.getInstance().error("Invalid coverage collector location \"" + configString
+                    + "\", coverage will be written to files: " + e.getMessage());
+            return WRITE_TO_FILE;
+        }
+    }
+
+    public CollectorRecordingWriteStrategy(DistributedConfig config, String dbName) {
+        this.config = config;
+        this.dbName = dbName;
+    }
+
+    @Override
+    public synchronized String write(String recordingFileName, long dbVersion, long lastFlush,
+                                     int[][] hits, int elementCount) throws IOException {
+        String suffix = relativeName(recordingFileName);
+        if (suffix.endsWith(GlobalCoverageRecording.ALT_SUFFIX)) {
+            suffix = suffix.substring(0, suffix.length() - GlobalCoverageRecording.ALT_SUFFIX.length());
+        }
+        final HitDelta delta = HitDelta.between(baseline, suffix, dbVersion, lastFlush, hits, elementCount);
+        final Pending last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+        if (last != null && last.hits != null && !last.written) {
+            // never sent, so the collector can't have it; merge instead of queueing another one
+            pendingBytes -= last.frame.length;
+            pending.set(pending.size() - 1, hitsFrame(last.sequence, last.hits.plus(delta)));
+        } else {
+            pending.add(hitsFrame(++sequence, delta));
+        }
+        deliver(true);
+        return config.getServerLocation() + "#" + sessionId + "@" + sequence;
+    }
+
+    @Override
+    public synchronized String writePerTest(LivePerTestRecording recording, PerTestRecordingJournal journal)
+            throws IOException {
+        if (!(recording instanceof FileBasedPerTestRecording)) {
+            return GlobalRecordingWriteStrategy.super.writePerTest(recording, journal);
+        }
+        final FileBasedPerTestRecording fileBased = (FileBasedPerTestRecording) recording;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final DataOutputStream bytesOut = new DataOutputStream(bytes);
+        fileBased.writeTo(bytesOut);
+        bytesOut.flush();
+        final byte[] frame = MessageCodec.encodeTestRecording(sequence + 1,
+                relativeName(fileBased.getFile().getPath()), bytes.toByteArray());
+        if (pendingBytes + frame.length > MAX_PENDING_BYTES) {
+            Logger.getInstance().warn("Coverage collector at " + config.getServerLocation()
+                    + " is not reachable, dropping per-test recording " + fileBased.getFile().getName());
+            return null;
+        }
+        pending.add(new Pending(++sequence, frame, null));
+        pendingBytes += frame.length;
+        // don't retry a collector which was just found unreachable for every test
+        if (socket != null || System.currentTimeMillis() - lastFailure >= config.getRetryPeriod()) {
+            deliver(false);
+        }
+        return config.getServerLocation() + "#" + sessionId + "@" + sequence;
+    }
+
+    /**
+     * Sequence number of the last recording acknowledged by the collector
+     */
+    synchronized long getAckedSequence() {
+        return ackedSequence;
+    }
+
+    /**
+     * Closes the connection to the collector, the next write reconnects
+     */
+    public synchronized void disconnect() {
+        IOStreamUtils.close(socket);
+        socket = null;
+    }
+
+    private Pending hitsFrame(long frameSequence, HitDelta delta) throws IOException {
+        final byte[] frame = MessageCodec.encodeHits(frameSequence, delta);
+        pendingBytes += frame.length;
+        return new Pending(frameSequence, frame, delta);
+    }
+
+    private String relativeName(String fileName) {
+        return fileName.startsWith(dbName) ? fileName.substring(dbName.length()) : new File(fileName).getName();
+    }
+
+    /**
+     * Sends pending recordings, reconnecting if needed. If an established connection fails, it's retried once
+     * with a new one, as the collector may have been restarted since.
+     *
+     * @param await wait until the collector acknowledges all of them
+     */
+    private void deliver(boolean await) throws IOException {
+        if (socket != null) {
+            try {
+                send(await);
+                return;
+            } catch (IOException e) {
+                Logger.getInstance().debug("Connection to coverage collector at " + config.getServerLocation()
+                        + " failed, reconnecting: " + e.getMessage());
+                disconnected();
+            }
+        }
+        try {
+            connect();
+            send(await);
+        } catch (IOException e) {
+            lastFailure = System.currentTimeMillis();
+            disconnected();
+            throw new IOException("Failed to send coverage to collector at " + config.getServerLocation()
+                    + ", it will be sent again on next flush: " + e.getMessage(), e);
+        }
+    }
+
+    private void send(boolean await) throws IOException {
+        for (Pending p : pending) {
+            if (!p.sent) {
+                out.write(p.frame);
+                p.sent = true;
+                p.written = true;
+            }
+        }
+        out.flush();
+        if (await) {
+            awaitAck(sequence);
+        } else {
+            // collect acknowledgements which already arrived to release memory of recordings
+            while (in.available() > 0) {
+                acknowledge(MessageCodec.readCumulativeAck(in));
+            }
+        }
+    }
+
+    private void disconnected() {
+        disconnect();
+        for (Pending p : pending) {
+            // the collector may or may not have got them, it'll tell on reconnect
+            p.sent = false;
+        }
+    }
+
+    private void connect() throws IOException {
+        final Socket newSocket = new Socket();
+        try {
+            newSocket.connect(new InetSocketAddress(config.getHost(), config.getPort()), config.getTimeout());
+            newSocket.setSoTimeout(config.getTimeout());
+            in = IOStreamUtils.bufferedDataInput(newSocket);
+            out = IOStreamUtils.bufferedDataOutput(newSocket);
+            MessageCodec.writeClientHandshake(out);
+            MessageCodec.readCollectorHandshake(in);
+            MessageCodec.writeSession(out, sessionId);
+            final long applied = MessageCodec.readCumulativeAck(in);
+            socket = newSocket;
+            if (applied < ackedSequence) {
+                resendAllHits();
+            }
+            acknowledge(applied);
+            Logger.getInstance().debug("Connected to coverage collector at " + config.getServerLocation()
+                    + ", session " + sessionId + " applied up to " + applied);
+        } catch (IOException e) {
+            IOStreamUtils.close(newSocket);
+            throw e;
+        }
+    }
+
+    /**
+     * The collector has lost the session, replaces all pending increments of hit counts with the total counts
+     */
+    private void resendAllHits() throws IOException {
+        Logger.getInstance().info("Coverage collector at " + config.getServerLocation()
+                + " lost session " + sessionId + ", sending all hit counts again");
+        String suffix = null;
+        long dbVersion = 0;
+        long timestamp = 0;
+        for (Iterator<Pending> i = pending.iterator(); i.hasNext(); ) {
+            final Pending p = i.next();
+            if (p.hits != null) {
+                suffix = p.hits.recordingSuffix;
+                dbVersion = p.hits.dbVersion;
+                timestamp = p.hits.timestamp;
+                pendingBytes -= p.frame.length;
+                i.remove();
+            }
+        }
+        ackedSequence = 0;
+        if (suffix == null) {
+            if (lastHits == null) {
+                // no hit counts were ever sent
+                return;
+            }
+            // there's nothing pending to take the recording name from, use the one acknowledged last
+            suffix = lastHits.recordingSuffix;
+            dbVersion = lastHits.dbVersion;
+            timestamp = lastHits.timestamp;
+        }
+        final HitDelta total = HitDelta.between(new int[][] { new int[0] }, suffix, dbVersion, timestamp,
+                baseline, baseline[0].length);
+        pending.add(hitsFrame(++sequence, total));
+    }
+
+    private void awaitAck(long awaited) throws IOException {
+        while (ackedSequence < awaited) {
+            acknowledge(MessageCodec.readCumulativeAck(in));
+        }
+    }
+
+    private void acknowledge(long acked) {
+        if (acked <= ackedSequence) {
+            return;
+        }
+        ackedSequence = acked;
+        for (Iterator<Pending> i = pending.iterator(); i.hasNext(); ) {
+            final Pending p = i.next();
+            if (p.sequence > acked) {
+                break;
+            }
+            if (p.hits != null) {
+                lastHits = p.hits;
+            }
+            pendingBytes -= p.frame.length;
+            i.remove();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CollectorRecordingWriteStrategy{collector=" + config.getServerLocation() + ", session=" + sessionId + "}";
+    }
+
+    /** An encoded recording waiting for an acknowledgement */
+    private static final class Pending {
+        final long sequence;
+        final byte[] frame;
+        /** increments of hit counts or <code>null</code> for a per-test recording */
+        final HitDelta hits;
+        /** written to the current connection */
+        boolean sent;
+        /** written to any connection, so the collector may have applied it */
+        boolean written;
+
+        Pending(long sequence, byte[] frame, HitDelta hits) {
+            this.sequence = sequence;
+            this.frame = frame;
+            this.hits = hits;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package org.openclover.runtime.remote;
+
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.recorder.FileBasedGlobalCoverageRecording;
+import org.openclover.runtime.util.IOStreamUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Central collector of coverage recordings. Instrumented JVMs configured with the
+ * {@link org.openclover.runtime.CloverNames#PROP_COLLECTOR} property send their recordings here via
+ * {@link CollectorRecordingWriteStrategy} instead of writing them to a local file system, which is useful for
+ * ephemeral containers with no file system shared with the build.
+ * <p/>
+ * Every coverage recorder has a session. Global hit counts of a session are merged in memory and written as a
+ * standard global recording next to the database every write interval, when a client disconnects and on
+ * {@link #stop()}. Per-test recordings are written as standard per-test recording files as they arrive.
+ * <p/>
+ * Recordings are sequence-numbered within a session and a recording is applied only if its sequence number is
+ * greater than the last one applied. A client which reconnects is told the last applied sequence number and resends
+ * only what's missing, and a recording delivered twice is acknowledged but not applied again.
+ */
+public class CoverageCollector {
+
+    private static final int MIN_ACCEPT_BACKLOG = 128;
+    private static final int MAX_SESSION_ID_LENGTH = 128;
+
+    /** Suffix of a global recording file name, see <code>RecordingTranscripts#STD_REC_SUFFIX</code> */
+    private static final Pattern GLOBAL_RECORDING_SUFFIX = Pattern.compile("[0-9a-z]+_[0-9a-z]+");
+    /** Suffix of a per-test recording file name, see <code>RecordingTranscripts#SLICE_SUFFIX</code> */
+    private static final Pattern TEST_RECORDING_SUFFIX = Pattern.compile("[0-9a-z]+_[0-9a-z]+_[0-9a-z]+_[0-9a-z]+\\.s");
+
+    private final String initString;
+    private final DistributedConfig config;
+    private final long writeInterval;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile ServerSocket serverSocket;
+    private ExecutorService connectionPool;
+    private Thread acceptThread;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    /**
+     * @param initString    path of the database next to which recordings are written
+     * @param config        host and port to listen on, and the timeout of the handshake
+     * @param writeInterval how often merged global recordings are written, in milliseconds
+     */
+    public CoverageCollector(String initString, DistributedConfig config, long writeInterval) {
+        this.initString = initString;
+        this.config = config;
+        this.writeInterval = writeInterval;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(config.getHost(), config.getPort()),
+                Math.max(MIN_ACCEPT_BACKLOG, config.getNumClients()));
+        running = true;
+        connectionPool = Executors.newCachedThreadPool(new DaemonThreadFactory("clover-collector-connection"));
+        acceptThread = new DaemonThreadFactory("clover-collector-accept").newThread(this::acceptLoop);
+        acceptThread.start();
+        writerThread = new DaemonThreadFactory("clover-collector-writer").newThread(this::writerLoop);
+        writerThread.start();
+        Logger.getInstance().info("Coverage collector for " + initString + " listening on "
+                + config.getHost() + Config.SEP + getLocalPort());
+    }
+
+    /**
+     * Stops accepting recordings, disconnects all clients and writes global recordings merged so far
+     */
+    public void stop() {
+        running = false;
+        IOStreamUtils.close(serverSocket);
+        // no connection is added or served once the accept thread is gone
+        join(acceptThread);
+        for (Socket socket : connections) {
+            IOStreamUtils.close(socket);
+        }
+        if (connectionPool != null) {
+            connectionPool.shutdown();
+            try {
+                connectionPool.awaitTermination(config.getTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+            join(writerThread);
+        }
+        writeRecordings();
+        Logger.getInstance().info("Coverage collector for " + initString + " stopped, "
+                + sessions.size() + " session(s) collected");
+    }
+
+    /**
+     * Writes global recordings of all sessions with hits applied since they were last written
+     *
+     * @return number of recordings written
+     */
+    public int writeRecordings() {
+        int written = 0;
+        for (Session session : sessions.values()) {
+            try {
+                if (session.writeGlobalRecording()) {
+                    written++;
+                }
+            } catch (IOException e) {
+                Logger.getInstance().error("Failed to write coverage recording of session " + session.id, e);
+            }
+        }
+        return written;
+    }
+
+    public int getNumSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the port the collector listens on, which differs from {@link DistributedConfig#getPort()} if that
+     * is 0, or -1 if the collector is not bound
+     */
+    public int getLocalPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    Logger.getInstance().debug("Accept loop stopped: " + e.getMessage());
+                }
+                return;
+            }
+            if (!running) {
+                // accepted while stopping
+                IOStreamUtils.close(socket);
+                return;
+            }
+            connections.add(socket);
+            connectionPool.execute(() -> serve(socket));
+        }
+    }
+
+    private void writerLoop() {
+        while (running) {
+            try {
+                Thread.sleep(writeInterval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            writeRecordings();
+        }
+    }
+
+    private void serve(final Socket socket) {
+        Session session = null;
+        try {
+            socket.setSoTimeout(config.getTimeout());
+            final DataInputStream in = IOStreamUtils.bufferedDataInput(socket);
+            final DataOutputStream out = IOStreamUtils.bufferedDataOutput(socket);
+            MessageCodec.readClientHandshake(in);
+            MessageCodec.writeServerHandshake(out, MessageCodec.MODE_COLLECTOR);
+            final String sessionId = MessageCodec.readSession(in);
+            if (sessionId.isEmpty() || sessionId.length() > MAX_SESSION_ID_LENGTH) {
+                throw new IOException("Invalid session id");
+            }
+            session = sessions.computeIfAbsent(sessionId, Session::new);
+            MessageCodec.writeCumulativeAck(out, session.getAppliedSequence());
+            Logger.getInstance().debug("Collecting session " + sessionId + " from " + socket.getRemoteSocketAddress());
+
+            // recordings arrive whenever the client flushes, never time out waiting for them
+            socket.setSoTimeout(0);
+            while (running) {
+                MessageCodec.decodeAndCollect(in, session);
+                if (in.available() == 0) {
+                    MessageCodec.writeCumulativeAck(out, session.getAppliedSequence());
+                }
+            }
+        } catch (EOFException e) {
+            Logger.getInstance().debug("Client " + socket.getRemoteSocketAddress() + " disconnected");
+        } catch (IOException e) {
+            if (running) {
+                Logger.getInstance().info("Dropping connection from " + socket.getRemoteSocketAddress()
+                        + ": " + e.getMessage());
+            }
+        } finally {
+            IOStreamUtils.close(socket);
+            connections.remove(socket);
+            if (session != null) {
+                try {
+                    session.writeGlobalRecording();
+                } catch (IOException e) {
+                    Logger.getInstance().error("Failed to write coverage recording of session " + session.id, e);
+                }
+            }
+        }
+    }
+
+    private static void replace(File tmpFile, File file) throws IOException {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Recordings of a single coverage recorder. A client may reconnect, or even be connected twice for a while
+     * before its dead connection is noticed, so all changes are synchronized on the session.
+     */
+    class Session {
+        final String id;
+        private long appliedSequence;
+        private String recordingSuffix;
+        private long dbVersion;
+        private long timestamp;
+        private int[] hits = new int[0];
+        private boolean dirty;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        synchronized long getAppliedSequence() {
+            return appliedSequence;
+        }
+
+        synchronized void applyHits(long sequence, HitDelta delta) throws IOException {
+            if (sequence <= appliedSequence) {
+                return;
+            }
+            if (!GLOBAL_RECORDING_SUFFIX.matcher(delta.recordingSuffix).matches()) {
+                throw new IOException("Invalid name of global recording: " + delta.recordingSuffix);
+            }
+            if (recordingSuffix != null && !recordingSuffix.equals(delta.recordingSuffix)) {
+                throw new IOException("Unexpected global recording " + delta.recordingSuffix
+                        + " in session of " + recordingSuffix);
+            }
+            recordingSuffix = delta.recordingSuffix;
+            dbVersion = delta.dbVersion;
+            timestamp = Math.max(timestamp, delta.timestamp);
+            hits = delta.applyTo(hits);
+            appliedSequence = sequence;
+            dirty = true;
+        }
+
+        synchronized void applyTestRecording(long sequence, String suffix, byte[] recording) throws IOException {
+            if (sequence <= appliedSequence) {
+                return;
+            }
+            if (!TEST_RECORDING_SUFFIX.matcher(suffix).matches()) {
+                throw new IOException("Invalid name of per-test recording: " + suffix);
+            }
+            final File file = new File(initString + suffix);
+            final File tmpFile = new File(file.getPath() + ".tmp");
+            try (OutputStream out = IOStreamUtils.createDeflateOutputStream(tmpFile)) {
+                out.write(recording);
+            }
+            replace(tmpFile, file);
+            appliedSequence = sequence;
+        }
+
+        /**
+         * @return true if the recording was written, false if there was nothing new to write
+         */
+        synchronized boolean writeGlobalRecording() throws IOException {
+            if (!dirty) {
+                return false;
+            }
+            final File file = new File(initString + recordingSuffix);
+            final File tmpFile = new File(file.getPath() + ".tmp");
+            new FileBasedGlobalCoverageRecording(tmpFile.getPath(), dbVersion, timestamp, new int[][] { hits }, hits.length).write();
+            replace(tmpFile, file);
+            dirty = false;
+            return true;
+        }
+    }
+}
@@ -95,6 +95,8 @@ public class DistributedClover {
             }
 
             if (service != null) {
+                // let clients apply slice events still in flight before they're disconnected
+                service.flush();
                 service.stop();
             }
         }
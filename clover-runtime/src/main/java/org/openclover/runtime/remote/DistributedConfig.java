@@ -19,6 +19,10 @@ public class DistributedConfig implements Config, Serializable {
     public static final String TIMEOUT = "timeout";
     public static final String NUM_CLIENTS = "numClients";
     public static final String RETRY_PERIOD = "retryPeriod";
+    public static final String PIPELINED = "pipelined";
+    public static final String FLUSH_EVERY = "flushEvery";
+    public static final String WINDOW = "window";
+    public static final String NIO = "nio";
 
     public static DistributedConfig ON() {
         return new DistributedConfig(ON);
@@ -99,6 +103,53 @@ public class DistributedConfig implements Config, Serializable {
         data.set(RETRY_PERIOD, value);
     }
 
+    /**
+     * @return true if slice events are sent to clients without waiting for each of them to be acknowledged;
+     * clients are only waited for at flush points
+     */
+    public boolean isPipelined() {
+        return data.get(PIPELINED, false);
+    }
+
+    public void setPipelined(boolean value) {
+        data.set(PIPELINED, value);
+    }
+
+    /**
+     * @return number of slice events after which the server waits for all clients to catch up when pipelined,
+     * 0 to wait only on explicit flushes
+     */
+    public int getFlushEvery() {
+        return data.get(FLUSH_EVERY, 0);
+    }
+
+    public void setFlushEvery(int value) {
+        data.set(FLUSH_EVERY, value);
+    }
+
+    /**
+     * @return maximum number of slice events a client may lag behind when pipelined
+     */
+    public int getWindow() {
+        return data.get(WINDOW, 1024);
+    }
+
+    public void setWindow(int value) {
+        data.set(WINDOW, value);
+    }
+
+    /**
+     * @return true if the server shall use a single selector thread for all clients instead of a thread per
+     * connection, see {@link NioRecorderService}
+     */
+    public boolean isNio() {
+        return data.get(NIO, false);
+    }
+
+    public void setNio(boolean value) {
+        data.set(NIO, value);
+    }
+
     public String getServerLocation() {
         return getHost() + SEP + getPort();
     }
@@ -107,12 +158,15 @@ public class DistributedConfig implements Config, Serializable {
         if (!isEnabled()) {
             return null;
         }
-        return String.format("%s=%s;%s=%d;%s=%d;%s=%d;%s=%d",
+        final String str = String.format("%s=%s;%s=%d;%s=%d;%s=%d;%s=%d",
                 HOST, getHost(),
                 PORT, getPort(),
                 TIMEOUT, getTimeout(),
                 NUM_CLIENTS, getNumClients(),
                 RETRY_PERIOD, getRetryPeriod());
+        return str
+                + (isPipelined() ? String.format(";%s=%b;%s=%d;%s=%d", PIPELINED, true, FLUSH_EVERY, getFlushEvery(), WINDOW, getWindow()) : "")
+                + (isNio() ? String.format(";%s=%b", NIO, true) : "");
     }
     
     //For use in Maven where it uses a trivial subclass (for Maven mojo configuration/instrumentaiton purposes)
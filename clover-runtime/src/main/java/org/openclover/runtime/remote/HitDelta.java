@@ -0,0 +1,105 @@
+package org.openclover.runtime.remote;
+
+import java.util.Arrays;
+
+/**
+ * Increments of global hit counts since the previous flush of a coverage recorder, as a sparse list of
+ * element indices (in ascending order) and the number of hits added to each.
+ *
+ * @see CollectorRecordingWriteStrategy
+ * @see CoverageCollector
+ */
+final class HitDelta {
+    /** recording file name relative to the database, e.g. "a1b2_k3l4m5" */
+    final String recordingSuffix;
+    final long dbVersion;
+    final long timestamp;
+    final int elementCount;
+    final int[] indices;
+    final int[] counts;
+    final int size;
+
+    HitDelta(String recordingSuffix, long dbVersion, long timestamp, int elementCount,
+             int[] indices, int[] counts, int size) {
+        this.recordingSuffix = recordingSuffix;
+        this.dbVersion = dbVersion;
+        this.timestamp = timestamp;
+        this.elementCount = elementCount;
+        this.indices = indices;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    /**
+     * Computes the increments of hit counts and updates the baseline to the current counts.
+     *
+     * @param baseline counts as of the previous delta, grown if needed
+     * @param hits     current counts, in sections like in the recorders
+     * @return a delta with the increments and the (possibly grown) baseline
+     */
+    static HitDelta between(int[][] baseline, String recordingSuffix, long dbVersion, long timestamp,
+                            int[][] hits, int elementCount) {
+        if (baseline[0].length < elementCount) {
+            baseline[0] = Arrays.copyOf(baseline[0], elementCount);
+        }
+        final int[] previous = baseline[0];
+        int[] indices = new int[16];
+        int[] counts = new int[16];
+        int size = 0;
+        int index = 0;
+        for (int[] section : hits) {
+            for (int j = 0; j < section.length && index < elementCount; j++, index++) {
+                final int increment = section[j] - previous[index];
+                if (increment != 0) {
+                    if (size == indices.length) {
+                        indices = Arrays.copyOf(indices, size * 2);
+                        counts = Arrays.copyOf(counts, size * 2);
+                    }
+                    indices[size] = index;
+                    counts[size] = increment;
+                    size++;
+                    previous[index] = section[j];
+                }
+            }
+        }
+        return new HitDelta(recordingSuffix, dbVersion, timestamp, elementCount, indices, counts, size);
+    }
+
+    /**
+     * @return a delta with increments of this one followed by the later one
+     */
+    HitDelta plus(HitDelta later) {
+        final int[] mergedIndices = new int[size + later.size];
+        final int[] mergedCounts = new int[size + later.size];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < later.size) {
+            if (j == later.size || (i < size && indices[i] < later.indices[j])) {
+                mergedIndices[k] = indices[i];
+                mergedCounts[k++] = counts[i++];
+            } else if (i == size || later.indices[j] < indices[i]) {
+                mergedIndices[k] = later.indices[j];
+                mergedCounts[k++] = later.counts[j++];
+            } else {
+                mergedIndices[k] = indices[i];
+                mergedCounts[k++] = counts[i++] + later.counts[j++];
+            }
+        }
+        return new HitDelta(later.recordingSuffix, later.dbVersion, Math.max(timestamp, later.timestamp),
+                Math.max(elementCount, later.elementCount), mergedIndices, mergedCounts, k);
+    }
+
+    /**
+     * Adds the increments to the counts, growing them to the element count if needed
+     *
+     * @return the counts
+     */
+    int[] applyTo(int[] hits) {
+        final int[] target = hits.length < elementCount ? Arrays.copyOf(hits, elementCount) : hits;
+        for (int i = 0; i < size; i++) {
+            target[indices[i]] += counts[i];
+        }
+        return target;
+    }
+}
@@ -13,10 +13,24 @@ import java.io.IOException;
  * set of messages exchanged over a raw TCP socket using {@link DataInputStream}/{@link DataOutputStream},
  * with no object serialization at all.
  * <p/>
- * The {@link #decodeAndDispatch(DataInputStream)} switch is the security whitelist: an unknown opcode is
+ * The {@link #dispatch(byte, DataInputStream)} switch is the security whitelist: an unknown opcode is
  * rejected and there is no path from wire bytes to an arbitrary method or class. The only methods it can
  * ever call are {@link Clover#allRecordersSliceStart(String, int, long)} and
  * {@link Clover#allRecordersSliceEnd(String, String, String, int, int, ErrorInfo)}.
+ * <p/>
+ * The server picks one of two modes and announces it in its handshake:
+ * <ul>
+ *     <li>{@link #MODE_LOCKSTEP} - every slice event is acknowledged with a single {@link #ACK} byte before the
+ *     next one is sent</li>
+ *     <li>{@link #MODE_PIPELINED} - every frame starts with a sequence number, events are sent without waiting,
+ *     and the client acknowledges the highest sequence number it has applied with {@link #ACK} followed by that
+ *     number, in batches and on every {@link #OP_FLUSH}</li>
+ * </ul>
+ * <p/>
+ * A {@link CoverageCollector} announces {@link #MODE_COLLECTOR} instead. Then the data flows the other way: the
+ * client opens or resumes a session, is told the highest sequence number the collector has applied in it, and sends
+ * sequenced recordings which the collector applies into the session and acknowledges cumulatively. Recordings are
+ * never dispatched to {@link Clover}, they only update the session.
  *
  * @see RpcMessage
  */
@@ -29,10 +43,26 @@ final class MessageCodec {
      * Protocol version. Bump this on any wire-format change so mismatched OpenClover versions
      * fail fast at the handshake instead of misinterpreting bytes.
      */
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
+
+    /** Every slice event is acknowledged before the next one is sent. */
+    static final byte MODE_LOCKSTEP = 0;
+    /** Sequence-numbered slice events are sent without waiting and acknowledged cumulatively. */
+    static final byte MODE_PIPELINED = 1;
+    /** The server is a coverage collector receiving sequenced recordings from the client. */
+    static final byte MODE_COLLECTOR = 2;
 
     private static final byte OP_SLICE_START = 1;
     private static final byte OP_SLICE_END = 2;
+    /** Pipelined mode only: asks the client to acknowledge everything up to and including this frame now. */
+    private static final byte OP_FLUSH = 3;
+    /** Collector mode: increments of global hit counts, see {@link HitDelta}. */
+    private static final byte OP_HITS = 4;
+    /** Collector mode: a per-test recording, header and content uncompressed. */
+    private static final byte OP_TEST_RECORDING = 5;
+
+    /** Collector mode: maximum length of a per-test recording, guards against allocating whatever a peer asks */
+    static final int MAX_RECORDING_LENGTH = 64 * 1024 * 1024;
 
     /** Single byte a client writes back once it has applied a slice event (the barrier acknowledgement). */
     static final byte ACK = 0x06;
@@ -53,15 +83,48 @@ final class MessageCodec {
         readMagicAndVersion(in, "client");
     }
 
-    /** server&rarr;client: MAGIC, VERSION reply, proving a real Clover server answered. */
-    static void writeServerHandshake(final DataOutputStream out) throws IOException {
+    /** server&rarr;client: MAGIC, VERSION, MODE reply, proving a real Clover server answered. */
+    static void writeServerHandshake(final DataOutputStream out, final byte mode) throws IOException {
         writeMagicAndVersion(out);
+        out.writeByte(mode);
         out.flush();
     }
 
-    /** client side: validate the server reply; throws on mismatch. */
-    static void readServerHandshake(final DataInputStream in) throws IOException {
+    /**
+     * client side: validate the server reply; throws on mismatch.
+     *
+     * @return mode of the protocol chosen by the server
+     */
+    static byte readServerHandshake(final DataInputStream in) throws IOException {
         readMagicAndVersion(in, "server");
+        final byte mode = in.readByte();
+        if (mode != MODE_LOCKSTEP && mode != MODE_PIPELINED) {
+            throw new IOException("Unsupported protocol mode from server: " + mode);
+        }
+        return mode;
+    }
+
+    /**
+     * client side: validate the reply of a {@link CoverageCollector}; throws on mismatch or if the server is not
+     * a collector.
+     */
+    static void readCollectorHandshake(final DataInputStream in) throws IOException {
+        readMagicAndVersion(in, "collector");
+        final byte mode = in.readByte();
+        if (mode != MODE_COLLECTOR) {
+            throw new IOException("Server is not a coverage collector, protocol mode: " + mode);
+        }
+    }
+
+    /** client&rarr;collector: opens or resumes the session; answered with {@link #writeCumulativeAck}. */
+    static void writeSession(final DataOutputStream out, final String sessionId) throws IOException {
+        out.writeUTF(sessionId);
+        out.flush();
+    }
+
+    /** collector side: reads a {@link #writeSession} value. */
+    static String readSession(final DataInputStream in) throws IOException {
+        return in.readUTF();
     }
 
     private static void writeMagicAndVersion(final DataOutputStream out) throws IOException {
@@ -124,12 +187,159 @@ final class MessageCodec {
         writeErrorInfo(out, (ErrorInfo) args[5]);
     }
 
+    /**
+     * Pipelined mode: prefixes an encoded slice event with its sequence number.
+     */
+    static byte[] encodeSequenced(final long sequence, final byte[] event) {
+        final byte[] frame = new byte[8 + event.length];
+        writeLong(frame, sequence);
+        System.arraycopy(event, 0, frame, 8, event.length);
+        return frame;
+    }
+
+    /**
+     * Pipelined mode: a frame which only asks the client to acknowledge everything up to the sequence number.
+     */
+    static byte[] encodeFlush(final long sequence) {
+        final byte[] frame = new byte[9];
+        writeLong(frame, sequence);
+        frame[8] = OP_FLUSH;
+        return frame;
+    }
+
+    /**
+     * Collector mode: encodes increments of global hit counts as a sequenced frame. Indices are written as
+     * varint gaps from the previous one, increments as varints.
+     */
+    static byte[] encodeHits(final long sequence, final HitDelta delta) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(32 + 3 * delta.size);
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeLong(sequence);
+        out.writeByte(OP_HITS);
+        out.writeUTF(delta.recordingSuffix);
+        out.writeLong(delta.dbVersion);
+        out.writeLong(delta.timestamp);
+        out.writeInt(delta.elementCount);
+        out.writeInt(delta.size);
+        int previous = 0;
+        for (int i = 0; i < delta.size; i++) {
+            writeVarInt(out, delta.indices[i] - previous);
+            writeVarInt(out, delta.counts[i]);
+            previous = delta.indices[i];
+        }
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Collector mode: encodes a per-test recording as a sequenced frame.
+     *
+     * @param recordingSuffix file name of the recording relative to the database
+     * @param recording       header and content of the recording, uncompressed
+     */
+    static byte[] encodeTestRecording(final long sequence, final String recordingSuffix, final byte[] recording)
+            throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(32 + recording.length);
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeLong(sequence);
+        out.writeByte(OP_TEST_RECORDING);
+        out.writeUTF(recordingSuffix);
+        out.writeInt(recording.length);
+        out.write(recording);
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    private static void writeLong(final byte[] bytes, final long value) {
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
     /**
      * Reads exactly one slice event and applies it locally by calling the whitelisted {@link Clover} method.
      * An unknown opcode throws {@link IOException} (the caller closes the connection); no other method is reachable.
      */
     static void decodeAndDispatch(final DataInputStream in) throws IOException {
+        dispatch(in.readByte(), in);
+    }
+
+    /**
+     * Pipelined mode: reads exactly one sequenced frame and applies its slice event, if any, like
+     * {@link #decodeAndDispatch(DataInputStream)}.
+     *
+     * @return the sequence number of the frame, negated if the frame asks for an immediate acknowledgement
+     */
+    static long decodeAndDispatchSequenced(final DataInputStream in) throws IOException {
+        final long sequence = in.readLong();
+        if (sequence <= 0) {
+            throw new IOException("Invalid sequence number: " + sequence);
+        }
+        final byte opcode = in.readByte();
+        if (opcode == OP_FLUSH) {
+            return -sequence;
+        }
+        dispatch(opcode, in);
+        return sequence;
+    }
+
+    /**
+     * Collector mode: reads exactly one sequenced frame and applies its recording to the session. An unknown opcode
+     * or a malformed recording throws {@link IOException} (the caller closes the connection).
+     *
+     * @return the sequence number of the frame
+     */
+    static long decodeAndCollect(final DataInputStream in, final CoverageCollector.Session session) throws IOException {
+        final long sequence = in.readLong();
+        if (sequence <= 0) {
+            throw new IOException("Invalid sequence number: " + sequence);
+        }
         final byte opcode = in.readByte();
+        switch (opcode) {
+            case OP_HITS:
+                session.applyHits(sequence, readHits(in));
+                break;
+            case OP_TEST_RECORDING:
+                final String recordingSuffix = in.readUTF();
+                final int length = in.readInt();
+                if (length < 0 || length > MAX_RECORDING_LENGTH) {
+                    throw new IOException("Invalid length of per-test recording: " + length);
+                }
+                final byte[] recording = new byte[length];
+                in.readFully(recording);
+                session.applyTestRecording(sequence, recordingSuffix, recording);
+                break;
+            default:
+                throw new IOException("Unknown opcode: " + opcode);
+        }
+        return sequence;
+    }
+
+    private static HitDelta readHits(final DataInputStream in) throws IOException {
+        final String recordingSuffix = in.readUTF();
+        final long dbVersion = in.readLong();
+        final long timestamp = in.readLong();
+        final int elementCount = in.readInt();
+        final int size = in.readInt();
+        if (elementCount < 0 || size < 0 || size > elementCount) {
+            throw new IOException("Invalid hit counts: " + size + " of " + elementCount + " elements");
+        }
+        final int[] indices = new int[size];
+        final int[] counts = new int[size];
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            final int gap = readVarInt(in);
+            index += gap;
+            if ((i > 0 && gap <= 0) || index < 0 || index >= elementCount) {
+                throw new IOException("Invalid element index in hit counts: " + index);
+            }
+            indices[i] = index;
+            counts[i] = readVarInt(in);
+        }
+        return new HitDelta(recordingSuffix, dbVersion, timestamp, elementCount, indices, counts, size);
+    }
+
+    private static void dispatch(final byte opcode, final DataInputStream in) throws IOException {
         switch (opcode) {
             case OP_SLICE_START:
                 dispatchSliceStart(in);
@@ -159,8 +369,46 @@ final class MessageCodec {
         Clover.allRecordersSliceEnd(type, method, runtimeTestName, slice, p, ei);
     }
 
+    // --- acknowledgements (client -> server) ---
+
+    /** Pipelined and collector modes: acknowledges all frames up to and including the sequence number. */
+    static void writeCumulativeAck(final DataOutputStream out, final long sequence) throws IOException {
+        out.writeByte(ACK);
+        out.writeLong(sequence);
+        out.flush();
+    }
+
+    /** Pipelined and collector modes: reads a {@link #writeCumulativeAck} value; throws on a malformed acknowledgement. */
+    static long readCumulativeAck(final DataInputStream in) throws IOException {
+        final byte ack = in.readByte();
+        if (ack != ACK) {
+            throw new IOException("Unexpected acknowledgement byte: " + ack);
+        }
+        return in.readLong();
+    }
+
     // --- helpers ---
 
+    private static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
     /** Writes a nullable string as a present-flag byte followed by the UTF payload when present. */
     static void writeNullableUTF(final DataOutputStream out, final String s) throws IOException {
         out.writeBoolean(s != null);
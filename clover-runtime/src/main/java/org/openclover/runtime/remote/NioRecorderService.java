@@ -0,0 +1,593 @@
+package org.openclover.runtime.remote;
+
+import org.openclover.runtime.Logger;
+import org.openclover.runtime.util.Formatting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Server side of distributed coverage built on a single {@link Selector} thread, for sessions with hundreds of
+ * client JVMs. Speaks the same {@link MessageCodec} wire protocol as {@link TcpRecorderService}, in the lockstep or
+ * the pipelined mode, so clients are plain {@link TcpRecorderListener}s.
+ * <p/>
+ * A slice event is encoded once and the frame is queued for every client; the selector thread writes the queued
+ * frames as clients become writable and collects acknowledgements as they arrive, so broadcasting an event costs
+ * no thread hand-offs. Callers wait for acknowledgements on a monitor the selector thread signals.
+ * <p/>
+ * The service keeps the latency of acknowledgements per client and counts clients dropped for failing to
+ * acknowledge in time, see {@link #getClientStats()} and {@link #getNumDroppedClients()}.
+ */
+public class NioRecorderService implements RecorderService {
+
+    private static final int MIN_ACCEPT_BACKLOG = 128;
+    private static final int SELECT_TIMEOUT_MILLIS = 500;
+    /** Client handshake: magic and version */
+    private static final int CLIENT_HANDSHAKE_SIZE = 8;
+    /** Pipelined mode acknowledgement: ACK and a sequence number */
+    private static final int CUMULATIVE_ACK_SIZE = 9;
+
+    private DistributedConfig config;
+    private byte mode;
+    private Selector selector;
+    private volatile ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /** Guards sequence numbers, the list of clients and acknowledgements; notified on every change of them */
+    private final Object lock = new Object();
+    private long sequence;
+    private final List<Client> clients = new ArrayList<>();
+    /** Clients which connected but haven't completed the handshake yet */
+    private final List<Client> handshaking = new ArrayList<>();
+    private int numDroppedClients;
+
+    /** Clients with frames queued, for the selector thread to start writing */
+    private final Queue<Client> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /** Acknowledgement statistics of a connected client */
+    public static class ClientStats {
+        private final SocketAddress remoteAddress;
+        private final long numAcks;
+        private final long totalAckNanos;
+        private final long maxAckNanos;
+
+        ClientStats(SocketAddress remoteAddress, long numAcks, long totalAckNanos, long maxAckNanos) {
+            this.remoteAddress = remoteAddress;
+            this.numAcks = numAcks;
+            this.totalAckNanos = totalAckNanos;
+            this.maxAckNanos = maxAckNanos;
+        }
+
+        public SocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * @return number of acknowledgements received; one cumulative acknowledgement counts once
+         */
+        public long getNumAcks() {
+            return numAcks;
+        }
+
+        /**
+         * @return mean time from sending an event until it was acknowledged, in milliseconds
+         */
+        public double getMeanAckLatencyMillis() {
+            return numAcks == 0 ? 0 : totalAckNanos / 1e6 / numAcks;
+        }
+
+        public double getMaxAckLatencyMillis() {
+            return maxAckNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d acks, mean %.3f ms, max %.3f ms",
+                    remoteAddress, numAcks, getMeanAckLatencyMillis(), getMaxAckLatencyMillis());
+        }
+    }
+
+    @Override
+    public void init(final Config config) {
+        this.config = (DistributedConfig) config;
+        this.mode = this.config.isPipelined() ? MessageCodec.MODE_PIPELINED : MessageCodec.MODE_LOCKSTEP;
+    }
+
+    @Override
+    public void start() {
+        try {
+            Logger.getInstance().debug("About to start NIO service with config: " + config);
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            // size the backlog so a burst of clients connecting at once is not refused
+            serverChannel.socket().bind(new InetSocketAddress(config.getHost(), config.getPort()),
+                    Math.max(MIN_ACCEPT_BACKLOG, config.getNumClients()));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            running = true;
+            selectorThread = new DaemonThreadFactory("clover-remote-selector").newThread(this::selectLoop);
+            selectorThread.start();
+            Logger.getInstance().debug("Started NIO coverage service: " + config);
+
+            awaitClients();
+        } catch (IOException e) {
+            Logger.getInstance().error("Error starting recorder service: " + config, e);
+        }
+    }
+
+    private void awaitClients() {
+        final int numClients = config.getNumClients();
+        if (numClients <= 0) {
+            return;
+        }
+        Logger.getInstance().info("OpenClover waiting for " + numClients +
+                " remote clients to attach to this remote testing session. ");
+        synchronized (lock) {
+            while (running && clients.size() < numClients) {
+                try {
+                    lock.wait(SELECT_TIMEOUT_MILLIS);
+                    Logger.getInstance().debug("Waiting for " + numClients + " remote VMs " + clients.size());
+                } catch (InterruptedException e) {
+                    // ignore and re-check the condition
+                }
+            }
+            // Formatting loads locale data on first use, which would hold up the release of the barrier
+            if (Logger.isDebug()) {
+                Logger.getInstance().debug("Recording proceeding now that "
+                        + Formatting.pluralizedVal(clients.size(), "client") + " are connected.");
+            }
+        }
+    }
+
+    /**
+     * Queues the event for every client. In the lockstep mode blocks until all of them have acknowledged it (or
+     * are dropped on timeout); in the pipelined mode blocks only while a client lags behind by a full window.
+     *
+     * @return the number of clients that acknowledged the event or, when pipelined, are keeping up with events
+     */
+    @Override
+    public int sendMessage(final RpcMessage message) {
+        final byte[] event;
+        try {
+            event = MessageCodec.encode(message);
+        } catch (IOException e) {
+            Logger.getInstance().error("Could not encode remote coverage message: " + e.getMessage(), e);
+            return 0;
+        }
+
+        final long eventSequence;
+        final List<Client> recipients;
+        synchronized (lock) {
+            eventSequence = ++sequence;
+            recipients = broadcast(eventSequence,
+                    mode == MessageCodec.MODE_PIPELINED ? MessageCodec.encodeSequenced(eventSequence, event) : event);
+        }
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+
+        if (mode == MessageCodec.MODE_PIPELINED) {
+            final int flushEvery = config.getFlushEvery();
+            if (flushEvery > 0 && eventSequence % flushEvery == 0) {
+                return flush();
+            }
+            return awaitAcks(recipients, eventSequence - Math.max(1, config.getWindow()));
+        }
+        final int numSuccess = awaitAcks(recipients, eventSequence);
+        Logger.getInstance().debug("Applied " + message.getName() + " on " + numSuccess + " remote clients.");
+        return numSuccess;
+    }
+
+    /**
+     * Waits until every client has applied all slice events sent so far. A no-op in the lockstep mode, where
+     * every event is awaited when sent.
+     *
+     * @return the number of clients that have applied all events
+     */
+    @Override
+    public int flush() {
+        final long flushSequence;
+        final List<Client> recipients;
+        synchronized (lock) {
+            if (mode != MessageCodec.MODE_PIPELINED || clients.isEmpty()) {
+                return clients.size();
+            }
+            flushSequence = ++sequence;
+            recipients = broadcast(flushSequence, MessageCodec.encodeFlush(flushSequence));
+        }
+        final int numSuccess = awaitAcks(recipients, flushSequence);
+        Logger.getInstance().debug("Flushed " + flushSequence + " events on " + numSuccess + " remote clients.");
+        return numSuccess;
+    }
+
+    /**
+     * Queues the frame for all clients; called with {@link #lock} held so frames are queued in sequence order.
+     *
+     * @return clients the frame was queued for
+     */
+    private List<Client> broadcast(final long frameSequence, final byte[] frame) {
+        final long now = System.nanoTime();
+        final List<Client> recipients = new ArrayList<>(clients);
+        for (final Client client : recipients) {
+            client.sent.add(new long[] { frameSequence, now });
+            client.enqueue(ByteBuffer.wrap(frame));
+        }
+        selector.wakeup();
+        return recipients;
+    }
+
+    /**
+     * Waits until every recipient has acknowledged events up to the sequence number, dropping those which don't
+     * within the timeout.
+     *
+     * @return the number of recipients which acknowledged
+     */
+    private int awaitAcks(final List<Client> recipients, final long ackSequence) {
+        final long deadline = System.currentTimeMillis() + config.getTimeout();
+        synchronized (lock) {
+            while (true) {
+                final List<Client> lagging = new ArrayList<>();
+                int numSuccess = 0;
+                for (final Client client : recipients) {
+                    if (client.active) {
+                        if (client.acked >= ackSequence) {
+                            numSuccess++;
+                        } else {
+                            lagging.add(client);
+                        }
+                    }
+                }
+                if (lagging.isEmpty()) {
+                    return numSuccess;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !running) {
+                    for (final Client client : lagging) {
+                        drop(client, "timed out waiting for acknowledgement of event " + ackSequence
+                                + ", last acknowledged " + client.acked);
+                    }
+                    return numSuccess;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return numSuccess;
+                }
+            }
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Client pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.startWriting();
+                }
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        final Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                client.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                client.write();
+                            }
+                        } catch (IOException e) {
+                            drop(client, e.getMessage());
+                        }
+                    }
+                }
+                dropStalledHandshakes();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                Logger.getInstance().error("Distributed coverage service stopped: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        final Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        synchronized (lock) {
+            handshaking.add(client);
+        }
+    }
+
+    private void dropStalledHandshakes() {
+        final long now = System.currentTimeMillis();
+        synchronized (lock) {
+            for (final Client client : new ArrayList<>(handshaking)) {
+                if (now - client.connectedAt > config.getTimeout()) {
+                    drop(client, "no handshake within " + config.getTimeout() + " ms");
+                }
+            }
+        }
+    }
+
+    private void drop(final Client client, final String reason) {
+        synchronized (lock) {
+            if (client.active) {
+                client.active = false;
+                clients.remove(client);
+                numDroppedClients++;
+                Logger.getInstance().warn("Error during remote flush to " + client + ": " + reason + " - dropping client");
+                lock.notifyAll();
+            } else if (handshaking.remove(client)) {
+                Logger.getInstance().info("Rejecting connection from " + client.remoteAddress + ": " + reason);
+            }
+        }
+        client.close();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (selectorThread != null) {
+            try {
+                selectorThread.join(SELECT_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            if (Logger.isDebug()) {
+                for (final ClientStats stats : getClientStats()) {
+                    Logger.getInstance().debug("Remote client " + stats);
+                }
+                Logger.getInstance().debug("Dropped " + Formatting.pluralizedVal(numDroppedClients, "remote client"));
+            }
+            for (final Client client : clients) {
+                client.active = false;
+                client.close();
+            }
+            for (final Client client : handshaking) {
+                client.close();
+            }
+            clients.clear();
+            handshaking.clear();
+            lock.notifyAll();
+        }
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            Logger.getInstance().debug("Error closing distributed coverage service: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the port the service listens on, which differs from {@link DistributedConfig#getPort()} if that is 0,
+     * or -1 if the service is not bound
+     */
+    public int getLocalPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    public int getNumRegisteredListeners() {
+        synchronized (lock) {
+            return clients.size();
+        }
+    }
+
+    /**
+     * @return number of clients dropped for failing to acknowledge events in time
+     */
+    public int getNumDroppedClients() {
+        synchronized (lock) {
+            return numDroppedClients;
+        }
+    }
+
+    /**
+     * @return acknowledgement statistics of connected clients
+     */
+    public List<ClientStats> getClientStats() {
+        synchronized (lock) {
+            final List<ClientStats> stats = new ArrayList<>(clients.size());
+            for (final Client client : clients) {
+                stats.add(new ClientStats(client.remoteAddress, client.numAcks, client.totalAckNanos, client.maxAckNanos));
+            }
+            return Collections.unmodifiableList(stats);
+        }
+    }
+
+    /**
+     * A connected client. Its channel and input buffer are only touched by the selector thread; the output queue
+     * is guarded by itself and acknowledgement state by {@link #lock}.
+     */
+    private final class Client {
+        private final SocketChannel channel;
+        private final SocketAddress remoteAddress;
+        private final long connectedAt = System.currentTimeMillis();
+        private final ByteBuffer in = ByteBuffer.allocate(256);
+        private final Deque<ByteBuffer> out = new ArrayDeque<>();
+        private SelectionKey key;
+
+        /** Sequence numbers and send times of frames not acknowledged yet */
+        private final Deque<long[]> sent = new ArrayDeque<>();
+        private boolean active;
+        private long acked;
+        private long numAcks;
+        private long totalAckNanos;
+        private long maxAckNanos;
+
+        Client(final SocketChannel channel) {
+            this.channel = channel;
+            this.remoteAddress = channel.socket().getRemoteSocketAddress();
+        }
+
+        void enqueue(final ByteBuffer frame) {
+            synchronized (out) {
+                out.add(frame);
+            }
+            pendingWrites.add(this);
+        }
+
+        /** Selector thread: starts watching for the channel to become writable */
+        void startWriting() {
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        /** Selector thread: writes queued frames until the socket buffer is full */
+        void write() throws IOException {
+            synchronized (out) {
+                while (!out.isEmpty()) {
+                    final ByteBuffer frame = out.peek();
+                    channel.write(frame);
+                    if (frame.hasRemaining()) {
+                        return;
+                    }
+                    out.remove();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /** Selector thread: reads the handshake or acknowledgements */
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new ClosedChannelException();
+            }
+            ((Buffer) in).flip();
+            try {
+                if (!active) {
+                    readHandshake();
+                }
+                if (active) {
+                    readAcks();
+                }
+            } finally {
+                in.compact();
+            }
+        }
+
+        private void readHandshake() throws IOException {
+            if (in.remaining() < CLIENT_HANDSHAKE_SIZE) {
+                return;
+            }
+            final byte[] handshake = new byte[CLIENT_HANDSHAKE_SIZE];
+            in.get(handshake);
+            MessageCodec.readClientHandshake(new DataInputStream(new ByteArrayInputStream(handshake)));
+
+            final ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            MessageCodec.writeServerHandshake(new DataOutputStream(reply), mode);
+            synchronized (lock) {
+                if (!handshaking.remove(this)) {
+                    throw new ClosedChannelException();
+                }
+                // the client is only sent, and expected to acknowledge, events from now on
+                enqueue(ByteBuffer.wrap(reply.toByteArray()));
+                acked = sequence;
+                active = true;
+                clients.add(this);
+                lock.notifyAll();
+            }
+            startWriting();
+            Logger.getInstance().debug("Accepted connection from client: " + this);
+        }
+
+        private void readAcks() throws IOException {
+            final int ackSize = mode == MessageCodec.MODE_PIPELINED ? CUMULATIVE_ACK_SIZE : 1;
+            if (in.remaining() < ackSize) {
+                return;
+            }
+            synchronized (lock) {
+                while (in.remaining() >= ackSize) {
+                    final byte ack = in.get();
+                    if (ack != MessageCodec.ACK) {
+                        throw new IOException("Unexpected acknowledgement byte: " + ack);
+                    }
+                    // the lockstep mode acknowledges the oldest event, the pipelined one all up to a number
+                    final long ackSequence = ackSize == 1 ? oldestSent() : in.getLong();
+                    acknowledge(ackSequence);
+                }
+                lock.notifyAll();
+            }
+        }
+
+        private long oldestSent() throws IOException {
+            final long[] oldest = sent.peek();
+            if (oldest == null) {
+                throw new IOException("Acknowledgement of an event which wasn't sent");
+            }
+            return oldest[0];
+        }
+
+        private void acknowledge(final long ackSequence) {
+            long[] acknowledged = null;
+            while (!sent.isEmpty() && sent.peek()[0] <= ackSequence) {
+                acknowledged = sent.remove();
+            }
+            if (acknowledged != null) {
+                final long latency = System.nanoTime() - acknowledged[1];
+                numAcks++;
+                totalAckNanos += latency;
+                maxAckNanos = Math.max(maxAckNanos, latency);
+            }
+            acked = Math.max(acked, ackSequence);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ClientConnection{remote=" + remoteAddress + "}";
+        }
+    }
+}
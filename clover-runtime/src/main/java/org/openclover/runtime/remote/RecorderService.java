@@ -18,5 +18,12 @@ public interface RecorderService {
      * @return the number of clients that successfully applied the event
      */
     int sendMessage(RpcMessage message);
-    
+
+    /**
+     * Waits until all connected clients have applied all events sent so far.
+     *
+     * @return the number of clients that have applied all events
+     */
+    int flush();
+
 }
@@ -21,8 +21,10 @@ public class RemoteFactory implements RemoteServiceProvider {
 
     @Override
     public RecorderService createService(Config config) {
-        final String className = "org.openclover.runtime.remote.TcpRecorderService";
-        
+        final String className = config instanceof DistributedConfig && ((DistributedConfig) config).isNio()
+                ? "org.openclover.runtime.remote.NioRecorderService"
+                : "org.openclover.runtime.remote.TcpRecorderService";
+
         Logger.getInstance().verbose("Creating service " + className + " for config: " + config);
         final RecorderService service = (RecorderService) instantiate(className);
         service.init(config);
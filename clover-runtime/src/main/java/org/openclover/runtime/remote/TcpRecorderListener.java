@@ -21,11 +21,17 @@ import static org.openclover.runtime.util.IOStreamUtils.bufferedDataOutput;
  * Client side of distributed coverage. Connects to a {@link TcpRecorderService}, then receives slice events
  * and applies them locally via {@link MessageCodec#decodeAndDispatch}, acknowledging each so the server's
  * barrier can proceed. Reconnects on its own timer if the server is not yet up or restarts.
+ * <p/>
+ * If the server runs in the pipelined mode, events are acknowledged cumulatively: whenever no more events are
+ * waiting to be read, after {@link #ACK_BATCH_SIZE} events and whenever the server asks for a flush.
  *
  * @see TcpRecorderService
  */
 public class TcpRecorderListener implements RecorderListener {
 
+    /** Pipelined mode: maximum number of events applied before they're acknowledged */
+    static final int ACK_BATCH_SIZE = 64;
+
     private DistributedConfig config;
     private final Timer reconnectionTimer = new Timer(true);
     private final AtomicBoolean reconnecting = new AtomicBoolean(false);
@@ -90,7 +96,7 @@ public class TcpRecorderListener implements RecorderListener {
         final DataInputStream in = bufferedDataInput(newSocket);
         final DataOutputStream out = bufferedDataOutput(newSocket);
         MessageCodec.writeClientHandshake(out);
-        MessageCodec.readServerHandshake(in);
+        final byte mode = MessageCodec.readServerHandshake(in);
 
         // Publish the connection unless disconnect() has already run. The CAS loop makes the
         // "not disconnected -> register" decision atomic against a concurrent disconnect(): if the
@@ -104,15 +110,20 @@ public class TcpRecorderListener implements RecorderListener {
             }
         } while (!socket.compareAndSet(previous, newSocket));
 
-        readerThread = new Thread(() -> readerLoop(newSocket, in, out), "clover-remote-reader");
+        readerThread = new Thread(() -> readerLoop(newSocket, in, out, mode), "clover-remote-reader");
         readerThread.setDaemon(true);
         readerThread.start();
     }
 
-    private void readerLoop(final Socket connected, final DataInputStream in, final DataOutputStream out) {
+    private void readerLoop(final Socket connected, final DataInputStream in, final DataOutputStream out,
+                            final byte mode) {
         try {
-            while (!stopped.get() && !connected.isClosed()) {
-                applyAndAck(in, out);
+            if (mode == MessageCodec.MODE_PIPELINED) {
+                applyPipelined(connected, in, out);
+            } else {
+                while (!stopped.get() && !connected.isClosed()) {
+                    applyAndAck(in, out);
+                }
             }
         } catch (EOFException e) {
             Logger.getInstance().debug("Distributed coverage server closed the connection.");
@@ -131,6 +142,21 @@ public class TcpRecorderListener implements RecorderListener {
         out.flush();
     }
 
+    /** Applies sequenced slice events as they come and acknowledges them in batches. */
+    private void applyPipelined(final Socket connected, final DataInputStream in, final DataOutputStream out)
+            throws IOException {
+        long lastAcked = 0;
+        while (!stopped.get() && !connected.isClosed()) {
+            final long result = MessageCodec.decodeAndDispatchSequenced(in);
+            final long sequence = Math.abs(result);
+            final boolean flushRequested = result < 0;
+            if (flushRequested || in.available() == 0 || sequence - lastAcked >= ACK_BATCH_SIZE) {
+                MessageCodec.writeCumulativeAck(out, sequence);
+                lastAcked = sequence;
+            }
+        }
+    }
+
     private void resumeReconnectUnlessStopped() {
         if (!stopped.get()) {
             // server may have restarted - resume the reconnect loop
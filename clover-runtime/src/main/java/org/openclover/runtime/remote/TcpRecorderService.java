@@ -22,6 +22,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * event to all of them, blocking until every client has acknowledged it (the barrier that keeps clients in
  * lockstep). Uses only a raw {@link ServerSocket} and the {@link MessageCodec} wire protocol - no third-party
  * library, no object serialization.
+ * <p/>
+ * If {@link DistributedConfig#isPipelined()}, slice events are sequence-numbered and written to all clients
+ * without waiting, and the barrier is only enforced at flush points: on {@link #flush()}, every
+ * {@link DistributedConfig#getFlushEvery()} events and when a client lags behind by a full
+ * {@link DistributedConfig#getWindow()}. The latency of a test no longer depends on the round trip to clients.
  *
  * @see TcpRecorderListener
  */
@@ -31,12 +36,14 @@ public class TcpRecorderService implements RecorderService {
     private static final int BARRIER_POLL_MILLIS = 500;
 
     private DistributedConfig config;
-    private ServerSocket serverSocket;
+    private volatile ServerSocket serverSocket;
     private final CopyOnWriteArrayList<ClientConnection> clients = new CopyOnWriteArrayList<>();
     private Thread acceptThread;
     private ExecutorService fanoutPool;
     private volatile boolean running;
     private final Object barrier = new Object();
+    /** Pipelined mode: sequence number of the last frame sent, guarded by {@code this} */
+    private long sequence;
 
     @Override
     public void init(final Config config) {
@@ -89,8 +96,11 @@ public class TcpRecorderService implements RecorderService {
                 }
             }
         }
-        Logger.getInstance().debug("Recording proceeding now that "
-                + Formatting.pluralizedVal(clients.size(), "client") + " are connected.");
+        // Formatting loads locale data on first use, which would hold up the release of the barrier
+        if (Logger.isDebug()) {
+            Logger.getInstance().debug("Recording proceeding now that "
+                    + Formatting.pluralizedVal(clients.size(), "client") + " are connected.");
+        }
     }
 
     private void acceptLoop() {
@@ -104,6 +114,11 @@ public class TcpRecorderService implements RecorderService {
                 }
                 return;
             }
+            if (!running) {
+                // accepted while stopping
+                IOStreamUtils.close(socket);
+                return;
+            }
             // Handshake off the accept thread and under a read timeout, so a peer that connects but never
             // sends its handshake cannot stall the accept loop (and thus the start() barrier) for everyone.
             fanoutPool.execute(() -> registerClient(socket));
@@ -113,8 +128,13 @@ public class TcpRecorderService implements RecorderService {
     private void registerClient(final Socket socket) {
         try {
             socket.setSoTimeout(config.getTimeout());
-            final ClientConnection connection = ClientConnection.accept(socket);
-            clients.add(connection);
+            final ClientConnection connection = ClientConnection.accept(socket,
+                    config.isPipelined() ? MessageCodec.MODE_PIPELINED : MessageCodec.MODE_LOCKSTEP);
+            // under the send lock, so the client gets every frame after the sequence number it starts from
+            synchronized (this) {
+                connection.startAfter(sequence);
+                clients.add(connection);
+            }
             Logger.getInstance().debug("Accepted connection from client: " + connection);
             synchronized (barrier) {
                 barrier.notifyAll();
@@ -139,6 +159,9 @@ public class TcpRecorderService implements RecorderService {
         if (frame == null) {
             return 0;
         }
+        if (config.isPipelined()) {
+            return sendPipelined(message, frame);
+        }
 
         final List<ClientConnection> snapshot = new ArrayList<>(clients);
         if (snapshot.isEmpty()) {
@@ -150,6 +173,75 @@ public class TcpRecorderService implements RecorderService {
         return numSuccess;
     }
 
+    /**
+     * Waits until every client has applied all slice events sent so far, dropping clients which fail to catch up
+     * within the timeout. A no-op in the lockstep mode, where every event is awaited when sent.
+     *
+     * @return the number of clients that have applied all events
+     */
+    @Override
+    public synchronized int flush() {
+        final List<ClientConnection> snapshot = new ArrayList<>(clients);
+        if (!config.isPipelined() || snapshot.isEmpty()) {
+            return snapshot.size();
+        }
+        final long flushSequence = ++sequence;
+        final byte[] frame = MessageCodec.encodeFlush(flushSequence);
+        final List<ClientConnection> recipients = new ArrayList<>(snapshot.size());
+        for (final ClientConnection connection : snapshot) {
+            if (sendSequenced(connection, flushSequence, frame)) {
+                recipients.add(connection);
+            }
+        }
+
+        // clients acknowledge concurrently, so waiting for them one by one costs the slowest one, not the sum
+        final long deadline = System.currentTimeMillis() + config.getTimeout();
+        int numSuccess = 0;
+        for (final ClientConnection connection : recipients) {
+            try {
+                connection.awaitAck(flushSequence, (int) Math.max(0, deadline - System.currentTimeMillis()));
+                numSuccess++;
+            } catch (IOException e) {
+                dropClient(connection, e);
+            }
+        }
+        Logger.getInstance().debug("Flushed " + flushSequence + " events on " + numSuccess + " remote clients.");
+        return numSuccess;
+    }
+
+    /**
+     * Pipelined mode: writes the sequenced event to every client without waiting for acknowledgements.
+     *
+     * @return the number of clients the event was sent to
+     */
+    private synchronized int sendPipelined(final RpcMessage message, final byte[] event) {
+        final long eventSequence = ++sequence;
+        final byte[] frame = MessageCodec.encodeSequenced(eventSequence, event);
+        int numSuccess = 0;
+        for (final ClientConnection connection : clients) {
+            if (sendSequenced(connection, eventSequence, frame)) {
+                numSuccess++;
+            }
+        }
+        Logger.getInstance().debug("Sent " + message.getName() + " #" + eventSequence + " to " + numSuccess + " remote clients.");
+
+        final int flushEvery = config.getFlushEvery();
+        if (flushEvery > 0 && eventSequence % flushEvery == 0) {
+            return flush();
+        }
+        return numSuccess;
+    }
+
+    private boolean sendSequenced(final ClientConnection connection, final long frameSequence, final byte[] frame) {
+        try {
+            connection.send(frameSequence, frame, config.getWindow(), config.getTimeout());
+            return true;
+        } catch (IOException e) {
+            dropClient(connection, e);
+            return false;
+        }
+    }
+
     /** Encodes the event once, or returns {@code null} (logged) if it cannot be encoded. */
     private byte[] encodeFrame(final RpcMessage message) {
         try {
@@ -187,14 +279,18 @@ public class TcpRecorderService implements RecorderService {
             connection.sendAndAwaitAck(frame, timeout);
             return true;
         } catch (Exception e) {
-            Logger.getInstance().warn("Error during remote flush to " + connection
-                    + ": " + e.getMessage() + " - dropping client", e);
-            clients.remove(connection);
-            connection.closeQuietly();
+            dropClient(connection, e);
             return false;
         }
     }
 
+    private void dropClient(final ClientConnection connection, final Exception e) {
+        Logger.getInstance().warn("Error during remote flush to " + connection
+                + ": " + e.getMessage() + " - dropping client", e);
+        clients.remove(connection);
+        connection.closeQuietly();
+    }
+
     private void awaitAcks(final CountDownLatch latch, final int timeout) {
         try {
             // each task self-terminates within `timeout` via the socket read timeout; the extra margin
@@ -211,6 +307,14 @@ public class TcpRecorderService implements RecorderService {
     public void stop() {
         running = false;
         IOStreamUtils.close(serverSocket);
+        // the port is free and no client is registered behind our back once the accept thread is gone
+        if (acceptThread != null) {
+            try {
+                acceptThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         synchronized (barrier) {
             barrier.notifyAll();
         }
@@ -221,9 +325,14 @@ public class TcpRecorderService implements RecorderService {
         if (fanoutPool != null) {
             fanoutPool.shutdownNow();
         }
-        if (acceptThread != null) {
-            acceptThread.interrupt();
-        }
+    }
+
+    /**
+     * @return the port the service listens on, which differs from {@link DistributedConfig#getPort()} if that is 0,
+     * or -1 if the service is not bound
+     */
+    public int getLocalPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
     }
 
     public int getNumRegisteredListeners() {
@@ -0,0 +1,219 @@
+package org.openclover.runtime.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A set of hit element indexes which adapts its representation to the number of elements hit. It starts as a small
+ * open-addressing hash set of indexes, so that a test which hits a tiny fraction of a large database doesn't
+ * allocate a bitmap covering the whole database. When the hash set would become bigger than a bitmap spanning
+ * indexes hit so far, the set turns into a dense bitmap (the same layout as {@link CloverBitSet}).
+ * <p/>
+ * Membership checks are not synchronized and serve as a shortcut for elements already hit; adding a new
+ * element is synchronized, so that elements hit concurrently by many threads are not lost.
+ * <p/>
+ * Serialized via {@link #write(DataOutput)} in the {@link CloverBitSet} format, using the sparse encoding
+ * when it's smaller.
+ */
+public class AdaptiveHitSet {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64; // must be a power of 2
+
+    /** sparse representation: hash set of indexes (EMPTY marks free slot); null if dense */
+    private volatile int[] table;
+    /** number of indexes in the table */
+    private int size;
+    /** dense representation: bitmap of indexes; null if sparse */
+    private volatile long[] words;
+    private int maxIndex = -1;
+    private volatile boolean modified;
+
+    public AdaptiveHitSet() {
+        this.table = newTable(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a dense set backed by bits of the given bit set (bits are not copied)
+     */
+    public AdaptiveHitSet(CloverBitSet bitSet) {
+        this.words = bitSet.getBits();
+        this.maxIndex = bitSet.length() - 1;
+        this.modified = bitSet.isModified();
+    }
+
+    public void add(int index) {
+        if (!member(index)) {
+            addSlow(index);
+        }
+    }
+
+    public boolean member(int index) {
+        final long[] w = words;
+        if (w != null) {
+            return memberDense(w, index);
+        }
+        final int[] t = table;
+        if (t != null) {
+            return memberSparse(t, index);
+        }
+        // just converted to dense
+        return memberDense(words, index);
+    }
+
+    /**
+     * @return true if {@link #add(int)} was called at least once
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    public synchronized boolean isDense() {
+        return words != null;
+    }
+
+    public synchronized int cardinality() {
+        if (words != null) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return cardinality;
+        }
+        return size;
+    }
+
+    public synchronized CloverBitSet toBitSet() {
+        final long[] bits = new long[(maxIndex >> 6) + 1];
+        if (words != null) {
+            System.arraycopy(words, 0, bits, 0, Math.min(words.length, bits.length));
+        } else {
+            for (int index : table) {
+                if (index != EMPTY) {
+                    bits[index >> 6] |= 1L << index;
+                }
+            }
+        }
+        return new CloverBitSet(bits);
+    }
+
+    /**
+     * Writes the set in the format read by {@link CloverBitSet#read(java.io.DataInput)}
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        if (words != null) {
+            CloverBitSet.write(out, words);
+        } else {
+            final int[] indexes = new int[size];
+            int i = 0;
+            for (int index : table) {
+                if (index != EMPTY) {
+                    indexes[i++] = index;
+                }
+            }
+            Arrays.sort(indexes);
+            CloverBitSet.writeSparse(out, indexes, size, (maxIndex >> 6) + 1);
+        }
+    }
+
+    private synchronized void addSlow(int index) {
+        modified = true;
+        maxIndex = Math.max(maxIndex, index);
+        if (words != null) {
+            setDense(index);
+        } else if (!memberSparse(table, index)) {
+            if ((size + 1) * 2 > table.length) {
+                final int newCapacity = table.length * 2;
+                // 4 bytes per hash slot vs 8 bytes per 64 indexes in a bitmap
+                if ((long) newCapacity * 4 >= ((long) (maxIndex >> 6) + 1) * 8) {
+                    toDense();
+                    setDense(index);
+                    return;
+                }
+                rehash(newCapacity);
+            }
+            insert(table, index);
+            size++;
+        }
+    }
+
+    private void setDense(int index) {
+        final int wordIndex = index >> 6;
+        long[] w = words;
+        if (wordIndex >= w.length) {
+            w = Arrays.copyOf(w, Math.max(w.length * 2, wordIndex + 1));
+            w[wordIndex] |= 1L << index;
+            words = w;
+        } else {
+            w[wordIndex] |= 1L << index;
+        }
+    }
+
+    private void toDense() {
+        final long[] w = new long[(maxIndex >> 6) + 1];
+        for (int index : table) {
+            if (index != EMPTY) {
+                w[index >> 6] |= 1L << index;
+            }
+        }
+        // publish the bitmap before dropping the table, see member()
+        words = w;
+        table = null;
+        size = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        final int[] newTable = newTable(newCapacity);
+        for (int index : table) {
+            if (index != EMPTY) {
+                insert(newTable, index);
+            }
+        }
+        table = newTable;
+    }
+
+    private static int[] newTable(int capacity) {
+        final int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int slot(int index, int mask) {
+        final int h = index * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static void insert(int[] table, int index) {
+        final int mask = table.length - 1;
+        int i = slot(index, mask);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = index;
+    }
+
+    private static boolean memberSparse(int[] table, int index) {
+        final int mask = table.length - 1;
+        int i = slot(index, mask);
+        int value;
+        while ((value = table[i]) != EMPTY) {
+            if (value == index) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private static boolean memberDense(long[] words, int index) {
+        final int wordIndex = index >> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << index)) != 0;
+    }
+
+    ///CLOVER:OFF
+    @Override
+    public String toString() {
+        return "AdaptiveHitSet[dense=" + isDense() + ", cardinality=" + cardinality() + ", maxIndex=" + maxIndex + "]";
+    }
+    ///CLOVER:ON
+}
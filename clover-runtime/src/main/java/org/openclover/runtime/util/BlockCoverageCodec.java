@@ -0,0 +1,174 @@
+package org.openclover.runtime.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes hit counts in blocks of {@link #BLOCK_SIZE} elements using frame-of-reference bit packing: every block
+ * stores its minimum value and the differences from the minimum packed with the smallest bit width which fits
+ * all of them. Blocks of zeroes (the vast majority of blocks in a typical recording) take a single byte.
+ * <pre>
+ *     block := ZERO_BLOCK
+ *            | PACKED_BLOCK varint(zigzag(min)) byte(width) bytes[ceil(n * width / 8)]
+ * </pre>
+ * Both encoding and decoding are tight loops over primitive arrays, with no per-element branching except the
+ * bit buffer refill.
+ */
+public final class BlockCoverageCodec {
+    public static final int BLOCK_SIZE = 128;
+
+    static final byte ZERO_BLOCK = 0;
+    static final byte PACKED_BLOCK = 1;
+
+    private BlockCoverageCodec() {
+    }
+
+    /**
+     * Encoded hit counts
+     */
+    public static final class Encoded {
+        public final byte[] data;
+        public final int length;
+
+        Encoded(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    public static Encoded encode(int[][] coverage, int numElements) {
+        // worst case: tag + 5 bytes of varint + width + 4 bytes per element
+        byte[] out = new byte[Math.max(16, numElements + numElements / 4)];
+        int pos = 0;
+        final int[] block = new int[BLOCK_SIZE];
+
+        int section = 0;
+        int sectionIndex = 0;
+        for (int blockStart = 0; blockStart < numElements; blockStart += BLOCK_SIZE) {
+            final int n = Math.min(BLOCK_SIZE, numElements - blockStart);
+            // gather the block, it may span sections
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                while (sectionIndex >= coverage[section].length) {
+                    section++;
+                    sectionIndex = 0;
+                }
+                final int value = coverage[section][sectionIndex++];
+                block[i] = value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            final int maxBlockBytes = 1 + 5 + 1 + 4 * n;
+            if (pos + maxBlockBytes > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, pos + maxBlockBytes));
+            }
+
+            if (min == 0 && max == 0) {
+                out[pos++] = ZERO_BLOCK;
+                continue;
+            }
+
+            final long range = (long) max - min;
+            final int width = 64 - Long.numberOfLeadingZeros(range);
+            out[pos++] = PACKED_BLOCK;
+            pos = writeVarInt(out, pos, (min << 1) ^ (min >> 31));
+            out[pos++] = (byte) width;
+            if (width > 0) {
+                pos = pack(block, n, min, width, out, pos);
+            }
+        }
+        return new Encoded(out, pos);
+    }
+
+    /**
+     * Decodes data written by {@link #encode(int[][], int)}.
+     *
+     * @param sum receives sum of all hit counts (one element array)
+     */
+    public static int[] decode(byte[] data, int length, int numElements, long[] sum) throws IOException {
+        final int[] elements = new int[numElements];
+        long localSum = 0;
+        int pos = 0;
+        try {
+            for (int blockStart = 0; blockStart < numElements; blockStart += BLOCK_SIZE) {
+                final int n = Math.min(BLOCK_SIZE, numElements - blockStart);
+                final byte tag = data[pos++];
+                if (tag == ZERO_BLOCK) {
+                    continue;
+                } else if (tag != PACKED_BLOCK) {
+                    throw new IOException("Recording corrupt");
+                }
+
+                int zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    zigzag |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                final int min = (zigzag >>> 1) ^ -(zigzag & 1);
+                final int width = data[pos++];
+
+                if (width == 0) {
+                    Arrays.fill(elements, blockStart, blockStart + n, min);
+                    localSum += (long) min * n;
+                } else if (width > 32) {
+                    throw new IOException("Recording corrupt");
+                } else {
+                    final long mask = (1L << width) - 1;
+                    long buffer = 0;
+                    int bits = 0;
+                    for (int i = blockStart, end = blockStart + n; i < end; i++) {
+                        while (bits < width) {
+                            buffer |= (data[pos++] & 0xFFL) << bits;
+                            bits += 8;
+                        }
+                        final int value = (int) (buffer & mask) + min;
+                        buffer >>>= width;
+                        bits -= width;
+                        elements[i] = value;
+                        localSum += value;
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Recording corrupt");
+        }
+        if (pos > length) {
+            throw new IOException("Recording corrupt");
+        }
+        sum[0] = localSum;
+        return elements;
+    }
+
+    private static int pack(int[] block, int n, int min, int width, byte[] out, int pos) {
+        final long mask = (1L << width) - 1;
+        long buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            buffer |= (((long) block[i] - min) & mask) << bits;
+            bits += width;
+            while (bits >= 8) {
+                out[pos++] = (byte) buffer;
+                buffer >>>= 8;
+                bits -= 8;
+            }
+        }
+        if (bits > 0) {
+            out[pos++] = (byte) buffer;
+        }
+        return pos;
+    }
+
+    private static int writeVarInt(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+}
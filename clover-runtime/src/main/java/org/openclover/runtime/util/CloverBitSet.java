@@ -8,6 +8,8 @@ import java.util.BitSet;
 public class CloverBitSet extends antlr.collections.impl.BitSet implements ByteSized {
     private final static int BITS_PER_UNIT = 1 << LOG_BITS;
     private final static int BIT_INDEX_MASK = BITS_PER_UNIT - 1;
+    /** Marks the sparse encoding in the serialized form, in place of the number of longs */
+    private final static int SPARSE_MARKER = -1;
     private final static byte[] END_ZERO_TABLE = {
       -25, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
         4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
@@ -68,14 +70,69 @@ public class CloverBitSet extends antlr.collections.impl.BitSet implements ByteS
     }
 
     public void write(DataOutput out) throws IOException {
-        out.writeInt(bits.length);
+        write(out, bits);
+    }
+
+    /**
+     * Writes bits either as a sequence of longs (dense encoding) or as a list of indexes of set bits
+     * (sparse encoding), whichever is smaller.
+     */
+    static void write(DataOutput out, long[] bits) throws IOException {
+        int cardinality = 0;
         for (long bit : bits) {
-            out.writeLong(bit);
+            cardinality += Long.bitCount(bit);
+        }
+
+        if (12L + 4L * cardinality < 4L + 8L * bits.length) {
+            out.writeInt(SPARSE_MARKER);
+            out.writeInt(bits.length);
+            out.writeInt(cardinality);
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    out.writeInt((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        } else {
+            out.writeInt(bits.length);
+            for (long bit : bits) {
+                out.writeLong(bit);
+            }
+        }
+    }
+
+    /**
+     * Writes bits using the sparse encoding
+     *
+     * @param indexes  indexes of set bits
+     * @param count    number of indexes to write
+     * @param numLongs size of the bit set in longs
+     */
+    static void writeSparse(DataOutput out, int[] indexes, int count, int numLongs) throws IOException {
+        out.writeInt(SPARSE_MARKER);
+        out.writeInt(numLongs);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(indexes[i]);
         }
     }
 
     public static CloverBitSet read(DataInput in) throws IOException {
         final int numLongs = in.readInt();
+        if (numLongs == SPARSE_MARKER) {
+            final long[] data = new long[in.readInt()];
+            final int count = in.readInt();
+            try {
+                for (int i = 0; i < count; i++) {
+                    final int index = in.readInt();
+                    data[index >> LOG_BITS] |= 1L << index;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Bit set corrupt");
+            }
+            return new CloverBitSet(data);
+        }
         final long[] data = new long[numLongs];
         for (int i = 0; i < numLongs; i++) {
             data[i] = in.readLong();
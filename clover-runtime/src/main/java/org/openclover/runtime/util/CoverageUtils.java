@@ -121,4 +121,71 @@ public class CoverageUtils {
             throw new IOException("Recording corrupt");
         }
     }
+
+    /**
+     * Writes number of elements followed by hit/not-hit flags packed into longs
+     * (bit i of hitBits[i / 64] is set if element i was hit).
+     */
+    public static void writeBitmapCoverage(DataOutputStream out, long[] hitBits, int numElements) throws IOException {
+        final int numWords = (numElements + 63) >> 6;
+        out.writeInt(numElements);
+        for (int i = 0; i < numWords; i++) {
+            out.writeLong(hitBits[i]);
+        }
+        Logger.getInstance().debug("[wrote " + numElements + " elements as " + numWords * 8 + " bytes (bitmap)]");
+    }
+
+    /**
+     * Reads coverage written by {@link #writeBitmapCoverage(DataOutputStream, long[], int)} and expands it
+     * to hit counts of 0 or 1.
+     */
+    public static int[] readBitmapCoverageAndSumCoverage(DataInputStream in, AtomicLong sum) throws IOException {
+        final int elementCount = in.readInt();
+        final int[] elements = new int[elementCount];
+        final int numWords = (elementCount + 63) >> 6;
+
+        long localSum = 0;
+        for (int w = 0; w < numWords; w++) {
+            long word = in.readLong();
+            while (word != 0) {
+                final int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (i >= elementCount) {
+                    throw new IOException("Recording corrupt");
+                }
+                elements[i] = 1;
+                localSum++;
+                word &= word - 1;
+            }
+        }
+        Logger.getInstance().debug("[read " + elementCount + " elements as " + numWords * 8 + " bytes (bitmap) with sum " + localSum + "]");
+        sum.set(localSum);
+        return elements;
+    }
+
+    /**
+     * Writes number of elements followed by hit counts encoded by the {@link BlockCoverageCodec} and
+     * compressed by the {@link LzCodec}.
+     */
+    public static void writeBlockCoverage(DataOutputStream out, int[][] coverage, int numElements) throws IOException {
+        final BlockCoverageCodec.Encoded encoded = BlockCoverageCodec.encode(coverage, numElements);
+        out.writeInt(numElements);
+        LzCodec.writeBlock(out, encoded.data, encoded.length);
+        Logger.getInstance().debug("[wrote " + numElements + " elements as " + encoded.length + " bytes (block)]");
+    }
+
+    /**
+     * Reads coverage written by {@link #writeBlockCoverage(DataOutputStream, int[][], int)}
+     */
+    public static int[] readBlockCoverageAndSumCoverage(DataInputStream in, AtomicLong sum) throws IOException {
+        final int elementCount = in.readInt();
+        if (elementCount < 0) {
+            throw new IOException("Recording corrupt");
+        }
+        final byte[] data = LzCodec.readBlock(in);
+        final long[] localSum = new long[1];
+        final int[] elements = BlockCoverageCodec.decode(data, data.length, elementCount, localSum);
+        Logger.getInstance().debug("[read " + elementCount + " elements as " + data.length + " bytes (block) with sum " + localSum[0] + "]");
+        sum.set(localSum[0]);
+        return elements;
+    }
 }
@@ -34,6 +34,14 @@ public class IOStreamUtils {
         return new BufferedOutputStream(new DeflaterOutputStream(FOSFactory.newFOS(file), new Deflater(Deflater.BEST_SPEED), 8192));
     }
 
+    public static OutputStream createOutputStream(final File file) throws FileNotFoundException {
+        return new BufferedOutputStream(FOSFactory.newFOS(file), 8192);
+    }
+
+    public static InputStream createInputStream(final File file) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(file.toPath()));
+    }
+
     public static InputStream createInflaterInputStream(final File file) throws IOException {
         return new BufferedInputStream(new InflaterInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()))));
     }
@@ -0,0 +1,186 @@
+package org.openclover.runtime.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A small LZ77 compressor using the LZ4 block layout: a sequence of [token][literals][match offset][match length]
+ * entries, where the token holds 4 bits of literal length and 4 bits of match length. It compresses much faster
+ * than deflate, and the decompressor is a tight byte copying loop, which makes it a good fit for recordings that
+ * are already compacted by the {@link BlockCoverageCodec}.
+ */
+public final class LzCodec {
+    static final int MIN_MATCH = 4;
+    /** the last bytes of input are always literals */
+    static final int LAST_LITERALS = 5;
+    /** a match can't start later than this number of bytes before the end of input */
+    static final int MATCH_FIND_LIMIT = 12;
+    static final int MAX_OFFSET = 0xFFFF;
+    static final int HASH_BITS = 12;
+
+    static final byte UNCOMPRESSED = 0;
+    static final byte COMPRESSED = 1;
+
+    private LzCodec() {
+    }
+
+    /**
+     * Writes data compressed (if it makes it smaller) preceded by a small header, see {@link #readBlock(DataInputStream)}.
+     */
+    public static void writeBlock(DataOutputStream out, byte[] data, int length) throws IOException {
+        final byte[] compressed = compress(data, length);
+        if (compressed.length < length) {
+            out.writeByte(COMPRESSED);
+            out.writeInt(length);
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        } else {
+            out.writeByte(UNCOMPRESSED);
+            out.writeInt(length);
+            out.write(data, 0, length);
+        }
+    }
+
+    /**
+     * Reads data written by {@link #writeBlock(DataOutputStream, byte[], int)}
+     */
+    public static byte[] readBlock(DataInputStream in) throws IOException {
+        final byte compression = in.readByte();
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Recording corrupt");
+        }
+        if (compression == UNCOMPRESSED) {
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            return data;
+        } else if (compression == COMPRESSED) {
+            final int compressedLength = in.readInt();
+            if (compressedLength < 0) {
+                throw new IOException("Recording corrupt");
+            }
+            final byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            return decompress(compressed, compressedLength, length);
+        } else {
+            throw new IOException("Unknown compression " + compression);
+        }
+    }
+
+    public static byte[] compress(byte[] src, int length) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 16);
+        final int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+
+        int anchor = 0;
+        int i = 0;
+        final int matchLimit = length - LAST_LITERALS;
+        while (i <= length - MATCH_FIND_LIMIT) {
+            final int sequence = readInt(src, i);
+            final int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            final int ref = table[hash];
+            table[hash] = i;
+            if (ref >= 0 && i - ref <= MAX_OFFSET && readInt(src, ref) == sequence) {
+                int matchLength = MIN_MATCH;
+                while (i + matchLength < matchLimit && src[ref + matchLength] == src[i + matchLength]) {
+                    matchLength++;
+                }
+                writeSequence(out, src, anchor, i - anchor, i - ref, matchLength);
+                i += matchLength;
+                anchor = i;
+            } else {
+                i++;
+            }
+        }
+        // last literals
+        final int literalLength = length - anchor;
+        out.write((Math.min(literalLength, 15) << 4));
+        writeLength(out, literalLength);
+        out.write(src, anchor, literalLength);
+        return out.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] src, int srcLength, int dstLength) throws IOException {
+        final byte[] dst = new byte[dstLength];
+        int s = 0;
+        int d = 0;
+        try {
+            while (s < srcLength) {
+                final int token = src[s++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, s, dst, d, literalLength);
+                s += literalLength;
+                d += literalLength;
+                if (s == srcLength) {
+                    break; // last literals
+                }
+
+                final int offset = (src[s++] & 0xFF) | ((src[s++] & 0xFF) << 8);
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[s++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = d - offset;
+                if (offset == 0 || ref < 0 || d + matchLength > dstLength) {
+                    throw new IOException("Recording corrupt");
+                }
+                // matches may overlap with the bytes being written, so copy byte by byte
+                for (int end = d + matchLength; d < end; ) {
+                    dst[d++] = dst[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Recording corrupt");
+        }
+        if (d != dstLength) {
+            throw new IOException("Recording corrupt");
+        }
+        return dst;
+    }
+
+    private static void writeSequence(ByteArrayOutputStream out, byte[] src, int literalStart, int literalLength,
+                                      int offset, int matchLength) {
+        final int matchCode = matchLength - MIN_MATCH;
+        out.write((Math.min(literalLength, 15) << 4) | Math.min(matchCode, 15));
+        writeLength(out, literalLength);
+        out.write(src, literalStart, literalLength);
+        out.write(offset & 0xFF);
+        out.write(offset >>> 8);
+        writeLength(out, matchCode);
+    }
+
+    /**
+     * Writes the remainder of a length which doesn't fit into 4 bits of the token
+     */
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        if (length >= 15) {
+            int remaining = length - 15;
+            while (remaining >= 255) {
+                out.write(255);
+                remaining -= 255;
+            }
+            out.write(remaining);
+        }
+    }
+
+    private static int readInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | ((src[i + 1] & 0xFF) << 8) | ((src[i + 2] & 0xFF) << 16) | ((src[i + 3] & 0xFF) << 24);
+    }
+}
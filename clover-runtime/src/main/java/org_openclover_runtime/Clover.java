@@ -19,11 +19,12 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * user-accessible runtime control for Clover
@@ -449,18 +450,21 @@ public final class Clover {
      * The initialised Clover runtime
      */
     private static class InitialisedRuntime implements Runtime {
-        private int currentSlice = NO_SLICE;
-        private long currentSliceStart = 0;
-        private String currentType;
-        private int typeID;
+        private volatile int currentSlice = NO_SLICE;
+        private volatile long currentSliceStart = 0;
+        private volatile String currentType;
+        private final AtomicInteger typeID;
 
-        private int testRunID = 0;
-        private final Map<String, Integer> typeIDs;
+        private volatile int currentTestRunID;
+        private final AtomicInteger testRunID = new AtomicInteger();
+        /** Ids of the slices started and not ended yet, so that a slice ends with the id it started with */
+        private final ConcurrentMap<SliceKey, Integer> startedRunIDs = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Integer> typeIDs;
 
         public InitialisedRuntime() {
             RecorderLogging.init();
-            typeID = Math.abs((int) (System.currentTimeMillis() + Clover.class.hashCode()));
-            typeIDs = Collections.synchronizedMap(new HashMap<>());
+            typeID = new AtomicInteger(Math.abs((int) (System.currentTimeMillis() + Clover.class.hashCode())));
+            typeIDs = new ConcurrentHashMap<>();
         }
 
         /**
@@ -488,15 +492,23 @@ public final class Clover {
 
         @Override
         public int getCurrentTestRunID() {
-            return testRunID;
+            return currentTestRunID;
         }
 
         /**
-         * map of configured recorder instances *
+         * map of configured recorder instances; lookups are lock-free, updates are guarded by RECORDERS_LOCK
          */
-        private final HashMap<String, CoverageRecorder> RECORDERS = new HashMap<>();
+        private final ConcurrentMap<String, CoverageRecorder> RECORDERS = new ConcurrentHashMap<>();
 
-        private DistributedClover distributedRuntime = null;
+        private final Object RECORDERS_LOCK = new Object();
+
+        /**
+         * Copy of RECORDERS values, replaced on every update of the map, so that flushes and slice broadcasts
+         * iterate over it without locking
+         */
+        private volatile CoverageRecorder[] recordersSnapshot = new CoverageRecorder[0];
+
+        private volatile DistributedClover distributedRuntime = null;
 
         /**
          * Cached value of 'clover.profile' system property
@@ -524,8 +536,14 @@ public final class Clover {
                             initString + "_" + cfgbits                      // shared
                             : initString + "_" + dbVersion + "_" + cfgbits; // fixed or growable
 
-            CoverageRecorder recorder;
-            synchronized (RECORDERS) {
+            // fast path: an existing recorder which is big enough and for which the distributed runtime is known
+            CoverageRecorder recorder = RECORDERS.get(recorderKey);
+            if (recorder != null && distributedRuntime != null && recorder.hasCapacityFor(maxNumElements)) {
+                Logger.getInstance().debug("[found existing recorder for " + recorderKey + "]");
+                return recorder;
+            }
+
+            synchronized (RECORDERS_LOCK) {
                 // find existing recorder ...
                 recorder = RECORDERS.get(recorderKey);
                 if (recorder != null) {
@@ -552,7 +570,9 @@ public final class Clover {
                 }
 
                 // growable/shared recorders may have emitted a new proxy so use this as the latest version
-                RECORDERS.put(recorderKey, recorder);
+                if (RECORDERS.put(recorderKey, recorder) != recorder) {
+                    recordersSnapshot = RECORDERS.values().toArray(new CoverageRecorder[0]);
+                }
 
                 if (distributedRuntime == null) {
                     distributedRuntime = new DistributedClover(properties, currentProfile);
@@ -586,16 +606,11 @@ public final class Clover {
 
         @Override
         public int getTypeID(String runtimeType) {
-            int result;
             Integer val = typeIDs.get(runtimeType);
             if (val == null) {
-                //Not thread-safe but also not important (implies a multi-threaded test which we don't support)
-                result = typeID++;
-                typeIDs.put(runtimeType, result);
-            } else {
-                result = val;
+                val = typeIDs.computeIfAbsent(runtimeType, type -> typeID.getAndIncrement());
             }
-            return result;
+            return val;
         }
 
         /**
@@ -603,8 +618,9 @@ public final class Clover {
          */
         @Override
         public void resetRecorders() {
-            synchronized (RECORDERS) {
+            synchronized (RECORDERS_LOCK) {
                 RECORDERS.clear();
+                recordersSnapshot = new CoverageRecorder[0];
             }
         }
 
@@ -613,51 +629,53 @@ public final class Clover {
          */
         @Override
         public boolean hasRecorded() {
-            return RECORDERS.size() > 0;
+            return !RECORDERS.isEmpty();
         }
 
         @Override
         public void allRecordersFlush() {
-            synchronized (RECORDERS) {
-                for (CoverageRecorder recorder : RECORDERS.values()) {
-                    recorder.forceFlush();
-                }
+            for (CoverageRecorder recorder : recordersSnapshot) {
+                recorder.forceFlush();
             }
         }
 
         @Override
         public void allRecordersSliceStart(final String type, final int slice, final long startTime) {
-            synchronized (RECORDERS) {
-                currentSlice = slice;
-                currentSliceStart = startTime > 0 ? startTime : System.currentTimeMillis();
-                currentType = type;
-
-                for (CoverageRecorder recorder : RECORDERS.values()) {
-                    recorder.sliceStart(type, currentSliceStart, slice, testRunID);
-                }
-                if (distributedRuntime != null) {
-                    // see MessageCodec START encoding
-                    distributedRuntime.remoteFlush(
-                            RpcMessage.createMethodStart(type, slice, currentSliceStart));
-                }
+            final long sliceStart = startTime > 0 ? startTime : System.currentTimeMillis();
+            // every slice gets its own id, which the slice end reports back to the recorders, whichever thread ends it
+            final int runID = testRunID.getAndIncrement();
+            startedRunIDs.put(new SliceKey(type, slice), runID);
+            currentTestRunID = runID;
+            currentSlice = slice;
+            currentSliceStart = sliceStart;
+            currentType = type;
+
+            for (CoverageRecorder recorder : recordersSnapshot) {
+                recorder.sliceStart(type, sliceStart, slice, runID);
+            }
+            final DistributedClover distributed = distributedRuntime;
+            if (distributed != null) {
+                // see MessageCodec START encoding
+                distributed.remoteFlush(
+                        RpcMessage.createMethodStart(type, slice, sliceStart));
             }
         }
 
         @Override
         public void allRecordersSliceEnd(final String type, final String method, /*@Nullable*/ final String runtimeTestName,
                                          final int slice, final int p, final ErrorInfo ei) {
-            synchronized (RECORDERS) {
-                currentSlice = NO_SLICE;
-                long ts = System.currentTimeMillis();
-                for (CoverageRecorder recorder : RECORDERS.values()) {
-                    recorder.sliceEnd(type, method, runtimeTestName, ts, slice, testRunID, p, ei);
-                }
-                if (distributedRuntime != null) {
-                    // see MessageCodec END encoding
-                    distributedRuntime.remoteFlush(
-                            RpcMessage.createMethodEnd(type, method, runtimeTestName, slice, p, ei));
-                }
-                testRunID++;
+            currentSlice = NO_SLICE;
+            final long ts = System.currentTimeMillis();
+            final Integer startedRunID = startedRunIDs.remove(new SliceKey(type, slice));
+            final int runID = startedRunID != null ? startedRunID : currentTestRunID;
+            for (CoverageRecorder recorder : recordersSnapshot) {
+                recorder.sliceEnd(type, method, runtimeTestName, ts, slice, runID, p, ei);
+            }
+            final DistributedClover distributed = distributedRuntime;
+            if (distributed != null) {
+                // see MessageCodec END encoding
+                distributed.remoteFlush(
+                        RpcMessage.createMethodEnd(type, method, runtimeTestName, slice, p, ei));
             }
         }
 
@@ -814,5 +832,29 @@ public final class Clover {
             throwable.printStackTrace(new PrintWriter(sw));
             return sw.toString();
         }
+
+        private static final class SliceKey {
+            private final String type;
+            private final int slice;
+
+            SliceKey(String type, int slice) {
+                this.type = type;
+                this.slice = slice;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (o == null || getClass() != o.getClass()) return false;
+
+                final SliceKey that = (SliceKey)o;
+                return slice == that.slice && Objects.equals(type, that.type);
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * Objects.hashCode(type) + slice;
+            }
+        }
     }
 }
@@ -15,21 +15,27 @@ public abstract class CoverageRecorder {
     public static final int FLUSHPOLICY_INTERVAL = 1;
     public static final int FLUSHPOLICY_THREADED = 2;
 
+    public static final int RECORDING_FORMAT_INTEGER = 0;
+    public static final int RECORDING_FORMAT_BOOLEAN = 1;
+
     /**
      * Config information is packed into a single long which is added to instrumentation.
      * Bits
      *  0-31 = integer flush interval in milliseconds
      * 32-34 = flush policy: 0 = directed, 1 = interval, 2 = threaded
-     * 35-37 = NO LONGER USED: was: recording format: 0 = integer, 1 = boolean
+     * 35-37 = recording format: 0 = integer hit counts, 1 = boolean hit/not-hit bitmap
      *    38 = disable shutdown hook: 0 = enable, 1 = disable
      *    39 = use current threadgroup for thread creation: 0 = top, 1 = current
      *    40 = disable slice flushing: 0 = enable, 1 = disable
+     *    41 = use striped (per-thread) hit counters: 0 = shared array, 1 = striped
      */
     public static final long FLUSH_INTERVAL_MASK = Integer.MAX_VALUE;
     public static final int FLUSHPOLICY_MASK = 0x7;
+    public static final int RECORDING_FORMAT_MASK = 0x7 << 3;
     public static final int DISABLE_SHUTDOWNHOOK_MASK = 0x1 << 7;
     public static final int USE_CURRENT_THREADGROUP_MASK = 0x1 << 8;
     public static final int DISABLE_SLICE_FLUSHING_MASK = 0x1 << 9;
+    public static final int STRIPED_COUNTERS_MASK = 0x1 << 10;
 
     public abstract String getDbName();
 
@@ -74,6 +80,14 @@ public abstract class CoverageRecorder {
      */
     public abstract CoverageRecorder withCapacityFor(int maxNumElements);
 
+    /**
+     * @return true if {@link #withCapacityFor(int)} would return this instance. Unlike {@link #withCapacityFor(int)}
+     * it has no side effects, so it may be called without any locking. Conservatively false by default.
+     */
+    public boolean hasCapacityFor(int maxNumElements) {
+        return false;
+    }
+
     ///CLOVER:OFF
     @ForInstrumentation
     public final void rethrow(Throwable t) {
@@ -96,11 +110,28 @@ public abstract class CoverageRecorder {
     public static long getConfigBits(
         long flushPolicy, int flushInterval, boolean useCurrentThreadGroup,
         boolean disableShutdownHook, boolean disableSlicedFlushing) {
+        return getConfigBits(flushPolicy, flushInterval, useCurrentThreadGroup,
+                disableShutdownHook, disableSlicedFlushing, false);
+    }
+
+    public static long getConfigBits(
+        long flushPolicy, int flushInterval, boolean useCurrentThreadGroup,
+        boolean disableShutdownHook, boolean disableSlicedFlushing, boolean stripedCounters) {
+        return getConfigBits(flushPolicy, flushInterval, useCurrentThreadGroup,
+                disableShutdownHook, disableSlicedFlushing, stripedCounters, RECORDING_FORMAT_INTEGER);
+    }
+
+    public static long getConfigBits(
+        long flushPolicy, int flushInterval, boolean useCurrentThreadGroup,
+        boolean disableShutdownHook, boolean disableSlicedFlushing, boolean stripedCounters,
+        int recordingFormat) {
 
         long result = flushInterval;
 
         result += (flushPolicy << 32);
 
+        result += ((long) recordingFormat << 3+32);
+
         if (disableShutdownHook) {
             result += (0x1L << 7+32);
         }
@@ -113,6 +144,10 @@ public abstract class CoverageRecorder {
             result += (0x1L << 9+32);
         }
 
+        if (stripedCounters) {
+            result += (0x1L << 10+32);
+        }
+
         return result;
     }
 